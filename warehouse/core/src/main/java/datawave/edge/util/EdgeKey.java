@@ -701,11 +701,21 @@ public class EdgeKey {
         }
         
         public static EDGE_VERSION getEdgeVersion(List<String> pieces) {
-            int nPieces = pieces.size();
+            return getEdgeVersion(pieces.size(), !pieces.isEmpty() && pieces.get(0).equals(STATS_COLF));
+        }
+        
+        /**
+         * @param nPieces
+         *            the number of pieces in the column family and qualifier
+         * @param stats
+         *            whether the first piece of the column family is the stats marker
+         * @return the edge version
+         */
+        public static EDGE_VERSION getEdgeVersion(int nPieces, boolean stats) {
             if (nPieces < 4) {
                 return UNKNOWN;
             }
-            if (pieces.get(0).equals(STATS_COLF)) {
+            if (stats) {
                 if (nPieces == 6) {
                     return STATS_BASE;
                 } else if (nPieces == 7) {
@@ -1199,17 +1209,6 @@ public class EdgeKey {
      * @return the date type of this accumulo edge key
      */
     public static DATE_TYPE getDateType(Key key) {
-        
-        EdgeColumnParts parts = new EdgeColumnParts(key);
-        
-        EDGE_VERSION version = EDGE_VERSION.getEdgeVersion(parts);
-        
-        if (version == EDGE_VERSION.DATE_STATS_PROTOBUF) {
-            return DATE_TYPE.parse(parts.get(8));
-        } else if (version == EDGE_VERSION.DATE_PROTOBUF) {
-            return DATE_TYPE.parse(parts.get(6));
-        } else {
-            return DATE_TYPE.OLD_EVENT;
-        }
+        return new EdgeKeyView(key).getDateType();
     }
 }
@@ -0,0 +1,264 @@
+package datawave.edge.util;
+
+import static datawave.edge.util.EdgeKey.COL_SEPARATOR_BYTE;
+import static datawave.edge.util.EdgeKey.DATE_TYPE;
+import static datawave.edge.util.EdgeKey.EDGE_FORMAT;
+import static datawave.edge.util.EdgeKey.EDGE_VERSION;
+import static datawave.edge.util.EdgeKey.STATS_BYTES;
+import static datawave.edge.util.EdgeKey.STATS_TYPE;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * A view of the pieces of an edge key which does not decode the key. The pieces are located lazily within the key's row, column family and column qualifier
+ * as they are requested, and are returned as {@link ByteSequence}s backed by the key's own byte arrays. This allows iterators to inspect or filter edge keys
+ * without building Strings or an {@link EdgeKey} for each of them.
+ * <p>
+ * The pieces are interpreted the same way as the {@link EdgeKeyDecoder}, except that the source and sink are returned as they are stored, without being
+ * unescaped. A view may be reused by setting another key, after which the sequences returned for the previous key must no longer be used. The sequences are
+ * only valid as long as the key itself is not modified.
+ */
+public class EdgeKeyView {
+    private static final int MAX_PARTS = 9;
+    private static final byte ROW_SEPARATOR = '\0';
+    private static final byte[][] STATS_TYPE_BYTES = new byte[STATS_TYPE.values().length][];
+    private static final byte[][] DATE_TYPE_BYTES = new byte[DATE_TYPE.values().length][];
+    
+    static {
+        for (STATS_TYPE statsType : STATS_TYPE.values()) {
+            STATS_TYPE_BYTES[statsType.ordinal()] = statsType.name().getBytes(StandardCharsets.UTF_8);
+        }
+        for (DATE_TYPE dateType : DATE_TYPE.values()) {
+            DATE_TYPE_BYTES[dateType.ordinal()] = dateType.abbreviation.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    private ByteSequence row;
+    private ByteSequence colFam;
+    private ByteSequence colQual;
+    
+    // the bounds of the column pieces, with those of the column family followed by those of the column qualifier
+    private final int[] partStart = new int[MAX_PARTS];
+    private final int[] partEnd = new int[MAX_PARTS];
+    private int numParts;
+    private int numColFamParts;
+    private EDGE_VERSION version;
+    
+    // the position of the first null byte in the row, or -1 if there is none
+    private int rowSeparator;
+    private boolean rowParsed;
+    
+    public EdgeKeyView() {}
+    
+    public EdgeKeyView(Key key) {
+        set(key);
+    }
+    
+    /**
+     * Point this view at another key
+     *
+     * @param key
+     *            an edge key
+     * @return this view
+     */
+    public EdgeKeyView set(Key key) {
+        this.row = key.getRowData();
+        this.colFam = key.getColumnFamilyData();
+        this.colQual = key.getColumnQualifierData();
+        this.version = null;
+        this.rowParsed = false;
+        return this;
+    }
+    
+    /**
+     * @return the format of the edge, determined the same way as {@link EdgeKeyDecoder#determineEdgeFormat}
+     */
+    public EDGE_FORMAT getFormat() {
+        if (colFam.length() >= STATS_BYTES.length && equals(colFam, 0, STATS_BYTES.length, STATS_BYTES)) {
+            return EDGE_FORMAT.STATS;
+        } else {
+            return EDGE_FORMAT.STANDARD;
+        }
+    }
+    
+    /**
+     * @return the version of the edge, as determined by the number of pieces in the column family and qualifier
+     */
+    public EDGE_VERSION getVersion() {
+        if (version == null) {
+            parseColumns();
+        }
+        return version;
+    }
+    
+    /**
+     * @return the number of pieces in the column family
+     */
+    public int getNumColumnFamilyParts() {
+        getVersion();
+        return numColFamParts;
+    }
+    
+    public ByteSequence getSource() {
+        parseRow();
+        if (getFormat() == EDGE_FORMAT.STATS || rowSeparator <= 0) {
+            return row;
+        }
+        return row.subSequence(0, rowSeparator);
+    }
+    
+    /**
+     * @return the sink, or null for stats edges and rows without a sink
+     */
+    public ByteSequence getSink() {
+        parseRow();
+        if (getFormat() == EDGE_FORMAT.STATS || rowSeparator <= 0) {
+            return null;
+        }
+        return row.subSequence(rowSeparator + 1, row.length());
+    }
+    
+    public ByteSequence getType() {
+        return getPart(getVersion().getTypeIndex());
+    }
+    
+    /**
+     * @return the relationship piece, which for standard edges holds both the source and sink relationships
+     */
+    public ByteSequence getRelationship() {
+        return getPart(getVersion().getRelationshipIndex());
+    }
+    
+    /**
+     * @return the category piece, which for standard edges holds both the source and sink attribute1
+     */
+    public ByteSequence getAttribute1() {
+        return getPart(getVersion().getCategoryIndex());
+    }
+    
+    public ByteSequence getAttribute2() {
+        return getPart(getVersion().getAttribute2Index());
+    }
+    
+    public ByteSequence getAttribute3() {
+        return getPart(getVersion().getAttribute3Index());
+    }
+    
+    public ByteSequence getYyyymmdd() {
+        return getPart(getVersion().getYMDIndex());
+    }
+    
+    /**
+     * @return the stats type, or null if this is not a stats edge
+     */
+    public STATS_TYPE getStatsType() {
+        if (getVersion().getFormat() != EDGE_FORMAT.STATS) {
+            return null;
+        }
+        int index = version.getStatsTypeIndex();
+        for (STATS_TYPE statsType : STATS_TYPE.values()) {
+            if (partEquals(index, STATS_TYPE_BYTES[statsType.ordinal()])) {
+                return statsType;
+            }
+        }
+        throw new EnumConstantNotPresentException(STATS_TYPE.class, getPart(index).toString());
+    }
+    
+    /**
+     * @return the date type, {@link DATE_TYPE#OLD_EVENT} for the versions without one, or null if the date type is not recognized
+     */
+    public DATE_TYPE getDateType() {
+        int index = getVersion().getDateTypeIndex();
+        if (index < 0) {
+            return DATE_TYPE.OLD_EVENT;
+        }
+        for (DATE_TYPE dateType : DATE_TYPE.values()) {
+            if (partEquals(index, DATE_TYPE_BYTES[dateType.ordinal()])) {
+                return dateType;
+            }
+        }
+        return null;
+    }
+    
+    private ByteSequence getPart(int index) {
+        if (index < 0 || index >= Math.min(numParts, MAX_PARTS)) {
+            return null;
+        }
+        ByteSequence column = index < numColFamParts ? colFam : colQual;
+        return column.subSequence(partStart[index], partEnd[index]);
+    }
+    
+    private boolean partEquals(int index, byte[] bytes) {
+        if (index < 0 || index >= Math.min(numParts, MAX_PARTS)) {
+            return false;
+        }
+        ByteSequence column = index < numColFamParts ? colFam : colQual;
+        return partEnd[index] - partStart[index] == bytes.length && equals(column, partStart[index], bytes.length, bytes);
+    }
+    
+    private void parseRow() {
+        if (!rowParsed) {
+            rowSeparator = indexOf(row, ROW_SEPARATOR, 0);
+            rowParsed = true;
+        }
+    }
+    
+    private void parseColumns() {
+        numParts = 0;
+        numColFamParts = split(colFam);
+        split(colQual);
+        
+        boolean stats = partEquals(0, STATS_BYTES);
+        version = numParts > MAX_PARTS ? EDGE_VERSION.UNKNOWN : EDGE_VERSION.getEdgeVersion(numParts, stats);
+    }
+    
+    /**
+     * Record the bounds of the pieces of a column, up to the most pieces of any edge version
+     *
+     * @return the number of pieces in the column
+     */
+    private int split(ByteSequence column) {
+        int count = 0;
+        int start = 0;
+        int end;
+        do {
+            end = indexOf(column, COL_SEPARATOR_BYTE, start);
+            if (end < 0) {
+                end = column.length();
+            }
+            if (numParts < MAX_PARTS) {
+                partStart[numParts] = start;
+                partEnd[numParts] = end;
+            }
+            numParts++;
+            count++;
+            start = end + 1;
+        } while (end < column.length());
+        return count;
+    }
+    
+    private static int indexOf(ByteSequence sequence, byte b, int from) {
+        byte[] bytes = sequence.getBackingArray();
+        int offset = sequence.offset();
+        for (int i = from; i < sequence.length(); i++) {
+            if (bytes[offset + i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean equals(ByteSequence sequence, int start, int length, byte[] other) {
+        byte[] bytes = sequence.getBackingArray();
+        int offset = sequence.offset() + start;
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
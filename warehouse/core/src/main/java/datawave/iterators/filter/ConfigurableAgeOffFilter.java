@@ -32,6 +32,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -171,12 +172,22 @@ public class ConfigurableAgeOffFilter extends Filter implements OptionDescriber
         boolean acceptFlag = false;
         boolean filterRuleApplied = false;
         
-        Iterator<AppliedRule> iter = this.filterList.iterator();
-        
-        while ((!filterRuleApplied) && iter.hasNext()) {
-            AppliedRule filter = iter.next();
-            acceptFlag = filter.accept(k, v);
-            filterRuleApplied = filter.isFilterRuleApplied();
+        if (this.filterList instanceof RandomAccess) {
+            // index into the rules rather than allocating an iterator for every key
+            List<AppliedRule> rules = (List<AppliedRule>) this.filterList;
+            for (int i = 0; (!filterRuleApplied) && i < rules.size(); i++) {
+                AppliedRule filter = rules.get(i);
+                acceptFlag = filter.accept(k, v);
+                filterRuleApplied = filter.isFilterRuleApplied();
+            }
+        } else {
+            Iterator<AppliedRule> iter = this.filterList.iterator();
+            
+            while ((!filterRuleApplied) && iter.hasNext()) {
+                AppliedRule filter = iter.next();
+                acceptFlag = filter.accept(k, v);
+                filterRuleApplied = filter.isFilterRuleApplied();
+            }
         }
         
         // We went through all of the defined filter rules
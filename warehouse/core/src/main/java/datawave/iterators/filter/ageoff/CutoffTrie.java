@@ -0,0 +1,147 @@
+package datawave.iterators.filter.ageoff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.ByteSequence;
+
+/**
+ * A constructed trie which matches a whole range of bytes, such as a field name or a data type, against a set of names and returns the cut off time of the
+ * matching name. Unlike looking up a {@code ByteSequence} in a map, a match is made directly against the backing array of a key, without allocating anything
+ * per key. A CutoffTrie is an immutable object, and as such is inherently threadsafe.
+ */
+public final class CutoffTrie {
+    public static final int NOT_FOUND = -1;
+    private static final short UNRECOGNIZED_CHAR_CLASS = -1;
+    
+    private final int charClassCount;
+    private final short[] charClasses;
+    private final int[] transitionTable;
+    private final boolean[] acceptStates;
+    private final long[] stateCutoffs;
+    
+    CutoffTrie(int charClassCount, short[] charClasses, int[] transitionTable, boolean[] acceptStates, long[] stateCutoffs) {
+        this.charClassCount = charClassCount;
+        this.charClasses = charClasses;
+        this.transitionTable = transitionTable;
+        this.acceptStates = acceptStates;
+        this.stateCutoffs = stateCutoffs;
+    }
+    
+    /**
+     * Match the specified range of bytes against the names in this trie.
+     *
+     * @return the state of the matching name, to be passed to {@link #getCutoff(int)}, or {@link #NOT_FOUND} if the bytes do not match any name
+     */
+    public int find(byte[] bytes, int offset, int length) {
+        int curState = 0;
+        for (int i = offset; i < offset + length; i++) {
+            short charClass = charClasses[0xff & (int) bytes[i]];
+            if (charClass == UNRECOGNIZED_CHAR_CLASS) {
+                return NOT_FOUND;
+            }
+            curState = transitionTable[curState * charClassCount + charClass];
+            if (curState == NOT_FOUND) {
+                return NOT_FOUND;
+            }
+        }
+        return acceptStates[curState] ? curState : NOT_FOUND;
+    }
+    
+    /**
+     * @return the cut off time of the name matched by {@link #find(byte[], int, int)}
+     */
+    public long getCutoff(int state) {
+        return stateCutoffs[state];
+    }
+    
+    /**
+     * Trie construction.
+     */
+    public static class Builder {
+        private int entryCount = 0;
+        private final List<Map<Byte,Integer>> transitionMaps = new ArrayList<>();
+        private final List<Long> stateCutoffList = new ArrayList<>();
+        
+        public Builder() {
+            transitionMaps.add(new HashMap<>());
+            stateCutoffList.add(null);
+        }
+        
+        public int size() {
+            return entryCount;
+        }
+        
+        /**
+         * Add a name to the trie under construction, along with its cut off time. A name which was already added has its cut off time replaced.
+         */
+        public Builder put(byte[] name, long cutoff) {
+            int curState = 0;
+            for (byte b : name) {
+                Map<Byte,Integer> transMap = transitionMaps.get(curState);
+                Integer nextState = transMap.get(b);
+                if (nextState == null) {
+                    nextState = transitionMaps.size();
+                    transitionMaps.add(new HashMap<>());
+                    stateCutoffList.add(null);
+                    transMap.put(b, nextState);
+                }
+                curState = nextState;
+            }
+            if (stateCutoffList.get(curState) == null) {
+                entryCount++;
+            }
+            stateCutoffList.set(curState, cutoff);
+            return this;
+        }
+        
+        /**
+         * Add each of the names in the map, along with their cut off times.
+         */
+        public Builder putAll(Map<ByteSequence,Long> cutoffs) {
+            for (Map.Entry<ByteSequence,Long> entry : cutoffs.entrySet()) {
+                put(entry.getKey().toArray(), entry.getValue());
+            }
+            return this;
+        }
+        
+        public CutoffTrie build() {
+            // only create transition table entries for the bytes which actually appear in a name
+            short[] charClasses = new short[256];
+            for (int i = 0; i < 256; i++) {
+                charClasses[i] = UNRECOGNIZED_CHAR_CLASS;
+            }
+            Set<Byte> seenBytes = new HashSet<>();
+            for (Map<Byte,Integer> transMap : transitionMaps) {
+                seenBytes.addAll(transMap.keySet());
+            }
+            List<Byte> classReps = new ArrayList<>(seenBytes);
+            for (int i = 0; i < classReps.size(); i++) {
+                charClasses[0xff & (int) classReps.get(i)] = (short) i;
+            }
+            int charClassCount = classReps.size();
+            
+            int[] transitionTable = new int[transitionMaps.size() * charClassCount];
+            boolean[] acceptStates = new boolean[transitionMaps.size()];
+            long[] stateCutoffs = new long[transitionMaps.size()];
+            
+            for (int state = 0; state < transitionMaps.size(); state++) {
+                Map<Byte,Integer> transMap = transitionMaps.get(state);
+                Long cutoff = stateCutoffList.get(state);
+                acceptStates[state] = cutoff != null;
+                stateCutoffs[state] = cutoff == null ? Long.MIN_VALUE : cutoff;
+                
+                for (int charClass = 0; charClass < charClassCount; charClass++) {
+                    Integer nextState = transMap.get(classReps.get(charClass));
+                    transitionTable[state * charClassCount + charClass] = nextState == null ? NOT_FOUND : nextState;
+                }
+            }
+            
+            return new CutoffTrie(charClassCount, charClasses, transitionTable, acceptStates, stateCutoffs);
+        }
+    }
+}
@@ -87,6 +87,11 @@ public class DataTypeAgeOffFilter extends AppliedRule {
      */
     protected Map<ByteSequence,Long> dataTypeTimes = null;
     
+    /**
+     * The data type cut off times, matched against the bytes of each key without allocating a sequence for the data type
+     */
+    protected CutoffTrie dataTypeCutoffs = new CutoffTrie.Builder().build();
+    
     /**
      * Required by the {@code FilterRule} interface. This method returns a {@code boolean} value indicating whether or not to allow the {@code (Key, Value)}
      * pair through the rule. A value of {@code true} indicates that the pair should be passed onward through the {@code Iterator} stack, and {@code false}
@@ -114,7 +119,10 @@ public class DataTypeAgeOffFilter extends AppliedRule {
         
         int nullIndex = -1;
         
-        ByteSequence dataType = null;
+        // the bounds of the data type within either the column family or qualifier
+        byte[] dataType = null;
+        int dataTypeStart = 0;
+        int dataTypeLength = 0;
         
         /**
          * Supports the shard and index table. There should not be a failure, however if either one is used on the incorrect table
@@ -127,8 +135,11 @@ public class DataTypeAgeOffFilter extends AppliedRule {
                 }
             }
             
-            if (nullIndex > 0)
-                dataType = new ArrayByteSequence(cq, nullIndex, (cqLength - nullIndex));
+            if (nullIndex > 0) {
+                dataType = cq;
+                dataTypeStart = nullIndex;
+                dataTypeLength = cqLength - nullIndex;
+            }
             
         } else {
             // shard table
@@ -159,7 +170,8 @@ public class DataTypeAgeOffFilter extends AppliedRule {
                 
                 // the data type is the first part of this entry.
                 if (nullIndex > 0) {
-                    dataType = new ArrayByteSequence(cq, 0, nullIndex);
+                    dataType = cq;
+                    dataTypeLength = nullIndex;
                 }
                 
             } else if (column == FI_COLUMN_BYTES) {
@@ -177,8 +189,11 @@ public class DataTypeAgeOffFilter extends AppliedRule {
                     }
                 }
                 
-                if (uidIndex > 0 && nullIndex > 0)
-                    dataType = new ArrayByteSequence(cq, nullIndex, (uidIndex - nullIndex));
+                if (uidIndex > 0 && nullIndex > 0) {
+                    dataType = cq;
+                    dataTypeStart = nullIndex;
+                    dataTypeLength = uidIndex - nullIndex;
+                }
                 
             } else {
                 int cfLength = cf.length;
@@ -190,24 +205,25 @@ public class DataTypeAgeOffFilter extends AppliedRule {
                 }
                 // data column
                 if (nullIndex > 0) {
-                    dataType = new ArrayByteSequence(cf, 0, nullIndex);
+                    dataType = cf;
+                    dataTypeLength = nullIndex;
                 }
                 
             }
         }
         
         long defaultCutoffTime = (period.getTtl() >= 0) ? period.getCutOffMilliseconds() : -1;
-        Long dataTypeCutoff = (dataTypeTimes.containsKey(dataType)) ? dataTypeTimes.get(dataType) : null;
+        int state = (dataType == null) ? CutoffTrie.NOT_FOUND : dataTypeCutoffs.find(dataType, dataTypeStart, dataTypeLength);
         boolean accept = true;
         
-        if (dataTypeCutoff == null) {
+        if (state == CutoffTrie.NOT_FOUND) {
             if (defaultCutoffTime >= 0) {
                 ruleApplied = true;
                 accept = k.getTimestamp() > defaultCutoffTime;
             }
         } else {
             ruleApplied = true;
-            accept = k.getTimestamp() > dataTypeCutoff;
+            accept = k.getTimestamp() > dataTypeCutoffs.getCutoff(state);
         }
         return accept;
     }
@@ -282,6 +298,11 @@ public class DataTypeAgeOffFilter extends AppliedRule {
             }
             
         }
+        CutoffTrie.Builder cutoffs = new CutoffTrie.Builder();
+        if (dataTypeTimes != null) {
+            cutoffs.putAll(dataTypeTimes);
+        }
+        dataTypeCutoffs = cutoffs.build();
     }
     
     @Override
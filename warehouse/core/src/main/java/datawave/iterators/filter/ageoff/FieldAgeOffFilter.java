@@ -98,6 +98,11 @@ public class FieldAgeOffFilter extends AppliedRule {
      */
     protected Map<ByteSequence,Long> fieldTimes = null;
     
+    /**
+     * The field cut off times, matched against the bytes of each key without allocating a sequence for the field
+     */
+    protected CutoffTrie fieldCutoffs = new CutoffTrie.Builder().build();
+    
     /**
      * Exclude data from age-off
      */
@@ -131,14 +136,18 @@ public class FieldAgeOffFilter extends AppliedRule {
         // get the column qualifier, so that we can use it throughout
         final byte[] cq = k.getColumnQualifierData().getBackingArray();
         
-        ByteSequence field = null;
+        // the bounds of the field within either the column family or qualifier
+        byte[] field = null;
+        int fieldStart = 0;
+        int fieldLength = 0;
         FieldExclusionType candidateExclusionType = null;
         
         /**
          * Supports the shard and index table. There should not be a failure, however if either one is used on the incorrect table
          */
         if (isIndextable) {
-            field = k.getColumnFamilyData();
+            field = k.getColumnFamilyData().getBackingArray();
+            fieldLength = field.length;
             
         } else {
             // shard table
@@ -167,18 +176,18 @@ public class FieldAgeOffFilter extends AppliedRule {
                     }
                 }
                 if (nullIndex > 0) {
-                    int start = nullIndex + 1;
-                    int length = cq.length - start;
-                    field = new ArrayByteSequence(cq, start, length);
+                    field = cq;
+                    fieldStart = nullIndex + 1;
+                    fieldLength = cq.length - fieldStart;
                 }
                 
             } else if (column == FI_COLUMN_BYTES) {
                 
                 // CASE 2
                 // For the fi, grab the rest of the string after fi\0
-                int start = FI_COLUMN_BYTES.length + 1;
-                int length = cf.length - start;
-                field = new ArrayByteSequence(cf, start, length);
+                field = cf;
+                fieldStart = FI_COLUMN_BYTES.length + 1;
+                fieldLength = cf.length - fieldStart;
                 
             } else {
                 // CASE 3
@@ -195,7 +204,8 @@ public class FieldAgeOffFilter extends AppliedRule {
                 // event fields may have instance notations using periods
                 // the field needs to be truncated to either the null or the first dot.
                 if (length > 0) {
-                    field = new ArrayByteSequence(cq, 0, length);
+                    field = cq;
+                    fieldLength = length;
                 }
             }
         }
@@ -206,10 +216,10 @@ public class FieldAgeOffFilter extends AppliedRule {
             return true;
         }
         
-        Long dataTypeCutoff = (fieldTimes.containsKey(field)) ? fieldTimes.get(field) : null;
-        if (dataTypeCutoff != null) {
+        int state = (field == null) ? CutoffTrie.NOT_FOUND : fieldCutoffs.find(field, fieldStart, fieldLength);
+        if (state != CutoffTrie.NOT_FOUND) {
             ruleApplied = true;
-            return k.getTimestamp() > dataTypeCutoff;
+            return k.getTimestamp() > fieldCutoffs.getCutoff(state);
         }
         
         return true;
@@ -314,6 +324,11 @@ public class FieldAgeOffFilter extends AppliedRule {
                 }
             }
         }
+        CutoffTrie.Builder cutoffs = new CutoffTrie.Builder();
+        if (fieldTimes != null) {
+            cutoffs.putAll(fieldTimes);
+        }
+        fieldCutoffs = cutoffs.build();
     }
     
     @Override
@@ -0,0 +1,96 @@
+package datawave.edge.util;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EdgeKeyViewTest {
+    private EdgeTableTestKeyHelper testKeyHelper;
+    private EdgeKeyDecoder decoder;
+    private EdgeKeyView view;
+    
+    @Before
+    public void before() {
+        testKeyHelper = new EdgeTableTestKeyHelper();
+        decoder = new EdgeKeyDecoder();
+        view = new EdgeKeyView();
+    }
+    
+    @Test
+    public void testMatchesDecoder() {
+        // this also verifies that reusing the view has no impact on correctness
+        for (Key key : new Key[] {testKeyHelper.refBase, testKeyHelper.refBaseAttribute2, testKeyHelper.refProtobuf, testKeyHelper.refDateProtobuf,
+                testKeyHelper.refStatsBase, testKeyHelper.refStatsAttribute2, testKeyHelper.refStatsProtobuf, testKeyHelper.refStatsDateProtobuf}) {
+            EdgeKey edgeKey = decoder.decode(key, EdgeKey.newBuilder());
+            String message = key.toString();
+            
+            view.set(key);
+            Assert.assertEquals(message, edgeKey.getFormat(), view.getFormat());
+            Assert.assertEquals(message, edgeKey.getSourceData(), toString(view.getSource()));
+            Assert.assertEquals(message, edgeKey.getType(), toString(view.getType()));
+            Assert.assertEquals(message, edgeKey.getYyyymmdd(), toString(view.getYyyymmdd()));
+            if (view.getVersion().hasAttribute2()) {
+                Assert.assertEquals(message, edgeKey.getAttribute2(), toString(view.getAttribute2()));
+            } else {
+                Assert.assertNull(message, view.getAttribute2());
+            }
+            if (view.getVersion().hasAttribute3()) {
+                Assert.assertEquals(message, edgeKey.getAttribute3(), toString(view.getAttribute3()));
+            } else {
+                Assert.assertNull(message, view.getAttribute3());
+            }
+            Assert.assertEquals(message, edgeKey.getDateType(), view.getDateType());
+            Assert.assertEquals(message, EdgeKey.getDateType(key), view.getDateType());
+            if (edgeKey.getFormat() == EdgeKey.EDGE_FORMAT.STATS) {
+                Assert.assertNull(message, view.getSink());
+                Assert.assertEquals(message, edgeKey.getStatsType(), view.getStatsType());
+                Assert.assertEquals(message, edgeKey.getSourceRelationship(), toString(view.getRelationship()));
+                Assert.assertEquals(message, edgeKey.getSourceAttribute1(), toString(view.getAttribute1()));
+            } else {
+                Assert.assertEquals(message, edgeKey.getSinkData(), toString(view.getSink()));
+                Assert.assertNull(message, view.getStatsType());
+                Assert.assertEquals(message, edgeKey.getRelationship(), toString(view.getRelationship()));
+                Assert.assertEquals(message, edgeKey.getSourceAttribute1() + "-" + edgeKey.getSinkAttribute1(), toString(view.getAttribute1()));
+            }
+        }
+    }
+    
+    @Test
+    public void testVersion() {
+        Assert.assertEquals(EdgeKey.EDGE_VERSION.BASE, view.set(testKeyHelper.refBase).getVersion());
+        Assert.assertEquals(EdgeKey.EDGE_VERSION.PROTOBUF, view.set(testKeyHelper.refProtobuf).getVersion());
+        Assert.assertEquals(2, view.getNumColumnFamilyParts());
+        Assert.assertEquals(EdgeKey.EDGE_VERSION.DATE_STATS_PROTOBUF, view.set(testKeyHelper.refStatsDateProtobuf).getVersion());
+        Assert.assertEquals(4, view.getNumColumnFamilyParts());
+        
+        Key unknown = new Key(new Text("SOURCE\0SINK"), new Text("TYPE/REL/A/B/C/D/E/F/G"), new Text("YYYYMMDD/1/2"));
+        Assert.assertEquals(EdgeKey.EDGE_VERSION.UNKNOWN, view.set(unknown).getVersion());
+        Assert.assertNull(view.getType());
+        Assert.assertEquals(EdgeKey.DATE_TYPE.OLD_EVENT, view.getDateType());
+    }
+    
+    @Test
+    public void testPiecesShareKeyBytes() {
+        Key key = testKeyHelper.refDateProtobuf;
+        view.set(key);
+        Assert.assertSame(key.getRowData().getBackingArray(), view.getSink().getBackingArray());
+        Assert.assertSame(key.getColumnFamilyData().getBackingArray(), view.getType().getBackingArray());
+        Assert.assertSame(key.getColumnQualifierData().getBackingArray(), view.getAttribute3().getBackingArray());
+        Assert.assertEquals(new Text(EdgeTableTestKeyHelper.ATTR_3), new Text(view.getAttribute3().toArray()));
+    }
+    
+    @Test
+    public void testUnknownDateType() {
+        Key key = new Key(new Text("SOURCE\0SINK"), new Text("TYPE/REL"), new Text("YYYYMMDD/CAT/ATTR2/ATTR3/Z"));
+        Assert.assertEquals(EdgeKey.EDGE_VERSION.DATE_PROTOBUF, view.set(key).getVersion());
+        Assert.assertNull(view.getDateType());
+        Assert.assertNull(EdgeKey.getDateType(key));
+    }
+    
+    private static String toString(ByteSequence sequence) {
+        return sequence == null ? null : new String(sequence.toArray());
+    }
+}
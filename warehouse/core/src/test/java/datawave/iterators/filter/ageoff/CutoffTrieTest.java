@@ -0,0 +1,91 @@
+package datawave.iterators.filter.ageoff;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.junit.Test;
+
+public class CutoffTrieTest {
+    
+    @Test
+    public void testTrie() {
+        CutoffTrie trie = new CutoffTrie.Builder().put("foo".getBytes(), 2).put("foobar".getBytes(), 3).put("bar".getBytes(), 4).build();
+        
+        assertEquals(2, cutoff(trie, "foo"));
+        assertEquals(3, cutoff(trie, "foobar"));
+        assertEquals(4, cutoff(trie, "bar"));
+        
+        // only whole names match
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find("fo".getBytes(), 0, 2));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find("foob".getBytes(), 0, 4));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find("barfoo".getBytes(), 0, 6));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find("baz".getBytes(), 0, 3));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find(new byte[0], 0, 0));
+    }
+    
+    @Test
+    public void testFindWithinArray() {
+        CutoffTrie trie = new CutoffTrie.Builder().put("FIELD".getBytes(), 5).build();
+        byte[] cq = "datatype\0uid\0FIELD".getBytes();
+        assertEquals(5, trie.getCutoff(trie.find(cq, 13, 5)));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find(cq, 13, 4));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find(cq, 12, 6));
+    }
+    
+    @Test
+    public void testLaterCutoffReplacesEarlier() {
+        CutoffTrie.Builder builder = new CutoffTrie.Builder().put("foo".getBytes(), 2).put("foo".getBytes(), 7);
+        assertEquals(1, builder.size());
+        assertEquals(7, cutoff(builder.build(), "foo"));
+    }
+    
+    @Test
+    public void testEmptyName() {
+        CutoffTrie trie = new CutoffTrie.Builder().put(new byte[0], 9).build();
+        assertEquals(9, trie.getCutoff(trie.find("anything".getBytes(), 3, 0)));
+        assertEquals(CutoffTrie.NOT_FOUND, trie.find("a".getBytes(), 0, 1));
+    }
+    
+    @Test
+    public void fuzzCutoffTrie() {
+        Random r = new Random(1234);
+        Map<ByteSequence,Long> cutoffs = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] name = new byte[1 + r.nextInt(12)];
+            for (int j = 0; j < name.length; j++) {
+                name[j] = (byte) r.nextInt(256);
+            }
+            cutoffs.put(new ArrayByteSequence(name), r.nextLong());
+        }
+        CutoffTrie trie = new CutoffTrie.Builder().putAll(cutoffs).build();
+        
+        for (int i = 0; i < 10000; i++) {
+            byte[] bytes = new byte[16];
+            r.nextBytes(bytes);
+            int offset = r.nextInt(8);
+            int length = r.nextInt(8);
+            Long expected = cutoffs.get(new ArrayByteSequence(bytes, offset, length));
+            int state = trie.find(bytes, offset, length);
+            if (expected == null) {
+                assertEquals(CutoffTrie.NOT_FOUND, state);
+            } else {
+                assertEquals(expected.longValue(), trie.getCutoff(state));
+            }
+        }
+        for (Map.Entry<ByteSequence,Long> entry : cutoffs.entrySet()) {
+            byte[] name = entry.getKey().toArray();
+            assertEquals(entry.getValue().longValue(), trie.getCutoff(trie.find(name, 0, name.length)));
+        }
+    }
+    
+    private static long cutoff(CutoffTrie trie, String name) {
+        byte[] bytes = name.getBytes();
+        int state = trie.find(bytes, 0, bytes.length);
+        return state == CutoffTrie.NOT_FOUND ? CutoffTrie.NOT_FOUND : trie.getCutoff(state);
+    }
+}
@@ -1,10 +1,15 @@
 package datawave.ingest.data.config;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -121,6 +126,8 @@ public class CSVHelper extends DataTypeHelperImpl {
     /** Pattern used to prevent matching escaped multivalue field separators when splitting multivalued fields */
     public static final String BACKSLASH_ESCAPE_LOOKBEHIND_PATTERN = "(?<!\\\\)";
     
+    private static final String REGEX_META_CHARACTERS = ".$|()[]{}^?*+\\";
+    
     public enum ThresholdAction {
         FAIL, DROP, REPLACE, TRUNCATE
     }
@@ -133,6 +140,7 @@ public class CSVHelper extends DataTypeHelperImpl {
     private Map<String,String> multiValuedFieldsBlacklist = new HashMap<>();
     private boolean hasMultiValuedFieldsBlacklist = false;
     private String multiValueSeparator = null;
+    private boolean literalMultiValueSeparator = false;
     private int fieldSizeThreshold = Integer.MAX_VALUE;
     private int multiFieldSizeThreshold = Integer.MAX_VALUE;
     private ThresholdAction thresholdAction = ThresholdAction.FAIL;
@@ -222,6 +230,7 @@ public class CSVHelper extends DataTypeHelperImpl {
         }
         
         this.multiValueSeparator = config.get(this.getType().typeName() + MULTI_VALUED_SEPARATOR, ";");
+        this.literalMultiValueSeparator = !this.multiValueSeparator.isEmpty() && StringUtils.containsNone(this.multiValueSeparator, REGEX_META_CHARACTERS);
         
         this.fieldSizeThreshold = config.getInt(this.getType().typeName() + FIELD_SIZE_THRESHOLD, this.fieldSizeThreshold);
         this.thresholdAction = ThresholdAction.valueOf(config.get(this.getType().typeName() + THRESHOLD_ACTION, this.thresholdAction.name()).toUpperCase());
@@ -301,6 +310,56 @@ public class CSVHelper extends DataTypeHelperImpl {
         return BACKSLASH_ESCAPE_LOOKBEHIND_PATTERN + getMultiValueSeparator();
     }
     
+    /**
+     * Splits a multi-valued field into its values, the same as splitting on {@link #getEscapeSafeMultiValueSeparatorPattern()}. Unless the separator is a
+     * regular expression, the field is split by searching for the separator rather than by matching the pattern.
+     * 
+     * @param fieldValue
+     *            the multi-valued field
+     * @return the values, which may include empty values
+     */
+    public List<String> splitMultiValuedField(String fieldValue) {
+        if (!literalMultiValueSeparator) {
+            return Arrays.asList(fieldValue.split(getEscapeSafeMultiValueSeparatorPattern()));
+        }
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        int index = fieldValue.indexOf(multiValueSeparator);
+        while (index >= 0) {
+            if (index > 0 && fieldValue.charAt(index - 1) == '\\') {
+                // an escaped separator
+                index = fieldValue.indexOf(multiValueSeparator, index + 1);
+            } else {
+                values.add(fieldValue.substring(start, index));
+                start = index + multiValueSeparator.length();
+                index = fieldValue.indexOf(multiValueSeparator, start);
+            }
+        }
+        if (start == 0) {
+            return Collections.singletonList(fieldValue);
+        }
+        values.add(fieldValue.substring(start));
+        // drop any trailing empty values, as String.split does
+        int size = values.size();
+        while (size > 0 && values.get(size - 1).isEmpty()) {
+            values.remove(--size);
+        }
+        return values;
+    }
+    
+    /**
+     * @return a new tokenizer for records with the configured separator
+     */
+    public CSVTokenizer newTokenizer() {
+        if (getSeparator().equals(",")) {
+            return CSVTokenizer.getCSVInstance();
+        } else if (getSeparator().equals("\\t")) {
+            return CSVTokenizer.getTSVInstance();
+        } else {
+            return new CSVTokenizer(getSeparator());
+        }
+    }
+    
     public int getMultiFieldSizeThreshold() {
         return multiFieldSizeThreshold;
     }
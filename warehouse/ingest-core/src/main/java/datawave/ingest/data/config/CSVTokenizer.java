@@ -0,0 +1,278 @@
+package datawave.ingest.data.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a delimited record into its fields directly over the UTF-8 bytes of the record. Tokenizing only tracks the offsets of the fields, and a field is not
+ * decoded into a String until it is asked for, so fields which are never used are never materialized.
+ * <p>
+ * Records are split the same way as by a {@link org.apache.commons.lang.text.StrTokenizer} with the same delimiter, quote and trimming, which does not ignore
+ * empty tokens and returns them as null. A field which starts with the quote may contain delimiters, and doubled quotes within it stand for a single quote.
+ * When trimming, whitespace and control characters are trimmed from both ends of the fields, outside of any quotes.
+ */
+public class CSVTokenizer {
+    
+    private static final byte QUOTE = '"';
+    private static final int NO_QUOTE = -1;
+    
+    private final byte[] delimiter;
+    private final int quote;
+    private boolean trim;
+    
+    private byte[] data = null;
+    private int size = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private String[] tokens = new String[16];
+    
+    /**
+     * Create a tokenizer without quoting or trimming
+     *
+     * @param delimiter
+     *            the field delimiter
+     */
+    public CSVTokenizer(String delimiter) {
+        this(delimiter.getBytes(StandardCharsets.UTF_8), NO_QUOTE, false);
+    }
+    
+    protected CSVTokenizer(byte[] delimiter, int quote, boolean trim) {
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("The delimiter cannot be empty");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.trim = trim;
+    }
+    
+    /**
+     * @return a tokenizer for comma separated values, with quoting and trimming
+     */
+    public static CSVTokenizer getCSVInstance() {
+        return new CSVTokenizer(new byte[] {','}, QUOTE, true);
+    }
+    
+    /**
+     * @return a tokenizer for tab separated values, with quoting and trimming
+     */
+    public static CSVTokenizer getTSVInstance() {
+        return new CSVTokenizer(new byte[] {'\t'}, QUOTE, true);
+    }
+    
+    public boolean isTrim() {
+        return trim;
+    }
+    
+    public CSVTokenizer setTrim(boolean trim) {
+        this.trim = trim;
+        return this;
+    }
+    
+    /**
+     * Tokenize a record
+     *
+     * @param data
+     *            the record
+     * @return this tokenizer
+     */
+    public CSVTokenizer reset(byte[] data) {
+        return reset(data, 0, data.length);
+    }
+    
+    /**
+     * Tokenize a record held in part of a buffer. The buffer is referenced until the next reset, so must not be changed while the fields are read.
+     *
+     * @param data
+     *            the buffer
+     * @param offset
+     *            the start of the record in the buffer
+     * @param length
+     *            the length of the record
+     * @return this tokenizer
+     */
+    public CSVTokenizer reset(byte[] data, int offset, int length) {
+        Arrays.fill(tokens, 0, size, null);
+        this.data = data;
+        this.size = 0;
+        int end = offset + length;
+        int pos = offset;
+        while (pos >= 0 && pos < end) {
+            pos = readNextToken(pos, end);
+            if (pos >= end) {
+                // the record ended with a delimiter
+                addToken(end, end, false);
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * @return the number of fields in the record
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get a field of the record, decoding it if not already decoded
+     *
+     * @param index
+     *            the field index
+     * @return the field, or null if empty
+     */
+    public String getToken(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + size);
+        }
+        if (tokens[index] == null && ends[index] > starts[index]) {
+            tokens[index] = quoted[index] ? unquote(starts[index], ends[index]) : new String(data, starts[index], ends[index] - starts[index],
+                            StandardCharsets.UTF_8);
+        }
+        return tokens[index];
+    }
+    
+    /**
+     * @return all of the fields of the record, with empty fields as null
+     */
+    public String[] getTokenArray() {
+        String[] array = new String[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = getToken(i);
+        }
+        return array;
+    }
+    
+    private int readNextToken(int start, int end) {
+        // skip any leading whitespace
+        while (start < end && trim && isTrimmed(start) && !isDelimiter(start, end) && !isQuote(start)) {
+            start++;
+        }
+        
+        if (start >= end) {
+            addToken(start, start, false);
+            return -1;
+        }
+        
+        if (isDelimiter(start, end)) {
+            addToken(start, start, false);
+            return start + delimiter.length;
+        }
+        
+        if (isQuote(start)) {
+            return readQuotedToken(start + 1, end);
+        }
+        
+        // without a leading quote, the field runs up to the next delimiter, less any trailing whitespace
+        int pos = start;
+        int tokenEnd = start;
+        while (pos < end) {
+            if (isDelimiter(pos, end)) {
+                addToken(start, tokenEnd, false);
+                return pos + delimiter.length;
+            }
+            pos++;
+            if (!trim || !isTrimmed(pos - 1)) {
+                tokenEnd = pos;
+            }
+        }
+        addToken(start, tokenEnd, false);
+        return -1;
+    }
+    
+    private int readQuotedToken(int start, int end) {
+        // only the offsets are tracked here, the quotes are removed when the field is decoded
+        boolean quoting = true;
+        int pos = start;
+        int tokenEnd = start;
+        while (pos < end) {
+            if (quoting) {
+                if (isQuote(pos)) {
+                    if (pos + 1 < end && isQuote(pos + 1)) {
+                        // an escaped quote
+                        pos += 2;
+                        tokenEnd = pos;
+                    } else {
+                        quoting = false;
+                        pos++;
+                    }
+                    continue;
+                }
+            } else {
+                if (isDelimiter(pos, end)) {
+                    addToken(start, tokenEnd, true);
+                    return pos + delimiter.length;
+                }
+                if (isQuote(pos)) {
+                    quoting = true;
+                    pos++;
+                    continue;
+                }
+                if (trim && isTrimmed(pos)) {
+                    pos++;
+                    continue;
+                }
+            }
+            pos++;
+            tokenEnd = pos;
+        }
+        addToken(start, tokenEnd, true);
+        return -1;
+    }
+    
+    private String unquote(int start, int end) {
+        byte[] unquoted = new byte[end - start];
+        int length = 0;
+        boolean quoting = true;
+        int pos = start;
+        while (pos < end) {
+            if (isQuote(pos)) {
+                if (quoting && pos + 1 < end && isQuote(pos + 1)) {
+                    unquoted[length++] = data[pos];
+                    pos += 2;
+                } else {
+                    quoting = !quoting;
+                    pos++;
+                }
+            } else {
+                unquoted[length++] = data[pos++];
+            }
+        }
+        return length == 0 ? null : new String(unquoted, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    private void addToken(int start, int end, boolean isQuoted) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            quoted = Arrays.copyOf(quoted, capacity);
+            tokens = Arrays.copyOf(tokens, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        quoted[size] = isQuoted;
+        size++;
+    }
+    
+    private boolean isTrimmed(int pos) {
+        // the bytes of multi-byte characters are all above this, so only single byte whitespace and control characters match
+        return (data[pos] & 0xff) <= ' ';
+    }
+    
+    private boolean isQuote(int pos) {
+        return quote != NO_QUOTE && data[pos] == quote;
+    }
+    
+    private boolean isDelimiter(int pos, int end) {
+        if (pos + delimiter.length > end) {
+            return false;
+        }
+        for (int i = 0; i < delimiter.length; i++) {
+            if (data[pos + i] != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
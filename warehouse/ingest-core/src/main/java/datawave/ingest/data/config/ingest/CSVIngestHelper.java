@@ -6,10 +6,9 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.CSVHelper;
+import datawave.ingest.data.config.CSVTokenizer;
 import datawave.ingest.data.config.NormalizedContentInterface;
-import datawave.util.StringUtils;
 import org.apache.commons.lang.StringEscapeUtils;
-import org.apache.commons.lang.text.StrTokenizer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 
@@ -34,66 +33,55 @@ public class CSVIngestHelper extends ContentBaseIngestHelper {
     }
     
     /**
-     * Allow classes extending this class to modify the StrTokenizer being used.
+     * Allow classes extending this class to modify the CSVTokenizer being used.
      * 
      * @param tokenizer
-     *            The StrTokenizer that will be used on each Event
+     *            The CSVTokenizer that will be used on each Event
      */
-    protected StrTokenizer configureTokenizer(StrTokenizer tokenizer) {
+    protected CSVTokenizer configureTokenizer(CSVTokenizer tokenizer) {
         return tokenizer;
     }
     
     /**
-     * Allow classes extending this class to modify the raw data before setting it on the StrTokenizer
+     * Allow classes extending this class to skip part of the raw data before it is tokenized
      * 
      * @param data
      *            The raw data from the Event
-     * @return
+     * @return the offset of the data to tokenize
      */
-    protected String preProcessRawData(byte[] data) {
-        return new String(data);
+    protected int preProcessRawData(byte[] data) {
+        return 0;
     }
     
     /**
-     * This method uses the header and the csv string in raw bytes of the Event to create key value pairs.
+     * This method uses the header and the csv string in raw bytes of the Event to create key value pairs. The raw bytes are tokenized in place, and only the
+     * fields which are kept are decoded.
      */
     @Override
     public Multimap<String,NormalizedContentInterface> getEventFields(RawRecordContainer event) {
         HashMultimap<String,String> fields = HashMultimap.create();
         
-        String data = preProcessRawData(event.getRawData());
-        
-        StrTokenizer tokenizer;
-        if (helper.getSeparator().equals(","))
-            tokenizer = StrTokenizer.getCSVInstance();
-        else if (helper.getSeparator().equals("\\t"))
-            tokenizer = StrTokenizer.getTSVInstance();
-        else
-            tokenizer = new StrTokenizer(data, helper.getSeparator());
-        
-        tokenizer.setIgnoreEmptyTokens(false);
-        tokenizer.setEmptyTokenAsNull(true);
-        
         // Allow subclasses to override the tokenizer
-        tokenizer = configureTokenizer(tokenizer);
+        CSVTokenizer tokenizer = configureTokenizer(helper.newTokenizer());
         
-        tokenizer.reset(data);
+        byte[] data = event.getRawData();
+        int offset = preProcessRawData(data);
+        tokenizer.reset(data, offset, data.length - offset);
         
-        String[] dataFields = tokenizer.getTokenArray();
-        processFields(fields, dataFields);
+        processFields(fields, tokenizer);
         
         // and return the normalized fields
         return normalize(fields);
     }
     
-    protected void processFields(HashMultimap<String,String> fields, String[] dataFields) {
-        for (int i = 0; i < Math.max(dataFields.length, helper.getHeader().length); i++) {
+    protected void processFields(HashMultimap<String,String> fields, CSVTokenizer dataFields) {
+        for (int i = 0; i < Math.max(dataFields.size(), helper.getHeader().length); i++) {
             
             if (i < helper.getHeader().length) {
                 String fieldName = helper.getHeader()[i];
                 
-                if (keepField(fieldName) && dataFields[i] != null) {
-                    String fieldValue = StringEscapeUtils.unescapeCsv(dataFields[i]);
+                if (keepField(fieldName) && dataFields.getToken(i) != null) {
+                    String fieldValue = StringEscapeUtils.unescapeCsv(dataFields.getToken(i));
                     fieldValue = helper.clean(fieldName, fieldValue);
                     if (fieldValue != null) {
                         processPreSplitField(fields, fieldName, fieldValue);
@@ -103,7 +91,7 @@ public class CSVIngestHelper extends ContentBaseIngestHelper {
                 // We have gone beyond the length of the header. In some cases,
                 // this will contain optional fields in the form of a map.
                 // Split on equals, to break the key and value
-                String fieldValue = StringEscapeUtils.unescapeCsv(dataFields[i]);
+                String fieldValue = StringEscapeUtils.unescapeCsv(dataFields.getToken(i));
                 if (fieldValue != null) {
                     processExtraField(fields, fieldValue);
                 }
@@ -149,7 +137,7 @@ public class CSVIngestHelper extends ContentBaseIngestHelper {
                 String singleFieldName = helper.usingMultiValuedFieldsBlacklist() ? fieldName : helper.getMultiValuedFields().get(fieldName);
                 int limit = helper.getMultiFieldSizeThreshold();
                 int count = 0;
-                for (String value : StringUtils.splitIterable(fieldValue, helper.getEscapeSafeMultiValueSeparatorPattern())) {
+                for (String value : helper.splitMultiValuedField(fieldValue)) {
                     value = helper.clean(singleFieldName, value);
                     if (value != null) {
                         if (count == limit) {
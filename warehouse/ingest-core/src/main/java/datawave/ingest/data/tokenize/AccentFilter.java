@@ -4,6 +4,7 @@ import java.io.IOException;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 /**
  * Originally a more complete version of Lucene's ISOLatin1AccentFilter, now includes many of the rules from ASCIIFoldingFilter plus some additions
@@ -11,6 +12,9 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 public class AccentFilter extends TokenFilter {
     private CharTermAttribute termAtt;
     
+    // reused across tokens, grown as needed
+    private char[] output = new char[0];
+    
     public AccentFilter(TokenStream input) {
         super(input);
         termAtt = addAttribute(CharTermAttribute.class);
@@ -26,7 +30,9 @@ public class AccentFilter extends TokenFilter {
             for (int i = 0; i < length; i++) {
                 final char c = buffer[i];
                 if (c >= '\u00c0' && c <= '\u0700') {
-                    char output[] = new char[buffer.length * 4]; // worst case
+                    if (output.length < length * 4) {
+                        output = new char[ArrayUtil.oversize(length * 4, Character.BYTES)]; // worst case
+                    }
                     int outputPos = removeAccents(buffer, output, length);
                     if (outputPos > 0) {
                         termAtt.copyBuffer(output, 0, outputPos);
@@ -2219,7 +2225,7 @@ public class AccentFilter extends TokenFilter {
                     case '\u0618':
                     case '\u0619':
                     case '\u061a':
-                        
+                    
                     case '\u064b':
                     case '\u064c':
                     case '\u064d':
@@ -2240,9 +2246,9 @@ public class AccentFilter extends TokenFilter {
                     case '\u065c':
                     case '\u065d':
                     case '\u065e':
-                        
+                    
                     case '\u0670':
-                        
+                    
                     case '\u06d6':
                     case '\u06d7':
                     case '\u06d8':
@@ -2251,7 +2257,7 @@ public class AccentFilter extends TokenFilter {
                     case '\u06db':
                     case '\u06dc':
                     case '\u06dd':
-                        
+                    
                     case '\u06df':
                     case '\u06e0':
                     case '\u06e1':
@@ -2262,12 +2268,12 @@ public class AccentFilter extends TokenFilter {
                     case '\u06e6':
                     case '\u06e7':
                     case '\u06e8':
-                        
+                    
                     case '\u06ea':
                     case '\u06eb':
                     case '\u06ec':
                     case '\u06ed':
-                        
+                    
                     case '\ufd3e':
                     case '\ufd3f':
                         mod = true;
@@ -59,6 +59,8 @@ public class TokenSearchSynonymFilter extends TokenFilter {
     @Override
     public void reset() throws IOException {
         super.reset();
+        // the filter is reused across documents, so drop anything buffered from a document that was not fully consumed
+        output.clear();
     }
     
     @Override
@@ -108,8 +110,7 @@ public class TokenSearchSynonymFilter extends TokenFilter {
         // is that of the term from which it is derived.
         
         for (String synonym : synonyms) {
-            char[] cc = synonym.toCharArray();
-            termAtt.copyBuffer(cc, 0, cc.length);
+            termAtt.setEmpty().append(synonym);
             typeAtt.setType(type);
             
             posLenAtt.setPositionLength(1);
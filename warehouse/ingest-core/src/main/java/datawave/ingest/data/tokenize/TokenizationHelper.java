@@ -138,6 +138,12 @@ public class TokenizationHelper {
     public static final String MAX_URL_DECODES = ".token.interfield.position.increment";
     private int maxUrlDecodes = 2;
     
+    public static final String TOKENIZER_THREADS = ".tokenizer.threads";
+    private int tokenizerThreads = 0;
+    
+    public static final String TOKENIZER_THREADS_MIN_FIELD_LENGTH = ".tokenizer.threads.min.field.length";
+    private int tokenizerThreadsMinFieldLength = 4096;
+    
     public TokenizationHelper(DataTypeHelper helper, Configuration conf) throws IllegalArgumentException {
         analyzerClassName = conf.get(helper.getType().typeName() + ANALYZER_CLASS, analyzerClassName);
         stopWordList = conf.get(helper.getType().typeName() + STOP_WORD_LIST, stopWordList);
@@ -159,6 +165,8 @@ public class TokenizationHelper {
         tokenizerTimeWarnThresholdMsec = conf.getLong(helper.getType().typeName() + TOKENIZER_TIME_WARN_MSEC, tokenizerTimeWarnThresholdMsec);
         tokenizerTimeErrorThresholdMsec = conf.getLong(helper.getType().typeName() + TOKENIZER_TIME_ERROR_MSEC, tokenizerTimeErrorThresholdMsec);
         interFieldPositionIncrement = conf.getInt(helper.getType().typeName() + INTERFIELD_POSITION_INCREMENT, interFieldPositionIncrement);
+        tokenizerThreads = conf.getInt(helper.getType().typeName() + TOKENIZER_THREADS, tokenizerThreads);
+        tokenizerThreadsMinFieldLength = conf.getInt(helper.getType().typeName() + TOKENIZER_THREADS_MIN_FIELD_LENGTH, tokenizerThreadsMinFieldLength);
         
         final String nameProp = helper.getType().typeName() + TOKENIZER_TIME_THRESHOLD_NAMES;
         final String threshProp = helper.getType().typeName() + TOKENIZER_TIME_THRESHOLDS_MSEC;
@@ -347,6 +355,28 @@ public class TokenizationHelper {
         this.maxUrlDecodes = maxUrlDecodes;
     }
     
+    /**
+     * @return the number of threads used to tokenize the fields of an event concurrently, where 0 tokenizes them on the calling thread
+     */
+    public int getTokenizerThreads() {
+        return tokenizerThreads;
+    }
+    
+    public void setTokenizerThreads(int tokenizerThreads) {
+        this.tokenizerThreads = tokenizerThreads;
+    }
+    
+    /**
+     * @return the length of the smallest field handed off to the tokenizer threads, as smaller fields are quicker to tokenize on the calling thread
+     */
+    public int getTokenizerThreadsMinFieldLength() {
+        return tokenizerThreadsMinFieldLength;
+    }
+    
+    public void setTokenizerThreadsMinFieldLength(int tokenizerThreadsMinFieldLength) {
+        this.tokenizerThreadsMinFieldLength = tokenizerThreadsMinFieldLength;
+    }
+    
     public TokenSearch configureSearchUtil(TokenSearch searchUtil) {
         searchUtil.setDirtyWordTokensEnabled(isDirtyWordTokensEnabled());
         searchUtil.setFileWordTokensEnabled(isFileWordTokensEnabled());
@@ -1,5 +1,6 @@
 package datawave.ingest.mapreduce.handler.shard.content;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -32,6 +33,10 @@ public class BoundedOffsetQueue<T> implements OffsetQueue<T> {
     // The current size of the offset map in terms of offsets (i.e. not in terms of keys)
     private int numOffsets = 0;
     
+    // Offset lists released by clear(), reused for the terms of the next document
+    private final ArrayDeque<List<T>> freeLists = new ArrayDeque<>();
+    private final int maxFreeLists;
+    
     /**
      * Create a bounded offset queue
      */
@@ -40,6 +45,7 @@ public class BoundedOffsetQueue<T> implements OffsetQueue<T> {
         this.maxNumOffsets = maxNumOffsets;
         this.queue = new PriorityQueue<>(maxNumOffsets / 10, comparator);
         this.offsetsMap = new HashMap<>(maxNumOffsets / 10);
+        this.maxFreeLists = maxNumOffsets / 10;
     }
     
     public int size() {
@@ -62,7 +68,7 @@ public class BoundedOffsetQueue<T> implements OffsetQueue<T> {
         
         List<T> offsets = offsetsMap.remove(key);
         if (null == offsets) {
-            offsets = new ArrayList<>();
+            offsets = freeLists.isEmpty() ? new ArrayList<>() : freeLists.pop();
         }
         offsets.add(offset);
         
@@ -82,8 +88,18 @@ public class BoundedOffsetQueue<T> implements OffsetQueue<T> {
         }
     }
     
+    /**
+     * Clear the queue. The offset lists still held are reused, so any returned by {@link #offsets()} must not be used after clearing.
+     */
     @Override
     public void clear() {
+        for (List<T> offsets : offsetsMap.values()) {
+            if (freeLists.size() >= maxFreeLists) {
+                break;
+            }
+            offsets.clear();
+            freeLists.push(offsets);
+        }
         queue.clear();
         offsetsMap.clear();
         numOffsets = 0;
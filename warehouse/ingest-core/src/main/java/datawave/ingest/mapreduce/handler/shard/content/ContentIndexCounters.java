@@ -153,6 +153,39 @@ public class ContentIndexCounters {
         }
     }
     
+    /**
+     * Add the counts collected separately by another instance, such as on another thread, to these counts
+     * 
+     * @param other
+     *            the counts to add
+     * @param reporter
+     *            the reporter to flush counts exceeding the buffer size to
+     */
+    public void add(ContentIndexCounters other, StatusReporter reporter) {
+        for (Entry<String,Map<String,AtomicInteger>> countEntry : other.counts.entrySet()) {
+            String groupName = countEntry.getKey();
+            Map<String,AtomicInteger> group = counts.get(groupName);
+            if (group == null) {
+                group = new HashMap<>();
+                counts.put(groupName, group);
+            }
+            
+            for (Entry<String,AtomicInteger> groupEntry : countEntry.getValue().entrySet()) {
+                int value = groupEntry.getValue().get();
+                AtomicInteger val = group.get(groupEntry.getKey());
+                if (val == null) {
+                    group.put(groupEntry.getKey(), new AtomicInteger(value));
+                } else if (value > 0) {
+                    if (val.get() > bufferSize && reporter != null) {
+                        reporter.getCounter(groupName, groupEntry.getKey()).increment(val.getAndSet(0));
+                    }
+                    
+                    val.addAndGet(value);
+                }
+            }
+        }
+    }
+    
     /**
      * Returns the value a counter should be written to the context.
      * 
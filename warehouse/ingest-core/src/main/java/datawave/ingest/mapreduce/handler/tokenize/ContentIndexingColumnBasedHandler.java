@@ -1,12 +1,24 @@
 package datawave.ingest.mapreduce.handler.tokenize;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.NormalizedContentInterface;
@@ -53,6 +65,7 @@ import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Content indexing column based handler. will provide content tokenization, which will include storing offsets, and the TERM_COUNT for that event.
@@ -107,6 +120,46 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
     
     private int termPosition = 0;
     
+    // tokenizes the larger fields of an event concurrently when configured
+    private ExecutorService tokenizerPool = null;
+    
+    // shared across events so that each thread reuses its token stream components
+    private Analyzer analyzer = null;
+    
+    /**
+     * The tokens of a single field, collected so that the field may be tokenized on another thread and its tokens added to the event in the order of the
+     * fields.
+     */
+    protected static class TokenizedField {
+        private final NormalizedContentInterface nci;
+        private final String fieldName;
+        private final ContentIndexCounters counters;
+        private final List<NormalizedContentInterface> indexTokens = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private final List<NormalizedContentInterface> reverseTokens = new ArrayList<>();
+        private int termPosition;
+        private boolean timeWarned = false;
+        
+        // the number of tokens read, to tell whether the tokenizer is still making progress
+        private volatile int progress = 0;
+        // claimed by the thread tokenizing this field, or by the handler to keep a cancelled field from being tokenized
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        // released once a claimed field is no longer being tokenized
+        private final CountDownLatch done = new CountDownLatch(1);
+        
+        public TokenizedField(NormalizedContentInterface nci, String fieldName, int termPosition, ContentIndexCounters counters) {
+            this.nci = nci;
+            this.fieldName = fieldName;
+            this.termPosition = termPosition;
+            this.counters = counters;
+        }
+        
+        private void addIndexToken(NormalizedContentInterface token, int position) {
+            indexTokens.add(token);
+            positions.add(position);
+        }
+    }
+    
     @Override
     public void setup(TaskAttemptContext context) {
         super.setup(context);
@@ -135,12 +188,39 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         
         tokenOffsetCache = new BoundedOffsetQueue<>(tokenHelper.getTokenOffsetCacheMaxSize());
         
+        if (analyzer != null) {
+            analyzer.close();
+        }
+        analyzer = tokenHelper.getAnalyzer();
+        
+        if (tokenizerPool != null) {
+            tokenizerPool.shutdownNow();
+            tokenizerPool = null;
+        }
+        if (tokenHelper.getTokenizerThreads() > 0) {
+            tokenizerPool = Executors.newFixedThreadPool(tokenHelper.getTokenizerThreads(), new ThreadFactoryBuilder().setNameFormat("tokenizer-%d")
+                            .setDaemon(true).build());
+        }
+        
         // Conditionally create an NGrams factory
         if (this.getBloomFiltersEnabled()) {
             this.bloomFilterUtil = newBloomFilterUtil(this.conf);
         }
     }
     
+    @Override
+    public void close(TaskAttemptContext context) {
+        super.close(context);
+        if (tokenizerPool != null) {
+            tokenizerPool.shutdownNow();
+            tokenizerPool = null;
+        }
+        if (analyzer != null) {
+            analyzer.close();
+            analyzer = null;
+        }
+    }
+    
     @Override
     public Multimap<BulkIngestKey,Value> processBulk(KEYIN key, RawRecordContainer event, Multimap<String,NormalizedContentInterface> eventFields,
                     StatusReporter reporter) {
@@ -245,7 +325,8 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
         index = HashMultimap.create();
         reverse = HashMultimap.create();
         
-        Analyzer analyzer = tokenHelper.getAnalyzer();
+        // the fields being tokenized by the tokenizer threads, in the order of the event fields
+        Map<TokenizedField,Future<TokenizedField>> pending = new LinkedHashMap<>();
         
         try {
             String lastFieldName = "";
@@ -294,7 +375,11 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 
                 if (indexField || reverseIndexField) {
                     try {
-                        tokenizeField(analyzer, nci, indexField, reverseIndexField, reporter);
+                        if (tokenizerPool == null) {
+                            tokenizeField(analyzer, nci, indexField, reverseIndexField, reporter);
+                        } else {
+                            submitField(analyzer, nci, indexField, reverseIndexField, pending);
+                        }
                     } catch (Exception ex) {
                         throw new RuntimeException(ex);
                     }
@@ -304,11 +389,15 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 boolean reverseIndexListField = createGlobalReverseIndexTerms && contentHelper.isReverseIndexListField(indexedFieldName);
                 
                 if (indexListField || reverseIndexListField) {
+                    // the list entries share the offset cache, so add the tokens of the preceding fields first
+                    addPendingFields(pending, reporter);
                     indexListEntries(nci, indexListField, reverseIndexListField, reporter);
                 }
             }
+            
+            addPendingFields(pending, reporter);
         } finally {
-            analyzer.close();
+            cancelPendingFields(pending);
         }
         
         validateIndexedFields(createGlobalIndexTerms, createGlobalReverseIndexTerms, reporter);
@@ -331,11 +420,146 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
             return;
         }
         
+        TokenizedField tokens = new TokenizedField(nci, nci.getIndexedFieldName() + tokenFieldNameSuffix, termPosition, counters);
+        tokenize(a, tokens, indexField, reverseIndexField, reporter);
+        addTokens(tokens, reporter);
+    }
+    
+    /**
+     * Tokenize the specified field on the tokenizer threads, or on this thread if it is too small to be worth handing off.
+     */
+    private void submitField(final Analyzer a, final NormalizedContentInterface nci, final boolean indexField, final boolean reverseIndexField,
+                    Map<TokenizedField,Future<TokenizedField>> pending) {
+        
+        // each field tokenizes into its own counters, and progress is reported by the thread waiting on it
+        final TokenizedField tokens = new TokenizedField(nci, nci.getIndexedFieldName() + tokenFieldNameSuffix, termPosition, new ContentIndexCounters());
+        Callable<TokenizedField> task = () -> {
+            if (!tokens.claimed.compareAndSet(false, true)) {
+                // cancelled before it was started
+                return tokens;
+            }
+            try {
+                tokenize(a, tokens, indexField, reverseIndexField, null);
+            } finally {
+                tokens.done.countDown();
+            }
+            return tokens;
+        };
+        
+        Future<TokenizedField> future;
+        if (nci.getIndexedFieldValue().length() < tokenHelper.getTokenizerThreadsMinFieldLength()) {
+            FutureTask<TokenizedField> inline = new FutureTask<>(task);
+            inline.run();
+            future = inline;
+        } else {
+            future = tokenizerPool.submit(task);
+        }
+        pending.put(tokens, future);
+    }
+    
+    /**
+     * Wait for the pending fields to be tokenized and add their tokens in order, so that the results match tokenizing the fields one after the other.
+     */
+    private void addPendingFields(Map<TokenizedField,Future<TokenizedField>> pending, StatusReporter reporter) {
+        try {
+            for (Entry<TokenizedField,Future<TokenizedField>> entry : pending.entrySet()) {
+                TokenizedField tokens = entry.getKey();
+                int progress = -1;
+                while (true) {
+                    try {
+                        entry.getValue().get(HeartBeatThread.INTERVAL, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        // only report progress while the tokenizer is producing tokens, as it would on this thread
+                        if (reporter != null && tokens.progress != progress) {
+                            reporter.progress();
+                        }
+                        progress = tokens.progress;
+                    }
+                }
+                addTokens(tokens, reporter);
+            }
+            pending.clear();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /**
+     * Cancel the fields still pending after a failure, and wait for those already being tokenized to stop, so that no tokenizer thread is still using the
+     * analyzer or the helpers when this handler processes the next event.
+     */
+    private void cancelPendingFields(Map<TokenizedField,Future<TokenizedField>> pending) {
+        for (Future<TokenizedField> future : pending.values()) {
+            future.cancel(true);
+        }
+        boolean interrupted = false;
+        for (TokenizedField tokens : pending.keySet()) {
+            if (!tokens.claimed.compareAndSet(false, true)) {
+                while (true) {
+                    try {
+                        tokens.done.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        }
+        pending.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Add the tokens of a field to the index, fields, reverse and offset cache.
+     */
+    protected void addTokens(TokenizedField tokens, StatusReporter reporter) {
+        for (int i = 0; i < tokens.indexTokens.size(); i++) {
+            NormalizedContentInterface newField = tokens.indexTokens.get(i);
+            index.put(tokens.fieldName, newField);
+            
+            // add this token to the event fields so a
+            // local fi\x00 key gets created
+            // NOTE: we already assigned it to the
+            // 'indexOnly' list so it won't show up in
+            // the event
+            fields.put(tokens.fieldName, newField);
+            
+            if (tokenOffsetCache != null) {
+                tokenOffsetCache.addOffset(new TermAndZone(newField.getIndexedFieldValue(), tokens.fieldName), tokens.positions.get(i));
+            }
+        }
+        
+        // NOTE: We don't want fi\x00 keys for reverse
+        // tokens
+        reverse.putAll(tokens.fieldName, tokens.reverseTokens);
+        
+        if (tokens.counters != counters) {
+            counters.add(tokens.counters, reporter);
+        }
+        
+        termPosition = tokens.termPosition;
+        tokenizerTimeWarned = tokens.timeWarned;
+    }
+    
+    /**
+     * Tokenize a field into the tokens provided, without changing the state of the handler so that it may be called from another thread.
+     */
+    protected void tokenize(final Analyzer a, final TokenizedField tokens, boolean indexField, boolean reverseIndexField, StatusReporter reporter)
+                    throws IOException, InterruptedException {
+        
+        final NormalizedContentInterface nci = tokens.nci;
+        final ContentIndexCounters counters = tokens.counters;
         String indexedFieldName = nci.getIndexedFieldName();
-        String modifiedFieldName = indexedFieldName + tokenFieldNameSuffix;
+        String modifiedFieldName = tokens.fieldName;
         String content = nci.getIndexedFieldValue();
         
-        TokenStream tokenizer = a.tokenStream(indexedFieldName, new StringReader(content));
+        TokenStream tokenizer = a.tokenStream(indexedFieldName, content);
         tokenizer.reset();
         
         try {
@@ -351,21 +575,26 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
             int tokenizerBeats = 0;
             long start = System.currentTimeMillis();
             
-            tokenizerTimeWarned = false;
+            tokens.timeWarned = false;
             
             while (true) {
                 if (heartBeatCount != HeartBeatThread.counter) {
                     tokenizerBeats += HeartBeatThread.counter - heartBeatCount;
                     heartBeatCount = HeartBeatThread.counter;
                     
+                    // a field being tokenized on another thread is interrupted if the event fails
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException("Tokenization of field " + modifiedFieldName + " was interrupted");
+                    }
+                    
                     // warn once on exceeding the warn threshold
                     long elapsedEstimateMsec = tokenizerBeats * HeartBeatThread.INTERVAL;
-                    if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeWarnThresholdMsec() && !tokenizerTimeWarned) {
+                    if (elapsedEstimateMsec > tokenHelper.getTokenizerTimeWarnThresholdMsec() && !tokens.timeWarned) {
                         long realDelta = System.currentTimeMillis() - start;
                         counters.incrementValue(ContentIndexCounters.TOKENIZER_TIME_WARNINGS, 1, reporter);
                         log.warn("Tokenization of field " + modifiedFieldName + " has exceeded warning threshold "
                                         + tokenHelper.getTokenizerTimeWarnThresholdMsec() + "ms (" + realDelta + "ms)");
-                        tokenizerTimeWarned = true;
+                        tokens.timeWarned = true;
                     }
                     
                     // error when we exceed the error threshold
@@ -381,6 +610,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 // so lets report progress to hadoop on each round
                 if (reporter != null)
                     reporter.progress();
+                tokens.progress++;
                 
                 if (!tokenizer.incrementToken()) {
                     break; // eof
@@ -391,7 +621,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                 String type = typeAtt.type();
                 
                 // term positions aren't reset between fields of the same name, see getShardNamesAndValues.
-                termPosition += posIncrAtt.getPositionIncrement();
+                tokens.termPosition += posIncrAtt.getPositionIncrement();
                 
                 if (type.startsWith("<") && type.endsWith(">")) {
                     type = type.substring(1, type.length() - 1); // <FOO> => FOO without regex
@@ -465,18 +695,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                         // don't put tokens in the event.
                         newField.setEventFieldValue(null);
                         newField.setIndexedFieldValue(s);
-                        index.put(modifiedFieldName, newField);
-                        
-                        // add this token to the event fields so a
-                        // local fi\x00 key gets created
-                        // NOTE: we already assigned it to the
-                        // 'indexOnly' list so it won't show up in
-                        // the event
-                        fields.put(modifiedFieldName, newField);
-                        
-                        if (tokenOffsetCache != null) {
-                            tokenOffsetCache.addOffset(new TermAndZone(s, modifiedFieldName), termPosition);
-                        }
+                        tokens.addIndexToken(newField, tokens.termPosition);
                     }
                     
                     counters.incrementValue(ContentIndexCounters.SYNONYMS_PROCESSED_COUNTER, synonyms.size() - 1, reporter);
@@ -502,10 +721,7 @@ public abstract class ContentIndexingColumnBasedHandler<KEYIN> extends AbstractC
                         newField.setFieldName(modifiedFieldName);
                         newField.setEventFieldValue(s);
                         newField.setIndexedFieldValue(s);
-                        reverse.put(modifiedFieldName, newField);
-                        
-                        // NOTE: We don't want fi\x00 keys for reverse
-                        // tokens
+                        tokens.reverseTokens.add(newField);
                     }
                     
                     counters.incrementValue(ContentIndexCounters.SYNONYMS_PROCESSED_COUNTER, synonyms.size() - 1, reporter);
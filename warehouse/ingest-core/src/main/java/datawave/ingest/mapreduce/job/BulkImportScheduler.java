@@ -0,0 +1,388 @@
+package datawave.ingest.mapreduce.job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Schedules the bulk imports of map files across the tablet servers. The map files of a table are grouped into batches by the tablet servers hosting the
+ * tablets they cover, and each batch is imported separately. The number of concurrent imports hitting a tablet server is limited, and the batches of the
+ * servers with the most outstanding work are started first so that a burst of imports for a few servers does not leave the others idle.
+ * <p>
+ * The limit for each server adapts to the observed import latency: it is lowered while a server imports much slower than the others, and raised back up as it
+ * recovers. The scheduler may be shared by the imports of several tables, in which case the limits apply across all of them.
+ */
+public class BulkImportScheduler {
+    private static final Logger log = Logger.getLogger(BulkImportScheduler.class);
+    
+    /**
+     * The server used for map files whose tablets have no location
+     */
+    public static final String UNKNOWN_SERVER = "";
+    
+    /**
+     * A server importing this many times slower than the average has its limit lowered
+     */
+    private static final double SLOW_FACTOR = 2.0;
+    
+    /**
+     * The weight of the latest import in the average latencies
+     */
+    private static final double LATENCY_WEIGHT = 0.3;
+    
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    
+    private final int numThreads;
+    private final int maxImportsPerServer;
+    private final ExecutorService executor;
+    
+    private final Map<String,ServerState> servers = new HashMap<>();
+    private double averageLatency = 0;
+    private int inFlight = 0;
+    
+    /**
+     * Performs the import of a batch
+     */
+    public interface Importer {
+        void importBatch(Batch batch) throws Exception;
+    }
+    
+    /**
+     * A map file along with the range of rows it contains
+     */
+    public static class MapFile {
+        private final Path path;
+        private final Text firstRow;
+        private final Text lastRow;
+        private final long size;
+        
+        public MapFile(Path path, Text firstRow, Text lastRow, long size) {
+            this.path = path;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.size = size;
+        }
+        
+        public Path getPath() {
+            return path;
+        }
+        
+        public long getSize() {
+            return size;
+        }
+    }
+    
+    /**
+     * A group of map files imported together, covering tablets on the same tablet servers
+     */
+    public static class Batch {
+        private final Set<String> servers;
+        private final List<Path> files = new ArrayList<>();
+        private long size = 0;
+        
+        public Batch(Set<String> servers) {
+            this.servers = servers;
+        }
+        
+        private void add(MapFile file) {
+            files.add(file.getPath());
+            size += file.getSize();
+        }
+        
+        public Set<String> getServers() {
+            return servers;
+        }
+        
+        public List<Path> getFiles() {
+            return files;
+        }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        @Override
+        public String toString() {
+            return files.size() + " files (" + size + " bytes) for " + servers;
+        }
+    }
+    
+    private static class ServerState {
+        private int limit;
+        private int inFlight = 0;
+        private long backlog = 0;
+        private double latency = 0;
+        private long imported = 0;
+        
+        private ServerState(int limit) {
+            this.limit = limit;
+        }
+    }
+    
+    /**
+     * @param numThreads
+     *            the maximum number of concurrent imports
+     * @param maxImportsPerServer
+     *            the maximum number of concurrent imports to a single tablet server
+     */
+    public BulkImportScheduler(int numThreads, int maxImportsPerServer) {
+        this.numThreads = Math.max(1, numThreads);
+        this.maxImportsPerServer = Math.max(1, maxImportsPerServer);
+        this.executor = Executors.newFixedThreadPool(this.numThreads, new ThreadFactoryBuilder().setNameFormat("bulk-import-%d").setDaemon(true).build());
+    }
+    
+    /**
+     * Group map files into batches by the tablet servers hosting the tablets they cover
+     *
+     * @param files
+     *            the map files
+     * @param tabletLocations
+     *            the location of each tablet by its end row
+     * @param lastTabletLocation
+     *            the location of the last tablet, which has no end row
+     * @param maxFilesPerBatch
+     *            the most files to put in one batch, so that the imports of a busy server can run concurrently
+     * @return the batches
+     */
+    public static List<Batch> groupByTabletServer(List<MapFile> files, NavigableMap<Text,String> tabletLocations, String lastTabletLocation,
+                    int maxFilesPerBatch) {
+        Map<Set<String>,List<Batch>> groups = new HashMap<>();
+        List<Batch> batches = new ArrayList<>();
+        for (MapFile file : files) {
+            Set<String> fileServers = new TreeSet<>();
+            Text lastEndRow = tabletLocations.ceilingKey(file.lastRow);
+            NavigableMap<Text,String> tablets;
+            Text firstEndRow = tabletLocations.ceilingKey(file.firstRow);
+            if (firstEndRow == null) {
+                tablets = Collections.emptyNavigableMap();
+            } else if (lastEndRow == null) {
+                tablets = tabletLocations.tailMap(firstEndRow, true);
+            } else {
+                tablets = tabletLocations.subMap(firstEndRow, true, lastEndRow, true);
+            }
+            for (String location : tablets.values()) {
+                fileServers.add(location == null ? UNKNOWN_SERVER : location);
+            }
+            if (lastEndRow == null) {
+                fileServers.add(lastTabletLocation == null ? UNKNOWN_SERVER : lastTabletLocation);
+            }
+            
+            List<Batch> group = groups.computeIfAbsent(fileServers, k -> new ArrayList<>());
+            Batch batch = group.isEmpty() ? null : group.get(group.size() - 1);
+            if (batch == null || batch.getFiles().size() >= maxFilesPerBatch) {
+                batch = new Batch(fileServers);
+                group.add(batch);
+                batches.add(batch);
+            }
+            batch.add(file);
+        }
+        return batches;
+    }
+    
+    /**
+     * Import a set of batches, returning once they have all completed. If an import fails, no further batches are started.
+     *
+     * @param batches
+     *            the batches to import
+     * @param importer
+     *            imports a batch
+     * @throws IOException
+     *             if an import failed or the scheduling was interrupted
+     */
+    public void importBatches(List<Batch> batches, Importer importer) throws IOException {
+        List<Batch> pending = new ArrayList<>(batches);
+        List<Future<?>> started = new ArrayList<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        
+        synchronized (this) {
+            for (Batch batch : pending) {
+                for (String server : batch.getServers()) {
+                    getState(server).backlog += batch.getSize();
+                }
+            }
+            try {
+                while (!pending.isEmpty() && failure.get() == null) {
+                    Batch next = nextBatch(pending);
+                    if (next == null) {
+                        // wait for an import to complete
+                        wait();
+                        continue;
+                    }
+                    pending.remove(next);
+                    start(next);
+                    started.add(executor.submit(() -> execute(next, importer, failure)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            } finally {
+                // anything not started no longer counts toward the backlog
+                for (Batch batch : pending) {
+                    for (String server : batch.getServers()) {
+                        getState(server).backlog -= batch.getSize();
+                    }
+                }
+            }
+        }
+        
+        // wait for the imports which were started
+        for (Future<?> future : started) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, asException(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+                break;
+            }
+        }
+        
+        if (failure.get() != null) {
+            Exception e = failure.get();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+    
+    /**
+     * Select the next batch which can be started without exceeding the limits, preferring the batches of the servers with the most outstanding work
+     */
+    private Batch nextBatch(List<Batch> pending) {
+        if (inFlight >= numThreads) {
+            return null;
+        }
+        Batch next = null;
+        long nextBacklog = -1;
+        for (Batch batch : pending) {
+            long backlog = 0;
+            boolean available = true;
+            for (String server : batch.getServers()) {
+                ServerState state = getState(server);
+                if (state.inFlight >= state.limit) {
+                    available = false;
+                    break;
+                }
+                backlog = Math.max(backlog, state.backlog);
+            }
+            if (available && (backlog > nextBacklog || (backlog == nextBacklog && batch.getSize() > next.getSize()))) {
+                next = batch;
+                nextBacklog = backlog;
+            }
+        }
+        return next;
+    }
+    
+    private void start(Batch batch) {
+        inFlight++;
+        for (String server : batch.getServers()) {
+            ServerState state = getState(server);
+            state.inFlight++;
+            state.backlog -= batch.getSize();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Starting the import of " + batch);
+        }
+    }
+    
+    private Void execute(Batch batch, Importer importer, AtomicReference<Exception> failure) throws Exception {
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            importer.importBatch(batch);
+            success = true;
+        } catch (Throwable e) {
+            failure.compareAndSet(null, asException(e));
+            throw e;
+        } finally {
+            finish(batch, System.currentTimeMillis() - start, success);
+        }
+        return null;
+    }
+    
+    /**
+     * @return the failure as an exception, wrapping an error in an IOException
+     */
+    private static Exception asException(Throwable t) {
+        return t instanceof Exception ? (Exception) t : new IOException(t);
+    }
+    
+    private synchronized void finish(Batch batch, long elapsed, boolean success) {
+        inFlight--;
+        // the latency is measured per MB so that large and small batches compare, with small batches counting as a full MB
+        double latency = elapsed / Math.max(1.0, batch.getSize() / BYTES_PER_MB);
+        if (success) {
+            averageLatency = averageLatency == 0 ? latency : (1 - LATENCY_WEIGHT) * averageLatency + LATENCY_WEIGHT * latency;
+        }
+        for (String server : batch.getServers()) {
+            ServerState state = getState(server);
+            state.inFlight--;
+            if (success) {
+                state.imported += batch.getSize();
+                state.latency = state.latency == 0 ? latency : (1 - LATENCY_WEIGHT) * state.latency + LATENCY_WEIGHT * latency;
+                adaptLimit(server, state);
+            }
+        }
+        notifyAll();
+    }
+    
+    private void adaptLimit(String server, ServerState state) {
+        if (state.latency > SLOW_FACTOR * averageLatency) {
+            if (state.limit > 1) {
+                state.limit--;
+                log.info("Lowering the concurrent imports for " + server + " to " + state.limit + " as its import latency is " + (long) state.latency
+                                + "ms/MB against an average of " + (long) averageLatency + "ms/MB");
+            }
+        } else if (state.latency <= averageLatency && state.limit < maxImportsPerServer) {
+            state.limit++;
+            if (log.isDebugEnabled()) {
+                log.debug("Raising the concurrent imports for " + server + " to " + state.limit);
+            }
+        }
+    }
+    
+    private ServerState getState(String server) {
+        return servers.computeIfAbsent(server, k -> new ServerState(maxImportsPerServer));
+    }
+    
+    /**
+     * @param server
+     *            a tablet server
+     * @return the current limit of concurrent imports to the server
+     */
+    public synchronized int getImportLimit(String server) {
+        return getState(server).limit;
+    }
+    
+    /**
+     * @return the bytes imported to each tablet server
+     */
+    public synchronized Map<String,Long> getImportedBytes() {
+        Map<String,Long> imported = new TreeMap<>();
+        for (Map.Entry<String,ServerState> entry : servers.entrySet()) {
+            imported.put(entry.getKey(), entry.getValue().imported);
+        }
+        return imported;
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -11,12 +11,18 @@ import org.apache.accumulo.core.client.ClientConfiguration;
 import org.apache.accumulo.core.client.Instance;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.ZooKeeperInstance;
+import org.apache.accumulo.core.client.admin.Locations;
 import org.apache.accumulo.core.client.admin.TableOperations;
 import org.apache.accumulo.core.client.impl.ClientContext;
 import org.apache.accumulo.core.client.impl.Credentials;
 import org.apache.accumulo.core.client.impl.MasterClient;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.TabletId;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.master.thrift.MasterClientService.Iface;
 import org.apache.accumulo.core.master.thrift.MasterMonitorInfo;
 import org.apache.accumulo.core.master.thrift.TableInfo;
@@ -30,6 +36,7 @@ import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.SequenceFile.Writer;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.GzipCodec;
 import org.apache.hadoop.mapreduce.Counters;
@@ -52,10 +59,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -78,6 +87,8 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private static int SHUTDOWN_PORT = 24111;
     private static boolean FIFO = true;
     private static boolean INGEST_METRICS = true;
+    private static int MAX_IMPORTS_PER_TSERVER = 0;
+    private static int MAX_FILES_PER_IMPORT = 100;
     
     public static final String COMPLETE_FILE_MARKER = "job.complete";
     public static final String LOADING_FILE_MARKER = "job.loading";
@@ -100,6 +111,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private StandaloneStatusReporter reporter = new StandaloneStatusReporter();
     private volatile boolean running;
     private ExecutorService executor;
+    private BulkImportScheduler importScheduler = null;
     
     public static void main(String[] args) throws AccumuloSecurityException, IOException {
         
@@ -114,7 +126,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
             log.error("usage: BulkIngestMapFileLoader hdfsWorkDir jobDirPattern instanceName zooKeepers username password "
                             + "[-sleepTime sleepTime] [-majcThreshold threshold] [-majcCheckInterval count] [-majcDelay majcDelay] "
                             + " [-seqFileHdfs seqFileSystemUri] [-srcHdfs srcFileSystemURI] [-destHdfs destFileSystemURI] [-jt jobTracker] "
-                            + "[-ingestMetricsDisabled] [-shutdownPort portNum] confFile [{confFile}]");
+                            + "[-ingestMetricsDisabled] [-shutdownPort portNum] [-maxImportsPerTServer count] [-maxFilesPerImport count] confFile [{confFile}]");
             System.exit(-1);
         }
         
@@ -213,6 +225,28 @@ public final class BulkIngestMapFileLoader implements Runnable {
                         log.error("-numAssignThreads must be followed by the number of bulk import assignment threads", e);
                         System.exit(-2);
                     }
+                } else if ("-maxImportsPerTServer".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-maxImportsPerTServer must be followed by the maximum number of concurrent bulk imports to a tablet server");
+                        System.exit(-2);
+                    }
+                    try {
+                        MAX_IMPORTS_PER_TSERVER = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-maxImportsPerTServer must be followed by the maximum number of concurrent bulk imports to a tablet server", e);
+                        System.exit(-2);
+                    }
+                } else if ("-maxFilesPerImport".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-maxFilesPerImport must be followed by the maximum number of map files to bring online in one bulk import");
+                        System.exit(-2);
+                    }
+                    try {
+                        MAX_FILES_PER_IMPORT = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-maxFilesPerImport must be followed by the maximum number of map files to bring online in one bulk import", e);
+                        System.exit(-2);
+                    }
                 } else if ("-seqFileHdfs".equalsIgnoreCase(args[i])) {
                     if (i + 2 > args.length) {
                         log.error("-seqFileHdfs must be followed a file system URI (e.g. hdfs://hostname:54310).");
@@ -303,6 +337,10 @@ public final class BulkIngestMapFileLoader implements Runnable {
         log.info("Using " + numBulkThreads + " bulk load threads");
         log.info("Using " + numHdfsThreads + " HDFS operation threads");
         log.info("Using " + numBulkAssignThreads + " bulk assign threads");
+        if (MAX_IMPORTS_PER_TSERVER > 0) {
+            log.info("Scheduling bulk imports by tablet server, with at most " + MAX_IMPORTS_PER_TSERVER + " concurrent imports per tablet server and "
+                            + MAX_FILES_PER_IMPORT + " map files per import");
+        }
         log.info("Using " + seqFileHdfs + " as the file system containing the original sequence files");
         log.info("Using " + srcHdfs + " as the source file system");
         log.info("Using " + destHdfs + " as the destination file system");
@@ -337,6 +375,9 @@ public final class BulkIngestMapFileLoader implements Runnable {
         Credentials credentials = new Credentials(args[4], new PasswordToken(passwordStr));
         BulkIngestMapFileLoader processor = new BulkIngestMapFileLoader(workDir, jobDirPattern, instanceName, zooKeepers, credentials, seqFileHdfs, srcHdfs,
                         destHdfs, jobtracker, tablePriorities, conf, SHUTDOWN_PORT, numHdfsThreads);
+        if (MAX_IMPORTS_PER_TSERVER > 0) {
+            processor.setImportScheduler(new BulkImportScheduler(numBulkThreads, MAX_IMPORTS_PER_TSERVER));
+        }
         Thread t = new Thread(processor, "map-file-watcher");
         t.start();
     }
@@ -491,6 +532,19 @@ public final class BulkIngestMapFileLoader implements Runnable {
     
     protected void shutdown() {
         running = false;
+        if (importScheduler != null) {
+            importScheduler.shutdown();
+        }
+    }
+    
+    /**
+     * Schedule the imports of each table by tablet server, rather than importing the map files of a table all at once
+     *
+     * @param importScheduler
+     *            the scheduler, shared by the imports of all of the tables, or null to import all of the map files of a table at once
+     */
+    public void setImportScheduler(BulkImportScheduler importScheduler) {
+        this.importScheduler = importScheduler;
     }
     
     /**
@@ -826,7 +880,11 @@ public final class BulkIngestMapFileLoader implements Runnable {
                 
                 // import the directory
                 log.info("Bringing Map Files online for " + tableName);
-                tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
+                if (importScheduler == null) {
+                    tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
+                } else {
+                    scheduleImports(fileSystem, failuresDir);
+                }
                 log.info("Completed bringing map files online for " + tableName);
                 validateComplete();
             } catch (Exception e) {
@@ -840,6 +898,92 @@ public final class BulkIngestMapFileLoader implements Runnable {
             }
         }
         
+        /**
+         * Import the map files in batches grouped by the tablet servers they will be assigned to, scheduled with the imports of the other tables
+         */
+        private void scheduleImports(FileSystem fileSystem, String failuresDir) throws Exception {
+            List<BulkImportScheduler.MapFile> mapFiles = new ArrayList<>();
+            for (FileStatus file : fileSystem.listStatus(tableDir)) {
+                mapFiles.add(readMapFile(fileSystem, file));
+            }
+            
+            Range range = new Range();
+            Locations locations = tops.locate(tableName, Collections.singletonList(range));
+            TreeMap<Text,String> tabletLocations = new TreeMap<>();
+            String lastTabletLocation = null;
+            for (TabletId tablet : locations.groupByRange().get(range)) {
+                if (tablet.getEndRow() == null) {
+                    lastTabletLocation = locations.getTabletLocation(tablet);
+                } else {
+                    tabletLocations.put(tablet.getEndRow(), locations.getTabletLocation(tablet));
+                }
+            }
+            
+            List<BulkImportScheduler.Batch> batches = BulkImportScheduler.groupByTabletServer(mapFiles, tabletLocations, lastTabletLocation,
+                            MAX_FILES_PER_IMPORT);
+            if (batches.size() <= 1) {
+                importScheduler.importBatches(batches, batch -> tops.importDirectory(tableName, tableDir.toString(), failuresDir, false));
+                return;
+            }
+            
+            // each batch is imported from its own directory
+            log.info("Importing " + mapFiles.size() + " map files for " + tableName + " in " + batches.size() + " batches");
+            List<Path> batchDirs = new ArrayList<>();
+            try {
+                for (BulkImportScheduler.Batch batch : batches) {
+                    Path batchDir = getBatchDir(batchDirs.size());
+                    fileSystem.mkdirs(batchDir);
+                    batchDirs.add(batchDir);
+                    for (Path file : batch.getFiles()) {
+                        if (!fileSystem.rename(file, new Path(batchDir, file.getName()))) {
+                            throw new IOException("Unable to move " + file + " to " + batchDir);
+                        }
+                    }
+                }
+                
+                importScheduler.importBatches(batches, batch -> {
+                    int index = batches.indexOf(batch);
+                    Path batchDir = getBatchDir(index);
+                    // the failures directories are siblings of the table's, so that failed files are still found under failures/*/*
+                    String batchFailuresDir = failuresDir + "-batch-" + index;
+                    fileSystem.mkdirs(new Path(batchFailuresDir));
+                    tops.importDirectory(tableName, batchDir.toString(), batchFailuresDir, false);
+                    if (fileSystem.listStatus(batchDir).length > 0) {
+                        log.fatal("Failed to completely import " + batchDir);
+                        throw new IOException("Failed to completely import " + batchDir);
+                    }
+                });
+            } finally {
+                // put anything left back so that the table directory can be imported again
+                for (Path batchDir : batchDirs) {
+                    for (FileStatus file : fileSystem.listStatus(batchDir)) {
+                        fileSystem.rename(file.getPath(), new Path(tableDir, file.getPath().getName()));
+                    }
+                    fileSystem.delete(batchDir, false);
+                }
+            }
+        }
+        
+        private Path getBatchDir(int index) {
+            // table names cannot contain a dash, so this cannot be mistaken for a table directory
+            return new Path(mapFilesDir, tableName + "-batch-" + index);
+        }
+        
+        private BulkImportScheduler.MapFile readMapFile(FileSystem fileSystem, FileStatus file) throws IOException {
+            FileSKVIterator reader = FileOperations.getInstance().newIndexReaderBuilder().forFile(file.getPath().toString(), fileSystem, fileSystem.getConf())
+                            .withTableConfiguration(AccumuloConfiguration.getDefaultConfiguration()).build();
+            try {
+                Key firstKey = reader.getFirstKey();
+                Key lastKey = reader.getLastKey();
+                // an empty file is assigned to the first tablet
+                Text firstRow = firstKey == null ? new Text() : firstKey.getRow();
+                Text lastRow = lastKey == null ? firstRow : lastKey.getRow();
+                return new BulkImportScheduler.MapFile(file.getPath(), firstRow, lastRow, file.getLen());
+            } finally {
+                reader.close();
+            }
+        }
+        
         private void collapseDirectory() throws IOException {
             collapseDirectory(tableDir);
         }
@@ -7,6 +7,7 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import datawave.ingest.protobuf.Uid;
@@ -15,7 +16,8 @@ import datawave.ingest.protobuf.Uid;
  * Implementation of an Aggregator that aggregates objects of the type Uid.List. This is an optimization for the shardIndex and shardReverseIndex, where the
  * list of UIDs for events will be maintained in the global index for low cardinality terms.
  * 
- * 
+ * The UIDs are kept as the ByteStrings parsed from the protobufs rather than as Strings, so that they are never decoded and re-encoded, as this runs on every
+ * compaction and scan of the index.
  * 
  */
 public class GlobalIndexUidAggregator extends PropogatingCombiner {
@@ -26,7 +28,7 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
      * Using a set instead of a list so that duplicate UIDs are filtered out of the list. This might happen in the case of rows with masked fields that share a
      * UID.
      */
-    private HashSet<String> uids = new HashSet<>();
+    private HashSet<ByteString> uids = new HashSet<>();
     
     public GlobalIndexUidAggregator(int max) {
         this.maxUids = max;
@@ -39,17 +41,17 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
     /**
      * List of UIDs to remove.
      */
-    private HashSet<String> uidsToRemove = new HashSet<>();
+    private HashSet<ByteString> uidsToRemove = new HashSet<>();
     
     /**
      * List of UIDs to remove.
      */
-    private HashSet<String> quarantinedIds = new HashSet<>();
+    private HashSet<ByteString> quarantinedIds = new HashSet<>();
     
     /**
      * List of UIDs to remove.
      */
-    private HashSet<String> releasedUids = new HashSet<>();
+    private HashSet<ByteString> releasedUids = new HashSet<>();
     
     /**
      * flag for whether or not we have seen ignore
@@ -71,11 +73,6 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
      */
     private long count = 0;
     
-    /**
-     * temporary set for removals.
-     */
-    protected HashSet<String> tempSet;
-    
     public Value aggregate() {
         
         // as a backup, we remove the intersection of the UID sets
@@ -104,7 +101,9 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                 uids.addAll(releasedUids);
             }
             
-            builder.addAllUID(uids);
+            for (ByteString uid : uids) {
+                builder.addUIDBytes(uid);
+            }
         }
         
         if (log.isDebugEnabled())
@@ -115,11 +114,15 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
         
         if (propogate) {
             
-            builder.addAllREMOVEDUID(uidsToRemove);
-            builder.addAllQUARANTINEUID(quarantinedIds);
+            for (ByteString uid : uidsToRemove) {
+                builder.addREMOVEDUIDBytes(uid);
+            }
+            for (ByteString uid : quarantinedIds) {
+                builder.addQUARANTINEUIDBytes(uid);
+            }
         }
         if (log.isDebugEnabled())
-            log.debug("Building aggregate. Count is " + count + ", uids.size() is " + uids.size() + ". builder size is " + builder.getUIDList().size());
+            log.debug("Building aggregate. Count is " + count + ", uids.size() is " + uids.size() + ". builder size is " + builder.getUIDCount());
         return new Value(builder.build().toByteArray());
         
     }
@@ -163,22 +166,21 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                 // in the protobuf into our object's uid list.
                 if (delta > 0) {
                     
-                    for (String uid : v.getQUARANTINEUIDList()) {
+                    for (int i = 0; i < v.getQUARANTINEUIDCount(); i++) {
+                        ByteString uid = v.getQUARANTINEUIDBytes(i);
                         
                         quarantinedIds.remove(uid);
                         releasedUids.add(uid);
                     }
                     
-                    for (String uid : v.getUIDList()) {
+                    // add the UIDs iff we are under our MAX, there is no need to look at them once we are full
+                    for (int i = 0; i < v.getUIDCount() && uids.size() < maxUids; i++) {
+                        ByteString uid = v.getUIDBytes(i);
                         
                         // check that a removal has not occurred
                         // if it has, we decrement the count, from above.
                         if (!uidsToRemove.contains(uid) && !quarantinedIds.contains(uid)) {
-                            
-                            // add the UID iff we are under our MAX
-                            if (uids.size() < maxUids)
-                                uids.add(uid);
-                            
+                            uids.add(uid);
                         }
                         
                     }
@@ -190,30 +192,27 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                 } else if (delta < 0 && !seenIgnore) {
                     
                     // so that we can perform the decrement
-                    for (String uid : v.getREMOVEDUIDList()) {
+                    for (int i = 0; i < v.getREMOVEDUIDCount(); i++) {
+                        ByteString uid = v.getREMOVEDUIDBytes(i);
                         
                         uidsToRemove.add(uid);
-                        
-                        if (uids.contains(uid)) {
-                            
-                            uids.remove(uid);
-                        }
-                        
+                        uids.remove(uid);
                     }
                     
-                    quarantinedIds.addAll(v.getQUARANTINEUIDList());
+                    for (int i = 0; i < v.getQUARANTINEUIDCount(); i++) {
+                        quarantinedIds.add(v.getQUARANTINEUIDBytes(i));
+                    }
                     
                     /**
                      * This is added for backwards compatability. The removal list was added to ensure that removals are propogated across compactions. In the
                      * case where compactions did not occur, and the indices are converted into the newer protobuff, we must use the UID list to maintain
                      * removals for deltas less than 0
                      */
-                    for (String uid : v.getUIDList()) {
+                    for (int i = 0; i < v.getUIDCount(); i++) {
+                        ByteString uid = v.getUIDBytes(i);
                         // add to uidsToRemove, and decrement count if the uid is in UIDS
                         uidsToRemove.add(uid);
-                        if (uids.contains(uid)) {
-                            uids.remove(uid);
-                        }
+                        uids.remove(uid);
                     }
                 }
                 
@@ -233,7 +232,7 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
             log.debug("Resetting GlobalIndexUidAggregator");
         count = 0;
         seenIgnore = false;
-        builder = Uid.List.newBuilder();
+        builder.clear();
         uids.clear();
         uidsToRemove.clear();
         releasedUids.clear();
@@ -254,15 +253,21 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
         if ((seenIgnore && count > maxUids) || !quarantinedIds.isEmpty())
             return true;
         
-        HashSet<String> uidsCopy = new HashSet<>(uids);
-        uidsCopy.removeAll(uidsToRemove);
+        // check whether any uids remain once the removals are applied, without copying the uids
+        boolean uidsRemain = false;
+        for (ByteString uid : uids) {
+            if (!uidsToRemove.contains(uid)) {
+                uidsRemain = true;
+                break;
+            }
+        }
         
         if (log.isDebugEnabled()) {
-            log.debug(count + " " + uids.size() + " " + uidsToRemove.size() + " " + uidsCopy.size() + " removing " + (count == 0 && uidsCopy.isEmpty()));
+            log.debug(count + " " + uids.size() + " " + uidsToRemove.size() + " " + uidsRemain + " removing " + (count == 0 && !uidsRemain));
         }
         
         // if <= 0 and uids is empty, we can safely remove
-        if (count <= 0 && uidsCopy.isEmpty())
+        if (count <= 0 && !uidsRemain)
             return false;
         else
             return true;
@@ -0,0 +1,89 @@
+package datawave.ingest.data.config;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.lang.text.StrMatcher;
+import org.apache.commons.lang.text.StrTokenizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CSVTokenizerTest {
+    
+    private static final String[] RECORDS = {"", "a", "a,b,c", "a,,c", ",", ",,", "a,", ",a", "  a  ,  b  ", " , ", "\"a,b\",c", "\"a\"\"b\",c", "\"\",a",
+            "a\"b,c", "\"a\" \"b\",c", "\"a\"b\"c\",d", "\"a,b", "\"a\"  ,b", "  \"a\"  ,  \"b\"", "\"a\"\"\"", "\u00e9,\u00fc , \u4e2d\u6587 ,\"\u65e5\u672c\"", "a\tb\t\"c\td\"\t",
+            " \t a\t\tb ", "a||b||||c||", "a|b||c", "key=value, other=\"quoted, value\""};
+    
+    private static StrTokenizer configure(StrTokenizer tokenizer) {
+        tokenizer.setIgnoreEmptyTokens(false);
+        tokenizer.setEmptyTokenAsNull(true);
+        return tokenizer;
+    }
+    
+    private static void assertSameTokens(StrTokenizer expected, CSVTokenizer tokenizer) {
+        for (String record : RECORDS) {
+            expected.reset(record);
+            String[] expectedTokens = expected.getTokenArray();
+            
+            // tokenize the record within a larger buffer
+            byte[] bytes = ("xx" + record + "yy").getBytes(StandardCharsets.UTF_8);
+            tokenizer.reset(bytes, 2, bytes.length - 4);
+            Assert.assertArrayEquals(record, expectedTokens, tokenizer.getTokenArray());
+        }
+    }
+    
+    @Test
+    public void testCSV() {
+        assertSameTokens(configure(StrTokenizer.getCSVInstance()), CSVTokenizer.getCSVInstance());
+    }
+    
+    @Test
+    public void testTSV() {
+        assertSameTokens(configure(StrTokenizer.getTSVInstance()), CSVTokenizer.getTSVInstance());
+    }
+    
+    @Test
+    public void testDelimiterString() {
+        StrTokenizer expected = new StrTokenizer();
+        expected.setDelimiterString("||");
+        assertSameTokens(configure(expected), new CSVTokenizer("||"));
+        
+        expected = new StrTokenizer();
+        expected.setDelimiterString(",");
+        assertSameTokens(configure(expected), new CSVTokenizer(","));
+    }
+    
+    @Test
+    public void testWithoutTrim() {
+        StrTokenizer expected = configure(StrTokenizer.getCSVInstance());
+        expected.setTrimmerMatcher(StrMatcher.noneMatcher());
+        assertSameTokens(expected, CSVTokenizer.getCSVInstance().setTrim(false));
+    }
+    
+    @Test
+    public void testLazyDecoding() {
+        CSVTokenizer tokenizer = CSVTokenizer.getCSVInstance();
+        tokenizer.reset("a,\"b\",,d".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(4, tokenizer.size());
+        Assert.assertEquals("d", tokenizer.getToken(3));
+        Assert.assertNull(tokenizer.getToken(2));
+        Assert.assertEquals("b", tokenizer.getToken(1));
+        Assert.assertSame(tokenizer.getToken(1), tokenizer.getToken(1));
+        
+        // the decoded fields are dropped with the record
+        tokenizer.reset("x".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(1, tokenizer.size());
+        Assert.assertEquals("x", tokenizer.getToken(0));
+    }
+    
+    @Test
+    public void testManyFields() {
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            record.append(i).append(',');
+        }
+        CSVTokenizer tokenizer = CSVTokenizer.getCSVInstance().reset(record.toString().getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(101, tokenizer.size());
+        Assert.assertEquals("99", tokenizer.getToken(99));
+        Assert.assertNull(tokenizer.getToken(100));
+    }
+}
@@ -0,0 +1,74 @@
+package datawave.ingest.data.tokenize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StandardAnalyzerTest {
+    
+    private static final String FIRST = "Send the report to bob@example.com before Friday";
+    private static final String SECOND = "The server at 10.1.2.3 rejected http://example.com/index.html";
+    
+    private Analyzer analyzer;
+    
+    @Before
+    public void setUp() {
+        analyzer = new StandardAnalyzer(new DefaultTokenSearch(EnglishAnalyzer.ENGLISH_STOP_WORDS_SET, false));
+    }
+    
+    @After
+    public void tearDown() {
+        analyzer.close();
+    }
+    
+    private static List<String> tokenize(Analyzer analyzer, String content) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream("BODY", content)) {
+            CharTermAttribute termAtt = stream.getAttribute(CharTermAttribute.class);
+            TypeAttribute typeAtt = stream.getAttribute(TypeAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(termAtt.toString() + "/" + typeAtt.type());
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+    
+    @Test
+    public void testReuseAcrossDocuments() throws IOException {
+        List<String> first = tokenize(analyzer, FIRST);
+        List<String> second = tokenize(analyzer, SECOND);
+        Assert.assertFalse(first.isEmpty());
+        Assert.assertNotEquals(first, second);
+        
+        // the components are reused for the next document rather than created again
+        TokenStream stream = analyzer.tokenStream("BODY", FIRST);
+        stream.close();
+        Assert.assertSame(stream, analyzer.tokenStream("BODY", SECOND));
+        stream.close();
+        
+        // a document which is not fully consumed, such as one which timed out, does not leak into the next
+        stream = analyzer.tokenStream("BODY", FIRST);
+        stream.reset();
+        while (stream.incrementToken()) {
+            if (stream.getAttribute(TypeAttribute.class).type().equals("<EMAIL>")) {
+                break;
+            }
+        }
+        stream.close();
+        
+        Assert.assertEquals(second, tokenize(analyzer, SECOND));
+        Assert.assertEquals(first, tokenize(analyzer, FIRST));
+    }
+}
@@ -1,5 +1,8 @@
 package datawave.ingest.mapreduce.handler.shard.content;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -41,6 +44,27 @@ public class BoundedOffsetQueueTest {
         
     }
     
+    @Test
+    public void testClear() {
+        
+        BoundedOffsetQueue<Integer> uut = new BoundedOffsetQueue<>(100);
+        TermAndZone taz = new TermAndZone("term", "zone");
+        uut.addOffset(taz, 1);
+        uut.addOffset(taz, 2);
+        List<Integer> offsets = uut.getOffsets(taz);
+        
+        uut.clear();
+        Assert.assertEquals("Clear failed to reset the number of elements in the Queue", 0, uut.size());
+        Assert.assertFalse("Clear failed to remove the term", uut.containsKey(taz));
+        
+        // the offset list is reused for the next document, starting out empty
+        TermAndZone other = new TermAndZone("other", "zone");
+        uut.addOffset(other, 3);
+        Assert.assertSame("Clear failed to reuse the offset list", offsets, uut.getOffsets(other));
+        Assert.assertEquals(Collections.singletonList(3), uut.getOffsets(other));
+        Assert.assertEquals(1, uut.size());
+    }
+    
     @Test
     public void testOffsetListComparatorLogic() {
         
@@ -1,6 +1,7 @@
 package datawave.ingest.mapreduce.handler.tokenize;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import datawave.data.hash.UID;
@@ -13,6 +14,7 @@ import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
 import datawave.ingest.data.config.ingest.BaseIngestHelper;
 import datawave.ingest.data.config.ingest.ContentBaseIngestHelper;
+import datawave.ingest.data.tokenize.TokenizationHelper;
 import datawave.ingest.input.reader.EventRecordReader;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.policy.IngestPolicyEnforcer;
@@ -325,6 +327,58 @@ public class ContentIndexingColumnBasedHandlerTest {
                         listExpectedAlphanumTfValues, false);
     }
     
+    @Test
+    public void testHandlerParallelTokenization() throws Exception {
+        
+        ctx.getConfiguration().set("test" + ContentBaseIngestHelper.TOKEN_INDEX_WHITELIST, "BODY,SUBJECT");
+        ctx.getConfiguration().set("test" + ContentBaseIngestHelper.TOKEN_REV_INDEX_WHITELIST, "BODY");
+        ctx.getConfiguration().set("test" + ContentBaseIngestHelper.INDEX_LIST_FIELDS, ALPHANUM_LIST);
+        ctx.getConfiguration().set("test" + "." + ALPHANUM_LIST + BaseIngestHelper.FIELD_TYPE, LcNoDiacriticsType.class.getName());
+        
+        TypeRegistry.reset();
+        TypeRegistry.getInstance(ctx.getConfiguration());
+        
+        setupMocks();
+        
+        Multimap<String,NormalizedContentInterface> eventFields = LinkedListMultimap.create();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            body.append("the quick brown fox ").append(i).append(" jumped over the lazy dog ");
+        }
+        eventFields.put("BODY", new NormalizedFieldAndValue("BODY", body.toString()));
+        eventFields.put("BODY", new NormalizedFieldAndValue("BODY", "the lazy dog " + body));
+        eventFields.put("SUBJECT", new NormalizedFieldAndValue("SUBJECT", "brown fox"));
+        eventFields.put(ALPHANUM_LIST, new NormalizedFieldAndValue(ALPHANUM_LIST, LIST_VALUE));
+        eventFields.put("SUBJECT", new NormalizedFieldAndValue("SUBJECT", "lazy dog"));
+        
+        TestContentIndexingColumnBasedHandler serial = new TestContentIndexingColumnBasedHandler();
+        serial.setup(ctx);
+        serial.getShardNamesAndValues(event, eventFields, true, true, null);
+        
+        ctx.getConfiguration().setInt("test" + TokenizationHelper.TOKENIZER_THREADS, 2);
+        ctx.getConfiguration().setInt("test" + TokenizationHelper.TOKENIZER_THREADS_MIN_FIELD_LENGTH, 100);
+        TestContentIndexingColumnBasedHandler parallel = new TestContentIndexingColumnBasedHandler();
+        parallel.setup(ctx);
+        try {
+            parallel.getShardNamesAndValues(event, eventFields, true, true, null);
+            
+            // the fields tokenized on other threads produce the same results as tokenizing them in order
+            Assert.assertEquals(serial.getFields(), parallel.getFields());
+            Assert.assertEquals(serial.getIndex(), parallel.getIndex());
+            Assert.assertEquals(serial.getReverse(), parallel.getReverse());
+            
+            Multimap<BulkIngestKey,Value> serialTfEntries = HashMultimap.create();
+            Multimap<BulkIngestKey,Value> parallelTfEntries = HashMultimap.create();
+            serial.shardId = parallel.shardId = SHARD_ID.getBytes();
+            serial.flushTokenOffsetCache(event, serialTfEntries);
+            parallel.flushTokenOffsetCache(event, parallelTfEntries);
+            Assert.assertFalse(serialTfEntries.isEmpty());
+            Assert.assertEquals(serialTfEntries, parallelTfEntries);
+        } finally {
+            parallel.close(ctx);
+        }
+    }
+    
     private boolean equalNciMaps(Multimap<String,NormalizedContentInterface> first, Multimap<String,NormalizedContentInterface> second) {
         Multimap<String,NormalizedContentInterface> firstToSecondDiff = Multimaps.filterEntries(first, e -> !second.containsEntry(e.getKey(), e.getValue()));
         Multimap<String,NormalizedContentInterface> secondToFirstDiff = Multimaps.filterEntries(first, e -> !second.containsEntry(e.getKey(), e.getValue()));
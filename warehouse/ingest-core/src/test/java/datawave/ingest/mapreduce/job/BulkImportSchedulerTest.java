@@ -0,0 +1,179 @@
+package datawave.ingest.mapreduce.job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class BulkImportSchedulerTest {
+    private static final Logger log = Logger.getLogger(BulkImportSchedulerTest.class);
+    
+    private BulkImportScheduler scheduler;
+    
+    @Before
+    public void setUp() {
+        scheduler = new BulkImportScheduler(8, 2);
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    private static BulkImportScheduler.MapFile mapFile(String name, String firstRow, String lastRow) {
+        return new BulkImportScheduler.MapFile(new Path("/map/files/shard/" + name), new Text(firstRow), new Text(lastRow), 1024);
+    }
+    
+    /**
+     * Simulates skewed splits, where half of the tablets are hosted by one server and the rest are spread over the others
+     */
+    private static TreeMap<Text,String> skewedSplits(int numTablets, int numServers) {
+        TreeMap<Text,String> tabletLocations = new TreeMap<>();
+        for (int i = 0; i < numTablets; i++) {
+            String server = (i % 2 == 0) ? "tserver0" : "tserver" + (1 + (i / 2) % (numServers - 1));
+            tabletLocations.put(new Text(String.format("row%03d", i)), server);
+        }
+        return tabletLocations;
+    }
+    
+    @Test
+    public void testGroupByTabletServer() {
+        TreeMap<Text,String> tabletLocations = new TreeMap<>();
+        tabletLocations.put(new Text("b"), "tserver1");
+        tabletLocations.put(new Text("d"), "tserver2");
+        tabletLocations.put(new Text("f"), null);
+        
+        List<BulkImportScheduler.MapFile> files = new ArrayList<>();
+        files.add(mapFile("1.rf", "a", "b"));
+        files.add(mapFile("2.rf", "a", "a"));
+        files.add(mapFile("3.rf", "a", "a"));
+        files.add(mapFile("4.rf", "a", "c"));
+        files.add(mapFile("5.rf", "e", "e"));
+        files.add(mapFile("6.rf", "g", "z"));
+        
+        List<BulkImportScheduler.Batch> batches = BulkImportScheduler.groupByTabletServer(files, tabletLocations, "tserver3", 2);
+        Assert.assertEquals(5, batches.size());
+        
+        // files within one server's tablets are batched together, up to the batch size
+        Assert.assertEquals(Collections.singleton("tserver1"), batches.get(0).getServers());
+        Assert.assertEquals(2, batches.get(0).getFiles().size());
+        Assert.assertEquals(2048, batches.get(0).getSize());
+        Assert.assertEquals(Collections.singleton("tserver1"), batches.get(1).getServers());
+        Assert.assertEquals(1, batches.get(1).getFiles().size());
+        
+        // files spanning tablets on several servers, unassigned tablets and the last tablet
+        Assert.assertEquals(Sets.newHashSet("tserver1", "tserver2"), batches.get(2).getServers());
+        Assert.assertEquals(Collections.singleton(BulkImportScheduler.UNKNOWN_SERVER), batches.get(3).getServers());
+        Assert.assertEquals(Collections.singleton("tserver3"), batches.get(4).getServers());
+    }
+    
+    @Test
+    public void testSkewedSplits() throws IOException {
+        TreeMap<Text,String> tabletLocations = skewedSplits(40, 5);
+        List<BulkImportScheduler.MapFile> files = new ArrayList<>();
+        for (int i = 0; i < tabletLocations.size(); i++) {
+            String row = String.format("row%03d", i);
+            for (int j = 0; j < 3; j++) {
+                files.add(mapFile(row + "-" + j + ".rf", row, row));
+            }
+        }
+        List<BulkImportScheduler.Batch> batches = BulkImportScheduler.groupByTabletServer(files, tabletLocations, "tserver1", 5);
+        
+        Map<String,AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String,Integer> maxRunning = new HashMap<>();
+        Set<Path> imported = Sets.newConcurrentHashSet();
+        AtomicInteger minLimit = new AtomicInteger(Integer.MAX_VALUE);
+        long start = System.currentTimeMillis();
+        scheduler.importBatches(batches, batch -> {
+            String server = batch.getServers().iterator().next();
+            minLimit.accumulateAndGet(scheduler.getImportLimit("tserver0"), Math::min);
+            int concurrent = running.computeIfAbsent(server, k -> new AtomicInteger()).incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.merge(server, concurrent, Math::max);
+            }
+            try {
+                // the server hosting most of the tablets is also slower to import
+                Thread.sleep("tserver0".equals(server) ? 40 : 5);
+                for (Path file : batch.getFiles()) {
+                    Assert.assertTrue(imported.add(file));
+                }
+            } finally {
+                running.get(server).decrementAndGet();
+            }
+        });
+        log.info("Imported " + files.size() + " files in " + batches.size() + " batches in " + (System.currentTimeMillis() - start) + "ms");
+        
+        Assert.assertEquals(files.size(), imported.size());
+        for (Map.Entry<String,Integer> entry : maxRunning.entrySet()) {
+            Assert.assertTrue(entry.getKey() + " had " + entry.getValue() + " concurrent imports", entry.getValue() <= 2);
+        }
+        // the slow server is throttled while the others are importing
+        Assert.assertEquals(1, minLimit.get());
+        Assert.assertEquals(60 * 1024, scheduler.getImportedBytes().get("tserver0").longValue());
+    }
+    
+    @Test
+    public void testFailure() {
+        TreeMap<Text,String> tabletLocations = skewedSplits(10, 3);
+        List<BulkImportScheduler.MapFile> files = new ArrayList<>();
+        for (int i = 0; i < tabletLocations.size(); i++) {
+            String row = String.format("row%03d", i);
+            files.add(mapFile(row + ".rf", row, row));
+        }
+        List<BulkImportScheduler.Batch> batches = BulkImportScheduler.groupByTabletServer(files, tabletLocations, "tserver1", 1);
+        
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            scheduler.importBatches(batches, batch -> {
+                attempts.incrementAndGet();
+                throw new IOException("import failed");
+            });
+            Assert.fail("Expected the import to fail");
+        } catch (IOException e) {
+            Assert.assertEquals("import failed", e.getMessage());
+        }
+        // no more batches are started once an import fails
+        Assert.assertTrue(attempts.get() < batches.size());
+    }
+    
+    @Test
+    public void testError() {
+        TreeMap<Text,String> tabletLocations = skewedSplits(10, 3);
+        List<BulkImportScheduler.MapFile> files = new ArrayList<>();
+        for (int i = 0; i < tabletLocations.size(); i++) {
+            String row = String.format("row%03d", i);
+            files.add(mapFile(row + ".rf", row, row));
+        }
+        List<BulkImportScheduler.Batch> batches = BulkImportScheduler.groupByTabletServer(files, tabletLocations, "tserver1", 1);
+        
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            scheduler.importBatches(batches, batch -> {
+                attempts.incrementAndGet();
+                throw new OutOfMemoryError("import failed");
+            });
+            Assert.fail("Expected the import to fail");
+        } catch (IOException e) {
+            // an error is reported as the cause of an IOException
+            Assert.assertTrue(e.getCause() instanceof OutOfMemoryError);
+        }
+        // and stops further batches from being started as an exception does
+        Assert.assertTrue(attempts.get() < batches.size());
+    }
+}
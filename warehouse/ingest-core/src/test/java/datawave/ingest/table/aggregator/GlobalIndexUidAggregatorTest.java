@@ -1,11 +1,13 @@
 package datawave.ingest.table.aggregator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -228,4 +230,47 @@ public class GlobalIndexUidAggregatorTest {
         assertEquals(1, resultList.getUIDCount());
         
     }
+    
+    @Test
+    public void testRemovals() throws Exception {
+        GlobalIndexUidAggregator aggregator = new GlobalIndexUidAggregator();
+        Collection<Value> values = Lists.newArrayList();
+        Builder b = createNewUidList();
+        b.setCOUNT(3);
+        b.setIGNORE(false);
+        b.addUID("uid1");
+        b.addUID("uid2");
+        b.addUID("uid3");
+        values.add(new Value(b.build().toByteArray()));
+        b = createNewUidList();
+        b.setCOUNT(-1);
+        b.setIGNORE(false);
+        b.addREMOVEDUID("uid2");
+        values.add(new Value(b.build().toByteArray()));
+        
+        Value result = aggregator.reduce(new Key("key"), values.iterator());
+        Uid.List resultList = Uid.List.parseFrom(result.get());
+        
+        assertEquals(2, resultList.getCOUNT());
+        assertEquals(2, resultList.getUIDCount());
+        assertTrue(resultList.getUIDList().contains("uid1"));
+        assertTrue(resultList.getUIDList().contains("uid3"));
+        // the removal is propogated for later compactions
+        assertEquals(Collections.singletonList("uid2"), resultList.getREMOVEDUIDList());
+        assertTrue(aggregator.propogateKey());
+        
+        // once every uid has been removed the key can be dropped
+        aggregator.reset();
+        b = createNewUidList();
+        b.setCOUNT(-2);
+        b.setIGNORE(false);
+        b.addREMOVEDUID("uid1");
+        b.addREMOVEDUID("uid3");
+        values = Lists.newArrayList(result, new Value(b.build().toByteArray()));
+        resultList = Uid.List.parseFrom(aggregator.reduce(new Key("key"), values.iterator()).get());
+        
+        assertEquals(0, resultList.getCOUNT());
+        assertEquals(0, resultList.getUIDCount());
+        assertFalse(aggregator.propogateKey());
+    }
 }
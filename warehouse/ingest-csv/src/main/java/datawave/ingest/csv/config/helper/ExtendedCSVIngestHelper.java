@@ -5,6 +5,7 @@ import com.google.common.collect.Multimap;
 import datawave.data.type.Type;
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.CSVHelper;
+import datawave.ingest.data.config.CSVTokenizer;
 import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
 import datawave.ingest.data.config.ingest.CSVIngestHelper;
@@ -12,8 +13,6 @@ import datawave.ingest.data.config.ingest.EventFieldNormalizerHelper;
 import datawave.ingest.data.normalizer.SimpleGroupFieldNameParser;
 import datawave.ingest.metadata.id.MetadataIdParser;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.text.StrMatcher;
-import org.apache.commons.lang.text.StrTokenizer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 
@@ -131,33 +130,21 @@ public class ExtendedCSVIngestHelper extends CSVIngestHelper {
     }
     
     @Override
-    protected StrTokenizer configureTokenizer(StrTokenizer tokenizer) {
-        // Remove the trim matcher, trim in preProcessRawData instead so
+    protected CSVTokenizer configureTokenizer(CSVTokenizer tokenizer) {
+        // Remove the trimming, trim in preProcessRawData instead so
         // we don't lost any trailing whitespace on the last metadata pair
         // on the record
-        return tokenizer.setTrimmerMatcher(StrMatcher.noneMatcher());
+        return tokenizer.setTrim(false);
     }
     
     @Override
-    protected String preProcessRawData(byte[] data) {
-        String buf = new String(data);
-        
-        // Need to make sure we're operating on chars in case
-        // we're manipulating multi-byte characters
-        char[] chars = buf.toCharArray();
-        
-        // Trim all initial whitespace by skipping
+    protected int preProcessRawData(byte[] data) {
+        // Trim all initial whitespace by skipping. The bytes of multi-byte
+        // characters are all above 32, so only single byte characters are trimmed
         int index = 0;
-        while (index < chars.length && chars[index] <= 32) {
+        while (index < data.length && (data[index] & 0xff) <= 32) {
             index++;
         }
-        
-        // If we trimmed the front, return a new String
-        if (index > 0) {
-            return new String(chars, index, chars.length - index);
-        } else {
-            // Otherwise, we don't have to
-            return buf;
-        }
+        return index;
     }
 }
@@ -2,6 +2,7 @@ package datawave.ingest.csv.mr.input;
 
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.CSVHelper;
+import datawave.ingest.data.config.CSVTokenizer;
 import datawave.data.hash.UID;
 import datawave.ingest.input.reader.EventRecordReader;
 import datawave.ingest.input.reader.LongLineEventRecordReader;
@@ -9,7 +10,6 @@ import datawave.ingest.data.RawDataErrorNames;
 
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.text.StrTokenizer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
@@ -19,6 +19,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * RecordReader that reads events from "Comma"-Separated-Value formats. Here the "Comma" can be any separator.
@@ -42,8 +44,8 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
     /** Primary DataTypeHelper for CSV records. */
     private CSVHelper csvHelper;
     
-    /** Splits raw input records Strings according to the configured separator. */
-    private StrTokenizer _tokenizer;
+    /** Splits raw input records according to the configured separator. */
+    private CSVTokenizer _tokenizer;
     
     /** Super class returns the position in bytes in the file as the key. This returns the record number. */
     @Override
@@ -119,10 +121,10 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
         
         processedSize += value.getLength();
         
-        final String rawEventRecordStr = value.toString();
-        _tokenizer.reset(rawEventRecordStr);
+        // Tokenize the record in place, decoding each field only as it is processed
+        _tokenizer.reset(value.getBytes(), 0, value.getLength());
         
-        final String[] rawEventFields = _tokenizer.getTokenArray();
+        final int rawEventFieldCount = _tokenizer.size();
         final String[] header = csvHelper.getHeader();
         
         // If the event date field name is not specified in the configuration, then set the event date to the file modification time.
@@ -130,12 +132,12 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
             event.setDate(fileModificationTime);
         
         // We still try to process the event record.
-        final int fields = Math.min(rawEventFields.length, header.length);
+        final int fields = Math.min(rawEventFieldCount, header.length);
         String field, fieldName;
         int i;
         
         for (i = 0; i < fields; i++) {
-            field = StringEscapeUtils.unescapeCsv(rawEventFields[i]);
+            field = StringEscapeUtils.unescapeCsv(_tokenizer.getToken(i));
             fieldName = header[i];
             
             field = csvHelper.clean(fieldName, field);
@@ -144,9 +146,9 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
         }
         
         // Check to see if we have data beyond the header specification that should be processed. This is the case for the CSV logs
-        if (csvHelper.processExtraFields() && rawEventFields.length > header.length) {
-            while (i < rawEventFields.length) {
-                processExtraField(rawEventFields[i]);
+        if (csvHelper.processExtraFields() && rawEventFieldCount > header.length) {
+            while (i < rawEventFieldCount) {
+                processExtraField(_tokenizer.getToken(i));
                 i++;
             }
         }
@@ -154,7 +156,7 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
         // decorate with additional data (used by overriding classes)
         decorateEvent();
         
-        event.setRawData(rawEventRecordStr.getBytes());
+        event.setRawData(Arrays.copyOf(value.getBytes(), value.getLength()));
         
         // Check to see if we need to override the UID. The use case for this is that some of the hashes are "enrichment" and the same
         // values will be loaded over and over again. By default, the UID is calculated on the raw byte[]
@@ -167,12 +169,12 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
         
         enforcePolicy(event);
         
-        if (header.length > rawEventFields.length) {
+        if (header.length > rawEventFieldCount) {
             event.addError(RawDataErrorNames.NOT_ENOUGH_FIELDS);
-            log.error("More fields in header than in data. Header fields: {}, data fields: {}", header.length, rawEventFields.length);
-        } else if ((!csvHelper.processExtraFields()) && (header.length < rawEventFields.length)) {
+            log.error("More fields in header than in data. Header fields: {}, data fields: {}", header.length, rawEventFieldCount);
+        } else if ((!csvHelper.processExtraFields()) && (header.length < rawEventFieldCount)) {
             event.addError(RawDataErrorNames.TOO_MANY_FIELDS);
-            log.error("More fields in data than in header. Header fields: {}, data fields: {}", header.length, rawEventFields.length);
+            log.error("More fields in data than in header. Header fields: {}, data fields: {}", header.length, rawEventFieldCount);
         }
         
         return event;
@@ -191,23 +193,9 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
         }
     }
     
-    /** Creates a new StrTokenizer based on the configuration. */
-    private StrTokenizer createTokenizer() {
-        final StrTokenizer tokenizer;
-        
-        if (csvHelper.getSeparator().equals(",")) {
-            tokenizer = StrTokenizer.getCSVInstance();
-        } else if (csvHelper.getSeparator().equals("\\t")) {
-            tokenizer = StrTokenizer.getTSVInstance();
-        } else {
-            tokenizer = new StrTokenizer();
-            tokenizer.setDelimiterString(csvHelper.getSeparator());
-        }
-        
-        tokenizer.setIgnoreEmptyTokens(false);
-        tokenizer.setEmptyTokenAsNull(true);
-        
-        return tokenizer;
+    /** Creates a new CSVTokenizer based on the configuration. */
+    private CSVTokenizer createTokenizer() {
+        return csvHelper.newTokenizer();
     }
     
     /**
@@ -249,7 +237,7 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
     protected void processPreSplitField(String fieldName, final String fieldValue) {
         if (csvHelper.isMultiValuedField(fieldName)) {
             // Value can be multiple parts, need to break on semi-colon
-            final String[] values = fieldValue.split(csvHelper.getEscapeSafeMultiValueSeparatorPattern());
+            final List<String> values = csvHelper.splitMultiValuedField(fieldValue);
             
             // Can be renamed if specified in multivalued fields, but not if using blacklist
             if (!csvHelper.usingMultiValuedFieldsBlacklist()) {
@@ -279,11 +267,11 @@ public class CSVReaderBase extends LongLineEventRecordReader implements EventRec
         return Math.min(1f, (float) processedSize / (float) totalSize);
     }
     
-    public StrTokenizer getTokenizer() {
+    public CSVTokenizer getTokenizer() {
         return _tokenizer;
     }
     
-    public void setTokenizer(StrTokenizer _tokenizer) {
+    public void setTokenizer(CSVTokenizer _tokenizer) {
         this._tokenizer = _tokenizer;
     }
     
@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+
 import datawave.ingest.data.TypeRegistry;
 
 import org.apache.hadoop.conf.Configuration;
@@ -43,4 +45,22 @@ public class ExtendedCSVHelperTest {
         assertFalse(helper.getParsers().isEmpty());
         assertEquals(1, helper.getParsers().size());
     }
+    
+    @Test
+    public void testSplitMultiValuedField() throws Exception {
+        Configuration conf = new Configuration();
+        conf.addResource(this.getClass().getClassLoader().getResource("config/ingest/all-config.xml"));
+        conf.addResource(this.getClass().getClassLoader().getResource("config/ingest/csv-ingest-config.xml"));
+        
+        TypeRegistry.reset();
+        TypeRegistry.getInstance(conf);
+        
+        ExtendedCSVHelper helper = new ExtendedCSVHelper();
+        helper.setup(conf);
+        
+        // splitting without the regex gives the same values as splitting with it
+        for (String value : new String[] {"a", "", ";", "a;b;c", ";a;;b;", "a\\;b;c", "a\\;;b", "\\;a;b\\;", "a;;;"}) {
+            assertEquals(value, Arrays.asList(value.split(helper.getEscapeSafeMultiValueSeparatorPattern())), helper.splitMultiValuedField(value));
+        }
+    }
 }
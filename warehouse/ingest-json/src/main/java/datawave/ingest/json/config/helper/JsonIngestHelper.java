@@ -2,8 +2,9 @@ package datawave.ingest.json.config.helper;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.NormalizedContentInterface;
 import datawave.ingest.data.config.NormalizedFieldAndValue;
@@ -13,6 +14,8 @@ import datawave.ingest.json.util.JsonObjectFlattener;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Map;
 
 /**
@@ -45,9 +48,18 @@ public class JsonIngestHelper extends ContentBaseIngestHelper {
         HashMultimap<String,String> fields = HashMultimap.create();
         String jsonString = new String(event.getRawData());
         
-        JsonParser parser = new JsonParser();
-        JsonElement jsonElement = parser.parse(jsonString);
-        flattener.flatten(jsonElement.getAsJsonObject(), fields);
+        // Flatten straight from the token stream, rather than parsing the record into a JsonObject tree first
+        JsonReader reader = new JsonReader(new StringReader(jsonString));
+        reader.setLenient(true);
+        try {
+            flattener.flatten(reader, fields);
+        } catch (JsonObjectFlattener.RepeatedNameException e) {
+            // Keep only the last value of a repeated name, as the tree does
+            fields.clear();
+            flattener.flatten(new JsonParser().parse(jsonString).getAsJsonObject(), fields);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
         
         return normalizeMap(getGroupNormalizedMap(fields));
     }
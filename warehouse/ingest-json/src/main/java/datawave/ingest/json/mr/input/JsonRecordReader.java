@@ -3,6 +3,7 @@ package datawave.ingest.json.mr.input;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.Map;
@@ -15,6 +16,7 @@ import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
 
 import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import datawave.data.hash.UID;
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.config.DataTypeHelper;
@@ -52,7 +54,12 @@ import org.apache.log4j.Logger;
  * </blockquote>
  *
  * <p>
- * For custom parsing requirements, extend this class and override the 'parseCurrentValue' method to suit your needs.
+ * Records are flattened directly from the {@link JsonReader} token stream, one object at a time, so that only the current record is held in memory.
+ *
+ * <p>
+ * For custom parsing requirements, extend this class and override the 'parseCurrentValue' method to suit your needs. Subclasses which still override the
+ * deprecated {@link #parseCurrentValue(JsonObject)} or {@link #setupIterator(JsonReader)} methods are given a {@link JsonElement} tree for each record, as
+ * before.
  */
 public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
     
@@ -71,12 +78,23 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
     // Json parser-related stuff
     
     protected Multimap currentValue = HashMultimap.create();
+    /**
+     * @deprecated only used when a subclass overrides {@link #setupIterator(JsonReader)} or {@link #parseCurrentValue(JsonObject)}
+     */
+    @Deprecated
     protected Iterator<JsonElement> jsonIterator;
     protected JsonReader reader;
+    /**
+     * @deprecated only set when a record was parsed into a tree, see {@link #parseCurrentValue(JsonObject)}. Use {@link #currentJson} instead
+     */
+    @Deprecated
     protected JsonElement currentJsonObj;
+    protected boolean inArray = false;
+    protected String currentJson;
     protected boolean parseHeaderOnly = true;
     protected JsonDataTypeHelper jsonHelper = null;
     protected JsonObjectFlattener jsonFlattener = null;
+    private final boolean parseTrees = overrides("setupIterator", JsonReader.class) || overrides("parseCurrentValue", JsonObject.class);
     
     @Override
     public void close() throws IOException {
@@ -92,8 +110,8 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
     
     @Override
     public BytesWritable getCurrentValue() {
-        if (currentJsonObj != null) {
-            return new BytesWritable(currentJsonObj.toString().getBytes());
+        if (currentJson != null) {
+            return new BytesWritable(currentJson.getBytes());
         } else {
             return null;
         }
@@ -152,9 +170,18 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         countingInputStream = new CountingInputStream(is);
         reader = new JsonReader(new InputStreamReader(countingInputStream));
         reader.setLenient(true);
-        setupIterator(reader);
+        if (parseTrees) {
+            setupIterator(reader);
+        }
     }
     
+    /**
+     * Parses the next root element from the reader, and iterates over it if it's an array or over itself if not
+     * 
+     * @deprecated records are now flattened directly from the reader, see {@link #seekNextObject()}. This is only called when a subclass overrides it or
+     *             {@link #parseCurrentValue(JsonObject)}
+     */
+    @Deprecated
     protected void setupIterator(JsonReader reader) {
         JsonParser parser = new JsonParser();
         JsonElement root = parser.parse(reader);
@@ -168,19 +195,47 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         }
     }
     
+    /**
+     * Flattens the specified object into {@link #currentValue}. Used for records which repeat a property name, and for every record when a subclass overrides
+     * this method or {@link #setupIterator(JsonReader)}
+     * 
+     * @deprecated override {@link #parseCurrentValue(JsonReader, JsonWriter)} instead
+     */
+    @Deprecated
     protected void parseCurrentValue(JsonObject jsonObject) {
         jsonFlattener.flatten(jsonObject, currentValue);
     }
     
-    @Override
-    public boolean nextKeyValue() throws IOException {
-        
-        event.clear();
-        currentKey.set(pos);
-        currentValue.clear();
-        counter++;
-        
-        if (!jsonIterator.hasNext()) {
+    private boolean overrides(String methodName, Class<?>... parameterTypes) {
+        for (Class<?> clazz = getClass(); clazz != JsonRecordReader.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(methodName, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // keep looking
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Positions the reader at the beginning of the next object, stepping into and out of any arrays of objects along the way
+     * 
+     * @return true if there is another object to read, false at the end of the input
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    protected boolean seekNextObject() throws IOException {
+        while (true) {
+            if (inArray) {
+                if (reader.hasNext()) {
+                    // Currently positioned to read the next of a set of objects
+                    return true;
+                }
+                reader.endArray();
+                inArray = false;
+            }
+            
             /*
              * Note that for streaming purposes we support files containing multiple distinct json objects concatenated together, where each object will
              * represent a distinct event/document in our shard table. For example, the file might look like the following...
@@ -190,7 +245,82 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
              * As a whole, this would represent an invalid json document, but it is useful for streaming large numbers of objects in batch. Therefore, we simply
              * check here to see if the reader has more objects to read, and if so we keep going
              */
+            JsonToken token = reader.peek();
+            if (token == JsonToken.END_DOCUMENT) {
+                return false;
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                inArray = true;
+            } else {
+                // Currently positioned to read a single object
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Flattens the next object from the reader into {@link #currentValue}, copying its raw json to the specified writer
+     * 
+     * @param reader
+     *            reader positioned at the beginning of the object
+     * @param rawWriter
+     *            writer to receive the raw json of the object
+     * @throws IOException
+     *             if the input cannot be read
+     */
+    protected void parseCurrentValue(JsonReader reader, JsonWriter rawWriter) throws IOException {
+        jsonFlattener.flatten(reader, currentValue, rawWriter);
+    }
+    
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        
+        event.clear();
+        currentKey.set(pos);
+        currentValue.clear();
+        counter++;
+        currentJsonObj = null;
+        
+        if (parseTrees) {
+            return nextTree();
+        }
+        
+        if (!seekNextObject()) {
+            currentJson = null;
+            return false;
+        }
+        
+        // Copy the raw json of the object as it is parsed, to be used when writing the raw data to the record in getEvent
+        StringWriter rawJson = new StringWriter();
+        JsonWriter rawWriter = new JsonWriter(rawJson);
+        rawWriter.setLenient(true);
+        
+        try {
+            parseCurrentValue(reader, rawWriter);
+            rawWriter.flush();
+            currentJson = rawJson.toString();
+        } catch (JsonObjectFlattener.RepeatedNameException e) {
+            // The tree keeps only the last value of a repeated name, so flatten the record from its tree as before
+            rawWriter.flush();
+            JsonElement jsonElement = new JsonParser().parse(rawJson.toString());
+            currentValue.clear();
+            parseCurrentValue(jsonElement.getAsJsonObject());
+            currentJsonObj = jsonElement;
+            currentJson = jsonElement.toString();
+        }
+        pos = countingInputStream.getCount();
+        return true;
+    }
+    
+    /**
+     * Reads the next record from {@link #jsonIterator}, for subclasses which override {@link #setupIterator(JsonReader)} or
+     * {@link #parseCurrentValue(JsonObject)}
+     */
+    private boolean nextTree() throws IOException {
+        if (!jsonIterator.hasNext()) {
+            // See seekNextObject regarding concatenated objects
             if (reader.peek() == JsonToken.END_DOCUMENT) {
+                currentJson = null;
                 return false;
             }
             setupIterator(reader);
@@ -204,9 +334,11 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
             
             // Save ref to the current json element, to be used when writing the raw data to the record in getEvent
             currentJsonObj = jsonElement;
+            currentJson = jsonElement.toString();
             return true;
         }
         
+        currentJson = null;
         return false;
     }
     
@@ -228,7 +360,7 @@ public class JsonRecordReader extends AbstractEventRecordReader<BytesWritable> {
         
         decorateEvent();
         
-        event.setRawData(currentJsonObj.toString().getBytes());
+        event.setRawData(currentJson.getBytes());
         
         if (0 == event.getDate()) {
             event.setDate(System.currentTimeMillis());
@@ -2,7 +2,10 @@ package datawave.ingest.json.util;
 
 import com.google.common.collect.Multimap;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -97,6 +100,62 @@ public interface JsonObjectFlattener {
      */
     void flatten(JsonObject object, Multimap<String,String> map) throws IllegalStateException, NullPointerException;
     
+    /**
+     * Flattens the next json object read from the specified reader, without building a {@link JsonObject} tree. The resulting keys and values are the same as
+     * those of {@link #flatten(JsonObject, Multimap)}, unless the object repeats a property name. A {@link JsonObject} tree keeps only the last value of a
+     * repeated name, which cannot be known while streaming, so a {@link RepeatedNameException} is thrown instead once the whole object has been read
+     * 
+     * @param reader
+     *            {@link JsonReader} positioned at the beginning of the object to flatten. On return, the reader is positioned after the end of the object
+     * @param map
+     *            {@link com.google.common.collect.Multimap} instance to receive the flattened keys and associated values
+     * @throws IOException
+     *             if the reader fails or the json is malformed
+     * @throws RepeatedNameException
+     *             if an object within the json repeats a property name, in which case the map holds a partial result and the object should be flattened
+     *             from a {@link JsonObject} tree instead
+     * @throws IllegalStateException
+     *             if the reader is not positioned at the beginning of an object, or if {@link FlattenMode#GROUPED} is used and {@link Builder#pathDelimiter}
+     *             is found to exist already within a json property name
+     * @throws NullPointerException
+     *             if map is null
+     */
+    void flatten(JsonReader reader, Multimap<String,String> map) throws IOException, IllegalStateException, NullPointerException;
+    
+    /**
+     * Same as {@link #flatten(JsonReader, Multimap)}, but also copies each token read onto the specified writer, e.g., in order to retain the raw json of the
+     * object without holding onto a {@link JsonObject} tree
+     * 
+     * @param reader
+     *            {@link JsonReader} positioned at the beginning of the object to flatten
+     * @param map
+     *            {@link com.google.common.collect.Multimap} instance to receive the flattened keys and associated values
+     * @param writer
+     *            {@link JsonWriter} to receive a copy of the object, or null
+     * @throws IOException
+     *             if the reader or writer fails, or the json is malformed
+     * @throws RepeatedNameException
+     *             if an object within the json repeats a property name. The writer still receives a complete copy of the object, from which a
+     *             {@link JsonObject} tree may be parsed and flattened instead
+     * @throws IllegalStateException
+     *             if the reader is not positioned at the beginning of an object, or if {@link FlattenMode#GROUPED} is used and {@link Builder#pathDelimiter}
+     *             is found to exist already within a json property name
+     * @throws NullPointerException
+     *             if map is null
+     */
+    void flatten(JsonReader reader, Multimap<String,String> map, JsonWriter writer) throws IOException, IllegalStateException, NullPointerException;
+    
+    /**
+     * Thrown when a json object being flattened from a {@link JsonReader} repeats a property name, as the result would then differ from that of the
+     * {@link JsonObject} tree, which keeps only the last value of the name
+     */
+    class RepeatedNameException extends IllegalStateException {
+        
+        public RepeatedNameException(String message) {
+            super(message);
+        }
+    }
+    
     /**
      * <p>
      * Allows clients to specify custom normalization behavior per their needs to affect the final presentation of flattened keys and their values to the
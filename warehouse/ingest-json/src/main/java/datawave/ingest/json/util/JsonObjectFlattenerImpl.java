@@ -7,7 +7,12 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -100,6 +105,26 @@ public class JsonObjectFlattenerImpl implements JsonObjectFlattener {
         addKeysToMap("", object, map, occurrenceCounts);
     }
     
+    @Override
+    public void flatten(JsonReader reader, Multimap<String,String> map) throws IOException, IllegalStateException, NullPointerException {
+        flatten(reader, map, null);
+    }
+    
+    @Override
+    public void flatten(JsonReader reader, Multimap<String,String> map, JsonWriter writer) throws IOException, IllegalStateException, NullPointerException {
+        Preconditions.checkNotNull(map, "'map' argument cannot be null");
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IllegalStateException("Expected a json object but was " + reader.peek());
+        }
+        Map<String,Integer> occurrenceCounts = null;
+        if (this.flattenMode == FlattenMode.GROUPED || this.flattenMode == FlattenMode.GROUPED_AND_NORMAL) {
+            occurrenceCounts = new HashMap<>();
+        }
+        if (!addKeysToMap("", reader, map, occurrenceCounts, writer)) {
+            throw new RepeatedNameException("Json object repeats a property name, so it must be flattened from a JsonObject tree");
+        }
+    }
+    
     @Override
     public FlattenMode getFlattenMode() {
         return this.flattenMode;
@@ -160,6 +185,188 @@ public class JsonObjectFlattenerImpl implements JsonObjectFlattener {
         }
     }
     
+    /**
+     * Streaming counterpart of {@link #addKeysToMap(String, JsonElement, Multimap, Map)}, which flattens the next value read from the reader in the same way
+     * 
+     * @param currentPath
+     *            path to the next value
+     * @param reader
+     *            reader positioned at the next value
+     * @param map
+     *            map to receive the flattened keys and values
+     * @param occurrenceCounts
+     *            occurrence counts of the grouped paths, or null if not grouping
+     * @param writer
+     *            writer to receive a copy of the value, or null
+     * @return false if an object within the value repeats a property name, in which case the value was still read to its end but the map will not match
+     *         that of the tree, which keeps only the last value of a repeated name
+     * @throws IOException
+     *             if the reader or writer fails
+     */
+    protected boolean addKeysToMap(String currentPath, JsonReader reader, Multimap<String,String> map, Map<String,Integer> occurrenceCounts,
+                    JsonWriter writer) throws IOException {
+        
+        boolean uniqueNames = true;
+        switch (reader.peek()) {
+            case NULL:
+                // Don't add nulls
+                copyValue(reader, writer);
+                break;
+            
+            case BEGIN_OBJECT:
+                
+                switch (this.flattenMode) {
+                    case SIMPLE:
+                        if (!currentPath.isEmpty()) {
+                            // No recursion in simple mode
+                            return copyValue(reader, writer);
+                        }
+                        break;
+                    case GROUPED:
+                    case GROUPED_AND_NORMAL:
+                        if (!currentPath.isEmpty()) {
+                            // Append occurrence delimiter + ordinal suffix
+                            currentPath = currentPath + this.occurrenceDelimiter + incrementCount(currentPath, occurrenceCounts);
+                        }
+                        break;
+                }
+                
+                String pathPrefix = currentPath.isEmpty() ? currentPath : currentPath + this.pathDelimiter;
+                
+                Set<String> names = new HashSet<>();
+                reader.beginObject();
+                if (null != writer) {
+                    writer.beginObject();
+                }
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (null != writer) {
+                        writer.name(name);
+                    }
+                    uniqueNames &= names.add(name);
+                    uniqueNames &= addKeysToMap(pathPrefix + this.nameNormalizer.normalizeElementName(name, currentPath), reader, map, occurrenceCounts,
+                                    writer);
+                }
+                reader.endObject();
+                if (null != writer) {
+                    writer.endObject();
+                }
+                break;
+            
+            case BEGIN_ARRAY:
+                
+                reader.beginArray();
+                if (null != writer) {
+                    writer.beginArray();
+                }
+                for (int i = 0; reader.hasNext(); i++) {
+                    
+                    if (isPrimitive(reader.peek())) {
+                        mapPut(currentPath, copyPrimitive(reader, writer), map, occurrenceCounts);
+                    } else {
+                        
+                        if (this.addArrayIndexToFieldName) {
+                            uniqueNames &= addKeysToMap(currentPath + this.pathDelimiter + i, reader, map, occurrenceCounts, writer);
+                        } else {
+                            uniqueNames &= addKeysToMap(currentPath, reader, map, occurrenceCounts, writer);
+                        }
+                    }
+                }
+                reader.endArray();
+                if (null != writer) {
+                    writer.endArray();
+                }
+                break;
+            
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                mapPut(currentPath, copyPrimitive(reader, writer), map, occurrenceCounts);
+                break;
+            
+            default:
+                throw new IllegalStateException("Unexpected " + reader.peek() + " at '" + currentPath + "'");
+        }
+        return uniqueNames;
+    }
+    
+    private static boolean isPrimitive(JsonToken token) {
+        return token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN;
+    }
+    
+    /**
+     * Reads the next primitive from the reader, copying it to the writer if not null
+     * 
+     * @return the primitive's string value, as given by {@link JsonPrimitive#getAsString()}
+     */
+    private static String copyPrimitive(JsonReader reader, JsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BOOLEAN:
+                boolean b = reader.nextBoolean();
+                if (null != writer) {
+                    writer.value(b);
+                }
+                return Boolean.toString(b);
+            case NUMBER:
+                // Keep the number as written, as the tree does with its lazily parsed numbers
+                String number = reader.nextString();
+                if (null != writer) {
+                    writer.value(new LazilyParsedNumber(number));
+                }
+                return number;
+            default:
+                String string = reader.nextString();
+                if (null != writer) {
+                    writer.value(string);
+                }
+                return string;
+        }
+    }
+    
+    /**
+     * Reads the next value from the reader without flattening it, copying it to the writer if not null
+     * 
+     * @return false if the value was copied and an object within it repeats a property name, in which case the copy will not match the tree's json
+     */
+    private static boolean copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+        if (null == writer) {
+            reader.skipValue();
+            return true;
+        }
+        boolean uniqueNames = true;
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                Set<String> names = new HashSet<>();
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    writer.name(name);
+                    uniqueNames &= names.add(name);
+                    uniqueNames &= copyValue(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    uniqueNames &= copyValue(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                copyPrimitive(reader, writer);
+        }
+        return uniqueNames;
+    }
+    
     protected String defaultNormalizeJsonElementName(String name) {
         switch (this.flattenMode) {
             case GROUPED:
@@ -3,6 +3,7 @@ package datawave.ingest.json.mr.input;
 import java.io.File;
 import java.net.URL;
 
+import com.google.gson.JsonObject;
 import datawave.ingest.data.RawRecordContainer;
 import datawave.ingest.data.TypeRegistry;
 
@@ -22,6 +23,10 @@ import org.junit.Test;
 public class JsonRecordReaderTest {
     
     protected JsonRecordReader init(boolean parseHeaderOnly, FlattenMode mode) throws Exception {
+        return init(parseHeaderOnly, mode, new JsonRecordReader());
+    }
+    
+    protected JsonRecordReader init(boolean parseHeaderOnly, FlattenMode mode, JsonRecordReader reader) throws Exception {
         
         Configuration conf = null;
         TaskAttemptContext ctx = null;
@@ -46,7 +51,6 @@ public class JsonRecordReaderTest {
         split = new FileSplit(p, 0, dataFile.length(), null);
         ctx = new TaskAttemptContextImpl(conf, new TaskAttemptID());
         
-        JsonRecordReader reader = new JsonRecordReader();
         reader.initialize(split, ctx);
         return reader;
     }
@@ -230,4 +234,35 @@ public class JsonRecordReaderTest {
         
         reader.close();
     }
+    
+    @Test
+    public void testDeprecatedParseCurrentValueOverride() throws Exception {
+        JsonRecordReader expected = init(false, FlattenMode.NORMAL);
+        int[] parsed = new int[1];
+        JsonRecordReader reader = init(false, FlattenMode.NORMAL, new JsonRecordReader() {
+            @Override
+            protected void parseCurrentValue(JsonObject jsonObject) {
+                parsed[0]++;
+                super.parseCurrentValue(jsonObject);
+            }
+        });
+        expected.setInputDate(System.currentTimeMillis());
+        reader.setInputDate(System.currentTimeMillis());
+        
+        // A subclass still overriding the tree-based method is given a tree for every record, with the same results
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertTrue(expected.nextKeyValue());
+            Assert.assertTrue(reader.nextKeyValue());
+            Assert.assertEquals(i, parsed[0]);
+            Assert.assertEquals(expected.getCurrentFields(), reader.getCurrentFields());
+            Assert.assertEquals(expected.getCurrentValue(), reader.getCurrentValue());
+            Assert.assertNotNull(reader.currentJsonObj);
+        }
+        
+        Assert.assertFalse(expected.nextKeyValue());
+        Assert.assertFalse(reader.nextKeyValue());
+        
+        expected.close();
+        reader.close();
+    }
 }
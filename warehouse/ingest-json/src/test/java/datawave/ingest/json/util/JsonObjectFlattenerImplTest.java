@@ -1,15 +1,21 @@
 package datawave.ingest.json.util;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.collect.TreeMultimap;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
@@ -266,6 +272,87 @@ public class JsonObjectFlattenerImplTest {
         }
     }
     
+    @Test
+    public void testStreamingFlattenMatchesTree() throws Exception {
+        for (FlattenMode mode : FlattenMode.values()) {
+            for (boolean addArrayIndex : new boolean[] {true, false}) {
+                JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().flattenMode(mode).occurrenceInGroupDelimiter("#").pathDelimiter(".")
+                                .addArrayIndexToFieldName(addArrayIndex).build();
+                
+                JsonObject jsonObject = new JsonParser().parse(json).getAsJsonObject();
+                Multimap<String,String> expected = flattener.flatten(jsonObject);
+                
+                Multimap<String,String> fieldMap = HashMultimap.create();
+                StringWriter raw = new StringWriter();
+                JsonWriter writer = new JsonWriter(raw);
+                writer.setLenient(true);
+                flattener.flatten(new JsonReader(new StringReader(json)), fieldMap, writer);
+                writer.flush();
+                
+                Assert.assertEquals(mode.name(), expected, fieldMap);
+                // The copy made while streaming is the same as the tree's json
+                Assert.assertEquals(mode.name(), jsonObject.toString(), raw.toString());
+            }
+        }
+    }
+    
+    @Test
+    public void testStreamingFlattenReadsOneObject() throws Exception {
+        JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().pathDelimiter(".").build();
+        JsonReader reader = new JsonReader(new StringReader("{\"a\": {\"b\": [1, 2.50, null, true]}, \"c\": null}{\"a\": {\"b\": \"x\"}}"));
+        reader.setLenient(true);
+        
+        Multimap<String,String> fieldMap = HashMultimap.create();
+        flattener.flatten(reader, fieldMap);
+        Assert.assertEquals(Sets.newHashSet("1", "2.50", "true"), fieldMap.get("A.B"));
+        Assert.assertEquals(3, fieldMap.size());
+        
+        fieldMap.clear();
+        flattener.flatten(reader, fieldMap);
+        Assert.assertEquals(Sets.newHashSet("x"), fieldMap.get("A.B"));
+        Assert.assertEquals(1, fieldMap.size());
+    }
+    
+    @Test
+    public void testStreamingFlattenRepeatedName() throws Exception {
+        String repeated = "{\"a\": 1, \"b\": {\"c\": 2, \"d\": [{\"e\": 1.50E+2, \"e\": -0}], \"c\": 3}, \"a\": {\"f\": null}}{\"a\": 5}";
+        for (FlattenMode mode : FlattenMode.values()) {
+            JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().flattenMode(mode).occurrenceInGroupDelimiter("#").pathDelimiter(".")
+                            .build();
+            JsonReader reader = new JsonReader(new StringReader(repeated));
+            reader.setLenient(true);
+            StringWriter raw = new StringWriter();
+            JsonWriter writer = new JsonWriter(raw);
+            writer.setLenient(true);
+            try {
+                flattener.flatten(reader, HashMultimap.create(), writer);
+                Assert.fail("Expected the repeated names to be rejected in " + mode.name() + " mode");
+            } catch (JsonObjectFlattener.RepeatedNameException e) {
+                // expected
+            }
+            writer.flush();
+            
+            // The whole object was still copied, with its numbers as written, and the reader is positioned at the next object
+            Assert.assertEquals(mode.name(), "{\"a\":1,\"b\":{\"c\":2,\"d\":[{\"e\":1.50E+2,\"e\":-0}],\"c\":3},\"a\":{\"f\":null}}", raw.toString());
+            Multimap<String,String> fieldMap = HashMultimap.create();
+            flattener.flatten(reader, fieldMap);
+            Assert.assertEquals(mode.name(), Sets.newHashSet("5"), fieldMap.get("A"));
+        }
+        
+        // Flattening the copy's tree keeps the last value of each repeated name
+        JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().pathDelimiter(".").build();
+        Multimap<String,String> fieldMap = flattener.flatten(new JsonParser().parse(repeated.substring(0, repeated.indexOf("}{") + 1)).getAsJsonObject());
+        Assert.assertEquals(Sets.newHashSet("3"), fieldMap.get("B.C"));
+        Assert.assertEquals(Sets.newHashSet("3", "-0"), Sets.newHashSet(fieldMap.values()));
+        Assert.assertEquals(2, fieldMap.size());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testStreamingFlattenNotAnObject() throws Exception {
+        JsonObjectFlattener flattener = new JsonObjectFlattenerImpl.Builder().build();
+        flattener.flatten(new JsonReader(new StringReader("[{\"a\": 1}]")), HashMultimap.create());
+    }
+    
     private void printMap(Multimap<String,String> fieldMap) {
         TreeMultimap<String,String> sorted = TreeMultimap.create(fieldMap);
         for (String key : sorted.keySet()) {
@@ -18,6 +18,9 @@ import datawave.query.predicate.TimeFilter;
 import datawave.query.util.TypeMetadata;
 import datawave.query.util.sortedset.FileKeySortedSet;
 import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import datawave.query.util.sortedset.FileSortedSet;
+import datawave.query.util.sortedset.MergeSortIterator;
+import datawave.query.util.sortedset.OffHeapFileKeySortedSet;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
@@ -41,6 +44,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -82,8 +86,13 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         private long maxResults = -1;
         private long scanThreshold = 10000;
         private int hdfsBackedSetBufferSize = 10000;
+        private boolean hdfsBackedSetOffHeap = false;
+        private String hdfsFileCompressionCodec = null;
+        private String queryId = null;
         private int maxOpenFiles = 100;
         private int numRetries = 2;
+        private int mergePrefetchSize = DEFAULT_MERGE_PREFETCH_SIZE;
+        private long mergePrefetchMaxBytes = DEFAULT_MERGE_PREFETCH_MAX_BYTES;
         private boolean sortedUIDs = true;
         protected QuerySpanCollector querySpanCollector = null;
         protected volatile boolean collectTimingDetails = false;
@@ -147,6 +156,21 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withHdfsBackedSetOffHeap(boolean hdfsBackedSetOffHeap) {
+            this.hdfsBackedSetOffHeap = hdfsBackedSetOffHeap;
+            return self();
+        }
+        
+        public B withHdfsFileCompressionCodec(String hdfsFileCompressionCodec) {
+            this.hdfsFileCompressionCodec = hdfsFileCompressionCodec;
+            return self();
+        }
+        
+        public B withQueryId(String queryId) {
+            this.queryId = queryId;
+            return self();
+        }
+        
         public B withMaxRangeSplit(int maxRangeSplit) {
             this.maxRangeSplit = maxRangeSplit;
             return self();
@@ -167,6 +191,16 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withMergePrefetchSize(int mergePrefetchSize) {
+            this.mergePrefetchSize = mergePrefetchSize;
+            return self();
+        }
+        
+        public B withMergePrefetchMaxBytes(long mergePrefetchMaxBytes) {
+            this.mergePrefetchMaxBytes = mergePrefetchMaxBytes;
+            return self();
+        }
+        
         public B withIvaratorCacheDirs(List<IvaratorCacheDir> ivaratorCacheDirs) {
             this.ivaratorCacheDirs = ivaratorCacheDirs;
             return self();
@@ -231,6 +265,10 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     // as possible.
     @SuppressWarnings("unchecked")
     protected static final Collection<ByteSequence> EMPTY_CFS = Collections.EMPTY_LIST;
+    // the default number of keys to read ahead in each persisted file while merging
+    public static final int DEFAULT_MERGE_PREFETCH_SIZE = 1000;
+    // the default max size of the keys read ahead for all of the persisted files while merging
+    public static final long DEFAULT_MERGE_PREFETCH_MAX_BYTES = 16L * 1024 * 1024;
     
     // These are the ranges to scan in the field index
     private final List<Range> boundingFiRanges = new ArrayList<>();
@@ -274,10 +312,20 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     private final long scanThreshold;
     // the number of entries to cache in memory before flushing to hdfs
     private final int hdfsBackedSetBufferSize;
+    // are the entries cached in memory held off heap
+    private final boolean hdfsBackedSetOffHeap;
+    // the compression codec used for the blocks of the persisted files, null for none
+    private final String hdfsFileCompressionCodec;
+    // the query id used to share the ivarator threads fairly between queries
+    private final String queryId;
     // the max number of files to open simultaneously during a merge source
     private final int maxOpenFiles;
     // the max number of retries when attempting to persist a sorted set to a filesystem
     private final int numRetries;
+    // the number of keys to read ahead in each persisted file while merging, 0 to merge without reading ahead
+    private final int mergePrefetchSize;
+    // the max size of the keys read ahead for all of the persisted files while merging, 0 for no limit
+    private final long mergePrefetchMaxBytes;
     
     // the current top key
     private Key topKey = null;
@@ -298,6 +346,10 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     private SortedSet<Key> threadSafeSet = null;
     // the iterator (merge sort) of key values once the sorted set has been filled
     private PeekingIterator<Key> keys = null;
+    // the merge of the persisted files underneath keys, if any
+    private MergeSortIterator<Key> mergeIterator = null;
+    // the merge prefetch tasks submitted to the ivarator thread pool
+    private final List<Future<?>> prefetchTasks = new ArrayList<>();
     // the current row covered by the hdfs set
     private String currentRow = null;
     // did we create the row directory
@@ -321,6 +373,12 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     
     protected volatile boolean collectTimingDetails = false;
     
+    // the merge timers already reported to the query span collector
+    private long reportedMergeWaitMillis = 0;
+    private long reportedMergeReadMillis = 0;
+    // the span used to report the merge timers from next()
+    private QuerySpan mergeQuerySpan = null;
+    
     // the start time for this iterator
     private volatile long startTime = System.currentTimeMillis();
     
@@ -360,8 +418,13 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.allowDirReuse = false;
         this.scanThreshold = 10000;
         this.hdfsBackedSetBufferSize = 10000;
+        this.hdfsBackedSetOffHeap = false;
+        this.hdfsFileCompressionCodec = null;
+        this.queryId = null;
         this.maxOpenFiles = 100;
         this.numRetries = 2;
+        this.mergePrefetchSize = DEFAULT_MERGE_PREFETCH_SIZE;
+        this.mergePrefetchMaxBytes = DEFAULT_MERGE_PREFETCH_MAX_BYTES;
         this.maxRangeSplit = 11;
         this.maxResults = -1;
         
@@ -410,8 +473,13 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.scanTimeout = builder.scanTimeout;
         this.maxResults = builder.maxResults;
         this.hdfsBackedSetBufferSize = builder.hdfsBackedSetBufferSize;
+        this.hdfsBackedSetOffHeap = builder.hdfsBackedSetOffHeap;
+        this.hdfsFileCompressionCodec = builder.hdfsFileCompressionCodec;
+        this.queryId = builder.queryId;
         this.maxOpenFiles = builder.maxOpenFiles;
         this.numRetries = builder.numRetries;
+        this.mergePrefetchSize = builder.mergePrefetchSize;
+        this.mergePrefetchMaxBytes = builder.mergePrefetchMaxBytes;
         this.maxRangeSplit = builder.maxRangeSplit;
         
         this.sortedUIDs = builder.sortedUIDs;
@@ -450,8 +518,13 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.scanTimeout = other.scanTimeout;
         this.maxResults = other.maxResults;
         this.hdfsBackedSetBufferSize = other.hdfsBackedSetBufferSize;
+        this.hdfsBackedSetOffHeap = other.hdfsBackedSetOffHeap;
+        this.hdfsFileCompressionCodec = other.hdfsFileCompressionCodec;
+        this.queryId = other.queryId;
         this.maxOpenFiles = other.maxOpenFiles;
         this.numRetries = other.numRetries;
+        this.mergePrefetchSize = other.mergePrefetchSize;
+        this.mergePrefetchMaxBytes = other.mergePrefetchMaxBytes;
         
         this.set = other.set;
         this.keys = other.keys;
@@ -523,7 +596,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 Key startKey = r.getStartKey();
                 // decide if keyValues needs to be rebuilt or can be reused
                 if (!keys.hasNext() || (keys.peek().compareTo(startKey) > 0)) {
-                    keys = new CachingIterator<>(threadSafeSet.iterator());
+                    // the persisted files can use their block index to start at the start key
+                    setKeys(this.set != null ? this.set.iterator(startKey) : threadSafeSet.iterator());
                 }
             }
         }
@@ -621,6 +695,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
         } finally {
             if (collectTimingDetails && querySpanCollector != null && querySpan != null) {
+                addMergeTimers(querySpan);
                 querySpanCollector.addQuerySpan(querySpan);
             }
         }
@@ -635,6 +710,88 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         if (topKey != null && log.isTraceEnabled()) {
             log.trace("next() => " + topKey);
         }
+        
+        // the merge of the persisted files happens as we iterate, so report its timing here as well
+        if (collectTimingDetails && querySpanCollector != null) {
+            if (this.mergeQuerySpan == null) {
+                this.mergeQuerySpan = new QuerySpan(null);
+            }
+            // the collector resets the span once it has been added, so it is reused for every call
+            if (addMergeTimers(this.mergeQuerySpan)) {
+                querySpanCollector.addQuerySpan(this.mergeQuerySpan);
+            }
+        }
+    }
+    
+    /**
+     * Replace the keys being returned, first stopping the prefetch of the merge being replaced so that it no longer reads on the ivarator thread pool
+     * 
+     * @param it
+     *            the new keys, or null for none
+     */
+    @SuppressWarnings("unchecked")
+    private void setKeys(Iterator<Key> it) {
+        cancelPrefetch();
+        if (it instanceof MergeSortIterator) {
+            this.mergeIterator = (MergeSortIterator<Key>) it;
+        }
+        this.keys = (it == null ? null : new CachingIterator<>(it));
+    }
+    
+    /**
+     * Submit a merge prefetch task to the ivarator thread pool, keeping its future so that it can be cancelled
+     * 
+     * @param task
+     * @param taskName
+     */
+    private void submitPrefetch(Runnable task, String taskName) {
+        Future<?> future = IteratorThreadPoolManager.executeIvarator(task, taskName, queryId, this.initEnv);
+        synchronized (this.prefetchTasks) {
+            this.prefetchTasks.removeIf(Future::isDone);
+            this.prefetchTasks.add(future);
+        }
+    }
+    
+    /**
+     * Cancel the outstanding merge prefetch tasks. Any batch which was not read yet is read on demand if the merge is used again.
+     */
+    private void cancelPrefetch() {
+        if (this.mergeIterator != null) {
+            this.mergeIterator.cancelPrefetch();
+            this.mergeIterator = null;
+        }
+        synchronized (this.prefetchTasks) {
+            for (Future<?> future : this.prefetchTasks) {
+                future.cancel(false);
+            }
+            this.prefetchTasks.clear();
+        }
+    }
+    
+    /**
+     * Add the time spent merging the persisted files since the last report to a query span
+     * 
+     * @param querySpan
+     * @return true if any time was added
+     */
+    private boolean addMergeTimers(QuerySpan querySpan) {
+        if (this.set == null) {
+            return false;
+        }
+        MergeSortIterator.Stats stats = this.set.getMergeStats();
+        long waitMillis = stats.getWaitMillis();
+        long readMillis = stats.getInlineReadMillis();
+        long waitDelta = waitMillis - this.reportedMergeWaitMillis;
+        long readDelta = readMillis - this.reportedMergeReadMillis;
+        this.reportedMergeWaitMillis = waitMillis;
+        this.reportedMergeReadMillis = readMillis;
+        if (waitDelta > 0) {
+            querySpan.addStageTimer(QuerySpan.Stage.IvaratorMergeWait, waitDelta);
+        }
+        if (readDelta > 0) {
+            querySpan.addStageTimer(QuerySpan.Stage.IvaratorMergeRead, readDelta);
+        }
+        return waitDelta > 0 || readDelta > 0;
     }
     
     // -------------------------------------------------------------------------
@@ -783,7 +940,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 }
                 
                 if (this.keys == null) {
-                    this.keys = new CachingIterator<>(this.threadSafeSet.iterator());
+                    setKeys(this.threadSafeSet.iterator());
                 }
             }
             
@@ -1168,7 +1325,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
         };
         
-        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange, this.initEnv);
+        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange, queryId,
+                        this.initEnv);
         
     }
     
@@ -1189,7 +1347,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
      * @throws IOException
      */
     protected void clearRowBasedHdfsBackedSet() throws IOException {
-        this.keys = null;
+        setKeys(null);
         this.currentRow = null;
         this.set = null;
     }
@@ -1229,8 +1387,15 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 this.createdRowDir = false;
             }
             
+            FileSortedSet.PersistOptions persistOptions = new FileSortedSet.PersistOptions(FileSortedSet.PersistOptions.DEFAULT_BLOCK_SIZE,
+                            hdfsFileCompressionCodec);
             this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, ivaratorCacheDirs, row, maxOpenFiles, numRetries,
-                            new FileKeySortedSet.Factory());
+                            hdfsBackedSetOffHeap ? new OffHeapFileKeySortedSet.Factory(persistOptions) : new FileKeySortedSet.Factory(persistOptions));
+            // read ahead in the persisted files on the ivarator thread pool while merging them
+            final String prefetchTaskName = this + " merge prefetch for " + row;
+            this.set.setPrefetch(task -> submitPrefetch(task, prefetchTaskName), mergePrefetchSize, mergePrefetchMaxBytes, Key::getSize);
+            this.reportedMergeWaitMillis = 0;
+            this.reportedMergeReadMillis = 0;
             this.threadSafeSet = Collections.synchronizedSortedSet(this.set);
             this.currentRow = row;
             this.setControl.takeOwnership(row, this);
@@ -1238,9 +1403,9 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             // if this set is not marked as complete (meaning completely filled AND persisted), then we cannot trust the contents and we need to recompute.
             if (!this.setControl.isCompleteAndPersisted(row)) {
                 this.set.clear();
-                this.keys = null;
+                setKeys(null);
             } else {
-                this.keys = new CachingIterator<>(this.set.iterator());
+                setKeys(this.set.iterator());
             }
             
             // reset the keyValues counter as we have a new set here
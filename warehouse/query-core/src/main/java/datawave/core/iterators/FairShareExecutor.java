@@ -0,0 +1,311 @@
+package datawave.core.iterators;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.log4j.Logger;
+
+/**
+ * An executor that shares its threads fairly between the queries submitting tasks to it. Tasks are queued per query, and whenever a thread is free the next
+ * task is taken from the query with the fewest running tasks. A query can never run more than the max threads per query at once, so one heavy query cannot
+ * starve the others of threads. A query is only tracked while it has queued or running tasks.
+ * <p>
+ * Queries may also be given a priority, in which case the queries with the highest priority are given threads first and the threads are shared fairly within
+ * each priority. So that a steady stream of high priority work cannot starve the lower priorities, a query's priority may be aged: it is raised by one level
+ * for every aging interval its oldest queued task has waited.
+ */
+public class FairShareExecutor implements FairShareExecutorMBean {
+    private static final Logger log = Logger.getLogger(FairShareExecutor.class);
+    
+    // the query id used for tasks submitted without one
+    public static final String UNKNOWN_QUERY = "unknown";
+    
+    private final String name;
+    private final ThreadPoolExecutor workers;
+    // the queries in the order in which they were last given a thread
+    private final Map<String,QueryTasks> queries = new LinkedHashMap<>();
+    
+    private int maxThreads;
+    private int maxThreadsPerQuery;
+    private long agingNanos;
+    private int runningTasks = 0;
+    private int queuedTasks = 0;
+    private long completedTasks = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    
+    public FairShareExecutor(String name, int maxThreads, int maxThreadsPerQuery) {
+        this(name, maxThreads, maxThreadsPerQuery, 0);
+    }
+    
+    /**
+     * @param name
+     *            the name of the executor and its threads
+     * @param maxThreads
+     *            the number of threads
+     * @param maxThreadsPerQuery
+     *            the max number of threads a query can use at once
+     * @param agingMillis
+     *            how long a query's oldest task must wait for the query's priority to be raised by one, or 0 to never age priorities
+     */
+    public FairShareExecutor(String name, int maxThreads, int maxThreadsPerQuery, long agingMillis) {
+        this.name = name;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        this.maxThreads = maxThreads;
+        this.maxThreadsPerQuery = maxThreadsPerQuery;
+        this.workers = new ThreadPoolExecutor(maxThreads, maxThreads, 5 * 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamingThreadFactory(name));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * Submit a task on behalf of a query
+     *
+     * @param queryId
+     *            the query id, or null if unknown
+     * @param task
+     *            the task
+     * @return the future for the task
+     */
+    public Future<?> submit(String queryId, Runnable task) {
+        return submit(queryId, 0, task);
+    }
+    
+    /**
+     * Submit a task on behalf of a query with a priority
+     *
+     * @param queryId
+     *            the query id, or null if unknown
+     * @param priority
+     *            the priority, higher priorities are run first
+     * @param task
+     *            the task
+     * @return the future for the task
+     */
+    public Future<?> submit(String queryId, int priority, Runnable task) {
+        QueryTask queryTask;
+        synchronized (this) {
+            if (workers.isShutdown()) {
+                throw new RejectedExecutionException(name + " has been shutdown");
+            }
+            String id = (queryId == null ? UNKNOWN_QUERY : queryId);
+            QueryTasks tasks = queries.computeIfAbsent(id, QueryTasks::new);
+            tasks.priority = Math.max(tasks.priority, priority);
+            queryTask = new QueryTask(tasks, task);
+            tasks.queued.add(queryTask);
+            queuedTasks++;
+            dispatch();
+        }
+        return queryTask;
+    }
+    
+    /**
+     * Hand queued tasks to the worker threads while there are threads available and queries under their limit
+     */
+    private synchronized void dispatch() {
+        while (runningTasks < maxThreads) {
+            long now = System.nanoTime();
+            QueryTasks next = null;
+            long nextPriority = 0;
+            for (QueryTasks tasks : queries.values()) {
+                if (!tasks.queued.isEmpty() && tasks.running < maxThreadsPerQuery) {
+                    long priority = getPriority(tasks, now);
+                    if (next == null || priority > nextPriority || (priority == nextPriority && tasks.running < next.running)) {
+                        next = tasks;
+                        nextPriority = priority;
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            
+            // move the query to the end so that ties go to the query that has waited the longest
+            queries.remove(next.queryId);
+            queries.put(next.queryId, next);
+            
+            QueryTask task = next.queued.poll();
+            queuedTasks--;
+            next.running++;
+            runningTasks++;
+            long waitNanos = System.nanoTime() - task.queuedNanos;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            try {
+                workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.warn(name + " rejected a task for " + next.queryId, e);
+                task.cancel(false);
+                finished(next);
+            }
+        }
+    }
+    
+    /**
+     * @return the query's priority, raised by one for every aging interval that its oldest queued task has waited
+     */
+    private long getPriority(QueryTasks tasks, long now) {
+        if (agingNanos <= 0) {
+            return tasks.priority;
+        }
+        return tasks.priority + (now - tasks.queued.peek().queuedNanos) / agingNanos;
+    }
+    
+    private synchronized void finished(QueryTasks tasks) {
+        tasks.running--;
+        runningTasks--;
+        completedTasks++;
+        if (tasks.running == 0 && tasks.queued.isEmpty()) {
+            queries.remove(tasks.queryId);
+        }
+        dispatch();
+    }
+    
+    /**
+     * Change the number of threads, and the max number of threads a query can use at once
+     *
+     * @param maxThreads
+     * @param maxThreadsPerQuery
+     */
+    public synchronized void setMaxThreads(int maxThreads, int maxThreadsPerQuery) {
+        if (maxThreads != this.maxThreads) {
+            if (maxThreads > workers.getMaximumPoolSize()) {
+                workers.setMaximumPoolSize(maxThreads);
+                workers.setCorePoolSize(maxThreads);
+            } else {
+                workers.setCorePoolSize(maxThreads);
+                workers.setMaximumPoolSize(maxThreads);
+            }
+            this.maxThreads = maxThreads;
+        }
+        this.maxThreadsPerQuery = maxThreadsPerQuery;
+        dispatch();
+    }
+    
+    /**
+     * Change how long a query's oldest task must wait for the query's priority to be raised by one
+     *
+     * @param agingMillis
+     *            the aging interval, or 0 to never age priorities
+     */
+    public synchronized void setPriorityAging(long agingMillis) {
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        dispatch();
+    }
+    
+    public synchronized void shutdownNow() {
+        for (QueryTasks tasks : queries.values()) {
+            for (Iterator<QueryTask> it = tasks.queued.iterator(); it.hasNext();) {
+                it.next().cancel(false);
+                it.remove();
+                queuedTasks--;
+            }
+        }
+        workers.shutdownNow();
+    }
+    
+    @Override
+    public synchronized int getMaxThreads() {
+        return maxThreads;
+    }
+    
+    @Override
+    public synchronized int getMaxThreadsPerQuery() {
+        return maxThreadsPerQuery;
+    }
+    
+    @Override
+    public synchronized long getPriorityAgingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(agingNanos);
+    }
+    
+    @Override
+    public synchronized int getActiveQueries() {
+        return queries.size();
+    }
+    
+    @Override
+    public synchronized int getRunningTasks() {
+        return runningTasks;
+    }
+    
+    @Override
+    public synchronized int getQueuedTasks() {
+        return queuedTasks;
+    }
+    
+    @Override
+    public synchronized int getMaxQueuedTasksPerQuery() {
+        int max = 0;
+        for (QueryTasks tasks : queries.values()) {
+            max = Math.max(max, tasks.queued.size());
+        }
+        return max;
+    }
+    
+    @Override
+    public synchronized long getCompletedTasks() {
+        return completedTasks;
+    }
+    
+    @Override
+    public synchronized long getAverageWaitMillis() {
+        long started = completedTasks + runningTasks;
+        return (started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / started));
+    }
+    
+    @Override
+    public synchronized long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+    
+    /**
+     * The queued and running tasks for one query
+     */
+    private static class QueryTasks {
+        private final String queryId;
+        private final Deque<QueryTask> queued = new ArrayDeque<>();
+        private int running = 0;
+        private int priority = Integer.MIN_VALUE;
+        
+        private QueryTasks(String queryId) {
+            this.queryId = queryId;
+        }
+    }
+    
+    /**
+     * A task that releases its query's thread when done
+     */
+    private class QueryTask extends FutureTask<Object> {
+        private final QueryTasks tasks;
+        private final long queuedNanos = System.nanoTime();
+        
+        private QueryTask(QueryTasks tasks, Runnable task) {
+            super(task, null);
+            this.tasks = tasks;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                finished(tasks);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package datawave.core.iterators;
+
+public interface FairShareExecutorMBean {
+    
+    int getMaxThreads();
+    
+    int getMaxThreadsPerQuery();
+    
+    long getPriorityAgingMillis();
+    
+    int getActiveQueries();
+    
+    int getRunningTasks();
+    
+    int getQueuedTasks();
+    
+    int getMaxQueuedTasksPerQuery();
+    
+    long getCompletedTasks();
+    
+    long getAverageWaitMillis();
+    
+    long getMaxWaitMillis();
+    
+}
@@ -1,23 +1,23 @@
 package datawave.core.iterators;
 
+import java.lang.management.ManagementFactory;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
-import org.apache.accumulo.core.util.NamingThreadFactory;
 import org.apache.accumulo.server.util.time.SimpleTimer;
 import org.apache.log4j.Logger;
 
 /**
- * 
+ * Manages the ivarator and evaluation thread pools shared by all of the queries on a tserver. The threads of each pool are shared fairly between the active
+ * queries, with each query limited to a configurable number of threads. The pool metrics are registered with JMX.
  */
 public class IteratorThreadPoolManager {
     private static final Logger log = Logger.getLogger(IteratorThreadPoolManager.class);
@@ -25,9 +25,11 @@ public class IteratorThreadPoolManager {
     private static final String IVARATOR_THREAD_NAME = "DATAWAVE Ivarator";
     private static final String EVALUATOR_THREAD_PROP = "tserver.datawave.evaluation.threads";
     private static final String EVALUATOR_THREAD_NAME = "DATAWAVE Evaluation";
+    private static final String QUERY_THREAD_PROP_SUFFIX = ".per.query";
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
+    private static final String MBEAN_NAME = "datawave.iterators:type=IteratorThreadPool,name=";
     
-    private Map<String,ExecutorService> threadPools = new TreeMap<>();
+    private Map<String,FairShareExecutor> threadPools = new TreeMap<>();
     
     private static final Object instanceSemaphore = new Object();
     private static final String instanceId = Integer.toHexString(instanceSemaphore.hashCode());
@@ -39,23 +41,27 @@ public class IteratorThreadPoolManager {
         createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME, env);
     }
     
-    private ThreadPoolExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env) {
+    private FairShareExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env) {
         final AccumuloConfiguration accumuloConfiguration;
         if (env != null) {
             accumuloConfiguration = env.getConfig();
         } else {
             accumuloConfiguration = DefaultConfiguration.getInstance();
         }
-        final ThreadPoolExecutor service = createExecutorService(getMaxThreads(prop, accumuloConfiguration), name + " (" + instanceId + ')');
+        final String queryProp = prop + QUERY_THREAD_PROP_SUFFIX;
+        int maxThreads = getMaxThreads(prop, accumuloConfiguration, DEFAULT_THREAD_POOL_SIZE);
+        final FairShareExecutor service = new FairShareExecutor(name + " (" + instanceId + ')', maxThreads, getMaxThreads(queryProp, accumuloConfiguration,
+                        maxThreads));
         threadPools.put(name, service);
+        registerMBean(service, name);
         SimpleTimer.getInstance(accumuloConfiguration).schedule(() -> {
             try {
                 
-                int max = getMaxThreads(prop, accumuloConfiguration);
-                if (service.getMaximumPoolSize() != max) {
-                    log.info("Changing " + prop + " to " + max);
-                    service.setCorePoolSize(max);
-                    service.setMaximumPoolSize(max);
+                int max = getMaxThreads(prop, accumuloConfiguration, DEFAULT_THREAD_POOL_SIZE);
+                int maxPerQuery = getMaxThreads(queryProp, accumuloConfiguration, max);
+                if (service.getMaxThreads() != max || service.getMaxThreadsPerQuery() != maxPerQuery) {
+                    log.info("Changing " + prop + " to " + max + " and " + queryProp + " to " + maxPerQuery);
+                    service.setMaxThreads(max, maxPerQuery);
                 }
             } catch (Throwable t) {
                 log.error(t, t);
@@ -64,14 +70,19 @@ public class IteratorThreadPoolManager {
         return service;
     }
     
-    private ThreadPoolExecutor createExecutorService(int maxThreads, String name) {
-        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 5 * 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
-                        new NamingThreadFactory(name));
-        pool.allowCoreThreadTimeOut(true);
-        return pool;
+    private void registerMBean(FairShareExecutor service, String name) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(MBEAN_NAME + ObjectName.quote(name + " (" + instanceId + ')'));
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(service, objectName);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register the " + name + " thread pool metrics", e);
+        }
     }
     
-    private int getMaxThreads(final String prop, AccumuloConfiguration conf) {
+    private int getMaxThreads(final String prop, AccumuloConfiguration conf, int defaultMaxThreads) {
         if (conf != null) {
             Map<String,String> properties = new TreeMap<>();
             conf.getProperties(properties, k -> Objects.equals(k, prop));
@@ -79,7 +90,7 @@ public class IteratorThreadPoolManager {
                 return Integer.parseInt(properties.get(prop));
             }
         }
-        return DEFAULT_THREAD_POOL_SIZE;
+        return defaultMaxThreads;
     }
     
     private static IteratorThreadPoolManager instance(IteratorEnvironment env) {
@@ -93,8 +104,8 @@ public class IteratorThreadPoolManager {
         return instance;
     }
     
-    private Future<?> execute(String name, final Runnable task, final String taskName) {
-        return threadPools.get(name).submit(() -> {
+    private Future<?> execute(String name, final Runnable task, final String taskName, final String queryId) {
+        return threadPools.get(name).submit(queryId, () -> {
             String oldName = Thread.currentThread().getName();
             Thread.currentThread().setName(oldName + " -> " + taskName);
             try {
@@ -106,11 +117,19 @@ public class IteratorThreadPoolManager {
     }
     
     public static Future<?> executeIvarator(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(IVARATOR_THREAD_NAME, task, taskName);
+        return executeIvarator(task, taskName, null, env);
+    }
+    
+    public static Future<?> executeIvarator(Runnable task, String taskName, String queryId, IteratorEnvironment env) {
+        return instance(env).execute(IVARATOR_THREAD_NAME, task, taskName, queryId);
     }
     
     public static Future<?> executeEvaluation(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName);
+        return executeEvaluation(task, taskName, null, env);
+    }
+    
+    public static Future<?> executeEvaluation(Runnable task, String taskName, String queryId, IteratorEnvironment env) {
+        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName, queryId);
     }
     
 }
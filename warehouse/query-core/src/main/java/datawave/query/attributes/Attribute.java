@@ -6,6 +6,7 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import datawave.query.jexl.DatawaveJexlContext;
 import datawave.query.Constants;
+import datawave.webservice.query.result.event.EstimatesSize;
 import org.apache.accumulo.core.data.ArrayByteSequence;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
@@ -13,6 +14,7 @@ import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.log4j.Logger;
 
@@ -21,7 +23,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Collection;
 
-public abstract class Attribute<T extends Comparable<T>> implements WritableComparable<T>, KryoSerializable {
+public abstract class Attribute<T extends Comparable<T>> implements WritableComparable<T>, KryoSerializable, EstimatesSize {
     private static final Logger log = Logger.getLogger(Attribute.class);
     private static final Text EMPTY_TEXT = new Text();
     
@@ -85,6 +87,8 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
     
     private static final ByteSequence EMPTY_BYTE_SEQUENCE = new ArrayByteSequence(new byte[0]);
     
+    private static final ThreadLocal<Key> lastMetadata = new ThreadLocal<>();
+    
     /*
      * Given a key, set the metadata. Expected input keys can be an event key, an fi key, or a tf key. Expected metadata is row=shardid, cf = type\0uid; cq =
      * empty; cv, ts left as is.
@@ -105,9 +109,7 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
                         break;
                     }
                 }
-                this.metadata = new Key(row.getBackingArray(), row.offset(), row.length(), cq.getBackingArray(), nullOffset + 1,
-                                cq.length() - (nullOffset + 1), EMPTY_BYTE_SEQUENCE.getBackingArray(), EMPTY_BYTE_SEQUENCE.offset(),
-                                EMPTY_BYTE_SEQUENCE.length(), cv.getBackingArray(), cv.offset(), cv.length(), key.getTimestamp());
+                this.metadata = createMetadata(row, cq.getBackingArray(), nullOffset + 1, cq.length() - (nullOffset + 1), cv, key.getTimestamp());
             } else if (isTermFrequency(cf)) {
                 // find the second null byte in the cq and take everything before that (cq = DataType\0UID\0Normalized Field Value\0Field Name)
                 final ByteSequence cq = key.getColumnQualifierData();
@@ -122,17 +124,36 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
                         }
                     }
                 }
-                this.metadata = new Key(row.getBackingArray(), row.offset(), row.length(), cq.getBackingArray(), cq.offset(), nullOffset,
-                                EMPTY_BYTE_SEQUENCE.getBackingArray(), EMPTY_BYTE_SEQUENCE.offset(), EMPTY_BYTE_SEQUENCE.length(), cv.getBackingArray(),
-                                cv.offset(), cv.length(), key.getTimestamp());
+                this.metadata = createMetadata(row, cq.getBackingArray(), cq.offset(), nullOffset, cv, key.getTimestamp());
             } else {
-                this.metadata = new Key(row.getBackingArray(), row.offset(), row.length(), cf.getBackingArray(), cf.offset(), cf.length(),
-                                EMPTY_BYTE_SEQUENCE.getBackingArray(), EMPTY_BYTE_SEQUENCE.offset(), EMPTY_BYTE_SEQUENCE.length(), cv.getBackingArray(),
-                                cv.offset(), cv.length(), key.getTimestamp());
+                this.metadata = createMetadata(row, cf.getBackingArray(), cf.offset(), cf.length(), cv, key.getTimestamp());
             }
         }
     }
     
+    /*
+     * Create the metadata of the form shard type\0uid cv, ts. The attributes of a document are built one after another from keys sharing the same row, column
+     * family, visibility and timestamp, so the metadata last created by this thread is reused when it matches rather than each attribute allocating its own. The
+     * metadata is never modified in place, so sharing it is safe.
+     */
+    private static Key createMetadata(ByteSequence row, byte[] cf, int cfOffset, int cfLength, ByteSequence cv, long ts) {
+        Key last = lastMetadata.get();
+        if (last != null && last.getTimestamp() == ts && !last.isDeleted() && matches(last.getRowData(), row.getBackingArray(), row.offset(), row.length())
+                        && matches(last.getColumnFamilyData(), cf, cfOffset, cfLength)
+                        && matches(last.getColumnVisibilityData(), cv.getBackingArray(), cv.offset(), cv.length())
+                        && last.getColumnQualifierData().length() == 0) {
+            return last;
+        }
+        Key metadata = new Key(row.getBackingArray(), row.offset(), row.length(), cf, cfOffset, cfLength, EMPTY_BYTE_SEQUENCE.getBackingArray(),
+                        EMPTY_BYTE_SEQUENCE.offset(), EMPTY_BYTE_SEQUENCE.length(), cv.getBackingArray(), cv.offset(), cv.length(), ts);
+        lastMetadata.set(metadata);
+        return metadata;
+    }
+    
+    private static boolean matches(ByteSequence sequence, byte[] bytes, int offset, int length) {
+        return WritableComparator.compareBytes(sequence.getBackingArray(), sequence.offset(), sequence.length(), bytes, offset, length) == 0;
+    }
+    
     protected boolean isFieldIndex(ByteSequence cf) {
         return (cf.length() >= 3 && cf.byteAt(0) == 'f' && cf.byteAt(1) == 'i' && cf.byteAt(2) == '\0');
     }
@@ -275,6 +296,11 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
         return size;
     }
     
+    @Override
+    public long estimatedSizeInBytes() {
+        return sizeInBytes();
+    }
+    
     // for use by subclasses to estimate size
     protected long sizeInBytes(long extra) {
         return roundUp(extra + 13) + getMetadataSizeInBytes();
@@ -26,6 +26,9 @@ public class DateContent extends Attribute<DateContent> implements Serializable
     
     private static final DateNormalizer normalizer = new DateNormalizer();
     
+    // the size of a calendar does not depend on its value, so it is only measured once
+    private static final long CALENDAR_SIZE = ObjectSizeOf.Sizer.getObjectSize(Calendar.getInstance());
+    
     private Calendar value;
     private String normalizedValue;
     
@@ -49,7 +52,7 @@ public class DateContent extends Attribute<DateContent> implements Serializable
     
     @Override
     public long sizeInBytes() {
-        return super.sizeInBytes(8) + sizeInBytes(normalizedValue) + ObjectSizeOf.Sizer.getObjectSize(value);
+        return super.sizeInBytes(8) + sizeInBytes(normalizedValue) + CALENDAR_SIZE;
         // 8 for 2 object references
     }
     
@@ -1,6 +1,6 @@
 package datawave.query.attributes;
 
-import datawave.webservice.query.data.ObjectSizeOf;
+import datawave.webservice.query.result.event.EstimatesSize;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.log4j.Logger;
 
@@ -33,7 +33,10 @@ public class FieldValueCardinality implements Comparable<FieldValueCardinality>
         long size = 8 + 16 + Attribute.sizeInBytes(lower) + Attribute.sizeInBytes(upper) + Attribute.sizeInBytes(myValue);
         // 8 is object overhead
         // 16 is 4 object references
-        size += ObjectSizeOf.Sizer.getObjectSize(estimate);
+        if (estimate != null) {
+            // 16 for the estimator overhead plus its registers
+            size += 16 + EstimatesSize.Estimator.roundUp(estimate.sizeof());
+        }
         return size;
     }
     
@@ -11,7 +11,6 @@ import datawave.data.normalizer.GeometryNormalizer;
 import datawave.data.normalizer.Normalizer;
 import datawave.query.jexl.DatawaveJexlContext;
 import datawave.query.collections.FunctionalSet;
-import datawave.webservice.query.data.ObjectSizeOf;
 import org.apache.accumulo.core.data.Key;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.hadoop.io.WritableUtils;
@@ -46,8 +45,10 @@ public class Geometry extends Attribute<Geometry> implements Serializable {
     
     @Override
     public long sizeInBytes() {
-        return ObjectSizeOf.Sizer.getObjectSize(geometry) + super.sizeInBytes(4);
+        return (geometry == null ? 0 : 64 + (48L * geometry.getNumPoints())) + super.sizeInBytes(4);
         // 4 for geometry reference
+        // 64 for the geometry, its envelope and coordinate array
+        // 48 for each coordinate and its reference
     }
     
     private byte[] write() {
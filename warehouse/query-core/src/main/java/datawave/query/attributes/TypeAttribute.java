@@ -13,7 +13,7 @@ import datawave.data.type.Type;
 import datawave.query.jexl.DatawaveJexlContext;
 import datawave.query.collections.FunctionalSet;
 
-import datawave.webservice.query.data.ObjectSizeOf;
+import datawave.webservice.query.result.event.EstimatesSize;
 import org.apache.accumulo.core.data.Key;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.hadoop.io.WritableUtils;
@@ -42,7 +42,7 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public long sizeInBytes() {
-        return ObjectSizeOf.Sizer.getObjectSize(datawaveType) + super.sizeInBytes(4);
+        return EstimatesSize.Estimator.sizeOfValue(datawaveType) + super.sizeInBytes(4);
         // 4 for datawaveType reference
     }
     
@@ -3,6 +3,7 @@ package datawave.query.config;
 import java.util.List;
 
 import datawave.data.type.Type;
+import datawave.query.iterator.EdgeAggregationIterator;
 import datawave.query.model.edge.EdgeQueryModel;
 import datawave.query.tables.edge.EdgeQueryLogic;
 import datawave.webservice.query.Query;
@@ -35,6 +36,8 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
     
     public static final String SUMMARIZE = "summarize";
     
+    public static final String DATE_ROLLUP = "date.rollup";
+    
     // Query model defaults...
     private String modelName = "DATAWAVE_EDGE";
     private String modelTableName = "DatawaveMetadata";
@@ -56,6 +59,9 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
     // Use to aggregate results will be false by default
     private boolean aggregateResults = false;
     
+    // the date period to roll the edges up to on the tablet servers, or null to return every edge
+    private EdgeAggregationIterator.Rollup dateRollup = null;
+    
     public EdgeQueryConfiguration(EdgeQueryLogic configuredLogic, Query query) {
         super(configuredLogic);
         setDataTypes(configuredLogic.getDataTypes());
@@ -143,6 +149,11 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
             if (p != null && !p.getParameterValue().isEmpty()) {
                 this.aggregateResults = Boolean.parseBoolean(p.getParameterValue());
             }
+            
+            p = settings.findParameter(DATE_ROLLUP);
+            if (p != null && !p.getParameterValue().isEmpty()) {
+                this.dateRollup = EdgeAggregationIterator.Rollup.valueOf(p.getParameterValue().toUpperCase());
+            }
         }
         return this;
     }
@@ -179,6 +190,14 @@ public class EdgeQueryConfiguration extends GenericQueryConfiguration {
         this.aggregateResults = aggregateResults;
     }
     
+    public EdgeAggregationIterator.Rollup getDateRollup() {
+        return dateRollup;
+    }
+    
+    public void setDateRollup(EdgeAggregationIterator.Rollup dateRollup) {
+        this.dateRollup = dateRollup;
+    }
+    
     public EdgeQueryModel getEdgeQueryModel() {
         return this.edgeQueryModel;
     }
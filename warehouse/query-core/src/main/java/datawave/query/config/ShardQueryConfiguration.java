@@ -7,6 +7,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
 import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
 import datawave.data.type.DiscreteIndexType;
 import datawave.data.type.NoOpType;
@@ -148,6 +149,10 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     // BatchScanner and query results options
     private Integer numQueryThreads = 8;
     private Integer numLookupThreads = 8;
+    // whether global index lookups are cached and shared with other queries on the web server
+    private boolean indexLookupCacheEnabled = false;
+    // whether planned query trees are cached and shared with other queries on the web server
+    private boolean queryPlanCacheEnabled = false;
     private Integer numDateIndexThreads = 8;
     private Integer maxDocScanTimeout = -1;
     // A counter used to uniquely identify FSTs generated in the
@@ -276,11 +281,15 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private List<IvaratorCacheDirConfig> ivaratorCacheDirConfigs = Collections.emptyList();
     private String ivaratorFstHdfsBaseURIs = null;
     private int ivaratorCacheBufferSize = 10000;
+    private boolean ivaratorCacheOffHeap = false;
     private long ivaratorCacheScanPersistThreshold = 100000L;
     private long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     private int maxFieldIndexRangeSplit = 11;
     private int ivaratorMaxOpenFiles = 100;
     private int ivaratorNumRetries = 2;
+    // the number of keys and bytes of keys read ahead from the sorted files while an ivarator merges them
+    private int ivaratorMergePrefetchSize = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_SIZE;
+    private long ivaratorMergePrefetchMaxBytes = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_MAX_BYTES;
     private int maxIvaratorSources = 33;
     private long maxIvaratorResults = -1;
     private int maxEvaluationPipelines = 25;
@@ -300,9 +309,13 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean compositeFilterFunctionsEnabled = false;
     
     private int groupFieldsBatchSize;
+    // the approximate memory used for the groups on the web server before they are spilled to local disk
+    private long groupFieldsMaxMemoryBytes = 256L * 1024 * 1024;
     private boolean accrueStats = false;
     private Set<String> groupFields = new HashSet<>(0);
     private Set<String> uniqueFields = new HashSet<>(0);
+    // use an exact dedup store that spills to disk for unique fields and unsorted UIDs instead of a bloom filter
+    private boolean exactDedup = false;
     private boolean cacheModel = false;
     /**
      * should the sizes of documents be tracked for this query
@@ -372,6 +385,8 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setCleanupShardsAndDaysQueryHints(other.isCleanupShardsAndDaysQueryHints());
         this.setNumQueryThreads(other.getNumQueryThreads());
         this.setNumIndexLookupThreads(other.getNumIndexLookupThreads());
+        this.setIndexLookupCacheEnabled(other.isIndexLookupCacheEnabled());
+        this.setQueryPlanCacheEnabled(other.isQueryPlanCacheEnabled());
         this.setNumDateIndexThreads(other.getNumDateIndexThreads());
         this.setMaxDocScanTimeout(other.getMaxDocScanTimeout());
         this.setFstCount(other.getFstCount());
@@ -453,11 +468,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setIvaratorCacheDirConfigs(null == other.getIvaratorCacheDirConfigs() ? null : Lists.newArrayList(other.getIvaratorCacheDirConfigs()));
         this.setIvaratorFstHdfsBaseURIs(other.getIvaratorFstHdfsBaseURIs());
         this.setIvaratorCacheBufferSize(other.getIvaratorCacheBufferSize());
+        this.setIvaratorCacheOffHeap(other.isIvaratorCacheOffHeap());
         this.setIvaratorCacheScanPersistThreshold(other.getIvaratorCacheScanPersistThreshold());
         this.setIvaratorCacheScanTimeout(other.getIvaratorCacheScanTimeout());
         this.setMaxFieldIndexRangeSplit(other.getMaxFieldIndexRangeSplit());
         this.setIvaratorMaxOpenFiles(other.getIvaratorMaxOpenFiles());
         this.setIvaratorNumRetries(other.getIvaratorNumRetries());
+        this.setIvaratorMergePrefetchSize(other.getIvaratorMergePrefetchSize());
+        this.setIvaratorMergePrefetchMaxBytes(other.getIvaratorMergePrefetchMaxBytes());
         this.setMaxIvaratorSources(other.getMaxIvaratorSources());
         this.setMaxIvaratorResults(other.getMaxIvaratorResults());
         this.setMaxEvaluationPipelines(other.getMaxEvaluationPipelines());
@@ -472,9 +490,11 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setIndexOnlyFilterFunctionsEnabled(other.isIndexOnlyFilterFunctionsEnabled());
         this.setCompositeFilterFunctionsEnabled(other.isCompositeFilterFunctionsEnabled());
         this.setGroupFieldsBatchSize(other.getGroupFieldsBatchSize());
+        this.setGroupFieldsMaxMemoryBytes(other.getGroupFieldsMaxMemoryBytes());
         this.setAccrueStats(other.getAccrueStats());
         this.setGroupFields(null == other.getGroupFields() ? null : Sets.newHashSet(other.getGroupFields()));
         this.setUniqueFields(null == other.getUniqueFields() ? null : Sets.newHashSet(other.getUniqueFields()));
+        this.setExactDedup(other.isExactDedup());
         this.setCacheModel(other.getCacheModel());
         this.setTrackSizes(other.isTrackSizes());
         this.setContentFieldNames(null == other.getContentFieldNames() ? null : Lists.newArrayList(other.getContentFieldNames()));
@@ -672,6 +692,22 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.numLookupThreads = numIndexLookupThreads;
     }
     
+    public boolean isIndexLookupCacheEnabled() {
+        return indexLookupCacheEnabled;
+    }
+    
+    public void setIndexLookupCacheEnabled(boolean indexLookupCacheEnabled) {
+        this.indexLookupCacheEnabled = indexLookupCacheEnabled;
+    }
+    
+    public boolean isQueryPlanCacheEnabled() {
+        return queryPlanCacheEnabled;
+    }
+    
+    public void setQueryPlanCacheEnabled(boolean queryPlanCacheEnabled) {
+        this.queryPlanCacheEnabled = queryPlanCacheEnabled;
+    }
+    
     public Integer getNumDateIndexThreads() {
         return numDateIndexThreads;
     }
@@ -1149,6 +1185,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.ivaratorCacheBufferSize = ivaratorCacheBufferSize;
     }
     
+    public boolean isIvaratorCacheOffHeap() {
+        return ivaratorCacheOffHeap;
+    }
+    
+    public void setIvaratorCacheOffHeap(boolean ivaratorCacheOffHeap) {
+        this.ivaratorCacheOffHeap = ivaratorCacheOffHeap;
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return ivaratorCacheScanPersistThreshold;
     }
@@ -1189,6 +1233,22 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.ivaratorNumRetries = ivaratorNumRetries;
     }
     
+    public int getIvaratorMergePrefetchSize() {
+        return ivaratorMergePrefetchSize;
+    }
+    
+    public void setIvaratorMergePrefetchSize(int ivaratorMergePrefetchSize) {
+        this.ivaratorMergePrefetchSize = ivaratorMergePrefetchSize;
+    }
+    
+    public long getIvaratorMergePrefetchMaxBytes() {
+        return ivaratorMergePrefetchMaxBytes;
+    }
+    
+    public void setIvaratorMergePrefetchMaxBytes(long ivaratorMergePrefetchMaxBytes) {
+        this.ivaratorMergePrefetchMaxBytes = ivaratorMergePrefetchMaxBytes;
+    }
+    
     public int getMaxIvaratorSources() {
         return maxIvaratorSources;
     }
@@ -1441,6 +1501,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         return StringUtils.join(this.getGroupFields(), Constants.PARAM_VALUE_SEP);
     }
     
+    public long getGroupFieldsMaxMemoryBytes() {
+        return groupFieldsMaxMemoryBytes;
+    }
+    
+    public void setGroupFieldsMaxMemoryBytes(long groupFieldsMaxMemoryBytes) {
+        this.groupFieldsMaxMemoryBytes = groupFieldsMaxMemoryBytes;
+    }
+    
     public int getGroupFieldsBatchSize() {
         return groupFieldsBatchSize;
     }
@@ -1461,6 +1529,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.uniqueFields = deconstruct(uniqueFields);
     }
     
+    public boolean isExactDedup() {
+        return exactDedup;
+    }
+    
+    public void setExactDedup(boolean exactDedup) {
+        this.exactDedup = exactDedup;
+    }
+    
     public String getUniqueFieldsAsString() {
         return StringUtils.join(this.getUniqueFields(), Constants.PARAM_VALUE_SEP);
     }
@@ -176,6 +176,7 @@ public class DefaultExtendedEdgeQueryLogic extends EdgeQueryLogic {
         scanner.setRanges(qData.getRanges());
         
         addCustomFilters(qData, currentIteratorPriority);
+        addAggregationIterator(qData, config.getDateRollup());
         
         for (IteratorSetting setting : qData.getSettings()) {
             scanner.addScanIterator(setting);
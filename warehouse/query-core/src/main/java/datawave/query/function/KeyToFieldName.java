@@ -1,8 +1,11 @@
 package datawave.query.function;
 
 import java.nio.charset.CharacterCodingException;
+import java.util.Arrays;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
@@ -20,6 +23,17 @@ import com.google.common.collect.Maps;
  */
 public class KeyToFieldName implements Function<Entry<Key,Value>,Entry<Key,String>> {
     
+    /**
+     * The max number of field names to intern, as a guard against an unexpectedly large schema. Once full any further names are simply decoded.
+     */
+    private static final int MAX_FIELD_NAMES = 10000;
+    
+    /**
+     * The field names seen so far, so that the attributes of every document share one String per field name rather than decoding their own. Only names
+     * without grouping context are interned, as the grouping context is unbounded and would fill the map with names that are rarely seen again.
+     */
+    private static final ConcurrentHashMap<ByteSequence,String> fieldNames = new ConcurrentHashMap<>();
+    
     private boolean includeGroupingContext = false;
     
     public KeyToFieldName() {}
@@ -38,15 +52,19 @@ public class KeyToFieldName implements Function<Entry<Key,Value>,Entry<Key,Strin
     public String getFieldName(Key k) {
         
         int index = -1;
+        boolean grouped = false;
         
         ByteSequence sequence = k.getColumnQualifierData();
         
         byte[] arrayReference = sequence.getBackingArray();
         
         for (int i = 0; i < sequence.length(); i++) {
-            if (!includeGroupingContext && arrayReference[i] == '.') {
-                index = i;
-                break;
+            if (arrayReference[i] == '.') {
+                if (!includeGroupingContext) {
+                    index = i;
+                    break;
+                }
+                grouped = true;
             }
             if (arrayReference[i] == 0x00) {
                 index = i;
@@ -58,11 +76,17 @@ public class KeyToFieldName implements Function<Entry<Key,Value>,Entry<Key,Strin
             throw new IllegalArgumentException("Could not find null-byte contained in columnqualifier for key: " + k);
         }
         
-        try {
-            
-            return Text.decode(arrayReference, 0, index);
-        } catch (CharacterCodingException e) {
-            throw new IllegalArgumentException(e);
+        String fieldName = (grouped ? null : fieldNames.get(new ArrayByteSequence(arrayReference, 0, index)));
+        if (fieldName == null) {
+            try {
+                fieldName = Text.decode(arrayReference, 0, index);
+            } catch (CharacterCodingException e) {
+                throw new IllegalArgumentException(e);
+            }
+            if (!grouped && fieldNames.size() < MAX_FIELD_NAMES) {
+                fieldNames.putIfAbsent(new ArrayByteSequence(Arrays.copyOf(arrayReference, index)), fieldName);
+            }
         }
+        return fieldName;
     }
 }
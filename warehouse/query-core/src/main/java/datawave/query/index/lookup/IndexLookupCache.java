@@ -0,0 +1,313 @@
+package datawave.query.index.lookup;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+
+/**
+ * A cache of global index lookups shared by all of the queries on a web server. The entries returned by the index scan for a term are cached by the
+ * authorizations, term, field, day range and the options of the lookup iterators, so that queries repeating the same lookups (for example dashboards refreshing
+ * the same queries) skip the index scan. The cache is bounded by the estimated size of the cached entries and by a time to live, which bounds how stale a cached
+ * lookup can be, and is invalidated when the metadata caches are evicted.
+ * <p>
+ * A lookup is only cached once its scan has been fully read, and lookups larger than a fraction of the cache are not cached at all.
+ */
+public class IndexLookupCache implements IndexLookupCacheMBean {
+    private static final Logger log = Logger.getLogger(IndexLookupCache.class);
+    
+    public static final String MAX_BYTES_PROPERTY = "datawave.query.index.cache.bytes";
+    public static final String TTL_PROPERTY = "datawave.query.index.cache.ttl.seconds";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_TTL_SECONDS = 300;
+    
+    /**
+     * The largest fraction of the cache a single lookup may use
+     */
+    private static final int MAX_LOOKUP_FRACTION = 16;
+    
+    /**
+     * The estimated overhead of a cached entry beyond the bytes of its key and value
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    
+    private static IndexLookupCache instance = null;
+    
+    private final long maxBytes;
+    private final long ttlSeconds;
+    private final Cache<String,List<Entry<Key,Value>>> cache;
+    private final AtomicLong abandoned = new AtomicLong();
+    
+    public IndexLookupCache(long maxBytes, long ttlSeconds) {
+        this.maxBytes = maxBytes;
+        this.ttlSeconds = ttlSeconds;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<String,List<Entry<Key,Value>>>() {
+            @Override
+            public int weigh(String key, List<Entry<Key,Value>> entries) {
+                return (int) Math.min(Integer.MAX_VALUE, key.length() * 2 + getSize(entries));
+            }
+        }).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).recordStats().build();
+    }
+    
+    /**
+     * @return the cache shared by the web server, sized using the {@value #MAX_BYTES_PROPERTY} and {@value #TTL_PROPERTY} system properties
+     */
+    public static synchronized IndexLookupCache getInstance() {
+        if (instance == null) {
+            instance = new IndexLookupCache(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES), Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS));
+            instance.registerMBean();
+        }
+        return instance;
+    }
+    
+    /**
+     * Invalidate the shared cache, if it has been created
+     */
+    public static synchronized void invalidateInstance() {
+        if (instance != null) {
+            instance.invalidateAll();
+        }
+    }
+    
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("datawave.query:type=IndexLookupCache");
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register the index lookup cache metrics", e);
+        }
+    }
+    
+    /**
+     * Build the cache key for a lookup
+     *
+     * @param tableName
+     *            the index table
+     * @param auths
+     *            the authorizations of the lookup
+     * @param fieldName
+     *            the field
+     * @param range
+     *            the range of the term and days
+     * @param options
+     *            anything else which changes the entries returned, such as the iterator settings
+     * @return the key
+     */
+    public static String key(String tableName, Collection<Authorizations> auths, String fieldName, Range range, Object... options) {
+        StringBuilder key = new StringBuilder();
+        key.append(tableName).append('\0').append(fieldName).append('\0');
+        appendRange(key, range);
+        // the authorizations are sorted so that the same auths in a different order share a key
+        TreeSet<String> sortedAuths = new TreeSet<>();
+        for (Authorizations authorizations : auths) {
+            TreeSet<String> sorted = new TreeSet<>();
+            for (byte[] auth : authorizations.getAuthorizations()) {
+                sorted.add(new String(auth, StandardCharsets.UTF_8));
+            }
+            sortedAuths.add(sorted.toString());
+        }
+        key.append('\0').append(sortedAuths);
+        for (Object option : options) {
+            key.append('\0').append(option);
+        }
+        return key.toString();
+    }
+    
+    /**
+     * Append the full bounds of a range. Range.toString() truncates long rows, which would let different terms sharing a prefix share a cache entry.
+     */
+    private static void appendRange(StringBuilder key, Range range) {
+        if (range.isInfiniteStartKey()) {
+            key.append("-inf");
+        } else {
+            key.append(range.isStartKeyInclusive() ? '[' : '(').append(range.getStartKey().toStringNoTruncate());
+        }
+        key.append('\0');
+        if (range.isInfiniteStopKey()) {
+            key.append("+inf");
+        } else {
+            key.append(range.getEndKey().toStringNoTruncate()).append(range.isEndKeyInclusive() ? ']' : ')');
+        }
+    }
+    
+    /**
+     * Get the entries of a cached lookup
+     *
+     * @param key
+     *            the lookup key
+     * @return the entries, or null if the lookup is not cached
+     */
+    public Iterator<Entry<Key,Value>> get(String key) {
+        List<Entry<Key,Value>> entries = cache.getIfPresent(key);
+        return entries == null ? null : entries.iterator();
+    }
+    
+    /**
+     * Wrap the entries of a lookup so that they are cached once they have all been read, for a scan which has always returned every entry once it is exhausted
+     *
+     * @param key
+     *            the lookup key
+     * @param entries
+     *            the entries returned by the index scan
+     * @return the entries
+     */
+    public Iterator<Entry<Key,Value>> record(String key, Iterator<Entry<Key,Value>> entries) {
+        return record(key, entries, () -> true);
+    }
+    
+    /**
+     * Wrap the entries of a lookup so that they are cached once they have all been read
+     *
+     * @param key
+     *            the lookup key
+     * @param entries
+     *            the entries returned by the index scan
+     * @param complete
+     *            whether the scan ran to completion once it is exhausted, rather than being closed, timing out or failing part way through
+     * @return the entries
+     */
+    public Iterator<Entry<Key,Value>> record(String key, Iterator<Entry<Key,Value>> entries, BooleanSupplier complete) {
+        return new RecordingIterator(key, entries, complete, maxBytes / MAX_LOOKUP_FRACTION);
+    }
+    
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    @Override
+    public long getTimeToLiveSeconds() {
+        return ttlSeconds;
+    }
+    
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+    
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+    
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+    
+    @Override
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+    
+    @Override
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+    
+    @Override
+    public long getAbandonedCount() {
+        return abandoned.get();
+    }
+    
+    private static long getSize(Entry<Key,Value> entry) {
+        return entry.getKey().getSize() + entry.getValue().getSize() + ENTRY_OVERHEAD_BYTES;
+    }
+    
+    private static long getSize(List<Entry<Key,Value>> entries) {
+        long size = 0;
+        for (Entry<Key,Value> entry : entries) {
+            size += getSize(entry);
+        }
+        return size;
+    }
+    
+    /**
+     * Copies the entries as they are read, and caches them when the scan is exhausted after running to completion
+     */
+    private class RecordingIterator implements Iterator<Entry<Key,Value>> {
+        private final String key;
+        private final Iterator<Entry<Key,Value>> delegate;
+        private final BooleanSupplier complete;
+        private final long maxSize;
+        private List<Entry<Key,Value>> recorded = new ArrayList<>();
+        private long size = 0;
+        
+        private RecordingIterator(String key, Iterator<Entry<Key,Value>> delegate, BooleanSupplier complete, long maxSize) {
+            this.key = key;
+            this.delegate = delegate;
+            this.complete = complete;
+            this.maxSize = maxSize;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && recorded != null) {
+                // a session which was closed or failed part way through also runs out of entries, but it did not return all of them
+                if (complete.getAsBoolean()) {
+                    cache.put(key, Collections.unmodifiableList(recorded));
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Not caching the index lookup for " + key + " because its scan did not complete");
+                }
+                recorded = null;
+            }
+            return hasNext;
+        }
+        
+        @Override
+        public Entry<Key,Value> next() {
+            Entry<Key,Value> entry = delegate.next();
+            if (recorded != null) {
+                // the scanners may reuse their keys and values, so keep our own copies
+                Entry<Key,Value> copy = Maps.immutableEntry(new Key(entry.getKey()), new Value(entry.getValue()));
+                size += getSize(copy);
+                if (size > maxSize) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Not caching the index lookup for " + key + " because it exceeds " + maxSize + " bytes");
+                    }
+                    abandoned.incrementAndGet();
+                    recorded = null;
+                } else {
+                    recorded.add(copy);
+                }
+            }
+            return entry;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package datawave.query.index.lookup;
+
+public interface IndexLookupCacheMBean {
+    
+    long getMaxBytes();
+    
+    long getTimeToLiveSeconds();
+    
+    long getSize();
+    
+    long getHitCount();
+    
+    long getMissCount();
+    
+    double getHitRate();
+    
+    long getEvictionCount();
+    
+    long getAbandonedCount();
+    
+    void invalidateAll();
+    
+}
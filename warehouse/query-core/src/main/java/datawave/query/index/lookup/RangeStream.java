@@ -30,6 +30,7 @@ import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
 import datawave.query.planner.QueryPlan;
 import datawave.query.tables.RangeStreamScanner;
 import datawave.query.tables.ScannerFactory;
+import datawave.query.tables.ScannerSession;
 import datawave.query.tables.SessionOptions;
 import datawave.query.util.MetadataHelper;
 import datawave.query.util.QueryScannerHelper;
@@ -84,6 +85,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -142,6 +144,11 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
     
     protected Set<String> indexOnlyFields = Sets.newHashSet();
     
+    /**
+     * The cache of index lookups shared between queries, or null if lookups are not cached
+     */
+    protected IndexLookupCache indexLookupCache = null;
+    
     public RangeStream(ShardQueryConfiguration config, ScannerFactory scanners, MetadataHelper metadataHelper) {
         this.config = config;
         this.scanners = scanners;
@@ -153,6 +160,9 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         streamExecutor = new ThreadPoolExecutor(executeLookupMin, maxLookup, 100, TimeUnit.MILLISECONDS, runnables);
         fieldDataTypes = config.getQueryFieldsDatatypes();
         collapseUids = config.getCollapseUids();
+        if (config.isIndexLookupCacheEnabled()) {
+            indexLookupCache = IndexLookupCache.getInstance();
+        }
         try {
             Set<String> ioFields = metadataHelper.getIndexOnlyFields(null);
             if (null != ioFields) {
@@ -451,6 +461,22 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
             // two scenarios
             Iterator<Tuple2<String,IndexInfo>> itr = null;
             int stackStart = config.getBaseIteratorPriority();
+            Range range = rangeForTerm(literal, fieldName, config);
+            
+            // skip the scan if another query has already made this lookup
+            String cacheKey = null;
+            if (indexLookupCache != null) {
+                cacheKey = IndexLookupCache.key(config.getIndexTableName(), config.getAuthorizations(), fieldName, range, config.getDatatypeFilterAsString(),
+                                limitScanners, setCondenseUids, createUidsIteratorClass.getName(), createCondensedUidIteratorClass.getName(), collapseUids,
+                                config.getParseTldUids(), config.getShardsPerDayThreshold(), compressUidsInRangeStream);
+                Iterator<Entry<Key,Value>> cached = indexLookupCache.get(cacheKey);
+                if (cached != null) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Using cached index lookup for " + fieldName + ", literal= " + literal);
+                    }
+                    return ScannerStream.initialized(Iterators.transform(cached, new EntryParser(node, fieldName, literal, indexOnlyFields)), node);
+                }
+            }
             
             if (limitScanners) {
                 
@@ -487,9 +513,9 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                     String queryString = fieldName + "=='" + literal + "'";
                     options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
                     
-                    scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config))).setOptions(options);
+                    scanSession.setRanges(Collections.singleton(range)).setOptions(options);
                     
-                    itr = Iterators.transform(scanSession, new EntryParser(node, fieldName, literal, indexOnlyFields));
+                    itr = Iterators.transform(cacheLookup(cacheKey, scanSession), new EntryParser(node, fieldName, literal, indexOnlyFields));
                     
                 } else {
                     // Setup the CreateUidsIterator
@@ -514,15 +540,15 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                     String queryString = fieldName + "=='" + literal + "'";
                     options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
                     
-                    scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config))).setOptions(options);
+                    scanSession.setRanges(Collections.singleton(range)).setOptions(options);
                     
-                    itr = Iterators.transform(scanSession, new EntryParser(node, fieldName, literal, indexOnlyFields));
+                    itr = Iterators.transform(cacheLookup(cacheKey, scanSession), new EntryParser(node, fieldName, literal, indexOnlyFields));
                 }
                 
             } else {
                 
                 BatchScanner scanner = scanners.newScanner(config.getIndexTableName(), config.getAuthorizations(), 1, config.getQuery());
-                scanner.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config)));
+                scanner.setRanges(Collections.singleton(range));
                 scanner.fetchColumnFamily(new Text(fieldName));
                 scanner.addScanIterator(makeDataTypeFilter(config, stackStart++));
                 
@@ -531,7 +557,7 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                 uidSetting.addOption(CreateUidsIterator.PARSE_TLD_UIDS, Boolean.valueOf(config.getParseTldUids()).toString());
                 scanner.addScanIterator(uidSetting);
                 
-                itr = Iterators.transform(scanner.iterator(), new EntryParser(node, fieldName, literal, indexOnlyFields));
+                itr = Iterators.transform(cacheLookup(cacheKey, scanner.iterator()), new EntryParser(node, fieldName, literal, indexOnlyFields));
             }
             
             /*
@@ -548,6 +574,34 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         }
     }
     
+    /**
+     * Cache the entries of an index lookup once they have been read, if lookups are cached
+     * 
+     * @param cacheKey
+     *            the lookup key, or null if lookups are not cached
+     * @param entries
+     * @return the entries
+     */
+    protected Iterator<Entry<Key,Value>> cacheLookup(String cacheKey, Iterator<Entry<Key,Value>> entries) {
+        return cacheKey == null ? entries : indexLookupCache.record(cacheKey, entries);
+    }
+    
+    /**
+     * Cache the entries of a scanner session once they have been read, if lookups are cached and the session scanned all of its ranges
+     * 
+     * @param cacheKey
+     *            the lookup key, or null if lookups are not cached
+     * @param session
+     * @return the entries
+     */
+    protected Iterator<Entry<Key,Value>> cacheLookup(String cacheKey, ScannerSession session) {
+        return cacheKey == null ? session : indexLookupCache.record(cacheKey, session, session::isComplete);
+    }
+    
+    public void setIndexLookupCache(IndexLookupCache indexLookupCache) {
+        this.indexLookupCache = indexLookupCache;
+    }
+    
     /*
      * Presume that functions have already been expanded with their index query parts @see QueryIndexQueryExpandingVisitor
      */
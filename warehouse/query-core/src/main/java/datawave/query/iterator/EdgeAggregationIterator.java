@@ -0,0 +1,259 @@
+package datawave.query.iterator;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import datawave.iterators.EdgeCombiner;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Rolls up the edges returned by an edge query on the tablet servers, so that only the aggregated edges are sent back instead of every edge key.
+ * <p>
+ * The edges of a row and column family are grouped by the date in the first piece of their column qualifier, truncated to the requested rollup, along with the
+ * rest of the qualifier. The values of each group are merged with the {@link EdgeCombiner}, which sums the counts and histograms, ORs the hourly bitmasks and
+ * unions the sketches of the stats link edges, and the visibilities of the group are and'ed together. Since the edges of one date period are not contiguous
+ * within a row and column family, all of its edges are read before any of the aggregated edges are returned. The ranges scanned are expected to start at a row
+ * or column family, unless a scan is resumed after an aggregated edge.
+ */
+public class EdgeAggregationIterator implements SortedKeyValueIterator<Key,Value>, OptionDescriber {
+    private static final Logger log = Logger.getLogger(EdgeAggregationIterator.class);
+    
+    public static final String ROLLUP_OPTION = "rollup";
+    
+    private static final byte COL_SEPARATOR = '/';
+    
+    public enum Rollup {
+        DAY(8), MONTH(6);
+        
+        private final int dateLength;
+        
+        Rollup(int dateLength) {
+            this.dateLength = dateLength;
+        }
+        
+        public int getDateLength() {
+            return dateLength;
+        }
+    }
+    
+    private SortedKeyValueIterator<Key,Value> source;
+    private Rollup rollup = Rollup.DAY;
+    private final EdgeCombiner combiner = new EdgeCombiner();
+    
+    private Range range;
+    private Text row;
+    private Text colFam;
+    private final TreeMap<Text,Aggregate> aggregates = new TreeMap<>();
+    
+    private Key topKey;
+    private Value topValue;
+    
+    /**
+     * The edges being merged into one aggregated edge
+     */
+    private class Aggregate {
+        private Key firstKey;
+        private Value value;
+        private final Set<Text> visibilities = new TreeSet<>();
+        private long timestamp;
+        
+        private Aggregate(Key key, Value value) {
+            this.firstKey = new Key(key);
+            this.value = new Value(value.get(), true);
+            this.visibilities.add(key.getColumnVisibility());
+            this.timestamp = key.getTimestamp();
+        }
+        
+        private void add(Key key, Value next) {
+            if (firstKey != null) {
+                // normalize the first value against its own key, as the combiner falls back to the date of the key for a missing load date
+                value = combiner.reduce(firstKey, Iterators.singletonIterator(value));
+                firstKey = null;
+            }
+            value = combiner.reduce(key, Iterators.forArray(value, next));
+            visibilities.add(key.getColumnVisibility());
+            timestamp = Math.max(timestamp, key.getTimestamp());
+        }
+        
+        private Text getVisibility() {
+            if (visibilities.size() == 1) {
+                return visibilities.iterator().next();
+            }
+            StringBuilder expression = new StringBuilder();
+            for (Text visibility : visibilities) {
+                if (visibility.getLength() > 0) {
+                    if (expression.length() > 0) {
+                        expression.append('&');
+                    }
+                    expression.append('(').append(visibility).append(')');
+                }
+            }
+            return new Text(new ColumnVisibility(expression.toString()).flatten());
+        }
+    }
+    
+    public EdgeAggregationIterator() {}
+    
+    private EdgeAggregationIterator(EdgeAggregationIterator other, IteratorEnvironment env) {
+        this.source = other.source.deepCopy(env);
+        this.rollup = other.rollup;
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        this.source = source;
+        if (!validateOptions(options)) {
+            throw new IllegalArgumentException("Invalid options for " + getClass().getSimpleName() + ": " + options);
+        }
+        if (options.containsKey(ROLLUP_OPTION)) {
+            rollup = Rollup.valueOf(options.get(ROLLUP_OPTION));
+        }
+    }
+    
+    @Override
+    public IteratorOptions describeOptions() {
+        IteratorOptions io = new IteratorOptions("edgeAggregation", "EdgeAggregationIterator rolls up the edges of a row and column family by date", null, null);
+        io.addNamedOption(ROLLUP_OPTION, "The date period to roll the edges up to, one of DAY or MONTH (default DAY)");
+        return io;
+    }
+    
+    @Override
+    public boolean validateOptions(Map<String,String> options) {
+        String value = options.get(ROLLUP_OPTION);
+        if (value != null) {
+            try {
+                Rollup.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+        return new EdgeAggregationIterator(this, env);
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        this.range = range;
+        aggregates.clear();
+        
+        // the edges of a group may precede the start of the range (e.g. when a scan is resumed after a returned edge), so start from the
+        // beginning of the row and column family and skip the aggregated edges which fall before the range
+        Range seekRange = range;
+        Key start = range.getStartKey();
+        if (start != null) {
+            seekRange = new Range(new Key(start.getRow(), start.getColumnFamily()), true, range.getEndKey(), range.isEndKeyInclusive());
+        }
+        source.seek(seekRange, columnFamilies, inclusive);
+        findTop();
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return topKey != null;
+    }
+    
+    @Override
+    public void next() throws IOException {
+        findTop();
+    }
+    
+    @Override
+    public Key getTopKey() {
+        return topKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+        return topValue;
+    }
+    
+    private void findTop() throws IOException {
+        topKey = null;
+        topValue = null;
+        while (topKey == null) {
+            if (aggregates.isEmpty()) {
+                if (!source.hasTop()) {
+                    return;
+                }
+                aggregateNext();
+            }
+            Map.Entry<Text,Aggregate> entry = aggregates.pollFirstEntry();
+            Aggregate aggregate = entry.getValue();
+            Key key = new Key(row, colFam, entry.getKey(), aggregate.getVisibility(), aggregate.timestamp);
+            if (!range.beforeStartKey(key)) {
+                topKey = key;
+                topValue = aggregate.value;
+            }
+        }
+    }
+    
+    /**
+     * Read the edges of the next row and column family, grouping them into aggregates
+     */
+    private void aggregateNext() throws IOException {
+        Key first = new Key(source.getTopKey());
+        row = first.getRow();
+        colFam = first.getColumnFamily();
+        int count = 0;
+        while (source.hasTop() && source.getTopKey().equals(first, PartialKey.ROW_COLFAM)) {
+            Key key = source.getTopKey();
+            Text colQual = rollup(key.getColumnQualifierData());
+            Aggregate aggregate = aggregates.get(colQual);
+            if (aggregate == null) {
+                aggregates.put(colQual, new Aggregate(key, source.getTopValue()));
+            } else {
+                aggregate.add(key, source.getTopValue());
+            }
+            count++;
+            source.next();
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Aggregated " + count + " edges into " + aggregates.size() + " for " + first);
+        }
+    }
+    
+    /**
+     * @return the column qualifier with its date truncated to the rollup
+     */
+    private Text rollup(ByteSequence colQual) {
+        byte[] bytes = colQual.getBackingArray();
+        int offset = colQual.offset();
+        int dateLength = colQual.length();
+        for (int i = 0; i < colQual.length(); i++) {
+            if (bytes[offset + i] == COL_SEPARATOR) {
+                dateLength = i;
+                break;
+            }
+        }
+        
+        Text text = new Text();
+        if (dateLength > rollup.getDateLength()) {
+            text.append(bytes, offset, rollup.getDateLength());
+            text.append(bytes, offset + dateLength, colQual.length() - dateLength);
+        } else {
+            text.append(bytes, offset, colQual.length());
+        }
+        return text;
+    }
+}
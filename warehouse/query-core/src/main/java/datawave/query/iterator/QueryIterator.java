@@ -383,10 +383,12 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             }
             
             // Create the pipeline iterator for document aggregation and
-            // evaluation within a thread pool
+            // evaluation within a thread pool. The evaluations only need to be
+            // collected in document order if we are sorting UIDs or on a document specific range,
+            // otherwise they are collected as they complete but still returned in document order
             PipelineIterator pipelineIter = PipelineFactory.createIterator(this.seekKeySource, getMaxEvaluationPipelines(), getMaxPipelineCachedResults(),
                             getSerialPipelineRequest(), querySpanCollector, trackingSpan, this, sourceForDeepCopies.deepCopy(myEnvironment), myEnvironment,
-                            yield, yieldThresholdMs);
+                            yield, yieldThresholdMs, sortedUIDs || documentRange != null);
             
             pipelineIter.setCollectTimingDetails(collectTimingDetails);
             // TODO pipelineIter.setStatsdHostAndPort(statsdHostAndPort);
@@ -1342,11 +1344,14 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 .setIvaratorCacheSubDirPrefix(this.getHdfsCacheSubDirPrefix())
                 .setHdfsFileCompressionCodec(this.getHdfsFileCompressionCodec())
                 .setIvaratorCacheBufferSize(this.getIvaratorCacheBufferSize())
+                .setIvaratorCacheOffHeap(this.isIvaratorCacheOffHeap())
                 .setIvaratorCacheScanPersistThreshold(this.getIvaratorCacheScanPersistThreshold())
                 .setIvaratorCacheScanTimeout(this.getIvaratorCacheScanTimeout())
                 .setMaxRangeSplit(this.getMaxIndexRangeSplit())
                 .setIvaratorMaxOpenFiles(this.getIvaratorMaxOpenFiles())
                 .setIvaratorNumRetries(this.getIvaratorNumRetries())
+                .setIvaratorMergePrefetchSize(this.getIvaratorMergePrefetchSize())
+                .setIvaratorMergePrefetchMaxBytes(this.getIvaratorMergePrefetchMaxBytes())
                 .setUnsortedIvaratorSource(this.sourceForDeepCopies)
                 .setIvaratorSourcePool(createIvaratorSourcePool(this.maxIvaratorSources))
                 .setMaxIvaratorResults(this.getMaxIvaratorResults())
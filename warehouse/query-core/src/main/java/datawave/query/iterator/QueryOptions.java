@@ -15,6 +15,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 import datawave.core.iterators.ColumnRangeIterator;
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
 import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl.HdfsBackedControl;
 import datawave.core.iterators.filesystem.FileSystemCache;
 import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
@@ -198,6 +199,8 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String IVARATOR_CACHE_BUFFER_SIZE = "ivarator.cache.buffer.size";
     
+    public static final String IVARATOR_CACHE_OFF_HEAP = "ivarator.cache.off.heap";
+    
     public static final String IVARATOR_SCAN_PERSIST_THRESHOLD = "ivarator.scan.persist.threshold";
     
     public static final String IVARATOR_SCAN_TIMEOUT = "ivarator.scan.timeout";
@@ -210,6 +213,10 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String IVARATOR_NUM_RETRIES = "ivarator.num.retries";
     
+    public static final String IVARATOR_MERGE_PREFETCH_SIZE = "ivarator.merge.prefetch.size";
+    
+    public static final String IVARATOR_MERGE_PREFETCH_MAX_BYTES = "ivarator.merge.prefetch.max.bytes";
+    
     public static final String MAX_IVARATOR_SOURCES = "max.ivarator.sources";
     
     public static final String MAX_IVARATOR_RESULTS = "max.ivarator.results";
@@ -314,10 +321,13 @@ public class QueryOptions implements OptionDescriber {
     protected long ivaratorCacheScanPersistThreshold = 100000L;
     protected long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     protected int ivaratorCacheBufferSize = 10000;
+    protected boolean ivaratorCacheOffHeap = false;
     
     protected int maxIndexRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
     protected int ivaratorNumRetries = 2;
+    protected int ivaratorMergePrefetchSize = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_SIZE;
+    protected long ivaratorMergePrefetchMaxBytes = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_MAX_BYTES;
     
     protected int maxIvaratorSources = 33;
     
@@ -434,6 +444,9 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorCacheDirConfigs = (other.ivaratorCacheDirConfigs == null) ? null : new ArrayList<>(other.ivaratorCacheDirConfigs);
         this.hdfsSiteConfigURLs = other.hdfsSiteConfigURLs;
         this.ivaratorCacheBufferSize = other.ivaratorCacheBufferSize;
+        this.ivaratorCacheOffHeap = other.ivaratorCacheOffHeap;
+        this.ivaratorMergePrefetchSize = other.ivaratorMergePrefetchSize;
+        this.ivaratorMergePrefetchMaxBytes = other.ivaratorMergePrefetchMaxBytes;
         this.ivaratorCacheScanPersistThreshold = other.ivaratorCacheScanPersistThreshold;
         this.ivaratorCacheScanTimeout = other.ivaratorCacheScanTimeout;
         this.hdfsFileCompressionCodec = other.hdfsFileCompressionCodec;
@@ -839,6 +852,14 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorCacheBufferSize = ivaratorCacheBufferSize;
     }
     
+    public boolean isIvaratorCacheOffHeap() {
+        return ivaratorCacheOffHeap;
+    }
+    
+    public void setIvaratorCacheOffHeap(boolean ivaratorCacheOffHeap) {
+        this.ivaratorCacheOffHeap = ivaratorCacheOffHeap;
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return ivaratorCacheScanPersistThreshold;
     }
@@ -879,6 +900,22 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorNumRetries = ivaratorNumRetries;
     }
     
+    public int getIvaratorMergePrefetchSize() {
+        return ivaratorMergePrefetchSize;
+    }
+    
+    public void setIvaratorMergePrefetchSize(int ivaratorMergePrefetchSize) {
+        this.ivaratorMergePrefetchSize = ivaratorMergePrefetchSize;
+    }
+    
+    public long getIvaratorMergePrefetchMaxBytes() {
+        return ivaratorMergePrefetchMaxBytes;
+    }
+    
+    public void setIvaratorMergePrefetchMaxBytes(long ivaratorMergePrefetchMaxBytes) {
+        this.ivaratorMergePrefetchMaxBytes = ivaratorMergePrefetchMaxBytes;
+    }
+    
     public int getMaxIvaratorSources() {
         return maxIvaratorSources;
     }
@@ -1041,6 +1078,7 @@ public class QueryOptions implements OptionDescriber {
         options.put(IVARATOR_CACHE_DIR_CONFIG,
                         "A JSON-formatted array of ivarator cache config objects.  Each config object MUST specify a pathURI to use when caching field index iterator output.");
         options.put(IVARATOR_CACHE_BUFFER_SIZE, "The size of the hdfs cache buffer size (items held in memory before dumping to hdfs).  Default is 10000.");
+        options.put(IVARATOR_CACHE_OFF_HEAP, "If true, the hdfs cache buffer is held in off-heap memory instead of on the heap.  Default is false.");
         options.put(IVARATOR_SCAN_PERSIST_THRESHOLD,
                         "The number of underlying field index keys scanned before the hdfs cache buffer is forced to persist).  Default is 100000.");
         options.put(IVARATOR_SCAN_TIMEOUT, "The time after which the hdfs cache buffer is forced to persist.  Default is 60 minutes.");
@@ -1050,6 +1088,10 @@ public class QueryOptions implements OptionDescriber {
                         "The maximum number of files that can be opened at one time during a merge sort.  If more that this number of files are created, then compactions will occur");
         options.put(IVARATOR_NUM_RETRIES,
                         "The number of times an ivarator should attempt to persist a sorted set to a given ivarator cache directory.  We will use the specified number of retries for each of the configured ivarator cache directories.");
+        options.put(IVARATOR_MERGE_PREFETCH_SIZE,
+                        "The number of keys an ivarator reads ahead from each sorted file while merging them.  A value of 0 or less disables the read ahead.");
+        options.put(IVARATOR_MERGE_PREFETCH_MAX_BYTES,
+                        "The maximum number of bytes of keys an ivarator holds in memory while reading ahead from its sorted files.  A value of 0 or less leaves only the key count limit.");
         options.put(MAX_IVARATOR_SOURCES,
                         " The maximum number of sources to use for ivarators across all ivarated terms within the query.  Note the thread pool size is controlled via an accumulo property.");
         options.put(YIELD_THRESHOLD_MS,
@@ -1416,6 +1458,10 @@ public class QueryOptions implements OptionDescriber {
             this.setIvaratorCacheBufferSize(Integer.parseInt(options.get(IVARATOR_CACHE_BUFFER_SIZE)));
         }
         
+        if (options.containsKey(IVARATOR_CACHE_OFF_HEAP)) {
+            this.setIvaratorCacheOffHeap(Boolean.parseBoolean(options.get(IVARATOR_CACHE_OFF_HEAP)));
+        }
+        
         if (options.containsKey(IVARATOR_SCAN_PERSIST_THRESHOLD)) {
             this.setIvaratorCacheScanPersistThreshold(Long.parseLong(options.get(IVARATOR_SCAN_PERSIST_THRESHOLD)));
         }
@@ -1436,6 +1482,14 @@ public class QueryOptions implements OptionDescriber {
             this.setIvaratorNumRetries(Integer.parseInt(options.get(IVARATOR_NUM_RETRIES)));
         }
         
+        if (options.containsKey(IVARATOR_MERGE_PREFETCH_SIZE)) {
+            this.setIvaratorMergePrefetchSize(Integer.parseInt(options.get(IVARATOR_MERGE_PREFETCH_SIZE)));
+        }
+        
+        if (options.containsKey(IVARATOR_MERGE_PREFETCH_MAX_BYTES)) {
+            this.setIvaratorMergePrefetchMaxBytes(Long.parseLong(options.get(IVARATOR_MERGE_PREFETCH_MAX_BYTES)));
+        }
+        
         if (options.containsKey(MAX_IVARATOR_SOURCES)) {
             this.setMaxIvaratorSources(Integer.parseInt(options.get(MAX_IVARATOR_SOURCES)));
         }
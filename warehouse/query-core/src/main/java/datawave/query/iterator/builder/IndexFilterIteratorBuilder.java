@@ -75,11 +75,16 @@ public class IndexFilterIteratorBuilder extends IvaratorBuilder implements Itera
                         .withScanThreshold(ivaratorCacheScanPersistThreshold)
                         .withScanTimeout(ivaratorCacheScanTimeout)
                         .withHdfsBackedSetBufferSize(ivaratorCacheBufferSize)
+                        .withHdfsBackedSetOffHeap(ivaratorCacheOffHeap)
+                        .withHdfsFileCompressionCodec(hdfsFileCompressionCodec)
+                        .withQueryId(queryId)
                         .withMaxRangeSplit(maxRangeSplit)
                         .withMaxOpenFiles(ivaratorMaxOpenFiles)
                         .withMaxResults(maxIvaratorResults)
                         .withIvaratorCacheDirs(ivaratorCacheDirs)
                         .withNumRetries(ivaratorNumRetries)
+                        .withMergePrefetchSize(ivaratorMergePrefetchSize)
+                        .withMergePrefetchMaxBytes(ivaratorMergePrefetchMaxBytes)
                         .withQueryLock(queryLock)
                         .allowDirResuse(true)
                         .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME)
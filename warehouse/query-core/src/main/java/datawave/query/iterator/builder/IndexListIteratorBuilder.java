@@ -82,10 +82,15 @@ public class IndexListIteratorBuilder extends IvaratorBuilder implements Iterato
                         .withScanThreshold(ivaratorCacheScanPersistThreshold)
                         .withScanTimeout(ivaratorCacheScanTimeout)
                         .withHdfsBackedSetBufferSize(ivaratorCacheBufferSize)
+                        .withHdfsBackedSetOffHeap(ivaratorCacheOffHeap)
+                        .withHdfsFileCompressionCodec(hdfsFileCompressionCodec)
+                        .withQueryId(queryId)
                         .withMaxRangeSplit(maxRangeSplit)
                         .withMaxOpenFiles(ivaratorMaxOpenFiles)
                         .withIvaratorCacheDirs(ivaratorCacheDirs)
                         .withNumRetries(ivaratorNumRetries)
+                        .withMergePrefetchSize(ivaratorMergePrefetchSize)
+                        .withMergePrefetchMaxBytes(ivaratorMergePrefetchMaxBytes)
                         .withMaxResults(maxIvaratorResults)
                         .withQueryLock(queryLock)
                         .allowDirResuse(true)
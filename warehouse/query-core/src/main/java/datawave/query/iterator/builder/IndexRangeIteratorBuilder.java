@@ -77,10 +77,15 @@ public class IndexRangeIteratorBuilder extends IvaratorBuilder implements Iterat
                         .withScanThreshold(ivaratorCacheScanPersistThreshold)
                         .withScanTimeout(ivaratorCacheScanTimeout)
                         .withHdfsBackedSetBufferSize(ivaratorCacheBufferSize)
+                        .withHdfsBackedSetOffHeap(ivaratorCacheOffHeap)
+                        .withHdfsFileCompressionCodec(hdfsFileCompressionCodec)
+                        .withQueryId(queryId)
                         .withMaxRangeSplit(maxRangeSplit)
                         .withMaxOpenFiles(ivaratorMaxOpenFiles)
                         .withIvaratorCacheDirs(ivaratorCacheDirs)
                         .withNumRetries(ivaratorNumRetries)
+                        .withMergePrefetchSize(ivaratorMergePrefetchSize)
+                        .withMergePrefetchMaxBytes(ivaratorMergePrefetchMaxBytes)
                         .withMaxResults(maxIvaratorResults)
                         .withQueryLock(queryLock)
                         .allowDirResuse(true)
@@ -1,6 +1,7 @@
 package datawave.query.iterator.builder;
 
 import datawave.query.iterator.ivarator.IvaratorCacheDir;
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
 import datawave.core.iterators.querylock.QueryLock;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.profile.QuerySpanCollector;
@@ -24,14 +25,18 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
     
     protected List<IvaratorCacheDir> ivaratorCacheDirs;
     protected String hdfsFileCompressionCodec;
+    protected String queryId;
     protected QueryLock queryLock;
     protected long ivaratorCacheScanPersistThreshold = 100000L;
     protected long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     protected int ivaratorCacheBufferSize = 10000;
+    protected boolean ivaratorCacheOffHeap = false;
     protected int maxRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
     protected long maxIvaratorResults = -1;
     protected int ivaratorNumRetries = 2;
+    protected int ivaratorMergePrefetchSize = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_SIZE;
+    protected long ivaratorMergePrefetchMaxBytes = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_MAX_BYTES;
     protected boolean collectTimingDetails = false;
     protected QuerySpanCollector querySpanCollector = null;
     protected CompositeMetadata compositeMetadata;
@@ -71,6 +76,14 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
         this.hdfsFileCompressionCodec = hdfsFileCompressionCodec;
     }
     
+    public String getQueryId() {
+        return queryId;
+    }
+    
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+    
     public QueryLock getQueryLock() {
         return queryLock;
     }
@@ -87,6 +100,14 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
         this.ivaratorCacheBufferSize = ivaratorCacheBufferSize;
     }
     
+    public boolean isIvaratorCacheOffHeap() {
+        return ivaratorCacheOffHeap;
+    }
+    
+    public void setIvaratorCacheOffHeap(boolean ivaratorCacheOffHeap) {
+        this.ivaratorCacheOffHeap = ivaratorCacheOffHeap;
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return ivaratorCacheScanPersistThreshold;
     }
@@ -135,6 +156,22 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
         this.ivaratorNumRetries = ivaratorNumRetries;
     }
     
+    public int getIvaratorMergePrefetchSize() {
+        return ivaratorMergePrefetchSize;
+    }
+    
+    public void setIvaratorMergePrefetchSize(int ivaratorMergePrefetchSize) {
+        this.ivaratorMergePrefetchSize = ivaratorMergePrefetchSize;
+    }
+    
+    public long getIvaratorMergePrefetchMaxBytes() {
+        return ivaratorMergePrefetchMaxBytes;
+    }
+    
+    public void setIvaratorMergePrefetchMaxBytes(long ivaratorMergePrefetchMaxBytes) {
+        this.ivaratorMergePrefetchMaxBytes = ivaratorMergePrefetchMaxBytes;
+    }
+    
     public void setCollectTimingDetails(boolean collectTimingDetails) {
         this.collectTimingDetails = collectTimingDetails;
     }
@@ -10,6 +10,7 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import java.io.IOException;
 import java.util.Map;
 import datawave.edge.util.EdgeKey;
+import datawave.edge.util.EdgeKeyView;
 
 /**
  *
@@ -19,6 +20,8 @@ public class DateTypeFilter extends Filter {
     
     protected boolean[] state;
     
+    private final EdgeKeyView view = new EdgeKeyView();
+    
     @Override
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
         DateTypeFilter result = (DateTypeFilter) super.deepCopy(env);
@@ -77,7 +80,7 @@ public class DateTypeFilter extends Filter {
     @Override
     public boolean accept(Key k, Value V) {
         
-        return (state[EdgeKey.getDateType(k).ordinal()]);
+        return (state[view.set(k).getDateType().ordinal()]);
     }
     
 }
@@ -3,14 +3,22 @@ package datawave.query.iterator.filter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import datawave.edge.model.EdgeModelAware;
 import datawave.edge.model.EdgeModelAware.Fields;
 import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKey.EDGE_FORMAT;
+import datawave.edge.util.EdgeKey.EDGE_VERSION;
 import datawave.edge.util.EdgeKeyUtil;
+import datawave.edge.util.EdgeKeyView;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Filter;
@@ -45,6 +53,10 @@ public class EdgeFilterIterator extends Filter {
     
     private static final JexlEngine jexlEngine = new JexlEngine();
     
+    // the fields which can be prefiltered against the pieces of a key before it is decoded
+    private static final FieldKey[] KEY_FIELDS = {FieldKey.EDGE_SOURCE, FieldKey.EDGE_SINK, FieldKey.EDGE_TYPE, FieldKey.EDGE_RELATIONSHIP,
+            FieldKey.EDGE_ATTRIBUTE1, FieldKey.EDGE_ATTRIBUTE2, FieldKey.EDGE_ATTRIBUTE3, FieldKey.DATE};
+    
     private boolean protobuffFormat;
     private boolean includeStatsEdges;
     private Expression expression = null;
@@ -52,6 +64,8 @@ public class EdgeFilterIterator extends Filter {
     private JexlContext ctx = new MapContext();
     
     private HashMultimap<String,String> preFilterValues;
+    private Map<FieldKey,Set<ByteSequence>> preFilterBytes;
+    private final EdgeKeyView view = new EdgeKeyView();
     
     @Override
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
@@ -59,6 +73,7 @@ public class EdgeFilterIterator extends Filter {
         result.protobuffFormat = this.protobuffFormat;
         result.expression = this.expression;
         result.preFilterValues = this.preFilterValues;
+        result.preFilterBytes = this.preFilterBytes;
         
         return result;
     }
@@ -175,6 +190,7 @@ public class EdgeFilterIterator extends Filter {
                 ois = new ObjectInputStream(new ByteArrayInputStream(data));
                 Object o = ois.readObject();
                 preFilterValues = (HashMultimap<String,String>) o;
+                preFilterBytes = getPrefilterBytes(preFilterValues);
             } catch (IOException ex) {
                 // we can work without it
                 log.error("Invalid whitelist value supplied to iterator.");
@@ -185,7 +201,8 @@ public class EdgeFilterIterator extends Filter {
     }
     
     /**
-     * Method to perform prefilter against a whitelist to see if we can quickly ignore the key
+     * Method to perform prefilter against a whitelist to see if we can quickly ignore the key. Stats edges are only checked against their source, as their
+     * other pieces only hold the source's side of the edge and will not match the whitelisted values of a standard edge.
      *
      * @param keyComponents
      * @return
@@ -193,7 +210,11 @@ public class EdgeFilterIterator extends Filter {
     private boolean prefilter(Map<FieldKey,String> keyComponents) {
         boolean retVal = true;
         if (preFilterValues != null) {
+            boolean stats = keyComponents.containsKey(FieldKey.STATS_EDGE);
             for (Map.Entry<FieldKey,String> entry : keyComponents.entrySet()) {
+                if (stats && entry.getKey() != FieldKey.EDGE_SOURCE) {
+                    continue;
+                }
                 String fieldName = Fields.getInstance().getFieldName(entry.getKey());
                 Set<String> values = preFilterValues.get(fieldName);
                 if (values == null || values.size() < 1) {
@@ -211,6 +232,96 @@ public class EdgeFilterIterator extends Filter {
         return retVal;
     }
     
+    /**
+     * Converts the whitelisted values of the fields found in the key pieces to bytes, so that the pieces can be compared without decoding the key
+     *
+     * @param preFilterValues
+     * @return the whitelisted values by field, for the fields which have any
+     */
+    private static Map<FieldKey,Set<ByteSequence>> getPrefilterBytes(HashMultimap<String,String> preFilterValues) {
+        Map<FieldKey,Set<ByteSequence>> preFilterBytes = new EnumMap<>(FieldKey.class);
+        for (FieldKey fieldKey : KEY_FIELDS) {
+            Set<String> values = preFilterValues.get(Fields.getInstance().getFieldName(fieldKey));
+            if (values != null && !values.isEmpty()) {
+                Set<ByteSequence> bytes = new HashSet<>();
+                for (String value : values) {
+                    bytes.add(new ArrayByteSequence(value.getBytes(StandardCharsets.UTF_8)));
+                }
+                preFilterBytes.put(fieldKey, bytes);
+            }
+        }
+        return preFilterBytes;
+    }
+    
+    /**
+     * Method to perform the prefilter against the pieces of a protobuf edge key in place, so that the keys which fail it are never decoded. Pieces which may
+     * not match the values of {@link EdgeKeyUtil#dissasembleKey} byte for byte, such as escaped vertices, are skipped and left to the prefilter of the
+     * decoded key.
+     *
+     * @param view
+     *            a view of the key
+     * @return false if the key can be ignored
+     */
+    private boolean prefilter(EdgeKeyView view) {
+        for (Map.Entry<FieldKey,Set<ByteSequence>> entry : preFilterBytes.entrySet()) {
+            ByteSequence value = getKeyPiece(view, entry.getKey());
+            if (value != null && value.length() > 0 && !entry.getValue().contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static ByteSequence getKeyPiece(EdgeKeyView view, FieldKey fieldKey) {
+        switch (fieldKey) {
+            case EDGE_SOURCE:
+                ByteSequence sink = view.getSink();
+                return (sink == null || isVerbatim(sink)) && isVerbatim(view.getSource()) ? view.getSource() : null;
+            case EDGE_SINK:
+                return isVerbatim(view.getSink()) ? view.getSink() : null;
+            case EDGE_TYPE:
+                return view.getType();
+            case EDGE_RELATIONSHIP:
+                return view.getRelationship();
+            case EDGE_ATTRIBUTE1:
+                return view.getAttribute1();
+            case EDGE_ATTRIBUTE2:
+                return view.getAttribute2();
+            case EDGE_ATTRIBUTE3:
+                return view.getAttribute3();
+            case DATE:
+                return view.getYyyymmdd();
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * @return true if the vertex is not escaped and does not hold another vertex, and so is the same once decoded
+     */
+    private static boolean isVerbatim(ByteSequence vertex) {
+        if (vertex == null) {
+            return false;
+        }
+        byte[] bytes = vertex.getBackingArray();
+        for (int i = vertex.offset(); i < vertex.offset() + vertex.length(); i++) {
+            if (bytes[i] == '\\' || bytes[i] == '\0') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return true if the pieces of the key are laid out as {@link EdgeKeyUtil#dissasembleKey} expects for a standard edge in the protobuf edge format. Stats
+     *         edges are left to the prefilter of the decoded key, which only holds their source.
+     */
+    private static boolean isProtobufKey(EdgeKeyView view) {
+        EDGE_VERSION version = view.getVersion();
+        return version.hasAttribute3() && view.getFormat() == EDGE_FORMAT.STANDARD && version.getFormat() == view.getFormat()
+                        && version.getNumColfPieces() == view.getNumColumnFamilyParts();
+    }
+    
     @Override
     public void init(org.apache.accumulo.core.iterators.SortedKeyValueIterator<org.apache.accumulo.core.data.Key,org.apache.accumulo.core.data.Value> source,
                     java.util.Map<java.lang.String,java.lang.String> options, org.apache.accumulo.core.iterators.IteratorEnvironment env)
@@ -242,6 +353,10 @@ public class EdgeFilterIterator extends Filter {
     public boolean accept(Key k, Value V) {
         boolean value = false;
         
+        if (protobuffFormat && preFilterBytes != null && isProtobufKey(view.set(k)) && !prefilter(view)) {
+            return false;
+        }
+        
         Map<FieldKey,String> keyComponents = EdgeKeyUtil.dissasembleKey(k, protobuffFormat);
         
         if (!prefilter(keyComponents)) {
@@ -6,11 +6,10 @@ import java.util.Map.Entry;
 
 import datawave.query.attributes.Document;
 import datawave.query.iterator.DocumentSpecificNestedIterator;
+import datawave.query.iterator.NestedQuery;
 import datawave.query.iterator.NestedQueryIterator;
 import datawave.query.iterator.profile.QuerySpanCollector;
 import org.apache.accumulo.core.data.Key;
-import org.apache.accumulo.core.data.Value;
-import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.log4j.Logger;
 
 /**
@@ -32,7 +31,10 @@ public class Pipeline implements Runnable {
     
     private QuerySpanCollector querySpanCollector = null;
     
-    public Pipeline(QuerySpanCollector querySpanCollector, SortedKeyValueIterator<Key,Value> sourceForDeepCopy) {
+    // the nested query the pipeline was built for
+    private NestedQuery<Key> nestedQuery = null;
+    
+    public Pipeline(QuerySpanCollector querySpanCollector) {
         this.querySpanCollector = querySpanCollector;
         this.iterator = null;
     }
@@ -41,6 +43,14 @@ public class Pipeline implements Runnable {
         this.iterator = sourceIter;
     }
     
+    public NestedQuery<Key> getNestedQuery() {
+        return nestedQuery;
+    }
+    
+    public void setNestedQuery(NestedQuery<Key> nestedQuery) {
+        this.nestedQuery = nestedQuery;
+    }
+    
     public NestedQueryIterator<Key> getDocumentSpecificSource() {
         return documentSpecificSource;
     }
@@ -38,9 +38,43 @@ public class PipelineFactory {
     public static PipelineIterator createIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, boolean requestSerialPipeline,
                     QuerySpanCollector querySpanCollector, QuerySpan querySpan, QueryIterator sourceIterator,
                     SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env, YieldCallback<Key> yield, long yieldThresholdMs) {
+        return createIterator(documents, maxPipelines, maxCachedResults, requestSerialPipeline, querySpanCollector, querySpan, sourceIterator,
+                        sourceForDeepCopy, env, yield, yieldThresholdMs, true);
+    }
+    
+    /**
+     * Create a pipeline iterator.
+     * 
+     * @param documents
+     *            Document Iterator.
+     * @param maxPipelines
+     *            maximum number of requested pipelines.
+     * @param maxCachedResults
+     *            maximum cached results.
+     * @param requestSerialPipeline
+     *            request for a serial pipeline. In the future this choice may not be honored
+     * @param querySpanCollector
+     *            query span collector
+     * @param querySpan
+     *            query span
+     * @param sourceIterator
+     *            source iterator.
+     * @param sourceForDeepCopy
+     *            source used for deep copies.
+     * @param env
+     *            iterator environment
+     * @param ordered
+     *            true if the evaluations must be collected in document order, otherwise they are collected as they complete. The results are returned in
+     *            document order either way
+     * @return
+     */
+    public static PipelineIterator createIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, boolean requestSerialPipeline,
+                    QuerySpanCollector querySpanCollector, QuerySpan querySpan, QueryIterator sourceIterator,
+                    SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env, YieldCallback<Key> yield, long yieldThresholdMs,
+                    boolean ordered) {
         if (maxPipelines > 1 && !requestSerialPipeline) {
             return new PipelineIterator(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env,
-                            yield, yieldThresholdMs);
+                            yield, yieldThresholdMs, ordered);
         } else {
             return new SerialIterator(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env, yield,
                             yieldThresholdMs);
@@ -8,7 +8,6 @@ import datawave.query.iterator.NestedQueryIterator;
 import datawave.query.iterator.QueryIterator;
 import datawave.query.iterator.profile.QuerySpan;
 import datawave.query.iterator.profile.QuerySpanCollector;
-import datawave.query.util.Tuple2;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IterationInterruptedException;
@@ -21,14 +20,21 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * This is the iterator that handles the evaluation pipelines. Essentially it will queue up N evaluations. On each hasNext and next call, it will pull the
  * results ready from the top and cache the non-null results in a results queue.
+ *
+ * If the evaluations do not need to be collected in document order, then they are instead collected in the order in which they complete, so that one slow
+ * document does not hold up the evaluation of the documents behind it. The results are still returned in the order the documents were submitted, as a
+ * teardown and re-seek will resume after the last key returned and must not skip a document that was still being evaluated. A yield therefore happens at
+ * the last key released, as every document up to it has been returned, and the outstanding evaluations are cancelled to be redone after the re-seek.
  */
 public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     
@@ -37,7 +43,12 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     protected final long yieldThresholdMs;
     protected final NestedIterator<Key> docSource;
     protected final PipelinePool pipelines;
-    protected final Queue<Tuple2<Future<?>,Pipeline>> evaluationQueue;
+    protected final Queue<Evaluation> evaluationQueue;
+    // the evaluations in the order in which they completed, only used when the evaluations are not ordered
+    protected final BlockingQueue<Evaluation> completedQueue;
+    protected final boolean ordered;
+    // the query id used to share the evaluation threads fairly between queries
+    protected final String queryId;
     protected Key lastKeyEvaluated = null;
     protected final Queue<Entry<Key,Document>> results;
     protected final int maxResults;
@@ -49,9 +60,19 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
                     QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
                     YieldCallback<Key> yieldCallback, long yieldThresholdMs) {
+        this(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env, yieldCallback,
+                        yieldThresholdMs, true);
+    }
+    
+    public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
+                    QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
+                    YieldCallback<Key> yieldCallback, long yieldThresholdMs, boolean ordered) {
         this.docSource = documents;
         this.pipelines = new PipelinePool(maxPipelines, querySpanCollector, sourceIterator, sourceForDeepCopy, env);
         this.evaluationQueue = new LinkedList<>();
+        this.completedQueue = new LinkedBlockingQueue<>();
+        this.ordered = ordered;
+        this.queryId = (sourceIterator == null ? null : sourceIterator.getQueryId());
         this.results = new LinkedList<>();
         this.maxResults = maxCachedResults;
         this.querySpanCollector = querySpanCollector;
@@ -163,6 +184,11 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
      * @throws InterruptedException
      */
     private void cacheNextResult() throws InterruptedException, ExecutionException {
+        if (!ordered) {
+            cacheNextUnorderedResult();
+            return;
+        }
+        
         Entry<Key,Document> result = null;
         
         long startMs = System.currentTimeMillis();
@@ -195,6 +221,35 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         }
     }
     
+    /**
+     * collect the evaluations as they complete until the evaluations at the top of the queue have a non-null result. If the yield threshold is passed, then
+     * yield at the last key released, as every document up to it has been returned. The outstanding evaluations are cancelled as the yield unwinds.
+     *
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    private void cacheNextUnorderedResult() throws InterruptedException, ExecutionException {
+        long startMs = System.currentTimeMillis();
+        while (!evaluationQueue.isEmpty() && results.isEmpty()) {
+            Evaluation evaluation;
+            // we must have at least released one thing in order to yield, otherwise we will have not progressed at all
+            if (yield != null && lastKeyEvaluated != null) {
+                long delta = System.currentTimeMillis() - startMs;
+                evaluation = (delta > yieldThresholdMs ? null : completedQueue.poll(yieldThresholdMs - delta, TimeUnit.MILLISECONDS));
+                if (evaluation == null) {
+                    yield.yield(lastKeyEvaluated);
+                    if (log.isDebugEnabled())
+                        log.debug("Yielding at " + lastKeyEvaluated + ", cancelling " + evaluationQueue.size() + " evaluations");
+                    throw new IterationInterruptedException("Yielding at " + lastKeyEvaluated);
+                }
+            } else {
+                evaluation = completedQueue.take();
+            }
+            collect(evaluation);
+            release();
+        }
+    }
+    
     /**
      * flush the results from the evaluation queue that are complete up to the max number of cached results
      * 
@@ -202,7 +257,15 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
      * @throws InterruptedException
      */
     private void flushCompletedResults() throws InterruptedException, ExecutionException {
-        while (!evaluationQueue.isEmpty() && evaluationQueue.peek().first().isDone() && results.size() < this.maxResults) {
+        if (!ordered) {
+            Evaluation evaluation;
+            while ((evaluation = completedQueue.poll()) != null) {
+                collect(evaluation);
+            }
+            release();
+            return;
+        }
+        while (!evaluationQueue.isEmpty() && evaluationQueue.peek().future.isDone() && results.size() < this.maxResults) {
             try {
                 poll(Long.MAX_VALUE);
             } catch (TimeoutException e) {
@@ -221,20 +284,19 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
      */
     private Entry<Key,Document> poll(long waitMs) throws InterruptedException, ExecutionException, TimeoutException {
         // get the next evaluated result
-        Tuple2<Future<?>,Pipeline> nextFuture = evaluationQueue.poll();
+        Evaluation nextFuture = evaluationQueue.poll();
         
         Entry<Key,Document> result = null;
         try {
             if (log.isTraceEnabled()) {
-                Key docKey = nextFuture.second().getSource().getKey();
-                log.trace("Polling for result from " + docKey);
+                log.trace("Polling for result from " + nextFuture.key);
             }
             
             // wait for it to complete if not already done
-            if (!nextFuture.first().isDone()) {
+            if (!nextFuture.future.isDone()) {
                 long start = System.currentTimeMillis();
                 
-                nextFuture.first().get(waitMs, TimeUnit.MILLISECONDS);
+                nextFuture.future.get(waitMs, TimeUnit.MILLISECONDS);
                 
                 if (log.isDebugEnabled()) {
                     long wait = System.currentTimeMillis() - start;
@@ -242,32 +304,112 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
                 }
             }
             
-            // call get to ensure that we throw any exception that occurred
-            nextFuture.first().get();
-            
-            // pull the result
-            result = nextFuture.second().getResult();
-            
-            if (log.isTraceEnabled()) {
-                Key docKey = nextFuture.second().getSource().getKey();
-                log.trace("Polling for result from " + docKey + " was " + (result == null ? "empty" : "successful"));
-            }
+            result = complete(nextFuture);
             
             // record the last evaluated key
-            lastKeyEvaluated = nextFuture.second().getSource().getKey();
+            lastKeyEvaluated = nextFuture.key;
         } catch (Exception e) {
-            Key docKey = nextFuture.second().getSource().getKey();
+            Key docKey = nextFuture.key;
             log.error("Failed polling for result from " + docKey + "; cancelling remaining evaluations and flushing results", e);
             cancel();
             throw e;
         } finally {
             // return the pipeline for reuse
-            pipelines.checkIn(nextFuture.second());
+            pipelines.checkIn(nextFuture.pipeline);
         }
         
+        next(result);
+        return result;
+    }
+    
+    /**
+     * Pull the result from an evaluation that has completed out of order, return its pipeline for reuse and start a new evaluation in its place. The result is
+     * held on the evaluation until the evaluations before it have been released. Evaluations that were cancelled are ignored.
+     *
+     * @param evaluation
+     *            the completed evaluation
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private void collect(Evaluation evaluation) throws InterruptedException, ExecutionException {
+        if (evaluation.cancelled) {
+            return;
+        }
+        
+        try {
+            evaluation.result = complete(evaluation);
+            evaluation.collected = true;
+        } catch (Exception e) {
+            log.error("Failed polling for result from " + evaluation.key + "; cancelling remaining evaluations and flushing results", e);
+            cancel();
+            throw e;
+        } finally {
+            // return the pipeline for reuse
+            if (!evaluation.cancelled) {
+                pipelines.checkIn(evaluation.pipeline);
+            }
+        }
+        
+        startEvaluations();
+    }
+    
+    /**
+     * Release the collected evaluations from the top of the queue into the results, up to the max number of cached results. The results are released in the
+     * order in which the documents were submitted, so that every document before a returned key has been returned as well.
+     */
+    private void release() {
+        while (!evaluationQueue.isEmpty() && evaluationQueue.peek().collected && results.size() < this.maxResults) {
+            Evaluation evaluation = evaluationQueue.poll();
+            
+            // record the last evaluated key
+            lastKeyEvaluated = evaluation.key;
+            
+            // put the result into the queue if non-null
+            if (evaluation.result != null) {
+                results.add(evaluation.result);
+            }
+        }
+        
+        startEvaluations();
+    }
+    
+    /**
+     * Start new evaluations while there are pipelines available, and while the number of evaluations waiting to be released is within the max number of cached
+     * results
+     */
+    private void startEvaluations() {
+        while (pipelines.checkedOut.size() < pipelines.maxPipelines && evaluationQueue.size() < pipelines.maxPipelines + this.maxResults
+                        && next(null) != null) {
+            // keep going
+        }
+    }
+    
+    private Entry<Key,Document> complete(Evaluation evaluation) throws InterruptedException, ExecutionException {
+        // call get to ensure that we throw any exception that occurred
+        evaluation.future.get();
+        
+        // pull the result
+        Entry<Key,Document> result = evaluation.pipeline.getResult();
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Polling for result from " + evaluation.key + " was " + (result == null ? "empty" : "successful"));
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Start a new evaluation if we can, and queue the result if non-null
+     *
+     * @param result
+     * @return the key of the document submitted for evaluation, null if there are no more documents
+     */
+    private Key next(Entry<Key,Document> result) {
+        Key keySource = null;
+        
         // start a new evaluation if we can
         if (docSource.hasNext()) {
-            Key keySource = docSource.next();
+            keySource = docSource.next();
             NestedQuery<Key> nestedQuery = null;
             if (docSource instanceof NestedQueryIterator) {
                 nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
@@ -284,7 +426,7 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             results.add(result);
         }
         
-        return result;
+        return keySource;
     }
     
     /**
@@ -292,10 +434,15 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
      */
     private void cancel() {
         while (!evaluationQueue.isEmpty()) {
-            Tuple2<Future<?>,Pipeline> nextFuture = evaluationQueue.poll();
-            nextFuture.first().cancel(true);
-            pipelines.checkIn(nextFuture.second());
+            Evaluation nextFuture = evaluationQueue.poll();
+            nextFuture.cancelled = true;
+            nextFuture.future.cancel(true);
+            // collected evaluations have already returned their pipeline
+            if (!nextFuture.collected) {
+                pipelines.checkIn(nextFuture.pipeline);
+            }
         }
+        completedQueue.clear();
         results.clear();
     }
     
@@ -330,7 +477,39 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         }
         Pipeline pipeline = pipelines.checkOut(key, document, nestedQuery);
         
-        evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), env), pipeline));
+        Evaluation evaluation = new Evaluation(pipeline, key);
+        Runnable task = pipeline;
+        if (!ordered) {
+            // notify the completion queue when done, even if the evaluation fails
+            task = () -> {
+                try {
+                    pipeline.run();
+                } finally {
+                    completedQueue.add(evaluation);
+                }
+            };
+        }
+        evaluation.future = IteratorThreadPoolManager.executeEvaluation(task, pipeline.toString(), queryId, env);
+        evaluationQueue.add(evaluation);
+    }
+    
+    /**
+     * An evaluation of a document in a pipeline
+     */
+    protected static class Evaluation {
+        protected final Pipeline pipeline;
+        // the document key, kept as the pipeline is cleared once it is checked back in
+        protected final Key key;
+        protected Future<?> future;
+        // the result of an evaluation collected out of order, waiting to be released
+        protected Entry<Key,Document> result;
+        protected boolean collected = false;
+        protected boolean cancelled = false;
+        
+        protected Evaluation(Pipeline pipeline, Key key) {
+            this.pipeline = pipeline;
+            this.key = key;
+        }
     }
     
     /*
@@ -44,7 +44,8 @@ public class PipelinePool {
     }
     
     /**
-     * Checkout a pipeline initialized with the specified document, creating a new pipeline if needed
+     * Checkout a pipeline initialized with the specified document, creating a new pipeline if needed. A pipeline that is reused is only rebuilt if the nested
+     * query changed since it was last built.
      * 
      * @param key
      * @param doc
@@ -60,16 +61,18 @@ public class PipelinePool {
             pipeline = checkedIn.remove(checkedIn.size() - 1);
             if (null != pipeline) {
                 NestedQueryIterator<Key> nq = pipeline.getDocumentSpecificSource();
-                if (null != nestedQuery) {
+                if (null != nestedQuery && nestedQuery != pipeline.getNestedQuery()) {
                     nq.setCurrentQuery(nestedQuery);
+                    pipeline.setNestedQuery(nestedQuery);
                     pipeline.setSourceIterator(sourceIterator.createDocumentPipeline(sourceForDeepCopy.deepCopy(env), nq, querySpanCollector));
                 }
             }
         } else if (checkedIn.size() + checkedOut.size() < maxPipelines) {
-            pipeline = new Pipeline(this.querySpanCollector, sourceForDeepCopy.deepCopy(env));
+            pipeline = new Pipeline(this.querySpanCollector);
             NestedQueryIterator<Key> nq = pipeline.getDocumentSpecificSource();
             if (null != nestedQuery) {
                 nq.setCurrentQuery(nestedQuery);
+                pipeline.setNestedQuery(nestedQuery);
             }
             pipeline.setSourceIterator(sourceIterator.createDocumentPipeline(sourceForDeepCopy.deepCopy(env), nq, querySpanCollector));
         }
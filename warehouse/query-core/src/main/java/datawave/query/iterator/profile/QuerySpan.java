@@ -50,7 +50,9 @@ public class QuerySpan {
         KeyAdjudicator,
         DocumentMetadata,
         LimitFields,
-        RemoveGroupingContext
+        RemoveGroupingContext,
+        IvaratorMergeWait,
+        IvaratorMergeRead
     };
     
     public QuerySpan(QueryStatsDClient client) {
@@ -5,6 +5,7 @@ import com.google.common.base.Predicates;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
 import datawave.core.iterators.DatawaveFieldIndexListIteratorJexl;
 import datawave.core.iterators.filesystem.FileSystemCache;
 import datawave.query.iterator.ivarator.IvaratorCacheDir;
@@ -142,10 +143,13 @@ public class IteratorBuildingVisitor extends BaseVisitor {
     protected long ivaratorCacheScanPersistThreshold = 100000L;
     protected long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     protected int ivaratorCacheBufferSize = 10000;
+    protected boolean ivaratorCacheOffHeap = false;
     protected int maxRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
     protected long maxIvaratorResults = -1;
     protected int ivaratorNumRetries = 2;
+    protected int ivaratorMergePrefetchSize = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_SIZE;
+    protected long ivaratorMergePrefetchMaxBytes = DatawaveFieldIndexCachingIteratorJexl.DEFAULT_MERGE_PREFETCH_MAX_BYTES;
     protected SortedKeyValueIterator<Key,Value> unsortedIvaratorSource = null;
     protected int ivaratorCount = 0;
     protected GenericObjectPool<SortedKeyValueIterator<Key,Value>> ivaratorSourcePool = null;
@@ -1345,14 +1349,18 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         builder.setKeyTransform(fiAggregator);
         builder.setIvaratorCacheDirs(getIvaratorCacheDirs());
         builder.setHdfsFileCompressionCodec(hdfsFileCompressionCodec);
+        builder.setQueryId(queryId);
         builder.setQueryLock(queryLock);
         builder.setIvaratorCacheBufferSize(ivaratorCacheBufferSize);
+        builder.setIvaratorCacheOffHeap(ivaratorCacheOffHeap);
         builder.setIvaratorCacheScanPersistThreshold(ivaratorCacheScanPersistThreshold);
         builder.setIvaratorCacheScanTimeout(ivaratorCacheScanTimeout);
         builder.setMaxRangeSplit(maxRangeSplit);
         builder.setIvaratorMaxOpenFiles(ivaratorMaxOpenFiles);
         builder.setMaxIvaratorResults(maxIvaratorResults);
         builder.setIvaratorNumRetries(ivaratorNumRetries);
+        builder.setIvaratorMergePrefetchSize(ivaratorMergePrefetchSize);
+        builder.setIvaratorMergePrefetchMaxBytes(ivaratorMergePrefetchMaxBytes);
         builder.setCollectTimingDetails(collectTimingDetails);
         builder.setQuerySpanCollector(querySpanCollector);
         builder.setSortedUIDs(sortedUIDs);
@@ -1557,6 +1565,11 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         return this;
     }
     
+    public IteratorBuildingVisitor setIvaratorCacheOffHeap(boolean ivaratorCacheOffHeap) {
+        this.ivaratorCacheOffHeap = ivaratorCacheOffHeap;
+        return this;
+    }
+    
     public IteratorBuildingVisitor setIvaratorCacheScanPersistThreshold(long ivaratorCacheScanPersistThreshold) {
         this.ivaratorCacheScanPersistThreshold = ivaratorCacheScanPersistThreshold;
         return this;
@@ -1587,6 +1600,16 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         return this;
     }
     
+    public IteratorBuildingVisitor setIvaratorMergePrefetchSize(int ivaratorMergePrefetchSize) {
+        this.ivaratorMergePrefetchSize = ivaratorMergePrefetchSize;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorMergePrefetchMaxBytes(long ivaratorMergePrefetchMaxBytes) {
+        this.ivaratorMergePrefetchMaxBytes = ivaratorMergePrefetchMaxBytes;
+        return this;
+    }
+    
     public IteratorBuildingVisitor setUnsortedIvaratorSource(SortedKeyValueIterator<Key,Value> unsortedIvaratorSource) {
         this.unsortedIvaratorSource = unsortedIvaratorSource;
         return this;
@@ -232,6 +232,8 @@ public class ContentQueryMetricsIngestHelper extends CSVIngestHelper implements
             fields.put("YIELD_COUNT", Long.toString(updatedQueryMetric.getYieldCount()));
             fields.put("DOC_RANGES", Long.toString(updatedQueryMetric.getDocRanges()));
             fields.put("FI_RANGES", Long.toString(updatedQueryMetric.getFiRanges()));
+            fields.put("PREFETCH_HITS", Long.toString(updatedQueryMetric.getPrefetchHits()));
+            fields.put("PREFETCH_MISSES", Long.toString(updatedQueryMetric.getPrefetchMisses()));
             Set<Prediction> predictions = updatedQueryMetric.getPredictions();
             if (predictions != null && !predictions.isEmpty()) {
                 for (Prediction prediction : predictions) {
@@ -335,6 +337,12 @@ public class ContentQueryMetricsIngestHelper extends CSVIngestHelper implements
             if (updatedQueryMetric.getFiRanges() != storedQueryMetric.getFiRanges()) {
                 fields.put("FI_RANGES", Long.toString(storedQueryMetric.getFiRanges()));
             }
+            if (updatedQueryMetric.getPrefetchHits() != storedQueryMetric.getPrefetchHits()) {
+                fields.put("PREFETCH_HITS", Long.toString(storedQueryMetric.getPrefetchHits()));
+            }
+            if (updatedQueryMetric.getPrefetchMisses() != storedQueryMetric.getPrefetchMisses()) {
+                fields.put("PREFETCH_MISSES", Long.toString(storedQueryMetric.getPrefetchMisses()));
+            }
             
             putExtendedFieldsToDelete(updatedQueryMetric, fields);
             
@@ -789,6 +789,14 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                 
                 else if (fieldName.equals("FI_RANGES")) {
                     m.setFiRanges(Long.parseLong(fieldValue));
+                }
+                
+                else if (fieldName.equals("PREFETCH_HITS")) {
+                    m.setPrefetchHits(Long.parseLong(fieldValue));
+                }
+                
+                else if (fieldName.equals("PREFETCH_MISSES")) {
+                    m.setPrefetchMisses(Long.parseLong(fieldValue));
                 } else {
                     log.error("encountered unanticipated field name: " + fieldName);
                 }
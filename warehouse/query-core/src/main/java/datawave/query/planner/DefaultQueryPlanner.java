@@ -401,7 +401,7 @@ public class DefaultQueryPlanner extends QueryPlanner {
         
         ASTJexlScript queryTree = null;
         try {
-            queryTree = updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+            queryTree = loadOrUpdateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
         } catch (StackOverflowError e) {
             if (log.isTraceEnabled()) {
                 log.trace("Stack trace for overflow " + e);
@@ -608,6 +608,33 @@ public class DefaultQueryPlanner extends QueryPlanner {
         stopwatch.stop();
     }
     
+    /**
+     * Plan the query tree, reusing the plan of an identical query from the {@link QueryPlanCache} when it is enabled. Queries which fail to plan, or which are
+     * found to have no results, are not cached.
+     */
+    protected ASTJexlScript loadOrUpdateQueryTree(ScannerFactory scannerFactory, MetadataHelper metadataHelper, DateIndexHelper dateIndexHelper,
+                    ShardQueryConfiguration config, String query, QueryData queryData, Query settings) throws DatawaveQueryException {
+        if (!config.isQueryPlanCacheEnabled()) {
+            return updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+        }
+        
+        QueryPlanCache queryPlanCache = QueryPlanCache.getInstance();
+        // the key must be built before planning, which may adjust the date range
+        String key = QueryPlanCache.key(getClass().getName(), config, query, settings);
+        
+        TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("DefaultQueryPlanner - Load cached query plan");
+        ASTJexlScript queryTree = queryPlanCache.get(key, config);
+        stopwatch.stop();
+        
+        if (queryTree == null) {
+            queryTree = updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+            queryPlanCache.put(key, queryTree, config);
+        } else if (log.isDebugEnabled()) {
+            logQuery(queryTree, "Query loaded from the query plan cache:");
+        }
+        return queryTree;
+    }
+    
     protected ASTJexlScript updateQueryTree(ScannerFactory scannerFactory, MetadataHelper metadataHelper, DateIndexHelper dateIndexHelper,
                     ShardQueryConfiguration config, String query, QueryData queryData, Query settings) throws DatawaveQueryException {
         final QueryStopwatch timers = config.getTimers();
@@ -1658,6 +1685,7 @@ public class DefaultQueryPlanner extends QueryPlanner {
                                             false);
                         }
                         addOption(cfg, QueryOptions.IVARATOR_CACHE_BUFFER_SIZE, Integer.toString(config.getIvaratorCacheBufferSize()), false);
+                        addOption(cfg, QueryOptions.IVARATOR_CACHE_OFF_HEAP, Boolean.toString(config.isIvaratorCacheOffHeap()), false);
                         addOption(cfg, QueryOptions.IVARATOR_SCAN_PERSIST_THRESHOLD, Long.toString(config.getIvaratorCacheScanPersistThreshold()), false);
                         addOption(cfg, QueryOptions.IVARATOR_SCAN_TIMEOUT, Long.toString(config.getIvaratorCacheScanTimeout()), false);
                         addOption(cfg, QueryOptions.COLLECT_TIMING_DETAILS, Boolean.toString(config.getCollectTimingDetails()), false);
@@ -1665,6 +1693,8 @@ public class DefaultQueryPlanner extends QueryPlanner {
                         addOption(cfg, QueryOptions.MAX_IVARATOR_OPEN_FILES, Integer.toString(config.getIvaratorMaxOpenFiles()), false);
                         addOption(cfg, QueryOptions.MAX_IVARATOR_RESULTS, Long.toString(config.getMaxIvaratorResults()), false);
                         addOption(cfg, QueryOptions.IVARATOR_NUM_RETRIES, Integer.toString(config.getIvaratorNumRetries()), false);
+                        addOption(cfg, QueryOptions.IVARATOR_MERGE_PREFETCH_SIZE, Integer.toString(config.getIvaratorMergePrefetchSize()), false);
+                        addOption(cfg, QueryOptions.IVARATOR_MERGE_PREFETCH_MAX_BYTES, Long.toString(config.getIvaratorMergePrefetchMaxBytes()), false);
                         addOption(cfg, QueryOptions.MAX_EVALUATION_PIPELINES, Integer.toString(config.getMaxEvaluationPipelines()), false);
                         addOption(cfg, QueryOptions.MAX_PIPELINE_CACHED_RESULTS, Integer.toString(config.getMaxPipelineCachedResults()), false);
                         addOption(cfg, QueryOptions.MAX_IVARATOR_SOURCES, Integer.toString(config.getMaxIvaratorSources()), false);
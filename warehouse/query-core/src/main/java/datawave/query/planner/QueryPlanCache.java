@@ -0,0 +1,368 @@
+package datawave.query.planner;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import datawave.data.type.DiscreteIndexType;
+import datawave.data.type.Type;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.visitors.RebuildingVisitor;
+import datawave.query.model.QueryModel;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.QueryImpl.Parameter;
+
+/**
+ * A cache of planned query trees shared by all of the queries on a web server. The fully planned tree of a query, before the ranges are computed, is cached by
+ * the planner, query logic, query string, date range, datatype filter, authorizations, query parameters and the model and metadata tables, so that queries
+ * repeating the same plan (for example dashboards refreshing the same queries) skip the parsing, model expansion and index expansion of the query. The
+ * configuration the planning derives from the metadata is cached with the tree and restored along with it.
+ * <p>
+ * The query string is keyed as given, so only textually identical queries share a plan. The cache is bounded by a number of plans and by a time to live, which
+ * bounds how stale an expansion against the index can be, and is invalidated when the metadata caches are evicted.
+ */
+public class QueryPlanCache implements QueryPlanCacheMBean {
+    private static final Logger log = Logger.getLogger(QueryPlanCache.class);
+    
+    public static final String MAX_SIZE_PROPERTY = "datawave.query.plan.cache.size";
+    public static final String TTL_PROPERTY = "datawave.query.plan.cache.ttl.seconds";
+    public static final long DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL_SECONDS = 300;
+    
+    private static QueryPlanCache instance = null;
+    
+    private final long maxSize;
+    private final long ttlSeconds;
+    private final Cache<String,CachedPlan> cache;
+    
+    public QueryPlanCache(long maxSize, long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlSeconds = ttlSeconds;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).recordStats().build();
+    }
+    
+    /**
+     * @return the cache shared by the web server, sized using the {@value #MAX_SIZE_PROPERTY} and {@value #TTL_PROPERTY} system properties
+     */
+    public static synchronized QueryPlanCache getInstance() {
+        if (instance == null) {
+            instance = new QueryPlanCache(Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE), Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS));
+            instance.registerMBean();
+        }
+        return instance;
+    }
+    
+    /**
+     * Invalidate the shared cache, if it has been created
+     */
+    public static synchronized void invalidateInstance() {
+        if (instance != null) {
+            instance.invalidateAll();
+        }
+    }
+    
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("datawave.query:type=QueryPlanCache");
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register the query plan cache metrics", e);
+        }
+    }
+    
+    /**
+     * Build the cache key for a query. This must be called before the query is planned, as planning may adjust the date range of the configuration.
+     *
+     * @param plannerName
+     *            the name of the planner, as subclasses may plan differently
+     * @param config
+     *            the configuration of the query
+     * @param query
+     *            the query string
+     * @param settings
+     *            the query settings
+     * @return the key
+     */
+    public static String key(String plannerName, ShardQueryConfiguration config, String query, Query settings) {
+        StringBuilder key = new StringBuilder();
+        key.append(plannerName).append('\0').append(query);
+        key.append('\0').append(time(config.getBeginDate())).append('\0').append(time(config.getEndDate()));
+        key.append('\0').append(sorted(config.getDatatypeFilter()));
+        // the authorizations are sorted so that the same auths in a different order share a key
+        TreeSet<String> sortedAuths = new TreeSet<>();
+        if (config.getAuthorizations() != null) {
+            for (Authorizations authorizations : config.getAuthorizations()) {
+                TreeSet<String> sorted = new TreeSet<>();
+                for (byte[] auth : authorizations.getAuthorizations()) {
+                    sorted.add(new String(auth, StandardCharsets.UTF_8));
+                }
+                sortedAuths.add(sorted.toString());
+            }
+        }
+        key.append('\0').append(sortedAuths);
+        key.append('\0').append(config.getModelName()).append('\0').append(config.getModelTableName());
+        key.append('\0').append(config.getMetadataTableName());
+        if (settings != null) {
+            key.append('\0').append(settings.getQueryLogicName());
+            TreeMap<String,String> parameters = new TreeMap<>();
+            if (settings.getParameters() != null) {
+                for (Parameter parameter : settings.getParameters()) {
+                    parameters.put(parameter.getParameterName(), parameter.getParameterValue());
+                }
+            }
+            key.append('\0').append(parameters);
+        }
+        return key.toString();
+    }
+    
+    /**
+     * Get the plan of a query, restoring the configuration derived when it was planned
+     *
+     * @param key
+     *            the query key
+     * @param config
+     *            the configuration of the query, which is updated if the plan is cached
+     * @return a copy of the planned query tree, or null if the query is not cached
+     */
+    public ASTJexlScript get(String key, ShardQueryConfiguration config) {
+        CachedPlan plan = cache.getIfPresent(key);
+        return plan == null ? null : plan.apply(config);
+    }
+    
+    /**
+     * Cache the plan of a query
+     *
+     * @param key
+     *            the query key
+     * @param queryTree
+     *            the planned query tree, which is copied
+     * @param config
+     *            the configuration of the query after planning
+     */
+    public void put(String key, ASTJexlScript queryTree, ShardQueryConfiguration config) {
+        if (queryTree != null) {
+            cache.put(key, new CachedPlan(queryTree, config));
+        }
+    }
+    
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    @Override
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    @Override
+    public long getTimeToLiveSeconds() {
+        return ttlSeconds;
+    }
+    
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+    
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+    
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+    
+    @Override
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+    
+    @Override
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+    
+    private static Long time(Date date) {
+        return date == null ? null : date.getTime();
+    }
+    
+    private static Set<String> sorted(Collection<String> values) {
+        return values == null ? null : new TreeSet<>(values);
+    }
+    
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+    
+    private static Set<String> copy(Set<String> values) {
+        return values == null ? null : Sets.newHashSet(values);
+    }
+    
+    private static <K,V> Map<K,V> copy(Map<K,V> map) {
+        return map == null ? null : new HashMap<>(map);
+    }
+    
+    private static <K,V> Multimap<K,V> copy(Multimap<K,V> multimap) {
+        if (multimap == null) {
+            return null;
+        }
+        // the order of the composite fields matters, so keep the order and the duplicates of the original
+        return multimap instanceof ListMultimap ? ArrayListMultimap.create(multimap) : LinkedHashMultimap.create(multimap);
+    }
+    
+    /**
+     * A planned query tree along with the configuration set while planning it. The cached state is never handed out, only copies of it.
+     */
+    private static class CachedPlan {
+        private final ASTJexlScript queryTree;
+        
+        // set by the query options function
+        private final boolean includeGroupingContext;
+        private final boolean hitList;
+        private final boolean typeMetadataInHdfs;
+        private final int groupFieldsBatchSize;
+        
+        // set by the date filters and the query model
+        private final Date beginDate;
+        private final Date endDate;
+        private final QueryModel queryModel;
+        private final Set<String> projectFields;
+        private final Set<String> blacklistedFields;
+        private final Set<String> limitFields;
+        private final Set<String> groupFields;
+        private final Set<String> uniqueFields;
+        
+        // derived from the metadata
+        private final Set<String> indexedFields;
+        private final Set<String> reverseIndexedFields;
+        private final Multimap<String,Type<?>> queryFieldsDatatypes;
+        private final Multimap<String,Type<?>> normalizedFieldsDatatypes;
+        private final Multimap<String,String> compositeToFieldMap;
+        private final Map<String,Date> compositeTransitionDates;
+        private final Map<String,String> compositeFieldSeparators;
+        private final Map<String,DiscreteIndexType<?>> fieldToDiscreteIndexTypes;
+        private final boolean expandAllTerms;
+        
+        // derived from the planned tree
+        private final boolean containsIndexOnlyTerms;
+        private final boolean containsCompositeTerms;
+        private final boolean sortedUIDs;
+        private final Set<String> queryTermFrequencyFields;
+        private final boolean termFrequenciesRequired;
+        
+        private CachedPlan(ASTJexlScript queryTree, ShardQueryConfiguration config) {
+            this.queryTree = (ASTJexlScript) RebuildingVisitor.copy(queryTree);
+            
+            this.includeGroupingContext = config.getIncludeGroupingContext();
+            this.hitList = config.isHitList();
+            this.typeMetadataInHdfs = config.isTypeMetadataInHdfs();
+            this.groupFieldsBatchSize = config.getGroupFieldsBatchSize();
+            
+            this.beginDate = copy(config.getBeginDate());
+            this.endDate = copy(config.getEndDate());
+            this.queryModel = config.getQueryModel();
+            this.projectFields = copy(config.getProjectFields());
+            this.blacklistedFields = copy(config.getBlacklistedFields());
+            this.limitFields = copy(config.getLimitFields());
+            this.groupFields = copy(config.getGroupFields());
+            this.uniqueFields = copy(config.getUniqueFields());
+            
+            this.indexedFields = copy(config.getIndexedFields());
+            this.reverseIndexedFields = copy(config.getReverseIndexedFields());
+            this.queryFieldsDatatypes = copy(config.getQueryFieldsDatatypes());
+            this.normalizedFieldsDatatypes = copy(config.getNormalizedFieldsDatatypes());
+            this.compositeToFieldMap = copy(config.getCompositeToFieldMap());
+            this.compositeTransitionDates = copy(config.getCompositeTransitionDates());
+            this.compositeFieldSeparators = copy(config.getCompositeFieldSeparators());
+            this.fieldToDiscreteIndexTypes = copy(config.getFieldToDiscreteIndexTypes());
+            this.expandAllTerms = config.isExpandAllTerms();
+            
+            this.containsIndexOnlyTerms = config.isContainsIndexOnlyTerms();
+            this.containsCompositeTerms = config.isContainsCompositeTerms();
+            this.sortedUIDs = config.isSortedUIDs();
+            this.queryTermFrequencyFields = copy(config.getQueryTermFrequencyFields());
+            this.termFrequenciesRequired = config.isTermFrequenciesRequired();
+        }
+        
+        private ASTJexlScript apply(ShardQueryConfiguration config) {
+            config.setIncludeGroupingContext(includeGroupingContext);
+            config.setHitList(hitList);
+            config.setTypeMetadataInHdfs(typeMetadataInHdfs);
+            config.setGroupFieldsBatchSize(groupFieldsBatchSize);
+            
+            config.setBeginDate(copy(beginDate));
+            config.setEndDate(copy(endDate));
+            config.setQueryModel(queryModel);
+            // the field setters do not accept null
+            if (projectFields != null) {
+                config.setProjectFields(projectFields);
+            }
+            if (blacklistedFields != null) {
+                config.setBlacklistedFields(blacklistedFields);
+            }
+            if (limitFields != null) {
+                config.setLimitFields(limitFields);
+            }
+            if (groupFields != null) {
+                config.setGroupFields(groupFields);
+            }
+            if (uniqueFields != null) {
+                config.setUniqueFields(uniqueFields);
+            }
+            
+            if (indexedFields != null) {
+                config.setIndexedFields(indexedFields);
+            }
+            if (reverseIndexedFields != null) {
+                config.setReverseIndexedFields(reverseIndexedFields);
+            }
+            config.setQueryFieldsDatatypes(copy(queryFieldsDatatypes));
+            if (normalizedFieldsDatatypes != null) {
+                config.setNormalizedFieldsDatatypes(copy(normalizedFieldsDatatypes));
+            }
+            config.setCompositeToFieldMap(copy(compositeToFieldMap));
+            config.setCompositeTransitionDates(copy(compositeTransitionDates));
+            config.setCompositeFieldSeparators(copy(compositeFieldSeparators));
+            config.setFieldToDiscreteIndexTypes(copy(fieldToDiscreteIndexTypes));
+            config.setExpandAllTerms(expandAllTerms);
+            
+            config.setContainsIndexOnlyTerms(containsIndexOnlyTerms);
+            config.setContainsCompositeTerms(containsCompositeTerms);
+            config.setSortedUIDs(sortedUIDs);
+            if (queryTermFrequencyFields != null) {
+                config.setQueryTermFrequencyFields(queryTermFrequencyFields);
+            }
+            config.setTermFrequenciesRequired(termFrequenciesRequired);
+            
+            return (ASTJexlScript) RebuildingVisitor.copy(queryTree);
+        }
+    }
+}
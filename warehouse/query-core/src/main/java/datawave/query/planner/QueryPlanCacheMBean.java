@@ -0,0 +1,21 @@
+package datawave.query.planner;
+
+public interface QueryPlanCacheMBean {
+    
+    long getMaxSize();
+    
+    long getTimeToLiveSeconds();
+    
+    long getSize();
+    
+    long getHitCount();
+    
+    long getMissCount();
+    
+    double getHitRate();
+    
+    long getEvictionCount();
+    
+    void invalidateAll();
+    
+}
@@ -7,15 +7,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.base.Throwables;
 import org.apache.accumulo.core.client.impl.ScannerOptions;
@@ -42,9 +46,11 @@ import com.google.common.util.concurrent.Service;
 
 import datawave.mr.bulk.RfileResource;
 import datawave.query.tables.async.Scan;
+import datawave.query.tables.async.ScanScheduler;
 import datawave.query.tables.async.ScannerChunk;
 import datawave.query.tables.async.SessionArbiter;
 import datawave.query.tables.async.SpeculativeScan;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
 import datawave.webservice.query.Query;
 
 /**
@@ -58,6 +64,16 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     private static final double QUEUE_MULTIPLIER = 25;
     
+    /**
+     * The max time to park while waiting for scans to complete before checking whether we are still running
+     */
+    private static final long MAX_PARK_MILLIS = 250;
+    
+    /**
+     * The max time to park while scans are waiting for room in the result queue
+     */
+    private static final long BLOCKED_PARK_MILLIS = 25;
+    
     /**
      * Delegates scanners to us, blocking if none are available or used by other sources.
      */
@@ -77,10 +93,35 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     protected BlockingQueue<ScannerChunk> currentBatch;
     
-    protected ExecutorService service = null;
+    /**
+     * The web server's scan scheduler, shared with all other sessions, and the priority of our scans in it
+     */
+    protected ScanScheduler scheduler = ScanScheduler.getInstance();
+    
+    protected AccumuloConnectionFactory.Priority priority = AccumuloConnectionFactory.Priority.NORMAL;
     
+    /**
+     * The scans submitted to the scheduler that have not completed
+     */
+    protected Set<Future<Scan>> activeScans = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    
+    /**
+     * The scans that returned because the result queue was full, which are resubmitted once there is room
+     */
+    protected Queue<Scan> blockedScans = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Runs the listeners, and signals our scans to stop once shutdown
+     */
     ExecutorService listenerService = null;
     
+    /**
+     * Signalled when a scan completes, so that run can wait for room for more scans
+     */
+    protected final ReentrantLock scanLock = new ReentrantLock();
+    
+    protected final Condition scanCompleted = scanLock.newCondition();
+    
     protected StringBuilder threadId = new StringBuilder();
     
     protected List<Function<ScannerChunk,ScannerChunk>> visitorFunctions = Lists.newArrayList();
@@ -106,30 +147,6 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     protected int threadCount = 5;
     
-    private class BatchReaderThreadFactory implements ThreadFactory {
-        
-        private ThreadFactory dtf = Executors.defaultThreadFactory();
-        private int threadNum = 1;
-        private StringBuilder threadIdentifier;
-        private UncaughtExceptionHandler uncaughtHandler = null;
-        
-        public BatchReaderThreadFactory(StringBuilder threadName, UncaughtExceptionHandler handler)
-        
-        {
-            uncaughtHandler = handler;
-            this.threadIdentifier = threadName;
-        }
-        
-        public Thread newThread(Runnable r) {
-            Thread thread = dtf.newThread(r);
-            thread.setName("Datawave BatchScanner Session " + threadIdentifier + " -" + threadNum++);
-            thread.setDaemon(true);
-            thread.setUncaughtExceptionHandler(uncaughtHandler);
-            return thread;
-        }
-        
-    }
-    
     public BatchScannerSession(ScannerSession other) {
         this(other.tableName, other.auths, other.sessionDelegator, other.maxResults, other.settings, other.options, other.ranges);
         
@@ -176,10 +193,25 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         
     }
     
-    public BatchScannerSession updateThreadService(ExecutorService service) {
-        if (service != null)
-            this.service.shutdownNow();
-        this.service = service;
+    /**
+     * Use a different scan scheduler
+     * 
+     * @param scheduler
+     * @return
+     */
+    public BatchScannerSession updateScheduler(ScanScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+    
+    /**
+     * Set the priority of our scans in the scan scheduler
+     * 
+     * @param priority
+     * @return
+     */
+    public BatchScannerSession setPriority(AccumuloConnectionFactory.Priority priority) {
+        this.priority = priority;
         return this;
     }
     
@@ -187,12 +219,14 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         this.scanLimitTimeout = timeout;
     }
     
+    /**
+     * Set the number of threads our scans would use, which determines how many scans are submitted to the scan scheduler at once
+     * 
+     * @param threads
+     * @return
+     */
     public BatchScannerSession setThreads(int threads) {
-        if (service != null)
-            service.shutdownNow();
         this.threadCount = threads;
-        service = new ThreadPoolExecutor(threads, threads, 120, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new BatchReaderThreadFactory(threadId, this));
-        service = MoreExecutors.listeningDecorator(service);
         return this;
     }
     
@@ -276,6 +310,7 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
             while (scannerBatches.hasNext())
             
             {
+                resubmitBlockedScans();
                 if (runnableCount.get() < (threadCount * RANGE_MULTIPLIER)) {
                     if (currentBatch.isEmpty()) {
                         List<ScannerChunk> chunks = scannerBatches.next();
@@ -292,12 +327,12 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                     
                 } else {
                     if (log.isTraceEnabled()) {
-                        log.trace("Parking for 10 milliseconds until we have additional work that can be done; " + threadCount + " "
-                                        + (threadCount * RANGE_MULTIPLIER) + " " + currentBatch.size() + " >= " + (threadCount * QUEUE_MULTIPLIER));
+                        log.trace("Parking until we have additional work that can be done; " + threadCount + " " + (threadCount * RANGE_MULTIPLIER) + " "
+                                        + currentBatch.size() + " >= " + (threadCount * QUEUE_MULTIPLIER));
                     }
-                    Thread.sleep(10);
+                    awaitScans((int) (threadCount * RANGE_MULTIPLIER) - 1);
                     if (Thread.interrupted() || !isRunning()) {
-                        service.shutdownNow();
+                        cancelScans();
                         throw new InterruptedException("Interrupted while parking");
                     }
                 }
@@ -307,23 +342,21 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 log.trace("waiting " + runnableCount.get());
             submitTasks();
             while (runnableCount.get() > 0) {
-                Thread.sleep(1);
+                awaitScans(0);
                 // if a failure did not occur, let's check the interrupted status
                 if (isRunning()) {
                     
                     if (Thread.interrupted()) {
-                        service.shutdownNow();
+                        cancelScans();
                         throw new InterruptedException("Interrupted while parking");
                     }
                 } else {
                     if (log.isTraceEnabled())
                         log.trace(" no longer running");
-                    service.shutdownNow();
+                    cancelScans();
                     return;
                 }
             }
-            service.shutdown();
-            while (!service.awaitTermination(250, TimeUnit.MILLISECONDS)) {}
         } catch (Exception e) {
             uncaughtExceptionHandler.uncaughtException(Thread.currentThread().currentThread(), e);
             Throwables.propagate(e);
@@ -335,6 +368,59 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         return 5;
     }
     
+    /**
+     * Wait until a scan completes if more than the given number of scans are running
+     * 
+     * @param maxRunning
+     * @throws InterruptedException
+     */
+    protected void awaitScans(int maxRunning) throws InterruptedException {
+        scanLock.lock();
+        try {
+            if (runnableCount.get() > maxRunning) {
+                scanCompleted.await(blockedScans.isEmpty() ? MAX_PARK_MILLIS : BLOCKED_PARK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            scanLock.unlock();
+        }
+        resubmitBlockedScans();
+    }
+    
+    /**
+     * Resubmit the scans that were blocked on the result queue, as long as there is room in it
+     */
+    protected void resubmitBlockedScans() {
+        int room = resultQueue.remainingCapacity();
+        Scan scan;
+        while (room-- > 0 && isRunning() && (scan = blockedScans.poll()) != null) {
+            submitScan(scan, false);
+        }
+    }
+    
+    protected void signalScans() {
+        scanLock.lock();
+        try {
+            scanCompleted.signalAll();
+        } finally {
+            scanLock.unlock();
+        }
+    }
+    
+    /**
+     * Cancel the scans that have not completed, interrupting those that are running
+     */
+    protected void cancelScans() {
+        for (Future<Scan> future : activeScans) {
+            future.cancel(true);
+        }
+        activeScans.clear();
+        blockedScans.clear();
+    }
+    
+    protected String getQueryId() {
+        return (settings == null || settings.getId() == null) ? null : settings.getId().toString();
+    }
+    
     /**
      * @param chunks
      */
@@ -363,7 +449,8 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 
                 chunk.setQueryId(settings.getId().toString());
                 
-                scan = new SpeculativeScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
+                scan = new SpeculativeScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService,
+                                scheduler, priority);
                 
                 scan.setVisitors(visitorFunctions);
                 
@@ -423,7 +510,8 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 if (log.isTraceEnabled()) {
                     log.trace("Using speculative execution");
                 }
-                scan = new SpeculativeScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
+                scan = new SpeculativeScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService,
+                                scheduler, priority);
                 
                 ((SpeculativeScan) scan).addScan(new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference, BatchResource.class,
                                 ((SpeculativeScan) scan).getQueue(), listenerService));
@@ -449,9 +537,17 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     }
     
     protected void submitScan(Scan scan, boolean increment) {
-        ListenableFuture<Scan> future = (ListenableFuture<Scan>) service.submit(scan);
+        ListenableFuture<Scan> future;
+        if (scan instanceof SpeculativeScan) {
+            // a speculative scan has already submitted its child scans, so it does not need a thread of its own
+            future = ((SpeculativeScan) scan).getResult();
+        } else {
+            future = scheduler.submit(getQueryId(), priority, scan);
+        }
         if (increment)
             runnableCount.incrementAndGet();
+        activeScans.add(future);
+        future.addListener(() -> activeScans.remove(future), MoreExecutors.sameThreadExecutor());
         Futures.addCallback(future, this);
     }
     
@@ -503,9 +599,11 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
          * In the event that we are not finished (i.e. time sliced ) we should resubmit
          */
         
-        if (finishedScan.finished()) {
-            runnableCount.decrementAndGet();
-            
+        if (finishedScan.isBlocked()) {
+            // the result queue is full, so hold the scan until there is room rather than letting it hold a thread
+            blockedScans.add(finishedScan);
+            signalScans();
+        } else if (finishedScan.finished()) {
             finishedScan.close();
             
             if (null != stats && null != finishedScan.getStats()) {
@@ -513,6 +611,9 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                     stats.merge(finishedScan.getStats());
                 }
             }
+            
+            runnableCount.decrementAndGet();
+            signalScans();
         } else {
             // we've timed out
             AtomicInteger failCount = serverFailureMap.get(finishedScan.getScanLocation());
@@ -536,15 +637,20 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
      */
     @Override
     public void onFailure(Throwable t) {
+        if (t instanceof CancellationException) {
+            // we cancelled the scan because we are shutting down
+            if (log.isTraceEnabled())
+                log.trace("Scan cancelled");
+            return;
+        }
         stop();
+        signalScans();
         uncaughtExceptionHandler.uncaughtException(Thread.currentThread().currentThread(), t);
         Throwables.propagate(t);
         
     }
     
     private class BatchScannerListener extends Service.Listener {
-        private static final int MAX_WAIT = 480;
-        
         /*
          * (non-Javadoc)
          * 
@@ -628,28 +734,17 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
          * 
          */
         protected void shutdownServices() {
-            service.shutdownNow();
             listenerService.shutdownNow();
-            int count = 0;
-            try {
-                while (!service.awaitTermination(250, TimeUnit.MILLISECONDS) && count < MAX_WAIT) {
-                    count++;
-                }
-                if (count >= MAX_WAIT) {
-                    // if this happens it could be a misconfigured scan
-                    log.error("Executor did not fully shutdown");
-                }
-            } catch (InterruptedException e) {
-                // we were interrupted while waiting
-            }
+            cancelScans();
+            signalScans();
         }
     }
     
     @Override
     public void close() {
         stop();
-        service.shutdownNow();
         listenerService.shutdownNow();
+        cancelScans();
     }
     
     public void addVisitor(Function<ScannerChunk,ScannerChunk> visitorFunction) {
@@ -1,13 +1,9 @@
 package datawave.query.tables;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnel;
-import com.google.common.hash.PrimitiveSink;
-import java.io.Serializable;
-import java.util.HashSet;
+import datawave.query.util.dedup.DedupStore;
+import datawave.query.util.dedup.ScalableBloomDedupStore;
 import java.util.Iterator;
 import java.util.Map.Entry;
-import org.apache.accumulo.core.data.ArrayByteSequence;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
@@ -18,16 +14,15 @@ import org.apache.accumulo.core.data.Value;
 class DedupingIterator implements Iterator<Entry<Key,Value>> {
     private Iterator<Entry<Key,Value>> delegate;
     private Entry<Key,Value> next;
-    private BloomFilter<byte[]> bloom = null;
-    private HashSet<ByteSequence> seen;
-    private final boolean DEBUG = true;
+    private final DedupStore dedupStore;
     
     public DedupingIterator(Iterator<Entry<Key,Value>> iterator) {
+        this(iterator, new ScalableBloomDedupStore());
+    }
+    
+    public DedupingIterator(Iterator<Entry<Key,Value>> iterator, DedupStore dedupStore) {
         this.delegate = iterator;
-        this.bloom = BloomFilter.create(new ByteFunnel(), 500000, 1e-15);
-        if (DEBUG) {
-            this.seen = new HashSet<>();
-        }
+        this.dedupStore = dedupStore;
         getNext();
     }
     
@@ -39,6 +34,10 @@ class DedupingIterator implements Iterator<Entry<Key,Value>> {
                 next = null;
             }
         }
+        if (next == null) {
+            // nothing left to compare against, so release the signatures seen
+            dedupStore.clear();
+        }
     }
     
     private byte[] getBytes(Entry<Key,Value> entry) {
@@ -87,31 +86,7 @@ class DedupingIterator implements Iterator<Entry<Key,Value>> {
     }
     
     private boolean isDuplicate(Entry<Key,Value> entry) {
-        byte[] bytes = getBytes(entry);
-        ByteSequence byteSeq = new ArrayByteSequence(bytes);
-        if (bloom.mightContain(bytes)) {
-            if (DEBUG && !seen.contains(byteSeq)) {
-                throw new IllegalStateException("This event is 1 in 1Q!");
-            } else {
-                return true;
-            }
-        }
-        bloom.put(bytes);
-        if (DEBUG) {
-            seen.add(byteSeq);
-        }
-        return false;
-    }
-    
-    public static class ByteFunnel implements Funnel<byte[]>, Serializable {
-        
-        private static final long serialVersionUID = -2126172579955897986L;
-        
-        @Override
-        public void funnel(byte[] from, PrimitiveSink into) {
-            into.putBytes(from);
-        }
-        
+        return !dedupStore.add(getBytes(entry));
     }
     
 }
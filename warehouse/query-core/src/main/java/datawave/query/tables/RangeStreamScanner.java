@@ -504,6 +504,7 @@ public class RangeStreamScanner extends ScannerSession implements Callable<Range
                 log.trace("Finished");
             }
             finished = true;
+            complete = !forceClose;
             if (flushNeeded()) {
                 if (log.isTraceEnabled())
                     log.trace("flush needed");
@@ -514,6 +515,7 @@ public class RangeStreamScanner extends ScannerSession implements Callable<Range
         }
         
         ScannerBase baseScanner = null;
+        boolean failed = false;
         try {
             if (resultQueue.remainingCapacity() == 0) {
                 return;
@@ -609,6 +611,7 @@ public class RangeStreamScanner extends ScannerSession implements Callable<Range
             
         } catch (Exception e) {
             
+            failed = true;
             log.error(e);
             throw e;
             
@@ -621,6 +624,7 @@ public class RangeStreamScanner extends ScannerSession implements Callable<Range
             // no point in running again
             if (ranges.isEmpty() && lastSeenKey == null) {
                 finished = true;
+                complete = !failed && !forceClose;
             }
         }
     }
@@ -10,8 +10,10 @@ import datawave.mr.bulk.BulkInputFormat;
 import datawave.mr.bulk.MultiRfileInputformat;
 import datawave.mr.bulk.RfileScanner;
 import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.tables.async.ScanScheduler;
 import datawave.query.tables.stats.ScanSessionStats;
 import datawave.query.util.QueryScannerHelper;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
 import datawave.webservice.common.connection.WrappedConnector;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
@@ -40,6 +42,8 @@ public class ScannerFactory {
     protected boolean accrueStats = false;
     protected Query settings;
     protected ResourceQueue scanQueue = null;
+    protected ScanScheduler scanScheduler = ScanScheduler.getInstance();
+    protected AccumuloConnectionFactory.Priority priority = AccumuloConnectionFactory.Priority.NORMAL;
     ShardQueryConfiguration config = null;
     
     private static final Logger log = Logger.getLogger(ScannerFactory.class);
@@ -80,6 +84,19 @@ public class ScannerFactory {
         }
     }
     
+    /**
+     * Set the priority of the query's scans in the scan scheduler
+     * 
+     * @param priority
+     */
+    public void setPriority(AccumuloConnectionFactory.Priority priority) {
+        this.priority = priority;
+    }
+    
+    public void setScanScheduler(ScanScheduler scanScheduler) {
+        this.scanScheduler = scanScheduler;
+    }
+    
     public synchronized Scanner newSingleScanner(String tableName, Set<Authorizations> auths, Query query) throws TableNotFoundException {
         if (open) {
             Scanner bs = QueryScannerHelper.createScannerWithoutInfo(cxn, tableName, auths, query);
@@ -142,7 +159,8 @@ public class ScannerFactory {
      */
     public synchronized BatchScannerSession newQueryScanner(final String tableName, final Set<Authorizations> auths, Query settings) throws Exception {
         
-        return newLimitedScanner(BatchScannerSession.class, tableName, auths, settings).setThreads(scanQueue.getCapacity());
+        return newLimitedScanner(BatchScannerSession.class, tableName, auths, settings).setThreads(scanQueue.getCapacity()).updateScheduler(scanScheduler)
+                        .setPriority(priority);
     }
     
     /**
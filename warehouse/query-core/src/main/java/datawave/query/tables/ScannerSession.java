@@ -79,6 +79,11 @@ public class ScannerSession extends AbstractExecutionThreadService implements It
     
     protected volatile boolean forceClose = false;
     
+    /**
+     * Set once every range has been scanned, rather than the session being closed or failing part way through.
+     */
+    protected volatile boolean complete = false;
+    
     /**
      * 
      * 
@@ -403,6 +408,7 @@ public class ScannerSession extends AbstractExecutionThreadService implements It
                 flush();
                 return;
             }
+            complete = !forceClose;
             stop();
             
             return;
@@ -663,6 +669,13 @@ public class ScannerSession extends AbstractExecutionThreadService implements It
         return this;
     }
     
+    /**
+     * @return true if the session scanned all of its ranges, false if it is still running, was closed, or failed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
     public void close() {
         forceClose = true;
         stop();
@@ -45,6 +45,9 @@ import datawave.query.util.DateIndexHelperFactory;
 import datawave.query.util.MetadataHelper;
 import datawave.query.util.MetadataHelperFactory;
 import datawave.query.util.QueryStopwatch;
+import datawave.query.util.dedup.DedupStore;
+import datawave.query.util.dedup.ScalableBloomDedupStore;
+import datawave.query.util.dedup.SpillingDedupStore;
 import datawave.util.StringUtils;
 import datawave.util.time.TraceStopwatch;
 import datawave.webservice.common.connection.AccumuloConnectionFactory;
@@ -67,6 +70,7 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.collections4.iterators.TransformIterator;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.log4j.Logger;
 
@@ -167,6 +171,9 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     protected QueryModel queryModel = null;
     protected ScannerFactory scannerFactory = null;
     protected Scheduler scheduler = null;
+    // the dedup store and document transformer used for the results, both of which are released when the query is closed
+    protected DedupStore dedupStore = null;
+    protected DocumentTransformer transformer = null;
     protected EventQueryDataDecoratorTransformer eventQueryDataDecoratorTransformer = null;
     private ShardQueryConfiguration config;
     protected MetadataHelperFactory metadataHelperFactory = null;
@@ -356,6 +363,7 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         config.setMaxIndexBatchSize(getMaxIndexBatchSize());
         
         setScannerFactory(new ScannerFactory(config));
+        getScannerFactory().setPriority(getConnectionPriority());
         
         // load params before parsing jexl string so these can be injected
         loadQueryParameters(config, settings);
@@ -549,7 +557,8 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         this.iterator = this.scheduler.iterator();
         
         if (!config.isSortedUIDs()) {
-            this.iterator = new DedupingIterator(this.iterator);
+            this.dedupStore = config.isExactDedup() ? new SpillingDedupStore() : new ScalableBloomDedupStore();
+            this.iterator = new DedupingIterator(this.iterator, this.dedupStore);
         }
         
         stopwatch.stop();
@@ -590,13 +599,24 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
                 transformer.addTransform(new UniqueTransform(this, getConfig().getUniqueFields()));
             }
             if (getConfig().getGroupFields() != null && !getConfig().getGroupFields().isEmpty()) {
-                transformer.addTransform(new GroupingTransform(this, getConfig().getGroupFields()));
+                GroupingTransform groupingTransform = new GroupingTransform(this, getConfig().getGroupFields());
+                groupingTransform.setMaxMemoryBytes(getConfig().getGroupFieldsMaxMemoryBytes());
+                transformer.addTransform(groupingTransform);
             }
         }
         
         return transformer;
     }
     
+    @Override
+    public TransformIterator getTransformIterator(Query settings) {
+        TransformIterator iter = super.getTransformIterator(settings);
+        if (iter.getTransformer() instanceof DocumentTransformer) {
+            this.transformer = (DocumentTransformer) iter.getTransformer();
+        }
+        return iter;
+    }
+    
     protected void loadQueryParameters(ShardQueryConfiguration config, Query settings) throws QueryException {
         TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("ShardQueryLogic - Parse query parameters");
         boolean rawDataOnly = false;
@@ -767,6 +787,12 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             config.setTypeMetadataInHdfs(typeMetadataInHdfsBool);
         }
         
+        // Get the IVARATOR_CACHE_OFF_HEAP parameter if given
+        String ivaratorCacheOffHeapString = settings.findParameter(QueryOptions.IVARATOR_CACHE_OFF_HEAP).getParameterValue().trim();
+        if (org.apache.commons.lang.StringUtils.isNotBlank(ivaratorCacheOffHeapString)) {
+            config.setIvaratorCacheOffHeap(Boolean.parseBoolean(ivaratorCacheOffHeapString));
+        }
+        
         // Get the BYPASS_ACCUMULO parameter if given
         String bypassAccumuloString = settings.findParameter(BYPASS_ACCUMULO).getParameterValue().trim();
         if (org.apache.commons.lang.StringUtils.isNotBlank(bypassAccumuloString)) {
@@ -1092,6 +1118,16 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        if (null != this.dedupStore) {
+            log.debug("Clearing ShardQueryLogic dedup store: " + System.identityHashCode(this));
+            this.dedupStore.clear();
+        }
+        
+        if (null != this.transformer) {
+            log.debug("Closing ShardQueryLogic transformer: " + System.identityHashCode(this));
+            this.transformer.close();
+        }
+        
     }
     
     @Override
@@ -1444,6 +1480,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setNumIndexLookupThreads(indexLookupThreads);
     }
     
+    public boolean isIndexLookupCacheEnabled() {
+        return getConfig().isIndexLookupCacheEnabled();
+    }
+    
+    public void setIndexLookupCacheEnabled(boolean indexLookupCacheEnabled) {
+        getConfig().setIndexLookupCacheEnabled(indexLookupCacheEnabled);
+    }
+    
+    public boolean isQueryPlanCacheEnabled() {
+        return getConfig().isQueryPlanCacheEnabled();
+    }
+    
+    public void setQueryPlanCacheEnabled(boolean queryPlanCacheEnabled) {
+        getConfig().setQueryPlanCacheEnabled(queryPlanCacheEnabled);
+    }
+    
     public int getDateIndexThreads() {
         return getConfig().getNumDateIndexThreads();
     }
@@ -1597,6 +1649,30 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setIvaratorCacheBufferSize(ivaratorCacheBufferSize);
     }
     
+    public long getGroupFieldsMaxMemoryBytes() {
+        return getConfig().getGroupFieldsMaxMemoryBytes();
+    }
+    
+    public void setGroupFieldsMaxMemoryBytes(long groupFieldsMaxMemoryBytes) {
+        getConfig().setGroupFieldsMaxMemoryBytes(groupFieldsMaxMemoryBytes);
+    }
+    
+    public boolean isExactDedup() {
+        return getConfig().isExactDedup();
+    }
+    
+    public void setExactDedup(boolean exactDedup) {
+        getConfig().setExactDedup(exactDedup);
+    }
+    
+    public boolean isIvaratorCacheOffHeap() {
+        return getConfig().isIvaratorCacheOffHeap();
+    }
+    
+    public void setIvaratorCacheOffHeap(boolean ivaratorCacheOffHeap) {
+        getConfig().setIvaratorCacheOffHeap(ivaratorCacheOffHeap);
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return getConfig().getIvaratorCacheScanPersistThreshold();
     }
@@ -1665,6 +1741,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setIvaratorNumRetries(ivaratorNumRetries);
     }
     
+    public int getIvaratorMergePrefetchSize() {
+        return getConfig().getIvaratorMergePrefetchSize();
+    }
+    
+    public void setIvaratorMergePrefetchSize(int ivaratorMergePrefetchSize) {
+        getConfig().setIvaratorMergePrefetchSize(ivaratorMergePrefetchSize);
+    }
+    
+    public long getIvaratorMergePrefetchMaxBytes() {
+        return getConfig().getIvaratorMergePrefetchMaxBytes();
+    }
+    
+    public void setIvaratorMergePrefetchMaxBytes(long ivaratorMergePrefetchMaxBytes) {
+        getConfig().setIvaratorMergePrefetchMaxBytes(ivaratorMergePrefetchMaxBytes);
+    }
+    
     public int getMaxIvaratorSources() {
         return getConfig().getMaxIvaratorSources();
     }
@@ -1861,6 +1953,7 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         optionalParams.add(QueryOptions.HIT_LIST);
         optionalParams.add(QueryOptions.TYPE_METADATA_IN_HDFS);
         optionalParams.add(QueryOptions.DATE_INDEX_TIME_TRAVEL);
+        optionalParams.add(QueryOptions.IVARATOR_CACHE_OFF_HEAP);
         optionalParams.add(QueryParameters.LIMIT_FIELDS);
         optionalParams.add(QueryParameters.GROUP_FIELDS);
         optionalParams.add(QueryParameters.UNIQUE_FIELDS);
@@ -34,6 +34,9 @@ public class Scan implements Callable<Scan> {
     
     private static final Logger log = Logger.getLogger(Scan.class);
     public static final String SCAN_ID = "scan.id";
+    public static final String MAX_BLOCKED_PROPERTY = "datawave.query.scan.max.blocked.millis";
+    public static final long DEFAULT_MAX_BLOCKED_MILLIS = 10000;
+    private static final long OFFER_MILLIS = 25;
     
     protected ScannerChunk myScan;
     
@@ -53,6 +56,17 @@ public class Scan implements Callable<Scan> {
     
     protected BlockingQueue<Entry<Key,Value>> results;
     
+    /**
+     * The entry that could not be added to the full results queue. The scan returns with it, rather than holding a thread while the queue stays full, and adds
+     * it before continuing once resubmitted.
+     */
+    protected Entry<Key,Value> pendingEntry;
+    
+    /**
+     * How long to wait for room in the full results queue, with the scanner still open, before returning with the pending entry
+     */
+    protected long maxBlockedMillis = Long.getLong(MAX_BLOCKED_PROPERTY, DEFAULT_MAX_BLOCKED_MILLIS);
+    
     private String localTableName;
     
     private Set<Authorizations> localAuths;
@@ -93,6 +107,10 @@ public class Scan implements Callable<Scan> {
         this.timeout = timeout;
     }
     
+    public void setMaxBlockedMillis(long maxBlockedMillis) {
+        this.maxBlockedMillis = maxBlockedMillis;
+    }
+    
     public void setVisitors(List<Function<ScannerChunk,ScannerChunk>> visitorFunctions) {
         this.visitorFunctions = visitorFunctions;
     }
@@ -105,7 +123,14 @@ public class Scan implements Callable<Scan> {
         if (caller.isShutdown() && log.isTraceEnabled()) {
             log.trace("Prematurely shutting down because we were forced to stop");
         }
-        return caller.isShutdown() || (currentRange == null && lastSeenKey == null);
+        return caller.isShutdown() || (pendingEntry == null && currentRange == null && lastSeenKey == null);
+    }
+    
+    /**
+     * @return true if this scan returned because the results queue was full, and should be resubmitted once there is room
+     */
+    public boolean isBlocked() {
+        return pendingEntry != null && !caller.isShutdown();
     }
     
     @Subscribe
@@ -136,6 +161,14 @@ public class Scan implements Callable<Scan> {
                 initialized = true;
             }
             
+            if (null != pendingEntry) {
+                if (!offerResult(pendingEntry)) {
+                    return this;
+                }
+                lastSeenKey = pendingEntry.getKey();
+                pendingEntry = null;
+            }
+            
             do {
                 if (null != myStats)
                     myStats.getTimer(TIMERS.SCANNER_START).resume();
@@ -267,9 +300,12 @@ public class Scan implements Callable<Scan> {
                         throw new Exception("Stopped mid cycle");
                     myEntry = iter.next();
                     
-                    while (!caller.isShutdown() && !results.offer(myEntry, 25, TimeUnit.MILLISECONDS)) {
+                    if (!offerResult(myEntry)) {
+                        // give up our thread while the queue stays full, and continue from this entry when resubmitted
                         if (log.isTraceEnabled())
-                            log.trace("offering");
+                            log.trace("results are full, returning with " + myEntry.getKey());
+                        pendingEntry = myEntry;
+                        break;
                     }
                     
                     if (log.isTraceEnabled())
@@ -282,7 +318,7 @@ public class Scan implements Callable<Scan> {
                     if (log.isTraceEnabled())
                         log.trace("last seen key is " + lastSeenKey);
                 }
-                if (!iter.hasNext())
+                if (null == pendingEntry && !iter.hasNext())
                     lastSeenKey = null;
                 
                 // close early
@@ -291,6 +327,9 @@ public class Scan implements Callable<Scan> {
                 if (null != myStats)
                     myStats.getTimer(TIMERS.SCANNER_ITERATE).suspend();
                 
+                if (null != pendingEntry)
+                    return this;
+                
                 if (log.isTraceEnabled())
                     log.trace("not finished?" + !finished());
             } while (!finished());
@@ -319,6 +358,24 @@ public class Scan implements Callable<Scan> {
         
     }
     
+    /**
+     * Add an entry to the results, waiting up to {@link #maxBlockedMillis} while the queue is full. The caller keeps its scanner open while waiting, so that
+     * brief back pressure does not cost a re-seek.
+     * 
+     * @param entry
+     * @return false if the queue stayed full, or the caller was shut down
+     * @throws InterruptedException
+     */
+    protected boolean offerResult(Entry<Key,Value> entry) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxBlockedMillis;
+        while (!results.offer(entry, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (caller.isShutdown() || System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     static final AtomicLong scanIdFactory = new AtomicLong(0);
     
     private String getNewScanId() {
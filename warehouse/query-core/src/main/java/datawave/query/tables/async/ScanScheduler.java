@@ -0,0 +1,124 @@
+package datawave.query.tables.async;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import datawave.core.iterators.FairShareExecutor;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+
+/**
+ * The scan scheduler shared by all of the scanner sessions on a web server. The scans of all queries are run on one bounded set of threads, which are shared
+ * fairly between the queries, with each query limited to a max number of concurrent scans. Queries are scheduled in priority lanes matching their connection
+ * priority, so that the scans of higher priority queries are run first. A query's priority is raised by one level for every aging interval its oldest scan has
+ * waited, so that lower priority queries are still run while the server is busy with higher priority ones. The scheduler metrics, including how long scans
+ * wait for a thread, are registered with JMX.
+ */
+public class ScanScheduler {
+    private static final Logger log = Logger.getLogger(ScanScheduler.class);
+    
+    public static final String THREADS_PROPERTY = "datawave.query.scan.threads";
+    public static final String THREADS_PER_QUERY_PROPERTY = "datawave.query.scan.threads.per.query";
+    public static final String PRIORITY_AGING_PROPERTY = "datawave.query.scan.priority.aging.millis";
+    public static final int DEFAULT_THREADS = 256;
+    public static final int DEFAULT_THREADS_PER_QUERY = 32;
+    public static final long DEFAULT_PRIORITY_AGING_MILLIS = 5000;
+    
+    private static ScanScheduler instance = null;
+    
+    private final FairShareExecutor executor;
+    
+    public ScanScheduler(String name, int maxThreads, int maxThreadsPerQuery) {
+        this(name, maxThreads, maxThreadsPerQuery, DEFAULT_PRIORITY_AGING_MILLIS);
+    }
+    
+    public ScanScheduler(String name, int maxThreads, int maxThreadsPerQuery, long priorityAgingMillis) {
+        this.executor = new FairShareExecutor(name, maxThreads, maxThreadsPerQuery, priorityAgingMillis);
+    }
+    
+    /**
+     * @return the scheduler shared by the web server, sized using the {@value #THREADS_PROPERTY} and {@value #THREADS_PER_QUERY_PROPERTY} system properties,
+     *         and aging priorities using the {@value #PRIORITY_AGING_PROPERTY} system property
+     */
+    public static synchronized ScanScheduler getInstance() {
+        if (instance == null) {
+            instance = new ScanScheduler("Datawave Scan Scheduler", Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS), Integer.getInteger(
+                            THREADS_PER_QUERY_PROPERTY, DEFAULT_THREADS_PER_QUERY), Long.getLong(PRIORITY_AGING_PROPERTY, DEFAULT_PRIORITY_AGING_MILLIS));
+            instance.registerMBean();
+        }
+        return instance;
+    }
+    
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("datawave.query:type=ScanScheduler");
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(executor, objectName);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register the scan scheduler metrics", e);
+        }
+    }
+    
+    /**
+     * Submit a scan on behalf of a query
+     *
+     * @param queryId
+     *            the query id, or null if unknown
+     * @param priority
+     *            the query's connection priority
+     * @param scan
+     *            the scan
+     * @return the future for the scan
+     */
+    public ListenableFuture<Scan> submit(String queryId, AccumuloConnectionFactory.Priority priority, Scan scan) {
+        ListenableFutureTask<Scan> task = ListenableFutureTask.create(scan);
+        executor.submit(queryId, lane(priority), task);
+        return task;
+    }
+    
+    /**
+     * Submit other work on behalf of a query, such as moving the results of a finished scan
+     *
+     * @param queryId
+     *            the query id, or null if unknown
+     * @param priority
+     *            the query's connection priority
+     * @param task
+     *            the task
+     * @return the future for the task
+     */
+    public Future<?> submit(String queryId, AccumuloConnectionFactory.Priority priority, Runnable task) {
+        return executor.submit(queryId, lane(priority), task);
+    }
+    
+    private static int lane(AccumuloConnectionFactory.Priority priority) {
+        return (priority == null ? AccumuloConnectionFactory.Priority.NORMAL : priority).ordinal();
+    }
+    
+    /**
+     * Change the number of threads, and the max number of concurrent scans for a query
+     *
+     * @param maxThreads
+     * @param maxThreadsPerQuery
+     */
+    public void setMaxThreads(int maxThreads, int maxThreadsPerQuery) {
+        executor.setMaxThreads(maxThreads, maxThreadsPerQuery);
+    }
+    
+    public FairShareExecutor getExecutor() {
+        return executor;
+    }
+    
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+}
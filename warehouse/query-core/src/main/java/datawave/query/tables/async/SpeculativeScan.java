@@ -5,15 +5,14 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
@@ -27,13 +26,16 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 import datawave.query.tables.AccumuloResource;
 import datawave.query.tables.ResourceQueue;
 import datawave.query.tables.stats.ScanSessionStats;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
 
 /**
- * Intended for a single lookup
+ * Intended for a single lookup. The competing scans are run on the scan scheduler, and the result of this scan is set once one of them has finished, so that
+ * this scan does not hold a thread of its own while it waits.
  *
  */
 public class SpeculativeScan extends Scan implements FutureCallback<Scan>, UncaughtExceptionHandler {
@@ -49,47 +51,35 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
     
     protected AtomicBoolean finished = new AtomicBoolean(false);
     
-    protected ExecutorService service = null;
+    protected ScanScheduler scheduler;
+    
+    protected AccumuloConnectionFactory.Priority priority;
+    
+    protected SettableFuture<Scan> result = SettableFuture.create();
     
     protected LinkedBlockingDeque<Entry<Key,Value>> myResultQueue;
     
-    protected ReentrantLock writeControl = new ReentrantLock();
+    // claimed by the scan whose results are being moved to the results queue
+    protected AtomicBoolean writeControl = new AtomicBoolean(false);
     
     protected Throwable failure = null;
     
-    private class SpeculativeScanThreadFactory implements ThreadFactory {
-        
-        private ThreadFactory dtf = Executors.defaultThreadFactory();
-        private int threadNum = 1;
-        private StringBuilder threadIdentifier;
-        private UncaughtExceptionHandler handler;
-        
-        public SpeculativeScanThreadFactory(StringBuilder threadName, UncaughtExceptionHandler handler)
-        
-        {
-            this.handler = handler;
-            this.threadIdentifier = threadName;
-        }
-        
-        public Thread newThread(Runnable r) {
-            Thread thread = dtf.newThread(r);
-            thread.setName("Speculative Scan " + threadIdentifier + " -" + threadNum++);
-            thread.setDaemon(true);
-            thread.setUncaughtExceptionHandler(handler);
-            return thread;
-        }
-        
-    }
-    
     public SpeculativeScan(String localTableName, Set<Authorizations> localAuths, ScannerChunk chunk, ResourceQueue delegatorReference,
-                    Class<? extends AccumuloResource> delegatedResourceInitializer, ArrayBlockingQueue<Entry<Key,Value>> results, ExecutorService callingService) {
+                    Class<? extends AccumuloResource> delegatedResourceInitializer, ArrayBlockingQueue<Entry<Key,Value>> results, ExecutorService callingService,
+                    ScanScheduler scheduler, AccumuloConnectionFactory.Priority priority) {
         super(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, results, callingService);
         scans = Lists.newArrayList();
         scanFutures = Lists.newArrayList();
         myResultQueue = new LinkedBlockingDeque<>();
-        service = Executors.newFixedThreadPool(2, new SpeculativeScanThreadFactory(new StringBuilder(chunk.getQueryId()), this));
-        service = MoreExecutors.listeningDecorator(service);
+        this.scheduler = scheduler;
+        this.priority = priority;
         disableStats();
+        // cancelling our result, as the session does when it is closed, cancels the competing scans
+        result.addListener(() -> {
+            if (result.isCancelled()) {
+                close();
+            }
+        }, MoreExecutors.sameThreadExecutor());
     }
     
     public boolean addScan(Scan scan) {
@@ -101,7 +91,7 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
             
             scan.disableStats();
             scans.add(scan);
-            ListenableFuture<Scan> future = (ListenableFuture<Scan>) service.submit(scan);
+            ListenableFuture<Scan> future = scheduler.submit(myScan.getQueryId(), priority, scan);
             scanFutures.add(future);
             Futures.addCallback(future, this);
         }
@@ -112,6 +102,13 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
         return finished.get();
     }
     
+    /**
+     * @return the future which completes when this scan is closed
+     */
+    public ListenableFuture<Scan> getResult() {
+        return result;
+    }
+    
     @Subscribe
     public void registerShutdown(ShutdownEvent event) {
         continueMultiScan = false;
@@ -124,23 +121,12 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
      */
     @Override
     public Scan call() throws Exception {
-        
-        while (!finished.get() && !caller.isShutdown() && !service.isShutdown()) {
-            if (log.isTraceEnabled()) {
-                log.trace("here with " + myResultQueue.size() + " " + " " + finished.get() + " " + service.isShutdown());
-            }
-            Thread.sleep(10);
-            if (Thread.interrupted()) {
-                throw new InterruptedException("Interrupted while parking");
-            }
-        }
-        
-        if (failure != null) {
-            log.error("Exception in speculative scan detected", failure);
-            throw new RuntimeException(failure);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            log.error("Exception in speculative scan detected", e.getCause());
+            throw new RuntimeException(e.getCause());
         }
-        
-        return this;
     }
     
     /**
@@ -168,22 +154,46 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
         if (finished.get())
             return;
         /**
-         * If we can't acquire the semaphore this means that another thread succeeded and our results are to be ignored.
+         * If we can't claim the write control this means that another thread succeeded and our results are to be ignored.
          */
-        if (!writeControl.tryLock()) {
+        if (!writeControl.compareAndSet(false, true)) {
             
             return;
         }
         
+        drain(result);
+    }
+    
+    /**
+     * Move the results to the results queue. If the queue stays full, the thread is given up and the remaining results are moved by a new task, as a
+     * {@link Scan} does, keeping the write control until they have all been moved.
+     * 
+     * @param result
+     *            the scan that succeeded
+     */
+    protected void drain(Scan result) {
+        boolean yielded = false;
         try {
             
-            while (!myResultQueue.isEmpty()) {
-                results.put(myResultQueue.poll(2, TimeUnit.MILLISECONDS));
+            Entry<Key,Value> entry;
+            while (null != (entry = myResultQueue.peek())) {
+                if (!offerResult(entry)) {
+                    if (!caller.isShutdown() && !finished.get()) {
+                        if (log.isTraceEnabled())
+                            log.trace("results are full, yielding with " + entry.getKey());
+                        scheduler.submit(myScan.getQueryId(), priority, () -> drain(result));
+                        yielded = true;
+                    } else {
+                        close();
+                    }
+                    return;
+                }
+                myResultQueue.poll();
                 if (log.isTraceEnabled())
-                    log.trace("status" + Thread.interrupted() + " " + caller.isShutdown() + " " + service.isShutdown());
-                if (Thread.interrupted() || caller.isShutdown() || service.isShutdown() || finished.get()) {
+                    log.trace("status" + Thread.interrupted() + " " + caller.isShutdown() + " " + finished.get());
+                if (Thread.interrupted() || caller.isShutdown() || finished.get()) {
                     if (log.isTraceEnabled())
-                        log.trace("closing" + Thread.interrupted() + " " + caller.isShutdown() + " " + service.isShutdown());
+                        log.trace("closing" + Thread.interrupted() + " " + caller.isShutdown() + " " + finished.get());
                     close();
                     break;
                 }
@@ -203,8 +213,12 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
         } catch (InterruptedException e) {
             close();
             throw new RuntimeException(e);
+        } catch (RejectedExecutionException e) {
+            close();
         } finally {
-            writeControl.unlock();
+            if (!yielded) {
+                writeControl.set(false);
+            }
         }
         
     }
@@ -219,11 +233,15 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
     @Override
     public void onFailure(Throwable t) {
         
+        // the losing scans are cancelled once we have finished
+        if (t instanceof CancellationException) {
+            return;
+        }
+        
         // if all failed, then return failure
         if (failureCount.incrementAndGet() >= scans.size()) {
-            close();
             failure = t;
-            throw new RuntimeException(t);
+            close();
         }
         
     }
@@ -242,7 +260,16 @@ public class SpeculativeScan extends Scan implements FutureCallback<Scan>, Uncau
     public void close() {
         setClose();
         closeScans();
-        service.shutdownNow();
+        synchronized (scanFutures) {
+            for (Future<Scan> future : scanFutures) {
+                future.cancel(true);
+            }
+        }
+        if (failure != null) {
+            result.setException(failure);
+        } else {
+            result.set(this);
+        }
     }
     
     @Override
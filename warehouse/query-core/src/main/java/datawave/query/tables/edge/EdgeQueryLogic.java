@@ -9,6 +9,7 @@ import datawave.query.Constants;
 import datawave.query.QueryParameters;
 import datawave.query.config.EdgeQueryConfiguration;
 import datawave.query.exceptions.DatawaveFatalQueryException;
+import datawave.query.iterator.EdgeAggregationIterator;
 import datawave.query.iterator.filter.DateTypeFilter;
 import datawave.query.iterator.filter.EdgeFilterIterator;
 import datawave.query.iterator.filter.LoadDateFilter;
@@ -592,6 +593,7 @@ public class EdgeQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         scanner.setRanges(qData.getRanges());
         
         addCustomFilters(qData, currentIteratorPriority);
+        addAggregationIterator(qData, config.getDateRollup());
         
         for (IteratorSetting setting : qData.getSettings()) {
             scanner.addScanIterator(setting);
@@ -632,6 +634,27 @@ public class EdgeQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
      */
     protected void addCustomFilters(QueryData data, int priority) {}
     
+    /**
+     * Configures the iterator which rolls up the edges on the tablet servers, after all of the filters
+     *
+     * @param data
+     *            the QueryData for the query logic to be configured
+     * @param rollup
+     *            the date period to roll the edges up to, or null to return every edge
+     */
+    protected void addAggregationIterator(QueryData data, EdgeAggregationIterator.Rollup rollup) {
+        if (rollup != null) {
+            int priority = currentIteratorPriority;
+            for (IteratorSetting setting : data.getSettings()) {
+                priority = Math.max(priority, setting.getPriority() + 1);
+            }
+            IteratorSetting setting = new IteratorSetting(priority, EdgeAggregationIterator.class.getSimpleName() + "_" + priority,
+                            EdgeAggregationIterator.class);
+            setting.addOption(EdgeAggregationIterator.ROLLUP_OPTION, rollup.name());
+            data.addIterator(setting);
+        }
+    }
+    
     @Override
     public Priority getConnectionPriority() {
         return Priority.NORMAL;
@@ -16,6 +16,9 @@ public interface DocumentTransform extends Function<Map.Entry<Key,Document>,Map.
     // called after the last document is passed through to get any remaining aggregated results.
     Map.Entry<Key,Document> flush();
     
+    // called when the query is closed to release any resources held by the transform.
+    void close();
+    
     class DefaultDocumentTransform implements DocumentTransform {
         protected Query settings;
         protected MarkingFunctions markingFunctions;
@@ -31,6 +34,9 @@ public interface DocumentTransform extends Function<Map.Entry<Key,Document>,Map.
             return null;
         }
         
+        @Override
+        public void close() {}
+        
         @Nullable
         @Override
         public Map.Entry<Key,Document> apply(@Nullable Map.Entry<Key,Document> keyDocumentEntry) {
@@ -505,6 +505,19 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
         transforms.add(transform);
     }
     
+    /**
+     * Close the document transforms, releasing any resources they hold
+     */
+    public void close() {
+        for (DocumentTransform transform : transforms) {
+            try {
+                transform.close();
+            } catch (Exception e) {
+                log.error("Failed to close document transform " + transform, e);
+            }
+        }
+    }
+    
     @Override
     public void setContentFieldNames(List<String> contentFieldNames) {
         super.setContentFieldNames(contentFieldNames);
@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.springframework.util.Assert;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.AbstractMap;
 import java.util.ArrayList;
@@ -39,7 +40,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -52,11 +52,19 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Because the tserver may tear down and start a new iterator at any time after a next() call, there can be no saved state in this class. For that reason, each
  * next call on the tserver will flatten the aggregated data into a single Entry&gt;Key,Document&lt; to return to the web server. The web server will then
  * aggregate these documents by count.
+ *
+ * On the web server the groups are held in memory up to the configured max memory. Beyond that the groups are spilled to local disk as sorted runs, which are
+ * merge aggregated when the results are flushed.
  */
 public class GroupingTransform extends DocumentTransform.DefaultDocumentTransform {
     
     private static final Logger log = getLogger(GroupingTransform.class);
     
+    /**
+     * the approximate bytes used by a visibility held for a group
+     */
+    private static final long GROUP_VISIBILITY_BYTES = 64;
+    
     /**
      * the fields (user provided) to group by
      */
@@ -89,9 +97,21 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private Map<String,String> reverseModelMapping = null;
     
     /**
-     * list of keys that have been read, in order to keep track of where we left off when a new iterator is created
+     * the last key that has been read, in order to keep track of where we left off when a new iterator is created
+     */
+    private Key lastKey = null;
+    
+    /**
+     * the approximate heap used by the groups in the countingMap on the web server, and the max before they are spilled to disk. 0 or less for no max.
+     */
+    private long groupBytes = 0;
+    private long maxMemoryBytes = 0;
+    
+    /**
+     * the groups spilled to disk on the web server, and the merge of those groups once they are being flushed
      */
-    private List<Key> keys = new ArrayList<>();
+    private SpilledGroups spilledGroups = null;
+    private Iterator<SpilledGroups.Group> mergedGroups = null;
     
     /**
      * flatten or not. true on the tserver, false on the webserver
@@ -131,6 +151,30 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         return fields.stream().map(field -> JexlASTHelper.deconstructIdentifier(field)).collect(Collectors.toSet());
     }
     
+    /**
+     * Set the approximate max memory used for the groups on the web server before they are spilled to local disk
+     *
+     * @param maxMemoryBytes
+     *            the max bytes, 0 or less for no max
+     */
+    public void setMaxMemoryBytes(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+    
+    /**
+     * @return the number of groups held in memory
+     */
+    public int getGroupCount() {
+        return (countingMap == null ? 0 : countingMap.size());
+    }
+    
+    /**
+     * @return the number of times the groups were spilled to disk
+     */
+    public int getSpillCount() {
+        return (spilledGroups == null ? 0 : spilledGroups.getRunCount());
+    }
+    
     @Override
     public void initialize(Query settings, MarkingFunctions markingFunctions) {
         super.initialize(settings, markingFunctions);
@@ -178,7 +222,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                         log.trace("hasNext is false because yield was called");
                         if (countingMap != null && !countingMap.isEmpty()) {
                             // reset the yield and use its key in the flattened document prepared below
-                            keys.add(yieldCallback.getPositionAndReset());
+                            lastKey = yieldCallback.getPositionAndReset();
                         }
                         break;
                     } else {
@@ -212,31 +256,17 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     @Override
     public Entry<Key,Document> flush() {
         
+        if (spilledGroups != null) {
+            return flushSpilledGroups();
+        }
+        
         if (!countingMap.isEmpty()) {
             
             log.trace("flush will use the countingMap: {}", countingMap);
             
             for (Collection<GroupingTypeAttribute<?>> entry : countingMap.keySet()) {
                 log.trace("from countingMap, got entry: {}", entry);
-                ColumnVisibility columnVisibility = null;
-                try {
-                    columnVisibility = toColumnVisibility(fieldVisibilities.get(entry));
-                } catch (Exception e) {
-                    throw new IllegalStateException("Unable to merge column visibilities: " + fieldVisibilities.get(entry), e);
-                }
-                // grab a key from those saved during getListKeyCounts
-                Assert.notEmpty(keys, "no available keys for grouping results");
-                // use the last (most recent) key so a new iterator will know where to start
-                Key docKey = keys.get(keys.size() - 1);
-                Document d = new Document(docKey, true);
-                d.setColumnVisibility(columnVisibility);
-                
-                entry.forEach(base -> d.put(getFieldName(base), base));
-                NumberType type = new NumberType();
-                type.setDelegate(new BigDecimal(countingMap.get(entry)));
-                TypeAttribute<BigDecimal> attr = new TypeAttribute<>(type, new Key("count"), true);
-                d.put("COUNT", attr);
-                documents.add(d);
+                documents.add(createDocument(entry, fieldVisibilities.get(entry), countingMap.get(entry)));
             }
             if (flatten) {
                 // flatten to just one document on the tserver.
@@ -247,20 +277,119 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
             log.trace("{} will flush first of {} documents: {}", this.hashCode(), documents.size(), documents);
             Document d = documents.pop();
             Key key;
-            if (keys.size() > 0 && flatten) {
+            if (lastKey != null && flatten) {
                 // use the last (most recent) key so a new iterator will know where to start
-                key = keys.get(keys.size() - 1);
+                key = lastKey;
             } else {
                 key = d.getMetadata();
             }
             Entry<Key,Document> entry = Maps.immutableEntry(key, d);
             log.trace("flushing out {}", entry);
             countingMap.clear();
+            fieldVisibilities.clear();
+            groupBytes = 0;
             return entry;
         }
         return null;
     }
     
+    /**
+     * Release the groups held in memory, and delete any groups spilled to disk that have not been flushed
+     */
+    @Override
+    public void close() {
+        if (spilledGroups != null) {
+            spilledGroups.close();
+            spilledGroups = null;
+        }
+        mergedGroups = null;
+        if (countingMap != null) {
+            countingMap.clear();
+        }
+        fieldVisibilities.clear();
+        documents.clear();
+        groupBytes = 0;
+    }
+    
+    /**
+     * Create the document for a group
+     *
+     * @param group
+     *            the grouped attributes
+     * @param visibilities
+     *            the visibilities of the documents in the group
+     * @param count
+     *            the number of times the group was seen
+     * @return the document
+     */
+    private Document createDocument(Collection<GroupingTypeAttribute<?>> group, Collection<ColumnVisibility> visibilities, long count) {
+        ColumnVisibility columnVisibility = null;
+        try {
+            columnVisibility = toColumnVisibility(visibilities);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to merge column visibilities: " + visibilities, e);
+        }
+        // grab the key saved during getListKeyCounts
+        Assert.notNull(lastKey, "no available keys for grouping results");
+        // use the last (most recent) key so a new iterator will know where to start
+        Document d = new Document(lastKey, true);
+        d.setColumnVisibility(columnVisibility);
+        
+        group.forEach(base -> d.put(getFieldName(base), base));
+        NumberType type = new NumberType();
+        type.setDelegate(new BigDecimal(count));
+        TypeAttribute<BigDecimal> attr = new TypeAttribute<>(type, new Key("count"), true);
+        d.put("COUNT", attr);
+        return d;
+    }
+    
+    /**
+     * Spill the groups held in memory to disk as a sorted run
+     */
+    private void spill() {
+        try {
+            if (spilledGroups == null) {
+                spilledGroups = new SpilledGroups(markingFunctions);
+            }
+            log.info("Spilling {} groups using approximately {} bytes to disk, run {}", countingMap.size(), groupBytes, spilledGroups.getRunCount() + 1);
+            spilledGroups.spill(countingMap, fieldVisibilities);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to spill groups to disk", e);
+        }
+        countingMap.clear();
+        fieldVisibilities.clear();
+        groupBytes = 0;
+    }
+    
+    /**
+     * Flush the next group from the merge of the groups spilled to disk
+     *
+     * @return the next group, or null if there are no more
+     */
+    private Entry<Key,Document> flushSpilledGroups() {
+        try {
+            if (mergedGroups == null) {
+                if (!countingMap.isEmpty()) {
+                    spill();
+                }
+                log.info("Merging {} runs of spilled groups", spilledGroups.getRunCount());
+                mergedGroups = spilledGroups.merge();
+            }
+            if (mergedGroups.hasNext()) {
+                SpilledGroups.Group group = mergedGroups.next();
+                Document d = createDocument(group.getAttributes(), group.getVisibilities(), group.getCount());
+                return Maps.immutableEntry(d.getMetadata(), d);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to merge spilled groups", e);
+        }
+        log.info("Merged {} spilled groups", spilledGroups.getMergedGroupCount());
+        spilledGroups.close();
+        spilledGroups = null;
+        mergedGroups = null;
+        return null;
+    }
+    
     /**
      * <pre>
      * flush used the countingMap:
@@ -393,7 +522,9 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private void getListKeyCounts(Entry<Key,Document> entry) {
         
         log.trace("{} get list key counts for: {}", flatten ? "t" : "web" + "server", entry);
-        keys.add(entry.getKey());
+        lastKey = entry.getKey();
+        // the field map is only used for the fields of this document
+        fieldMap.clear();
         
         Set<String> expandedGroupFieldsList = new LinkedHashSet<>();
         // if the incoming Documents have been aggregated on the tserver, they will have a COUNT field.
@@ -443,8 +574,15 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                     count = 1;
                 // see above comment about the COUNT field
                 log.trace("{} adding {} of {} to counting map", flatten ? "tserver" : "webserver", count, fieldCollection);
-                IntStream.range(0, count).forEach(j -> countingMap.add(fieldCollection));
-                fieldVisibilities.put(fieldCollection, getColumnVisibility(entry));
+                if (countingMap.add(fieldCollection, count) == count) {
+                    // a new group
+                    for (GroupingTypeAttribute<?> attribute : fieldCollection) {
+                        groupBytes += attribute.sizeInBytes();
+                    }
+                }
+                if (fieldVisibilities.put(fieldCollection, getColumnVisibility(entry))) {
+                    groupBytes += GROUP_VISIBILITY_BYTES;
+                }
                 log.trace("put {} to {} into fieldVisibilities {}", fieldCollection, getColumnVisibility(entry), fieldVisibilities);
             } else {
                 log.trace("fieldList.size() != this.expandedGroupFieldsList.size()");
@@ -453,6 +591,10 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
             }
         }
         log.trace("countingMap: {}", countingMap);
+        
+        if (!flatten && maxMemoryBytes > 0 && groupBytes > maxMemoryBytes) {
+            spill();
+        }
     }
     
     private ColumnVisibility combine(Collection<ColumnVisibility> in) {
@@ -478,37 +620,66 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         
         private MarkingFunctions markingFunctions;
         
+        /**
+         * the attributes of the map keys indexed by their value, so that the attributes matching an incoming attribute can be found without scanning all keys
+         */
+        private Map<String,List<GroupingTypeAttribute<?>>> keyAttributes = new HashMap<>();
+        
         public GroupCountingHashMap(MarkingFunctions markingFunctions) {
             this.markingFunctions = markingFunctions;
         }
         
         public int add(Collection<GroupingTypeAttribute<?>> in) {
-            int count = 0;
-            if (super.containsKey(in)) {
-                count = super.get(in);
+            return add(in, 1);
+        }
+        
+        /**
+         * Add a number of instances of a group
+         *
+         * @param in
+         *            the group
+         * @param count
+         *            the number of instances
+         * @return the resulting count for the group
+         */
+        public int add(Collection<GroupingTypeAttribute<?>> in, int count) {
+            Integer existing = super.get(in);
+            if (existing != null) {
+                count += existing;
                 // aggregate the visibilities
-                combine(this.keySet(), in);
+                combineVisibilities(in);
+            } else {
+                for (GroupingTypeAttribute<?> attribute : in) {
+                    keyAttributes.computeIfAbsent(attribute.getType().getDelegateAsString(), k -> new ArrayList<>()).add(attribute);
+                }
             }
-            count++;
             super.put(in, count);
             return count;
         }
         
-        private void combine(Set<Collection<GroupingTypeAttribute<?>>> existingMapKeys, Collection<? extends Attribute<?>> incomingAttributes) {
+        @Override
+        public void clear() {
+            super.clear();
+            keyAttributes.clear();
+        }
+        
+        private void combineVisibilities(Collection<GroupingTypeAttribute<?>> incomingAttributes) {
             
             // for each Attribute in the incomingAttributes, find the existing map key attribute that matches its data.
             // combine the column visibilities of the incoming attribute and the existing one, and set
             // the column visibility of the EXISTING map key to the new value.
             // Note that the hashCode and equals methods for the GroupingTypeAttribute will ignore the metadata (which contains the column visibility)
             incomingAttributes.forEach(incomingAttribute -> {
-                existingMapKeys.stream()
-                                .flatMap(Collection::stream)
-                                // if the existing and incoming attributes are equal (other than the metadata), the incoming attribute's visibility will be
-                                // considered for merging into the existing attribute unless the column visibilities are already equal
-                                .filter(existingAttribute -> existingAttribute.getData().equals(incomingAttribute.getData())
-                                                && !existingAttribute.getColumnVisibility().equals(incomingAttribute.getColumnVisibility()))
-                                .forEach(existingAttribute -> existingAttribute.setColumnVisibility(combine(Arrays.asList(
-                                                existingAttribute.getColumnVisibility(), incomingAttribute.getColumnVisibility()))));
+                List<GroupingTypeAttribute<?>> existingAttributes = keyAttributes.get(incomingAttribute.getType().getDelegateAsString());
+                if (existingAttributes != null) {
+                    existingAttributes.stream()
+                                    // if the existing and incoming attributes are equal (other than the metadata), the incoming attribute's visibility will be
+                                    // considered for merging into the existing attribute unless the column visibilities are already equal
+                                    .filter(existingAttribute -> existingAttribute.getData().equals(incomingAttribute.getData())
+                                                    && !existingAttribute.getColumnVisibility().equals(incomingAttribute.getColumnVisibility()))
+                                    .forEach(existingAttribute -> existingAttribute.setColumnVisibility(combine(Arrays.asList(
+                                                    existingAttribute.getColumnVisibility(), incomingAttribute.getColumnVisibility()))));
+                }
             });
         }
         
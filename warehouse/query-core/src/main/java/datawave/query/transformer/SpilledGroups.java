@@ -0,0 +1,296 @@
+package datawave.query.transformer;
+
+import com.google.common.collect.Multimap;
+import datawave.data.type.Type;
+import datawave.marking.MarkingFunctions;
+import datawave.query.transformer.GroupingTransform.GroupingTypeAttribute;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.WritableUtils;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The groups from a GroupingTransform that have been spilled to local disk. Each spill writes a run of groups sorted by their attributes, and the runs are
+ * merged when the groups are flushed so that the groups that were spilled more than once are aggregated into one.
+ */
+class SpilledGroups implements Closeable {
+    
+    private static final Logger log = getLogger(SpilledGroups.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final MarkingFunctions markingFunctions;
+    private final List<File> runs = new ArrayList<>();
+    private final List<Run> openRuns = new ArrayList<>();
+    private long mergedGroupCount = 0;
+    
+    SpilledGroups(MarkingFunctions markingFunctions) {
+        this.markingFunctions = markingFunctions;
+    }
+    
+    /**
+     * @return the number of runs spilled to disk
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+    
+    /**
+     * @return the number of groups returned by the merge so far
+     */
+    long getMergedGroupCount() {
+        return mergedGroupCount;
+    }
+    
+    /**
+     * Write the groups to a new sorted run
+     *
+     * @param counts
+     *            the groups and their counts
+     * @param visibilities
+     *            the visibilities of the documents in each group
+     * @throws IOException
+     *             if the run could not be written
+     */
+    void spill(Map<Collection<GroupingTypeAttribute<?>>,Integer> counts, Multimap<Collection<GroupingTypeAttribute<?>>,ColumnVisibility> visibilities)
+                    throws IOException {
+        TreeMap<String,Collection<GroupingTypeAttribute<?>>> sorted = new TreeMap<>();
+        for (Collection<GroupingTypeAttribute<?>> group : counts.keySet()) {
+            sorted.put(getSortKey(group), group);
+        }
+        
+        File file = File.createTempFile("groups", ".run");
+        file.deleteOnExit();
+        runs.add(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            for (Map.Entry<String,Collection<GroupingTypeAttribute<?>>> entry : sorted.entrySet()) {
+                Collection<GroupingTypeAttribute<?>> group = entry.getValue();
+                WritableUtils.writeString(out, entry.getKey());
+                WritableUtils.writeVInt(out, group.size());
+                for (GroupingTypeAttribute<?> attribute : group) {
+                    WritableUtils.writeString(out, attribute.getType().getClass().getName());
+                    WritableUtils.writeString(out, attribute.getType().getDelegateAsString());
+                    attribute.getMetadata().write(out);
+                    out.writeBoolean(attribute.isToKeep());
+                }
+                WritableUtils.writeVLong(out, counts.get(group));
+                Collection<ColumnVisibility> groupVisibilities = visibilities.get(group);
+                WritableUtils.writeVInt(out, groupVisibilities.size());
+                for (ColumnVisibility visibility : groupVisibilities) {
+                    WritableUtils.writeCompressedByteArray(out, visibility.getExpression());
+                }
+            }
+        }
+        log.debug("Spilled {} groups to {}", sorted.size(), file);
+    }
+    
+    /**
+     * Merge the runs, aggregating the groups found in more than one run
+     *
+     * @return an iterator of the groups in sorted order
+     * @throws IOException
+     *             if a run could not be read
+     */
+    Iterator<Group> merge() throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runs.size()), Comparator.comparing(run -> run.next.sortKey));
+        for (File file : runs) {
+            Run run = new Run(file);
+            openRuns.add(run);
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+        
+        return new Iterator<Group>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+            
+            @Override
+            public Group next() {
+                if (queue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Run run = queue.poll();
+                Group group = run.next;
+                requeue(run);
+                while (!queue.isEmpty() && queue.peek().next.sortKey.equals(group.sortKey)) {
+                    run = queue.poll();
+                    group.merge(run.next);
+                    requeue(run);
+                }
+                mergedGroupCount++;
+                return group;
+            }
+            
+            private void requeue(Run run) {
+                try {
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to read spilled groups from " + run.file, e);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Close and delete all of the runs
+     */
+    @Override
+    public void close() {
+        for (Run run : openRuns) {
+            try {
+                run.in.close();
+            } catch (IOException e) {
+                log.warn("Unable to close {}", run.file, e);
+            }
+        }
+        openRuns.clear();
+        for (File file : runs) {
+            if (!file.delete()) {
+                log.warn("Unable to delete {}", file);
+            }
+        }
+        runs.clear();
+    }
+    
+    /**
+     * A canonical key for a group which does not depend on the iteration order of its attributes. Like the groups held in memory, only the values of the
+     * attributes are compared, so that the same groups are aggregated whether or not they were spilled.
+     */
+    private static String getSortKey(Collection<GroupingTypeAttribute<?>> group) {
+        String[] parts = new String[group.size()];
+        int i = 0;
+        for (GroupingTypeAttribute<?> attribute : group) {
+            parts[i++] = attribute.getType().getDelegateAsString();
+        }
+        Arrays.sort(parts);
+        return String.join("\1", parts);
+    }
+    
+    /**
+     * A group read back from a run
+     */
+    class Group {
+        private final String sortKey;
+        private final List<GroupingTypeAttribute<?>> attributes;
+        private final Set<ColumnVisibility> visibilities;
+        private long count;
+        
+        private Group(String sortKey, List<GroupingTypeAttribute<?>> attributes, Set<ColumnVisibility> visibilities, long count) {
+            this.sortKey = sortKey;
+            this.attributes = attributes;
+            this.visibilities = visibilities;
+            this.count = count;
+        }
+        
+        Collection<GroupingTypeAttribute<?>> getAttributes() {
+            return attributes;
+        }
+        
+        Collection<ColumnVisibility> getVisibilities() {
+            return visibilities;
+        }
+        
+        long getCount() {
+            return count;
+        }
+        
+        private void merge(Group other) {
+            count += other.count;
+            visibilities.addAll(other.visibilities);
+            // match the attributes by value, as the groups held in memory do
+            for (GroupingTypeAttribute<?> otherAttribute : other.attributes) {
+                for (GroupingTypeAttribute<?> attribute : attributes) {
+                    if (attribute.getType().getDelegateAsString().equals(otherAttribute.getType().getDelegateAsString())
+                                    && !attribute.getColumnVisibility().equals(otherAttribute.getColumnVisibility())) {
+                        try {
+                            attribute.setColumnVisibility(markingFunctions.combine(Arrays.asList(attribute.getColumnVisibility(),
+                                            otherAttribute.getColumnVisibility())));
+                        } catch (MarkingFunctions.Exception e) {
+                            throw new IllegalStateException("Unable to merge column visibilities for " + attribute, e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * A run being read during the merge
+     */
+    private class Run {
+        private final File file;
+        private final DataInputStream in;
+        private Group next;
+        
+        private Run(File file) throws IOException {
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+        
+        private boolean advance() throws IOException {
+            String sortKey;
+            try {
+                sortKey = WritableUtils.readString(in);
+            } catch (EOFException e) {
+                next = null;
+                in.close();
+                return false;
+            }
+            int size = WritableUtils.readVInt(in);
+            List<GroupingTypeAttribute<?>> attributes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String typeClass = WritableUtils.readString(in);
+                String delegate = WritableUtils.readString(in);
+                Key metadata = new Key();
+                metadata.readFields(in);
+                boolean toKeep = in.readBoolean();
+                Type<?> type;
+                try {
+                    type = (Type<?>) Class.forName(typeClass).newInstance();
+                } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                    throw new IOException("Unable to create type " + typeClass, e);
+                }
+                type.setDelegateFromString(delegate);
+                attributes.add(new GroupingTypeAttribute<>(type, metadata, toKeep));
+            }
+            long count = WritableUtils.readVLong(in);
+            int visibilityCount = WritableUtils.readVInt(in);
+            Set<ColumnVisibility> visibilities = new HashSet<>();
+            for (int i = 0; i < visibilityCount; i++) {
+                visibilities.add(new ColumnVisibility(WritableUtils.readCompressedByteArray(in)));
+            }
+            next = new Group(sortKey, attributes, visibilities, count);
+            return true;
+        }
+    }
+}
@@ -4,19 +4,17 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnel;
-import com.google.common.hash.PrimitiveSink;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Attributes;
 import datawave.query.attributes.Document;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.dedup.DedupStore;
+import datawave.query.util.dedup.ScalableBloomDedupStore;
+import datawave.query.util.dedup.SpillingDedupStore;
 import datawave.util.StringUtils;
 import datawave.webservice.query.logic.BaseQueryLogic;
-import org.apache.accumulo.core.data.ArrayByteSequence;
-import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
@@ -25,7 +23,6 @@ import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -47,18 +44,23 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
     
     private static final Logger log = Logger.getLogger(GroupingTransform.class);
     
-    private BloomFilter<byte[]> bloom = null;
-    private HashSet<ByteSequence> seen;
+    private final DedupStore dedupStore;
     private Set<String> fields;
     private Multimap<String,String> modelMapping;
-    private final boolean DEBUG = false;
     
     public UniqueTransform(Set<String> fields) {
+        this(fields, new ScalableBloomDedupStore());
+    }
+    
+    /**
+     * Create a unique transform that records the documents seen in the specified dedup store
+     * 
+     * @param fields
+     * @param dedupStore
+     */
+    public UniqueTransform(Set<String> fields, DedupStore dedupStore) {
         this.fields = deconstruct(fields);
-        this.bloom = BloomFilter.create(new ByteFunnel(), 500000, 1e-15);
-        if (DEBUG) {
-            this.seen = new HashSet<>();
-        }
+        this.dedupStore = dedupStore;
         if (log.isTraceEnabled())
             log.trace("unique fields: " + this.fields);
     }
@@ -74,7 +76,7 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      * @param fields
      */
     public UniqueTransform(BaseQueryLogic<Entry<Key,Value>> logic, Set<String> fields) {
-        this(fields);
+        this(fields, ((ShardQueryLogic) logic).isExactDedup() ? new SpillingDedupStore() : new ScalableBloomDedupStore());
         QueryModel model = ((ShardQueryLogic) logic).getQueryModel();
         if (model != null) {
             modelMapping = HashMultimap.create();
@@ -124,21 +126,28 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      */
     private boolean isDuplicate(Document document) throws IOException {
         byte[] bytes = getBytes(document);
-        ByteSequence byteSeq = new ArrayByteSequence(bytes);
-        synchronized (bloom) {
-            if (bloom.mightContain(bytes)) {
-                if (DEBUG && !seen.contains(byteSeq)) {
-                    throw new IllegalStateException("This event is 1 in 1Q!");
-                } else {
-                    return true;
-                }
-            }
-            bloom.put(bytes);
-            if (DEBUG) {
-                seen.add(byteSeq);
-            }
+        synchronized (dedupStore) {
+            return !dedupStore.add(bytes);
+        }
+    }
+    
+    /**
+     * Get the store of the documents seen so far
+     * 
+     * @return the dedup store
+     */
+    public DedupStore getDedupStore() {
+        return dedupStore;
+    }
+    
+    /**
+     * Clear the store of the documents seen, removing any files it has spilled to
+     */
+    @Override
+    public void close() {
+        synchronized (dedupStore) {
+            dedupStore.clear();
         }
-        return false;
     }
     
     /**
@@ -401,15 +410,4 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         return false;
     }
     
-    public static class ByteFunnel implements Funnel<byte[]>, Serializable {
-        
-        private static final long serialVersionUID = -2126172579955897986L;
-        
-        @Override
-        public void funnel(byte[] from, PrimitiveSink into) {
-            into.putBytes(from);
-        }
-        
-    }
-    
 }
@@ -0,0 +1,30 @@
+package datawave.query.util.dedup;
+
+/**
+ * A store of the signatures already seen, used to filter out duplicate results
+ */
+public interface DedupStore {
+    
+    /**
+     * Add a signature to the store
+     *
+     * @param signature
+     * @return true if the signature had not been added before, false if it is a duplicate
+     */
+    boolean add(byte[] signature);
+    
+    /**
+     * @return the number of signatures added
+     */
+    long size();
+    
+    /**
+     * @return the probability that a new signature is reported as a duplicate, 0 for an exact store
+     */
+    double getExpectedFpp();
+    
+    /**
+     * Remove all of the signatures, releasing any resources held
+     */
+    void clear();
+}
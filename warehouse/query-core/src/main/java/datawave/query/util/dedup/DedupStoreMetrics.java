@@ -0,0 +1,98 @@
+package datawave.query.util.dedup;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The lookup counts of the exact dedup stores across all queries, exposed over JMX
+ */
+public class DedupStoreMetrics implements DedupStoreMetricsMBean {
+    private static final Logger log = Logger.getLogger(DedupStoreMetrics.class);
+    
+    private static DedupStoreMetrics instance = null;
+    
+    private final AtomicLong signatures = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong fileLookups = new AtomicLong();
+    private final AtomicLong falsePrefilterHits = new AtomicLong();
+    
+    public static synchronized DedupStoreMetrics getInstance() {
+        if (instance == null) {
+            instance = new DedupStoreMetrics();
+            instance.registerMBean();
+        }
+        return instance;
+    }
+    
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("datawave.query:type=DedupStoreMetrics");
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register the dedup store metrics", e);
+        }
+    }
+    
+    /**
+     * Record a signature added to a store
+     *
+     * @param duplicate
+     *            whether the signature had been added before
+     * @param fileLookup
+     *            whether the signature had to be looked up in the spilled signatures
+     */
+    public void record(boolean duplicate, boolean fileLookup) {
+        signatures.incrementAndGet();
+        if (duplicate) {
+            duplicates.incrementAndGet();
+        }
+        if (fileLookup) {
+            fileLookups.incrementAndGet();
+            if (!duplicate) {
+                falsePrefilterHits.incrementAndGet();
+            }
+        }
+    }
+    
+    @Override
+    public long getSignatures() {
+        return signatures.get();
+    }
+    
+    @Override
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+    
+    @Override
+    public long getFileLookups() {
+        return fileLookups.get();
+    }
+    
+    @Override
+    public long getFalsePrefilterHits() {
+        return falsePrefilterHits.get();
+    }
+    
+    @Override
+    public double getFalsePrefilterHitRate() {
+        long lookups = fileLookups.get();
+        return lookups == 0 ? 0 : (double) falsePrefilterHits.get() / lookups;
+    }
+    
+    @Override
+    public void reset() {
+        signatures.set(0);
+        duplicates.set(0);
+        fileLookups.set(0);
+        falsePrefilterHits.set(0);
+    }
+}
@@ -0,0 +1,17 @@
+package datawave.query.util.dedup;
+
+public interface DedupStoreMetricsMBean {
+    
+    long getSignatures();
+    
+    long getDuplicates();
+    
+    long getFileLookups();
+    
+    long getFalsePrefilterHits();
+    
+    double getFalsePrefilterHitRate();
+    
+    void reset();
+    
+}
@@ -0,0 +1,137 @@
+package datawave.query.util.dedup;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * A dedup store backed by a scalable bloom filter. The store starts with a small bloom filter, and whenever the current filter has reached its capacity a new
+ * filter is added with twice the capacity and half the false positive probability. The total false positive probability stays under the target however many
+ * signatures are added, while the memory used grows with the number of signatures instead of being allocated up front.
+ */
+public class ScalableBloomDedupStore implements DedupStore {
+    private static final Logger log = Logger.getLogger(ScalableBloomDedupStore.class);
+    
+    public static final int DEFAULT_INITIAL_CAPACITY = 10000;
+    public static final double DEFAULT_FPP = 1e-15;
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+    
+    private final List<BloomFilter<byte[]>> filters = new ArrayList<>();
+    private final int initialCapacity;
+    private final double fpp;
+    
+    // the capacity and false positive probability of the current filter
+    private int capacity;
+    private double filterFpp;
+    // the number of signatures added to the current filter
+    private int count = 0;
+    private long size = 0;
+    
+    public ScalableBloomDedupStore() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_FPP);
+    }
+    
+    /**
+     * @param initialCapacity
+     *            the number of signatures the first filter holds
+     * @param fpp
+     *            the target false positive probability across all of the filters
+     */
+    public ScalableBloomDedupStore(int initialCapacity, double fpp) {
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        clear();
+    }
+    
+    @Override
+    public boolean add(byte[] signature) {
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            if (filters.get(i).mightContain(signature)) {
+                return false;
+            }
+        }
+        current().put(signature);
+        size++;
+        if (++count >= capacity) {
+            addFilter();
+        }
+        return true;
+    }
+    
+    private BloomFilter<byte[]> current() {
+        return filters.get(filters.size() - 1);
+    }
+    
+    private void addFilter() {
+        if (!filters.isEmpty()) {
+            capacity = (int) Math.min(Integer.MAX_VALUE, (long) capacity * GROWTH_FACTOR);
+            filterFpp = filterFpp * TIGHTENING_RATIO;
+            if (log.isDebugEnabled()) {
+                log.debug("Growing to " + (filters.size() + 1) + " bloom filters after " + size + " signatures: " + this);
+            }
+        }
+        filters.add(BloomFilter.create(new ByteFunnel(), capacity, filterFpp));
+        count = 0;
+    }
+    
+    @Override
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * @return the number of bloom filters
+     */
+    public int getFilterCount() {
+        return filters.size();
+    }
+    
+    /**
+     * @return the fraction of the current bloom filter's capacity used
+     */
+    public double getFillRatio() {
+        return (double) count / capacity;
+    }
+    
+    @Override
+    public double getExpectedFpp() {
+        double notFalsePositive = 1.0;
+        for (BloomFilter<byte[]> filter : filters) {
+            notFalsePositive *= (1.0 - filter.expectedFpp());
+        }
+        return 1.0 - notFalsePositive;
+    }
+    
+    @Override
+    public void clear() {
+        filters.clear();
+        size = 0;
+        capacity = initialCapacity;
+        // the fpps of the filters form a geometric series which sums to the target fpp
+        filterFpp = fpp * (1.0 - TIGHTENING_RATIO);
+        addFilter();
+    }
+    
+    @Override
+    public String toString() {
+        return "size=" + size + ", filters=" + getFilterCount() + ", fillRatio=" + getFillRatio() + ", expectedFpp=" + getExpectedFpp();
+    }
+    
+    public static class ByteFunnel implements Funnel<byte[]>, Serializable {
+        
+        private static final long serialVersionUID = -2126172579955897986L;
+        
+        @Override
+        public void funnel(byte[] from, PrimitiveSink into) {
+            into.putBytes(from);
+        }
+        
+    }
+}
@@ -0,0 +1,115 @@
+package datawave.query.util.dedup;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.accumulo.core.data.Key;
+
+import datawave.query.util.sortedset.BufferedFileBackedSortedSet;
+import datawave.query.util.sortedset.FileKeySortedSet;
+import datawave.query.util.sortedset.FileSortedSet;
+import datawave.query.util.sortedset.SortedSetTempFileHandler;
+
+/**
+ * An exact dedup store. The signatures are held in a sorted set which is spilled to local temporary files once the buffer size has been reached, and the files
+ * are compacted as needed. A scalable bloom filter in front of the set means that the files are only read for signatures that are likely to be duplicates, and
+ * a file is only read when the signature falls between its first and last signatures. The lookup counts across all of the stores are reported by {@link
+ * DedupStoreMetrics}.
+ */
+public class SpillingDedupStore implements DedupStore {
+    
+    public static final int DEFAULT_BUFFER_SIZE = 100000;
+    private static final int MAX_OPEN_FILES = 100;
+    private static final int NUM_RETRIES = 2;
+    // the prefilter only needs to keep most of the new signatures from reading the files
+    private static final double PREFILTER_FPP = 0.01;
+    
+    private final ScalableBloomDedupStore prefilter;
+    private final BufferedFileBackedSortedSet<Key> signatures;
+    private long size = 0;
+    private long fileLookups = 0;
+    private long falsePrefilterHits = 0;
+    private final DedupStoreMetrics metrics = DedupStoreMetrics.getInstance();
+    
+    public SpillingDedupStore() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * @param bufferSize
+     *            the number of signatures to hold in memory before spilling them to disk
+     */
+    public SpillingDedupStore(int bufferSize) {
+        this.prefilter = new ScalableBloomDedupStore(bufferSize, PREFILTER_FPP);
+        this.signatures = new BufferedFileBackedSortedSet<>(null, bufferSize, MAX_OPEN_FILES, NUM_RETRIES,
+                        Collections.singletonList(new TempFileHandlerFactory()), new FileKeySortedSet.Factory());
+    }
+    
+    @Override
+    public boolean add(byte[] signature) {
+        Key key = new Key(signature);
+        boolean fileLookup = !prefilter.add(signature);
+        if (fileLookup) {
+            fileLookups++;
+            if (signatures.contains(key)) {
+                metrics.record(true, true);
+                return false;
+            }
+            falsePrefilterHits++;
+        }
+        signatures.add(key);
+        size++;
+        metrics.record(false, fileLookup);
+        return true;
+    }
+    
+    @Override
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * @return the number of signatures that had to be looked up in the sorted set
+     */
+    public long getFileLookups() {
+        return fileLookups;
+    }
+    
+    /**
+     * @return the number of signatures that were looked up in the sorted set but were not duplicates
+     */
+    public long getFalsePrefilterHits() {
+        return falsePrefilterHits;
+    }
+    
+    @Override
+    public double getExpectedFpp() {
+        return 0;
+    }
+    
+    @Override
+    public void clear() {
+        prefilter.clear();
+        signatures.clear();
+        size = 0;
+        fileLookups = 0;
+        falsePrefilterHits = 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "size=" + size + ", buffered=" + signatures.getBufferSize() + ", fileLookups=" + fileLookups + ", prefilter=[" + prefilter + ']';
+    }
+    
+    private static class TempFileHandlerFactory implements BufferedFileBackedSortedSet.SortedSetFileHandlerFactory {
+        @Override
+        public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+            return new SortedSetTempFileHandler();
+        }
+        
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    }
+}
@@ -7,6 +7,8 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 import datawave.query.util.sortedset.FileSortedSet.SortedSetFileHandler;
@@ -37,6 +39,13 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     protected List<SortedSetFileHandlerFactory> handlerFactories;
     protected int bufferPersistThreshold;
     
+    // the executor used to read ahead in the persisted sets when merging, null to merge on the calling thread
+    protected Executor prefetchExecutor = null;
+    protected int prefetchSize = 0;
+    protected long prefetchMaxBytes = 0;
+    protected ToLongFunction<? super E> sizer = null;
+    protected MergeSortIterator.Stats mergeStats = new MergeSortIterator.Stats();
+    
     /**
      * A factory for SortedSetFileHandlers
      * 
@@ -51,6 +60,7 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     public BufferedFileBackedSortedSet(BufferedFileBackedSortedSet<E> other) {
         this(other.comparator, other.bufferPersistThreshold, other.maxOpenFiles, other.numRetries, new ArrayList<>(other.handlerFactories), other.setFactory);
+        setPrefetch(other.prefetchExecutor, other.prefetchSize, other.prefetchMaxBytes, other.sizer);
         for (SortedSet<E> subSet : other.set.getSets()) {
             FileSortedSet<E> clone = ((FileSortedSet<E>) subSet).clone();
             this.set.addSet(clone);
@@ -92,6 +102,7 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
         this.bufferPersistThreshold = bufferPersistThreshold;
         this.numRetries = numRetries;
         this.maxOpenFiles = maxOpenFiles;
+        this.set.setPrefetch(prefetchExecutor, prefetchSize, prefetchMaxBytes, sizer, maxOpenFiles, mergeStats);
     }
     
     private SortedSetFileHandler createFileHandler(SortedSetFileHandlerFactory handlerFactory) throws IOException {
@@ -106,6 +117,49 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
         return null;
     }
     
+    /**
+     * Read ahead in the persisted sets on an executor when merging them, either to iterate over this set or to compact it. At most maxOpenFiles sets will be
+     * read ahead at once.
+     * 
+     * @param prefetchExecutor
+     *            the executor, or null to read on the calling thread
+     * @param prefetchSize
+     *            the number of elements to read ahead for each persisted set
+     */
+    public void setPrefetch(Executor prefetchExecutor, int prefetchSize) {
+        setPrefetch(prefetchExecutor, prefetchSize, 0, null);
+    }
+    
+    /**
+     * Read ahead in the persisted sets on an executor when merging them, limiting the memory held by the elements read ahead. At most maxOpenFiles sets will
+     * be read ahead at once.
+     * 
+     * @param prefetchExecutor
+     *            the executor, or null to read on the calling thread
+     * @param prefetchSize
+     *            the number of elements to read ahead for each persisted set
+     * @param prefetchMaxBytes
+     *            the max size of the elements read ahead for all of the persisted sets, or 0 for no limit
+     * @param sizer
+     *            the size of an element, used when prefetchMaxBytes is set
+     */
+    public void setPrefetch(Executor prefetchExecutor, int prefetchSize, long prefetchMaxBytes, ToLongFunction<? super E> sizer) {
+        this.prefetchExecutor = prefetchExecutor;
+        this.prefetchSize = prefetchSize;
+        this.prefetchMaxBytes = prefetchMaxBytes;
+        this.sizer = sizer;
+        this.set.setPrefetch(prefetchExecutor, prefetchSize, prefetchMaxBytes, sizer, maxOpenFiles, mergeStats);
+    }
+    
+    /**
+     * Get the counters for the merges of this set
+     * 
+     * @return the merge stats
+     */
+    public MergeSortIterator.Stats getMergeStats() {
+        return mergeStats;
+    }
+    
     public void persist() throws IOException {
         if (buffer != null) {
             // go through the handler factories and try to persist the sorted set
@@ -219,6 +273,24 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     
     @Override
     public Iterator<E> iterator() {
+        persistForIteration();
+        return set.iterator();
+    }
+    
+    /**
+     * Get an iterator over the elements greater than or equal to from. The persisted sets will use their block index to skip the elements before from instead
+     * of reading them.
+     *
+     * @param from
+     *            the first element to return, or null to iterate over the entire set
+     * @return the iterator
+     */
+    public Iterator<E> iterator(E from) {
+        persistForIteration();
+        return set.iterator(from);
+    }
+    
+    private void persistForIteration() {
         // first lets compact down the sets if needed
         try {
             // if we have any persisted sets, then ensure we are persisted
@@ -228,7 +300,6 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
         } catch (IOException ioe) {
             throw new RuntimeException("Unable to persist or compact file backed sorted set", ioe);
         }
-        return set.iterator();
     }
     
     private String printHandlerFactories() {
@@ -260,9 +331,11 @@ public class BufferedFileBackedSortedSet<E> implements SortedSet<E> {
             
             // newSet will be the final multiset
             MultiSetBackedSortedSet<E> newSet = new MultiSetBackedSortedSet<>();
+            newSet.setPrefetch(prefetchExecutor, prefetchSize, prefetchMaxBytes, sizer, maxOpenFiles, mergeStats);
             
             // create a set for those sets to be compacted into one file
             MultiSetBackedSortedSet<E> setToCompact = new MultiSetBackedSortedSet<>();
+            setToCompact.setPrefetch(prefetchExecutor, prefetchSize, prefetchMaxBytes, sizer, maxOpenFiles, mergeStats);
             for (int i = 0; i < setsPerCompaction; i++) {
                 setToCompact.addSet(sets.remove(sets.size() - 1));
             }
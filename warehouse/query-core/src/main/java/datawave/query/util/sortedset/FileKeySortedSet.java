@@ -1,10 +1,10 @@
 package datawave.query.util.sortedset;
 
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
@@ -18,7 +18,9 @@ import java.util.SortedSet;
  * A sorted set that can be persisted into a file and still be read in its persisted state. The set can always be re-loaded and then all operations will work as
  * expected. This will support null contained in the underlying sets iff a comparator is supplied that can handle null values.
  *
- * The persisted file will contain the serialized entries, followed by the actual size.
+ * The persisted file will contain blocks of serialized entries, followed by the block index and the actual size. Within a block each key is written relative to
+ * the previous key: for each of the row, column family, column qualifier, and column visibility only the length of the prefix shared with the previous key and
+ * the remaining bytes are written. As the keys are sorted this removes most of the repeated bytes in an ivarator's keys.
  *
  */
 public class FileKeySortedSet extends FileSortedSet<Key> {
@@ -75,27 +77,44 @@ public class FileKeySortedSet extends FileSortedSet<Key> {
         super(set, handler, persist);
     }
     
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     *
+     * @param set
+     * @param handler
+     * @param persist
+     * @param persistOptions
+     */
+    public FileKeySortedSet(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist, PersistOptions persistOptions) throws IOException {
+        super(set, handler, persist, persistOptions);
+    }
+    
     /**
      * Get an input stream
      * 
+     * @param stream
+     *            the uncompressed block
      * @return the input stream
      * @throws FileNotFoundException
      * @throws IOException
      */
     @Override
-    protected DataInputStream getInputStream() throws IOException {
-        return new DataInputStream(new BufferedInputStream(handler.getInputStream()));
+    protected KeyInputStream getInputStream(InputStream stream) throws IOException {
+        return new KeyInputStream(stream);
     }
     
     /**
      * Get an output stream
      * 
+     * @param stream
+     *            the uncompressed block
      * @return the output stream
      * @throws IOException
      */
     @Override
-    protected DataOutputStream getOutputStream() throws IOException {
-        return new DataOutputStream(new BufferedOutputStream(handler.getOutputStream()));
+    protected KeyOutputStream getOutputStream(OutputStream stream) throws IOException {
+        return new KeyOutputStream(stream);
     }
     
     /**
@@ -107,7 +126,7 @@ public class FileKeySortedSet extends FileSortedSet<Key> {
      */
     @Override
     protected void writeObject(OutputStream stream, Key t) throws IOException {
-        t.write((DataOutputStream) stream);
+        ((KeyOutputStream) stream).writeKey(t);
     }
     
     /**
@@ -119,9 +138,7 @@ public class FileKeySortedSet extends FileSortedSet<Key> {
      */
     @Override
     protected Key readObject(InputStream stream) throws IOException {
-        Key o = new Key();
-        o.readFields((DataInputStream) stream);
-        return o;
+        return ((KeyInputStream) stream).readKey();
     }
     
     /**
@@ -132,29 +149,112 @@ public class FileKeySortedSet extends FileSortedSet<Key> {
         return new FileKeySortedSet(this);
     }
     
+    /**
+     * Writes keys relative to the previously written key
+     */
+    protected static class KeyOutputStream extends DataOutputStream {
+        private Key last = null;
+        
+        public KeyOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        public void writeKey(Key key) throws IOException {
+            writeDelta(last == null ? null : last.getRowData(), key.getRowData());
+            writeDelta(last == null ? null : last.getColumnFamilyData(), key.getColumnFamilyData());
+            writeDelta(last == null ? null : last.getColumnQualifierData(), key.getColumnQualifierData());
+            writeDelta(last == null ? null : last.getColumnVisibilityData(), key.getColumnVisibilityData());
+            WritableUtils.writeVLong(this, key.getTimestamp());
+            writeBoolean(key.isDeleted());
+            last = key;
+        }
+        
+        private void writeDelta(ByteSequence previous, ByteSequence current) throws IOException {
+            int shared = 0;
+            if (previous != null) {
+                int max = Math.min(previous.length(), current.length());
+                while (shared < max && previous.byteAt(shared) == current.byteAt(shared)) {
+                    shared++;
+                }
+            }
+            WritableUtils.writeVInt(this, shared);
+            WritableUtils.writeVInt(this, current.length() - shared);
+            write(current.getBackingArray(), current.offset() + shared, current.length() - shared);
+        }
+    }
+    
+    /**
+     * Reads keys written by a {@link KeyOutputStream}
+     */
+    protected static class KeyInputStream extends DataInputStream {
+        private byte[][] last = null;
+        
+        public KeyInputStream(InputStream in) {
+            super(in);
+        }
+        
+        public Key readKey() throws IOException {
+            byte[][] parts = new byte[4][];
+            for (int i = 0; i < parts.length; i++) {
+                int shared = WritableUtils.readVInt(this);
+                int length = WritableUtils.readVInt(this);
+                if (shared > 0 && (last == null || shared > last[i].length)) {
+                    throw new IOException("Invalid shared prefix length " + shared);
+                }
+                parts[i] = new byte[shared + length];
+                if (shared > 0) {
+                    System.arraycopy(last[i], 0, parts[i], 0, shared);
+                }
+                readFully(parts[i], shared, length);
+            }
+            long timestamp = WritableUtils.readVLong(this);
+            boolean deleted = readBoolean();
+            last = parts;
+            
+            // the key takes ownership of the arrays without copying them
+            return new Key(parts[0], parts[1], parts[2], parts[3], timestamp, deleted, false);
+        }
+    }
+    
     /**
      * A factory for these file sorted sets
      */
     public static class Factory implements FileSortedSetFactory<Key> {
         
+        private final PersistOptions persistOptions;
+        
+        public Factory() {
+            this(PersistOptions.DEFAULT);
+        }
+        
+        public Factory(PersistOptions persistOptions) {
+            this.persistOptions = persistOptions;
+        }
+        
         @Override
         public FileKeySortedSet newInstance(SortedSetFileHandler handler, boolean persisted) {
-            return new FileKeySortedSet(handler, persisted);
+            FileKeySortedSet set = new FileKeySortedSet(handler, persisted);
+            set.setPersistOptions(persistOptions);
+            return set;
         }
         
         @Override
         public FileKeySortedSet newInstance(Comparator<? super Key> comparator, SortedSetFileHandler handler, boolean persisted) {
-            return new FileKeySortedSet(comparator, handler, persisted);
+            FileKeySortedSet set = new FileKeySortedSet(comparator, handler, persisted);
+            set.setPersistOptions(persistOptions);
+            return set;
         }
         
         @Override
         public FileKeySortedSet newInstance(SortedSet<Key> set, SortedSetFileHandler handler) {
-            return new FileKeySortedSet(set, handler);
+            FileKeySortedSet fileSet = new FileKeySortedSet(set, handler);
+            fileSet.setPersistOptions(persistOptions);
+            return fileSet;
         }
         
         @Override
         public FileKeySortedSet newInstance(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist) throws IOException {
-            return new FileKeySortedSet(set, handler, persist);
+            return new FileKeySortedSet(set, handler, persist, persistOptions);
         }
     }
 }
@@ -1,7 +1,5 @@
 package datawave.query.util.sortedset;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,7 +15,7 @@ import org.apache.log4j.Logger;
  * A sorted set that can be persisted into a file and still be read in its persisted state. The set can always be re-loaded and then all operations will work as
  * expected. This will support null contained in the underlying sets iff a comparator is supplied that can handle null values.
  *
- * The persisted file will contain the serialized entries, followed by the actual size.
+ * The persisted file will contain blocks of serialized entries, followed by the block index and the actual size.
  *
  */
 public class FileSerializableSortedSet<E extends Serializable> extends FileSortedSet<E> {
@@ -74,27 +72,44 @@ public class FileSerializableSortedSet<E extends Serializable> extends FileSorte
         super(set, handler, persist);
     }
     
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     *
+     * @param set
+     * @param handler
+     * @param persist
+     * @param persistOptions
+     */
+    public FileSerializableSortedSet(SortedSet<E> set, SortedSetFileHandler handler, boolean persist, PersistOptions persistOptions) throws IOException {
+        super(set, handler, persist, persistOptions);
+    }
+    
     /**
      * Get an input stream
      * 
+     * @param stream
+     *            the uncompressed block
      * @return the input stream
      * @throws FileNotFoundException
      * @throws IOException
      */
     @Override
-    protected ObjectInputStream getInputStream() throws IOException {
-        return new ObjectInputStream(new BufferedInputStream(handler.getInputStream()));
+    protected ObjectInputStream getInputStream(InputStream stream) throws IOException {
+        return new ObjectInputStream(stream);
     }
     
     /**
      * Get an output stream
      * 
+     * @param stream
+     *            the uncompressed block
      * @return the output stream
      * @throws IOException
      */
     @Override
-    protected ObjectOutputStream getOutputStream() throws IOException {
-        return new ObjectOutputStream(new BufferedOutputStream(handler.getOutputStream()));
+    protected ObjectOutputStream getOutputStream(OutputStream stream) throws IOException {
+        return new ObjectOutputStream(stream);
     }
     
     /**
@@ -136,24 +151,40 @@ public class FileSerializableSortedSet<E extends Serializable> extends FileSorte
      */
     public static class Factory<E extends Serializable> implements FileSortedSetFactory<E> {
         
+        private final PersistOptions persistOptions;
+        
+        public Factory() {
+            this(PersistOptions.DEFAULT);
+        }
+        
+        public Factory(PersistOptions persistOptions) {
+            this.persistOptions = persistOptions;
+        }
+        
         @Override
         public FileSerializableSortedSet<E> newInstance(SortedSetFileHandler handler, boolean persisted) {
-            return new FileSerializableSortedSet(handler, persisted);
+            FileSerializableSortedSet<E> set = new FileSerializableSortedSet(handler, persisted);
+            set.setPersistOptions(persistOptions);
+            return set;
         }
         
         @Override
         public FileSerializableSortedSet<E> newInstance(Comparator<? super E> comparator, SortedSetFileHandler handler, boolean persisted) {
-            return new FileSerializableSortedSet(comparator, handler, persisted);
+            FileSerializableSortedSet<E> set = new FileSerializableSortedSet(comparator, handler, persisted);
+            set.setPersistOptions(persistOptions);
+            return set;
         }
         
         @Override
         public FileSerializableSortedSet<E> newInstance(SortedSet<E> set, SortedSetFileHandler handler) {
-            return new FileSerializableSortedSet(set, handler);
+            FileSerializableSortedSet<E> fileSet = new FileSerializableSortedSet(set, handler);
+            fileSet.setPersistOptions(persistOptions);
+            return fileSet;
         }
         
         @Override
         public FileSerializableSortedSet<E> newInstance(SortedSet<E> set, SortedSetFileHandler handler, boolean persist) throws IOException {
-            return new FileSerializableSortedSet(set, handler, persist);
+            return new FileSerializableSortedSet(set, handler, persist, persistOptions);
         }
     }
     
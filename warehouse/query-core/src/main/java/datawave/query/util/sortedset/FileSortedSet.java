@@ -2,14 +2,29 @@ package datawave.query.util.sortedset;
 
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.log4j.Logger;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -18,17 +33,29 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A sorted set that can be persisted into a file and still be read in its persisted state. The set can always be re-loaded and then all operations will work as
  * expected. This will support null contained in the underlying sets iff a comparator is supplied that can handle null values.
  *
- * The persisted file will contain the serialized entries, followed by the actual size.
+ * The persisted file is written as a series of blocks followed by a sparse block index and the actual size. The file starts with a header containing a magic
+ * number and the name of the compression codec (empty if the blocks are not compressed). Each block contains its stored length, its uncompressed length, and
+ * its element count, followed by the (optionally compressed) serialized entries. Each block is serialized through a new stream so that it can be read on its
+ * own, which allows the entries within a block to be delta encoded by the extending class. The block index contains the offset of each block and the number of
+ * entries preceding it, followed by the first entry of each block. The file ends with the offset of the block index, the number of blocks, and the actual
+ * size. The block index allows an iterator to start reading at the block containing a given entry instead of at the start of the file.
  *
  * @param <E>
  */
 public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
     private static Logger log = Logger.getLogger(FileSortedSet.class);
+    // "DWSS" identifies the block based file format
+    private static final int FILE_MAGIC = 0x44575353;
+    // the index offset, block count and size at the end of the file
+    private static final int TRAILER_SIZE = 16;
+    private static final ConcurrentHashMap<String,CompressionCodec> codecs = new ConcurrentHashMap<>();
+    
     protected boolean persisted = false;
     protected SortedSet<E> set = null;
     // A null entry placeholder
@@ -37,6 +64,19 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
     // The file handler that handles the underlying io
     public SortedSetFileHandler handler;
     
+    // The block size and compression used when persisting this set
+    protected PersistOptions persistOptions = PersistOptions.DEFAULT;
+    
+    // The block index of the persisted file, read on the first seek
+    private BlockIndex index = null;
+    
+    // The bounds of the persisted file when it was persisted by this set, so that contains can skip the file for elements outside of them
+    private boolean bounded = false;
+    // tracked separately from the bounds, as a set with a comparator that handles null may persist null as its first element
+    private boolean persistedEmpty = false;
+    private E firstPersisted = null;
+    private E lastPersisted = null;
+    
     /**
      * A factory that will provide the input stream and output stream to the same underlying file.
      * 
@@ -76,6 +116,39 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         
     }
     
+    /**
+     * The options used when persisting a sorted set. The compression codec is the class name of a hadoop compression codec which is used to compress each
+     * block, or null to leave the blocks uncompressed.
+     */
+    public static class PersistOptions {
+        public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+        public static final PersistOptions DEFAULT = new PersistOptions(DEFAULT_BLOCK_SIZE, null);
+        
+        private final int blockSize;
+        private final String compressionCodec;
+        
+        public PersistOptions(int blockSize, String compressionCodec) {
+            if (blockSize <= 0) {
+                throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+            }
+            this.blockSize = blockSize;
+            this.compressionCodec = (compressionCodec == null || compressionCodec.isEmpty() ? null : compressionCodec);
+        }
+        
+        public int getBlockSize() {
+            return blockSize;
+        }
+        
+        public String getCompressionCodec() {
+            return compressionCodec;
+        }
+        
+        @Override
+        public String toString() {
+            return "blockSize=" + blockSize + ", compressionCodec=" + compressionCodec;
+        }
+    }
+    
     /**
      * Create a file sorted set from another one
      * 
@@ -83,8 +156,14 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      */
     public FileSortedSet(FileSortedSet<E> other) {
         this.handler = other.handler;
-        this.set = new TreeSet<>(other.set);
+        this.set = newSet(other.set.comparator());
+        this.set.addAll(other.set);
         this.persisted = other.persisted;
+        this.persistOptions = other.persistOptions;
+        this.bounded = other.bounded;
+        this.persistedEmpty = other.persistedEmpty;
+        this.firstPersisted = other.firstPersisted;
+        this.lastPersisted = other.lastPersisted;
     }
     
     /**
@@ -95,7 +174,7 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      */
     public FileSortedSet(SortedSetFileHandler handler, boolean persisted) {
         this.handler = handler;
-        this.set = new TreeSet<>();
+        this.set = newSet(null);
         this.persisted = persisted;
     }
     
@@ -108,7 +187,7 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      */
     public FileSortedSet(Comparator<? super E> comparator, SortedSetFileHandler handler, boolean persisted) {
         this.handler = handler;
-        this.set = new TreeSet<>(comparator);
+        this.set = newSet(comparator);
         this.persisted = persisted;
     }
     
@@ -120,7 +199,8 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      */
     public FileSortedSet(SortedSet<E> set, SortedSetFileHandler handler) {
         this.handler = handler;
-        this.set = new TreeSet<>(set);
+        this.set = newSet(set.comparator());
+        this.set.addAll(set);
         this.persisted = false;
     }
     
@@ -132,16 +212,57 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      * @param handler
      */
     public FileSortedSet(SortedSet<E> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+        this(set, handler, persist, PersistOptions.DEFAULT);
+    }
+    
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     *
+     * @param set
+     * @param handler
+     * @param persist
+     * @param persistOptions
+     *            the block size and compression to persist with
+     */
+    public FileSortedSet(SortedSet<E> set, SortedSetFileHandler handler, boolean persist, PersistOptions persistOptions) throws IOException {
+        this.persistOptions = persistOptions;
         if (!persist) {
-            this.set = new TreeSet<>(set);
+            this.set = newSet(set.comparator());
+            this.set.addAll(set);
             this.persisted = false;
         } else {
-            this.set = new TreeSet<>(set.comparator());
+            this.set = newSet(set.comparator());
             persist(set, handler);
             persisted = true;
         }
     }
     
+    /**
+     * Create the set which holds the entries while this set is not persisted. This is called from the constructors, so an override must not depend on the
+     * state of the subclass.
+     *
+     * @param comparator
+     *            the comparator, or null for the natural ordering
+     * @return an empty set
+     */
+    protected SortedSet<E> newSet(Comparator<? super E> comparator) {
+        return new TreeSet<>(comparator);
+    }
+    
+    public PersistOptions getPersistOptions() {
+        return persistOptions;
+    }
+    
+    /**
+     * Set the options used the next time this set is persisted
+     *
+     * @param persistOptions
+     */
+    public void setPersistOptions(PersistOptions persistOptions) {
+        this.persistOptions = persistOptions;
+    }
+    
     /**
      * This will dump the set to the file, making the set "persisted"
      *
@@ -178,41 +299,42 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
             // if we can't persist, we will reset to null
             this.handler = handler;
             
+            this.index = null;
+            this.bounded = false;
+            
             int actualSize = 0;
+            E lastWritten = null;
             List<E> firstOneHundred = new ArrayList<>();
-            OutputStream stream = getOutputStream();
+            BlockWriter writer = new BlockWriter(handler.getOutputStream(), persistOptions);
             try {
                 for (E t : set) {
-                    writeObject(stream, t);
+                    writer.write(t);
                     if (firstOneHundred.size() < 100) {
                         firstOneHundred.add(t);
                     }
+                    lastWritten = t;
                     actualSize++;
                 }
-                stream.write((actualSize >>> 24) & 0xFF);
-                stream.write((actualSize >>> 16) & 0xFF);
-                stream.write((actualSize >>> 8) & 0xFF);
-                stream.write((actualSize >>> 0) & 0xFF);
             } finally {
-                stream.close();
+                writer.close();
             }
             // verify we wrote at least the size....
             if (handler.getSize() == 0) {
                 throw new IOException("Failed to verify file existence");
             }
             // now verify the first 100 objects were written correctly
-            InputStream inStream = getInputStream();
+            BlockReader reader = new BlockReader();
             try {
                 int count = 0;
                 for (E t : firstOneHundred) {
                     count++;
-                    E input = readObject(inStream);
+                    E input = reader.next();
                     if (!equals(t, input)) {
                         throw new IOException("Failed to verify element " + count + " was written");
                     }
                 }
             } finally {
-                inStream.close();
+                reader.close();
             }
             
             // now verify the size was written at the end
@@ -220,6 +342,11 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
             if (test != actualSize) {
                 throw new IOException("Failed to verify file size was written");
             }
+            
+            this.persistedEmpty = firstOneHundred.isEmpty();
+            this.firstPersisted = persistedEmpty ? null : firstOneHundred.get(0);
+            this.lastPersisted = lastWritten;
+            this.bounded = true;
         } catch (IOException e) {
             handler.deleteFile();
             this.handler = null;
@@ -240,25 +367,60 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      */
     private int readSize() throws IOException {
         long bytesToSkip = handler.getSize() - 4;
-        InputStream inStream = handler.getInputStream();
+        DataInputStream inStream = new DataInputStream(handler.getInputStream());
         try {
-            long total = 0;
-            long cur = 0;
-            
-            while ((total < bytesToSkip) && ((cur = inStream.skip(bytesToSkip - total)) > 0)) {
-                total += cur;
-            }
-            
-            byte[] buffer = new byte[4];
-            inStream.read(buffer);
-            
-            return ((buffer[3] & 0xFF)) + ((buffer[2] & 0xFF) << 8) + ((buffer[1] & 0xFF) << 16) + ((buffer[0]) << 24);
-            
+            skipFully(inStream, bytesToSkip);
+            return inStream.readInt();
         } finally {
             inStream.close();
         }
     }
     
+    /**
+     * Read the block index from the file, or return the one already read
+     *
+     * @return the block index
+     * @throws IOException
+     */
+    private BlockIndex getIndex() throws IOException {
+        if (index == null) {
+            index = new BlockIndex();
+        }
+        return index;
+    }
+    
+    private static void skipFully(InputStream stream, long bytesToSkip) throws IOException {
+        long total = 0;
+        while (total < bytesToSkip) {
+            long cur = stream.skip(bytesToSkip - total);
+            if (cur <= 0) {
+                // skip may return 0 before the end of the stream, so read a byte to make progress
+                if (stream.read() < 0) {
+                    throw new EOFException("Unexpected end of file after " + total + " of " + bytesToSkip + " bytes");
+                }
+                cur = 1;
+            }
+            total += cur;
+        }
+    }
+    
+    private static CompressionCodec getCodec(String compressionCodec) {
+        if (compressionCodec == null || compressionCodec.isEmpty()) {
+            return null;
+        }
+        return codecs.computeIfAbsent(compressionCodec, name -> {
+            Class<? extends CompressionCodec> codecClass;
+            try {
+                codecClass = Class.forName(name).asSubclass(CompressionCodec.class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Compression codec " + name + " was not found.", e);
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException("Compression codec " + name + " in not a subclass of CompressionCodec.", e);
+            }
+            return ReflectionUtils.newInstance(codecClass, new Configuration());
+        });
+    }
+    
     /**
      * This will read the file into an in-memory set, making this file "unpersisted"
      * 
@@ -268,43 +430,56 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
     public void load() throws IOException, ClassNotFoundException {
         if (persisted) {
             try {
-                int size = readSize();
-                InputStream stream = getInputStream();
+                BlockReader reader = new BlockReader();
                 try {
-                    for (int i = 0; i < size; i++) {
-                        E obj = readObject(stream);
-                        set.add(obj);
+                    while (reader.hasNext()) {
+                        set.add(reader.next());
                     }
                 } finally {
-                    stream.close();
+                    reader.close();
                 }
             } catch (Exception e) {
                 throw new IOException("Unable to read file into a complete set", e);
             }
             handler.deleteFile();
             persisted = false;
+            index = null;
+            clearBounds();
         }
     }
     
+    private void clearBounds() {
+        bounded = false;
+        persistedEmpty = false;
+        firstPersisted = null;
+        lastPersisted = null;
+    }
+    
     /**
-     * Get an input stream. This should wrap handler.getInputStream with appropriate streams to handle reading the objects.
+     * Get an input stream for a block. This should wrap the supplied stream with appropriate streams to handle reading the objects. A new stream is created for
+     * each block.
      * 
+     * @param stream
+     *            the uncompressed block
      * @return the input stream
      * @throws FileNotFoundException
      * @throws IOException
      */
-    protected abstract InputStream getInputStream() throws IOException;
+    protected abstract InputStream getInputStream(InputStream stream) throws IOException;
     
     /**
-     * Get an output stream. This should wrap handler.getOutputStream with appropriate streams to handle writing the objects.
+     * Get an output stream for a block. This should wrap the supplied stream with appropriate streams to handle writing the objects. A new stream is created
+     * for each block, and it will be flushed at the end of the block.
      * 
+     * @param stream
+     *            the uncompressed block
      * @return the output stream
      * @throws IOException
      */
-    protected abstract OutputStream getOutputStream() throws IOException;
+    protected abstract OutputStream getOutputStream(OutputStream stream) throws IOException;
     
     /**
-     * Write T to an output stream as returned by getOutputStream()
+     * Write T to an output stream as returned by getOutputStream(OutputStream)
      * 
      * @param stream
      * @param t
@@ -313,7 +488,7 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
     protected abstract void writeObject(OutputStream stream, E t) throws IOException;
     
     /**
-     * Read T from an object input stream as returned by getInputStream()
+     * Read T from an object input stream as returned by getInputStream(InputStream)
      *
      * @param stream
      * @return
@@ -363,15 +538,17 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
     public boolean contains(Object o) {
         if (persisted) {
             E t = (E) o;
-            for (Iterator<E> it = iterator(); it.hasNext();) {
-                if (it.hasNext()) {
-                    E next = it.next();
-                    if (equals(next, t)) {
-                        return true;
-                    }
-                }
+            // the file cannot contain an element outside of its bounds
+            if (bounded && (persistedEmpty || compare(t, firstPersisted) < 0 || compare(t, lastPersisted) > 0)) {
+                return false;
+            }
+            // seek to the block that would contain the element using the block index
+            FileIterator it = new FileIterator(t);
+            try {
+                return it.hasNext() && equals(it.next(), t);
+            } finally {
+                it.cleanup();
             }
-            return false;
         } else {
             return set.contains(o);
         }
@@ -386,20 +563,37 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         }
     }
     
+    /**
+     * Get an iterator over the elements greater than or equal to from. If persisted, the block index is used to start reading at the block which would contain
+     * from instead of at the start of the file.
+     *
+     * @param from
+     *            the first element to return, or null to iterate over the entire set
+     * @return the iterator
+     */
+    public Iterator<E> iterator(E from) {
+        if (from == null) {
+            return iterator();
+        } else if (persisted) {
+            return new FileIterator(from);
+        } else {
+            return set.tailSet(from).iterator();
+        }
+    }
+    
     @Override
     public Object[] toArray() {
         if (persisted) {
             try {
-                int size = readSize();
-                InputStream stream = getInputStream();
+                BlockReader reader = new BlockReader();
                 try {
-                    Object[] data = new Object[size];
-                    for (int i = 0; i < size; i++) {
-                        data[i] = readObject(stream);
+                    Object[] data = new Object[reader.size];
+                    for (int i = 0; i < data.length; i++) {
+                        data[i] = reader.next();
                     }
                     return data;
                 } finally {
-                    stream.close();
+                    reader.close();
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to read file into a complete set", e);
@@ -414,13 +608,13 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
     public <T> T[] toArray(T[] a) {
         if (persisted) {
             try {
-                int size = readSize();
-                InputStream stream = getInputStream();
+                BlockReader reader = new BlockReader();
                 try {
+                    int size = reader.size;
                     T[] dest = a;
                     int i = 0;
                     for (; i < size; i++) {
-                        T obj = (T) readObject(stream);
+                        T obj = (T) reader.next();
                         if (dest.length <= i) {
                             T[] newDest = (T[]) (Array.newInstance(a.getClass().getComponentType(), size));
                             System.arraycopy(dest, 0, newDest, 0, i);
@@ -437,7 +631,7 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
                     }
                     return dest;
                 } finally {
-                    stream.close();
+                    reader.close();
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to read file into a complete set", e);
@@ -477,11 +671,10 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
                 for (Object o : c) {
                     all.add((E) o);
                 }
-                int size = readSize();
-                InputStream stream = getInputStream();
+                BlockReader reader = new BlockReader();
                 try {
-                    for (int i = 0; i < size; i++) {
-                        E obj = readObject(stream);
+                    while (reader.hasNext()) {
+                        E obj = reader.next();
                         if (all.remove(obj)) {
                             if (all.isEmpty()) {
                                 return true;
@@ -489,7 +682,7 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
                         }
                     }
                 } finally {
-                    stream.close();
+                    reader.close();
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to read file into a complete set", e);
@@ -532,6 +725,8 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         if (persisted) {
             handler.deleteFile();
             persisted = false;
+            index = null;
+            clearBounds();
         } else {
             set.clear();
         }
@@ -575,18 +770,17 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         E first = null;
         if (persisted) {
             try {
-                int size = readSize();
-                InputStream stream = getInputStream();
+                BlockReader reader = new BlockReader();
                 try {
-                    if (size != 0) {
-                        first = readObject(stream);
+                    if (reader.hasNext()) {
+                        first = reader.next();
                         gotFirst = true;
                     }
                 } catch (IOException ioe) {
                     QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR, ioe);
                     throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
                 } finally {
-                    stream.close();
+                    reader.close();
                 }
             } catch (Exception e) {
                 QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR, e);
@@ -610,15 +804,18 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         E last = null;
         if (persisted) {
             try {
-                int size = readSize();
-                InputStream stream = getInputStream();
+                // only the last block needs to be read
+                BlockIndex blockIndex = getIndex();
+                BlockReader reader = blockIndex.size == 0 ? null : new BlockReader(blockIndex, blockIndex.offsets.length - 1);
                 try {
-                    for (int i = 0; i < size; i++) {
-                        last = readObject(stream);
+                    while (reader != null && reader.hasNext()) {
+                        last = reader.next();
                         gotLast = true;
                     }
                 } finally {
-                    stream.close();
+                    if (reader != null) {
+                        reader.close();
+                    }
                 }
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to get last from file", e);
@@ -644,43 +841,67 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
      * 
      */
     protected class FileIterator implements Iterator<E> {
-        private int size = 0;
-        private int index = 0;
-        private InputStream stream = null;
+        private BlockReader reader = null;
+        private E next = null;
+        private boolean hasNext = false;
         
         public FileIterator() {
+            this(null);
+        }
+        
+        /**
+         * Create an iterator starting at the first element greater than or equal to from
+         *
+         * @param from
+         *            the first element, or null to start at the beginning of the file
+         */
+        public FileIterator(E from) {
             try {
-                this.size = readSize();
-                if (this.size == 0) {
-                    cleanup();
+                if (from == null) {
+                    this.reader = new BlockReader();
                 } else {
-                    this.stream = getInputStream();
+                    BlockIndex blockIndex = getIndex();
+                    if (blockIndex.size > 0) {
+                        this.reader = new BlockReader(blockIndex, blockIndex.find(from));
+                    }
                 }
+                advance(from);
             } catch (Exception e) {
+                cleanup();
                 throw new IllegalStateException("Unable to read file", e);
             }
         }
         
+        private void advance(E from) throws IOException {
+            hasNext = false;
+            next = null;
+            while (reader != null && reader.hasNext()) {
+                E o = reader.next();
+                if (from == null || compare(o, from) >= 0) {
+                    next = o;
+                    hasNext = true;
+                    break;
+                }
+            }
+            if (!hasNext) {
+                cleanup();
+            }
+        }
+        
         public void cleanup() {
-            if (stream != null) {
+            if (reader != null) {
                 try {
-                    stream.close();
+                    reader.close();
                 } catch (Exception e) {
                     // we tried...
                 }
-                stream = null;
+                reader = null;
             }
         }
         
         @Override
         public boolean hasNext() {
-            if (stream == null) {
-                return false;
-            }
-            if (index >= size) {
-                cleanup();
-            }
-            return index < size;
+            return hasNext;
         }
         
         @Override
@@ -689,16 +910,13 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
                 QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
                 throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
             }
+            E o = next;
             try {
-                E o = readObject(stream);
-                index++;
-                if (index >= size) {
-                    cleanup();
-                }
-                return o;
+                advance(null);
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to get next element from file", e);
             }
+            return o;
         }
         
         @Override
@@ -714,8 +932,266 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
         
     }
     
+    /**
+     * Writes the blocks, block index, and trailer of a persisted file
+     */
+    private class BlockWriter implements Closeable {
+        private final DataOutputStream out;
+        private final int blockSize;
+        private final CompressionCodec codec;
+        private long position = 0;
+        private int size = 0;
+        
+        // the current block
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+        private OutputStream blockStream = null;
+        private int blockCount = 0;
+        
+        // the block index
+        private final List<long[]> blocks = new ArrayList<>();
+        private final ByteArrayOutputStream firstBytes = new ByteArrayOutputStream();
+        private final OutputStream firstStream;
+        
+        BlockWriter(OutputStream stream, PersistOptions options) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(stream));
+            this.blockSize = options.getBlockSize();
+            this.codec = getCodec(options.getCompressionCodec());
+            this.firstStream = getOutputStream(firstBytes);
+            
+            String codecName = (codec == null ? "" : codec.getClass().getName());
+            out.writeInt(FILE_MAGIC);
+            out.writeUTF(codecName);
+            position = 6 + codecName.getBytes(StandardCharsets.UTF_8).length;
+        }
+        
+        void write(E t) throws IOException {
+            if (blockStream == null) {
+                blockStream = getOutputStream(blockBytes);
+                blocks.add(new long[] {position, size});
+                writeObject(firstStream, t);
+            }
+            writeObject(blockStream, t);
+            blockCount++;
+            size++;
+            if (blockBytes.size() >= blockSize) {
+                flushBlock();
+            }
+        }
+        
+        private void flushBlock() throws IOException {
+            blockStream.flush();
+            byte[] raw = blockBytes.toByteArray();
+            byte[] stored = raw;
+            if (codec != null) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2);
+                Compressor compressor = CodecPool.getCompressor(codec);
+                try {
+                    OutputStream compressedStream = codec.createOutputStream(compressed, compressor);
+                    compressedStream.write(raw);
+                    compressedStream.close();
+                } finally {
+                    CodecPool.returnCompressor(compressor);
+                }
+                stored = compressed.toByteArray();
+            }
+            out.writeInt(stored.length);
+            out.writeInt(raw.length);
+            out.writeInt(blockCount);
+            out.write(stored);
+            position += 12 + stored.length;
+            
+            blockBytes.reset();
+            blockStream = null;
+            blockCount = 0;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                if (blockCount > 0) {
+                    flushBlock();
+                }
+                firstStream.flush();
+                
+                long indexOffset = position;
+                for (long[] block : blocks) {
+                    out.writeLong(block[0]);
+                    out.writeInt((int) block[1]);
+                }
+                out.writeInt(firstBytes.size());
+                firstBytes.writeTo(out);
+                
+                out.writeLong(indexOffset);
+                out.writeInt(blocks.size());
+                out.writeInt(size);
+            } finally {
+                out.close();
+            }
+        }
+    }
+    
+    /**
+     * Reads the elements of a persisted file, starting at the first block or at a block from the block index
+     */
+    private class BlockReader implements Closeable {
+        private final DataInputStream in;
+        private final CompressionCodec codec;
+        private final int size;
+        private int remaining;
+        
+        // the current block
+        private InputStream blockStream = null;
+        private int blockRemaining = 0;
+        
+        BlockReader() throws IOException {
+            this(readSize(), -1, 0);
+        }
+        
+        BlockReader(BlockIndex blockIndex, int block) throws IOException {
+            this(blockIndex.size, blockIndex.offsets[block], blockIndex.preceding[block]);
+        }
+        
+        private BlockReader(int size, long offset, int preceding) throws IOException {
+            this.size = size;
+            this.remaining = size - preceding;
+            this.in = new DataInputStream(new BufferedInputStream(handler.getInputStream()));
+            try {
+                if (in.readInt() != FILE_MAGIC) {
+                    throw new IOException("Unrecognized sorted set file format: " + handler);
+                }
+                String codecName = in.readUTF();
+                this.codec = getCodec(codecName);
+                long position = 6 + codecName.getBytes(StandardCharsets.UTF_8).length;
+                if (offset > position) {
+                    skipFully(in, offset - position);
+                }
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+        }
+        
+        boolean hasNext() {
+            return remaining > 0;
+        }
+        
+        E next() throws IOException {
+            if (remaining <= 0) {
+                throw new EOFException("No more elements in " + handler);
+            }
+            if (blockRemaining == 0) {
+                readBlock();
+            }
+            blockRemaining--;
+            remaining--;
+            return readObject(blockStream);
+        }
+        
+        private void readBlock() throws IOException {
+            int storedLength = in.readInt();
+            int rawLength = in.readInt();
+            blockRemaining = in.readInt();
+            byte[] stored = new byte[storedLength];
+            in.readFully(stored);
+            byte[] raw = stored;
+            if (codec != null) {
+                raw = new byte[rawLength];
+                Decompressor decompressor = CodecPool.getDecompressor(codec);
+                try {
+                    DataInputStream decompressed = new DataInputStream(codec.createInputStream(new ByteArrayInputStream(stored), decompressor));
+                    decompressed.readFully(raw);
+                    decompressed.close();
+                } finally {
+                    CodecPool.returnDecompressor(decompressor);
+                }
+            }
+            blockStream = getInputStream(new ByteArrayInputStream(raw));
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    /**
+     * The block index of a persisted file: the offset of each block, the number of elements preceding each block, and the first element of each block
+     */
+    private class BlockIndex {
+        private final int size;
+        private final long[] offsets;
+        private final int[] preceding;
+        private final List<E> firsts;
+        
+        BlockIndex() throws IOException {
+            long fileSize = handler.getSize();
+            long indexOffset;
+            int blockCount;
+            DataInputStream in = new DataInputStream(handler.getInputStream());
+            try {
+                skipFully(in, fileSize - TRAILER_SIZE);
+                indexOffset = in.readLong();
+                blockCount = in.readInt();
+                size = in.readInt();
+            } finally {
+                in.close();
+            }
+            
+            offsets = new long[blockCount];
+            preceding = new int[blockCount];
+            firsts = new ArrayList<>(blockCount);
+            in = new DataInputStream(new BufferedInputStream(handler.getInputStream()));
+            try {
+                skipFully(in, indexOffset);
+                for (int i = 0; i < blockCount; i++) {
+                    offsets[i] = in.readLong();
+                    preceding[i] = in.readInt();
+                }
+                byte[] firstBytes = new byte[in.readInt()];
+                in.readFully(firstBytes);
+                InputStream firstStream = getInputStream(new ByteArrayInputStream(firstBytes));
+                for (int i = 0; i < blockCount; i++) {
+                    firsts.add(readObject(firstStream));
+                }
+            } finally {
+                in.close();
+            }
+        }
+        
+        /**
+         * Find the block which would contain an element
+         *
+         * @param from
+         * @return the last block whose first element is less than or equal to from, or the first block if there is none
+         */
+        int find(E from) {
+            int start = 0;
+            int end = firsts.size() - 1;
+            int found = 0;
+            while (start <= end) {
+                int middle = (start + end) >>> 1;
+                if (compare(firsts.get(middle), from) <= 0) {
+                    found = middle;
+                    start = middle + 1;
+                } else {
+                    end = middle - 1;
+                }
+            }
+            return found;
+        }
+    }
+    
     /********* Some utilities ***********/
     
+    @SuppressWarnings("unchecked")
+    private int compare(E o1, E o2) {
+        if (set.comparator() == null) {
+            return ((Comparable<? super E>) o1).compareTo(o2);
+        } else {
+            return set.comparator().compare(o1, o2);
+        }
+    }
+    
     private boolean equals(E o1, E o2) {
         if (o1 == null) {
             return o2 == null;
@@ -790,6 +1266,7 @@ public abstract class FileSortedSet<E> implements SortedSet<E>, Cloneable {
          * @throws IOException
          */
         FileSortedSet<E> newInstance(SortedSet<E> set, SortedSetFileHandler handler, boolean persist) throws IOException;
+        
     }
     
 }
@@ -2,53 +2,144 @@ package datawave.query.util.sortedset;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
+import org.apache.log4j.Logger;
 
 /**
  * This is an iterator that will return a sorted set of items (no dups) from an underlying set of sorted sets. This will support null contained in the
  * underlying sets iff the underlying sets use a comparator that can handle null values.
- * 
- * 
- * 
+ *
+ * The head of each underlying iterator is kept in a heap, so each element returned costs O(log k) comparisons for k sets. If a prefetch executor is supplied,
+ * then the iterators over persisted file sets will read their next batch of elements on that executor while the current batch is being merged. A batch that has
+ * not been picked up by the executor by the time it is needed is read on the calling thread instead, so a saturated executor can never deadlock the merge.
+ * Once the merge is abandoned, {@link #cancelPrefetch()} stops the reads ahead so that no batches are read on the executor for an iterator that is no longer
+ * used.
+ *
  * @param <T>
  */
 public class MergeSortIterator<T> implements Iterator<T> {
+    private static final Logger log = Logger.getLogger(MergeSortIterator.class);
     
-    private List<Iterator<T>> iterators = new ArrayList<>();
-    private List<T> lastList = new ArrayList<>();
-    private boolean[] finished = null;
-    private SortedSet<T> set = null;
+    private final Comparator<? super T> comparator;
+    private final PriorityQueue<Head<T>> heap;
+    // the heads whose iterators contributed to the last value returned, to be advanced on the next call to next()
+    private final List<Head<T>> lastHeads = new ArrayList<>();
+    // the iterators reading ahead on the prefetch executor
+    private final List<PrefetchIterator<T>> prefetchIterators = new ArrayList<>();
     private boolean populated = false;
-    private T next = null;
-    private List<Iterator<T>> nextIterators = new ArrayList<>();
     
     public MergeSortIterator(Collection<? extends SortedSet<T>> sets) {
+        this(sets, null);
+    }
+    
+    /**
+     * Create an iterator starting at the first element greater than or equal to from. Persisted file sets will seek using their block index.
+     *
+     * @param sets
+     * @param from
+     *            the first element to return, or null to iterate over the entire sets
+     */
+    public MergeSortIterator(Collection<? extends SortedSet<T>> sets, T from) {
+        this(sets, from, null, 0, 0, null);
+    }
+    
+    /**
+     * Create an iterator starting at the first element greater than or equal to from, prefetching from the persisted file sets.
+     *
+     * @param sets
+     * @param from
+     *            the first element to return, or null to iterate over the entire sets
+     * @param prefetchExecutor
+     *            the executor used to read ahead in the persisted file sets, or null to read them on the calling thread
+     * @param prefetchSize
+     *            the number of elements to read ahead for each persisted file set
+     * @param maxPrefetchReaders
+     *            the max number of persisted file sets to read ahead for at once, normally the max number of open files
+     * @param stats
+     *            the stats to update, may be null
+     */
+    public MergeSortIterator(Collection<? extends SortedSet<T>> sets, T from, Executor prefetchExecutor, int prefetchSize, int maxPrefetchReaders,
+                    Stats stats) {
+        this(sets, from, prefetchExecutor, prefetchSize, 0, null, maxPrefetchReaders, stats);
+    }
+    
+    /**
+     * Create an iterator starting at the first element greater than or equal to from, prefetching from the persisted file sets.
+     *
+     * @param sets
+     * @param from
+     *            the first element to return, or null to iterate over the entire sets
+     * @param prefetchExecutor
+     *            the executor used to read ahead in the persisted file sets, or null to read them on the calling thread
+     * @param prefetchSize
+     *            the number of elements to read ahead for each persisted file set
+     * @param prefetchMaxBytes
+     *            the max size of the elements read ahead or being merged for all of the persisted file sets, or 0 for no limit
+     * @param sizer
+     *            the size of an element, used when prefetchMaxBytes is set
+     * @param maxPrefetchReaders
+     *            the max number of persisted file sets to read ahead for at once, normally the max number of open files
+     * @param stats
+     *            the stats to update, may be null
+     */
+    public MergeSortIterator(Collection<? extends SortedSet<T>> sets, T from, Executor prefetchExecutor, int prefetchSize, long prefetchMaxBytes,
+                    ToLongFunction<? super T> sizer, int maxPrefetchReaders, Stats stats) {
+        // each reader holds the batch being merged and the batch being read ahead
+        long batchMaxBytes = (prefetchMaxBytes > 0 && sizer != null ? Math.max(1, prefetchMaxBytes / (2L * Math.max(1, maxPrefetchReaders))) : 0);
         Comparator<? super T> comparator = null;
+        List<Iterator<T>> iterators = new ArrayList<>();
+        int prefetchReaders = 0;
         for (SortedSet<T> set : sets) {
             comparator = set.comparator();
-            Iterator<T> it = set.iterator();
+            Iterator<T> it;
+            if (from == null) {
+                it = set.iterator();
+            } else if (set instanceof FileSortedSet) {
+                it = ((FileSortedSet<T>) set).iterator(from);
+            } else {
+                it = set.tailSet(from).iterator();
+            }
+            if (prefetchExecutor != null && prefetchSize > 0 && prefetchReaders < maxPrefetchReaders && set instanceof FileSortedSet
+                            && ((FileSortedSet<T>) set).isPersisted()) {
+                PrefetchIterator<T> prefetchIterator = new PrefetchIterator<>(it, prefetchExecutor, prefetchSize, batchMaxBytes, sizer, stats);
+                prefetchIterators.add(prefetchIterator);
+                it = prefetchIterator;
+                prefetchReaders++;
+            }
             iterators.add(it);
-            nextIterators.add(it);
-            lastList.add(null);
         }
-        this.set = new TreeSet<>(comparator);
-        this.finished = new boolean[iterators.size()];
+        if (stats != null) {
+            stats.setsMerged.addAndGet(iterators.size());
+        }
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.max(1, iterators.size()), this::compareHeads);
+        
+        // the first call to next() will pull the first element from each iterator
+        for (int i = 0; i < iterators.size(); i++) {
+            lastHeads.add(new Head<>(iterators.get(i), i));
+        }
     }
     
     @Override
     public boolean hasNext() {
-        if (!set.isEmpty()) {
+        if (!heap.isEmpty()) {
             return true;
         }
-        for (Iterator<T> it : nextIterators) {
-            if (it != null && it.hasNext()) {
+        for (Head<T> head : lastHeads) {
+            if (head.it.hasNext()) {
                 return true;
             }
         }
@@ -62,7 +153,7 @@ public class MergeSortIterator<T> implements Iterator<T> {
             QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
             throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
         }
-        return next;
+        return lastHeads.get(0).value;
     }
     
     @Override
@@ -71,13 +162,11 @@ public class MergeSortIterator<T> implements Iterator<T> {
             throw new IllegalStateException();
         }
         Exception e = null;
-        for (Iterator<T> it : nextIterators) {
-            if (it != null) {
-                try {
-                    it.remove();
-                } catch (UnsupportedOperationException uoe) {
-                    e = uoe;
-                }
+        for (Head<T> head : lastHeads) {
+            try {
+                head.it.remove();
+            } catch (UnsupportedOperationException uoe) {
+                e = uoe;
             }
         }
         populated = false;
@@ -86,57 +175,300 @@ public class MergeSortIterator<T> implements Iterator<T> {
         }
     }
     
+    /**
+     * Stop reading ahead on the prefetch executor. A batch which has not been started will not be read by the executor, and a batch being read is waited for,
+     * so that no reads happen on the executor once this returns. This iterator may still be used afterwards, reading the persisted sets on the calling thread.
+     */
+    public void cancelPrefetch() {
+        for (PrefetchIterator<T> prefetchIterator : prefetchIterators) {
+            prefetchIterator.cancel();
+        }
+    }
+    
     /************ Some utility methods *********/
     
-    private boolean equals(T o1, T o2) {
-        if (o1 == null) {
-            return o2 == null;
-        } else if (o2 == null) {
-            return false;
+    @SuppressWarnings("unchecked")
+    private int compare(T o1, T o2) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) o1).compareTo(o2);
         } else {
-            if (set.comparator() == null) {
-                return o1.equals(o2);
-            } else {
-                return set.comparator().compare(o1, o2) == 0;
-            }
+            return comparator.compare(o1, o2);
         }
     }
     
+    private int compareHeads(Head<T> h1, Head<T> h2) {
+        int result = compare(h1.value, h2.value);
+        // ties are broken by set order so that the heap is deterministic
+        return (result == 0 ? Integer.compare(h1.index, h2.index) : result);
+    }
+    
     private void populate() {
         populated = false;
         
-        // update the last value for those iterators contributing to
-        // the last returned value
-        for (int i = 0; i < nextIterators.size(); i++) {
-            if (nextIterators.get(i) != null) {
-                Iterator<T> it = nextIterators.get(i);
-                if (it.hasNext()) {
-                    T val = it.next();
-                    lastList.set(i, val);
-                    set.add(val);
-                } else {
-                    lastList.set(i, null);
-                    finished[i] = true;
+        // advance those iterators contributing to the last returned value
+        for (Head<T> head : lastHeads) {
+            if (head.it.hasNext()) {
+                head.value = head.it.next();
+                heap.add(head);
+            }
+        }
+        lastHeads.clear();
+        
+        if (!heap.isEmpty()) {
+            Head<T> head = heap.poll();
+            lastHeads.add(head);
+            // collect the other iterators positioned on the same value, they will be advanced on the next round
+            while (!heap.isEmpty() && compare(heap.peek().value, head.value) == 0) {
+                lastHeads.add(heap.poll());
+            }
+            populated = true;
+        }
+    }
+    
+    /**
+     * The current element of one of the underlying iterators
+     */
+    private static class Head<T> {
+        private final Iterator<T> it;
+        private final int index;
+        private T value;
+        
+        private Head(Iterator<T> it, int index) {
+            this.it = it;
+            this.index = index;
+        }
+    }
+    
+    /**
+     * Counters for the merges of a set, shared by all of the iterators created for that set
+     */
+    public static class Stats {
+        private final AtomicLong setsMerged = new AtomicLong();
+        private final AtomicLong prefetchedBatches = new AtomicLong();
+        private final AtomicLong inlineBatches = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong inlineReadNanos = new AtomicLong();
+        
+        /**
+         * @return the number of underlying sets iterated over by the merges
+         */
+        public long getSetsMerged() {
+            return setsMerged.get();
+        }
+        
+        /**
+         * @return the number of batches read ahead on the prefetch executor
+         */
+        public long getPrefetchedBatches() {
+            return prefetchedBatches.get();
+        }
+        
+        /**
+         * @return the number of batches read on the merging thread because the prefetch executor had not started them yet
+         */
+        public long getInlineBatches() {
+            return inlineBatches.get();
+        }
+        
+        /**
+         * @return the time the merging thread spent waiting for batches being read on the prefetch executor
+         */
+        public long getWaitMillis() {
+            return waitNanos.get() / 1000000;
+        }
+        
+        /**
+         * @return the time the merging thread spent reading batches itself
+         */
+        public long getInlineReadMillis() {
+            return inlineReadNanos.get() / 1000000;
+        }
+        
+        @Override
+        public String toString() {
+            return "setsMerged=" + getSetsMerged() + ", prefetchedBatches=" + getPrefetchedBatches() + ", inlineBatches=" + getInlineBatches() + ", waitMillis="
+                            + getWaitMillis() + ", inlineReadMillis=" + getInlineReadMillis();
+        }
+    }
+    
+    /**
+     * An iterator that reads the next batch of elements from its source on an executor while the current batch is being consumed. Only one batch is read ahead
+     * at a time, and the source is only ever read by one thread at a time.
+     */
+    private static class PrefetchIterator<T> implements Iterator<T> {
+        private final Iterator<T> source;
+        private final int batchSize;
+        private final long batchMaxBytes;
+        private final ToLongFunction<? super T> sizer;
+        private final Stats stats;
+        // null once the prefetch is cancelled
+        private Executor executor;
+        
+        // the batch being consumed
+        private List<T> batch = Collections.emptyList();
+        private int position = 0;
+        // the batch being read ahead, null once the source is exhausted
+        private Batch<T> pending;
+        
+        private PrefetchIterator(Iterator<T> source, Executor executor, int batchSize, long batchMaxBytes, ToLongFunction<? super T> sizer, Stats stats) {
+            this.source = source;
+            this.executor = executor;
+            this.batchSize = batchSize;
+            this.batchMaxBytes = batchMaxBytes;
+            this.sizer = sizer;
+            this.stats = stats;
+            this.pending = schedule();
+        }
+        
+        private Batch<T> schedule() {
+            Batch<T> next = new Batch<>(source, batchSize, batchMaxBytes, sizer);
+            if (executor == null) {
+                return next;
+            }
+            try {
+                executor.execute(() -> {
+                    if (next.read()) {
+                        if (stats != null) {
+                            stats.prefetchedBatches.incrementAndGet();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // the batch will be read on the calling thread when it is needed
+                log.debug("Unable to prefetch, reading on demand", e);
+            }
+            return next;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (position < batch.size()) {
+                return true;
+            }
+            if (pending == null) {
+                return false;
+            }
+            fill();
+            return position < batch.size();
+        }
+        
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return batch.get(position++);
+        }
+        
+        private void fill() {
+            Batch<T> current = pending;
+            long start = System.nanoTime();
+            if (current.read()) {
+                // the executor had not started this batch, so we read it ourselves
+                if (stats != null) {
+                    stats.inlineBatches.incrementAndGet();
+                    stats.inlineReadNanos.addAndGet(System.nanoTime() - start);
+                }
+            } else {
+                current.await();
+                if (stats != null) {
+                    stats.waitNanos.addAndGet(System.nanoTime() - start);
                 }
             }
+            batch = current.get();
+            position = 0;
+            // start reading the next batch while this one is consumed
+            pending = (current.exhausted ? null : schedule());
         }
         
-        if (!set.isEmpty()) {
-            next = set.first();
-            set.remove(next);
-            for (int i = 0; i < iterators.size(); i++) {
-                if (!finished[i] && equals(next, lastList.get(i))) {
-                    nextIterators.set(i, iterators.get(i));
+        /**
+         * Stop scheduling batches on the executor, and take back the batch already scheduled
+         */
+        private void cancel() {
+            executor = null;
+            if (pending != null) {
+                if (pending.claimed.compareAndSet(false, true)) {
+                    // the executor will skip the batch it was given, so replace it with one to be read on demand
+                    pending = new Batch<>(source, batchSize, batchMaxBytes, sizer);
                 } else {
-                    // if the iterator is finished, or did not contribute to the value being returned
-                    // then null it out since the value returned is already in the set to compare
-                    // on the next round
-                    nextIterators.set(i, null);
+                    pending.await();
                 }
             }
-            populated = true;
         }
-        
     }
     
+    /**
+     * A batch of elements read from an iterator by whichever thread claims it first
+     */
+    private static class Batch<T> {
+        private final Iterator<T> source;
+        private final int size;
+        private final long maxBytes;
+        private final ToLongFunction<? super T> sizer;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private final List<T> elements;
+        private boolean done = false;
+        private boolean exhausted = false;
+        private RuntimeException failure = null;
+        
+        private Batch(Iterator<T> source, int size, long maxBytes, ToLongFunction<? super T> sizer) {
+            this.source = source;
+            this.size = size;
+            this.maxBytes = maxBytes;
+            this.sizer = sizer;
+            this.elements = new ArrayList<>();
+        }
+        
+        /**
+         * Read the batch if no other thread has claimed it
+         *
+         * @return true if this thread read the batch
+         */
+        private boolean read() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                long bytes = 0;
+                while (elements.size() < size && (maxBytes <= 0 || bytes < maxBytes) && source.hasNext()) {
+                    T element = source.next();
+                    elements.add(element);
+                    if (maxBytes > 0) {
+                        bytes += sizer.applyAsLong(element);
+                    }
+                }
+                exhausted = !source.hasNext();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    done = true;
+                    notifyAll();
+                }
+            }
+            return true;
+        }
+        
+        private synchronized void await() {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        private List<T> get() {
+            if (failure != null) {
+                throw failure;
+            }
+            return elements;
+        }
+    }
 }
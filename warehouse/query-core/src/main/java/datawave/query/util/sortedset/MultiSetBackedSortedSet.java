@@ -7,6 +7,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
 
 /*
  * This is a sorted set that is backed by multiple underlying sorted sets.  It is assumed that the underlying
@@ -17,6 +19,49 @@ import java.util.TreeSet;
 public class MultiSetBackedSortedSet<E> extends AbstractSet<E> implements SortedSet<E> {
     protected List<SortedSet<E>> sets = new ArrayList<>();
     
+    // the executor used to read ahead in the persisted sets when merging, null to merge on the calling thread
+    protected Executor prefetchExecutor = null;
+    protected int prefetchSize = 0;
+    protected long prefetchMaxBytes = 0;
+    protected ToLongFunction<? super E> sizer = null;
+    protected int maxPrefetchReaders = 0;
+    protected MergeSortIterator.Stats mergeStats = new MergeSortIterator.Stats();
+    
+    /**
+     * Read ahead in the persisted sets on an executor when iterating over this set
+     * 
+     * @param prefetchExecutor
+     *            the executor, or null to read on the calling thread
+     * @param prefetchSize
+     *            the number of elements to read ahead for each persisted set
+     * @param prefetchMaxBytes
+     *            the max size of the elements read ahead for all of the persisted sets, or 0 for no limit
+     * @param sizer
+     *            the size of an element, used when prefetchMaxBytes is set
+     * @param maxPrefetchReaders
+     *            the max number of persisted sets to read ahead for at once
+     * @param mergeStats
+     *            the stats to update when merging
+     */
+    public void setPrefetch(Executor prefetchExecutor, int prefetchSize, long prefetchMaxBytes, ToLongFunction<? super E> sizer, int maxPrefetchReaders,
+                    MergeSortIterator.Stats mergeStats) {
+        this.prefetchExecutor = prefetchExecutor;
+        this.prefetchSize = prefetchSize;
+        this.prefetchMaxBytes = prefetchMaxBytes;
+        this.sizer = sizer;
+        this.maxPrefetchReaders = maxPrefetchReaders;
+        this.mergeStats = mergeStats;
+    }
+    
+    /**
+     * Get the counters for the merges of this set
+     * 
+     * @return the merge stats
+     */
+    public MergeSortIterator.Stats getMergeStats() {
+        return mergeStats;
+    }
+    
     /**
      * Add a set to the underlying sets
      * 
@@ -71,7 +116,18 @@ public class MultiSetBackedSortedSet<E> extends AbstractSet<E> implements Sorted
     
     @Override
     public Iterator<E> iterator() {
-        return new MergeSortIterator<>(sets);
+        return iterator(null);
+    }
+    
+    /**
+     * Get an iterator over the elements greater than or equal to from
+     *
+     * @param from
+     *            the first element to return, or null to iterate over the entire set
+     * @return the iterator
+     */
+    public Iterator<E> iterator(E from) {
+        return new MergeSortIterator<>(sets, from, prefetchExecutor, prefetchSize, prefetchMaxBytes, sizer, maxPrefetchReaders, mergeStats);
     }
     
     @Override
@@ -0,0 +1,137 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.SortedSet;
+
+/**
+ * A file key sorted set whose in-memory (unpersisted) contents are held in an {@link OffHeapKeySortedSet} instead of a TreeSet. This keeps the keys buffered by
+ * an ivarator off of the heap until the set is persisted. The persisted file format is the same as a {@link FileKeySortedSet}. If a comparator is supplied
+ * then the keys are buffered on the heap as the off-heap set only supports the natural key ordering.
+ */
+public class OffHeapFileKeySortedSet extends FileKeySortedSet {
+    
+    /**
+     * Create a file sorted set from another one
+     *
+     * @param other
+     */
+    public OffHeapFileKeySortedSet(OffHeapFileKeySortedSet other) {
+        super(other);
+    }
+    
+    /**
+     * Create a persisted sorted set
+     *
+     * @param handler
+     * @param persisted
+     */
+    public OffHeapFileKeySortedSet(SortedSetFileHandler handler, boolean persisted) {
+        super(handler, persisted);
+    }
+    
+    /**
+     * Create a persisted sorted set
+     *
+     * @param comparator
+     * @param handler
+     * @param persisted
+     */
+    public OffHeapFileKeySortedSet(Comparator<? super Key> comparator, SortedSetFileHandler handler, boolean persisted) {
+        super(comparator, handler, persisted);
+    }
+    
+    /**
+     * Create an unpersisted sorted set (still in memory)
+     *
+     * @param set
+     * @param handler
+     */
+    public OffHeapFileKeySortedSet(SortedSet<Key> set, SortedSetFileHandler handler) {
+        super(set, handler);
+    }
+    
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     *
+     * @param set
+     * @param handler
+     */
+    public OffHeapFileKeySortedSet(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+        super(set, handler, persist);
+    }
+    
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     *
+     * @param set
+     * @param handler
+     * @param persist
+     * @param persistOptions
+     */
+    public OffHeapFileKeySortedSet(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist, PersistOptions persistOptions) throws IOException {
+        super(set, handler, persist, persistOptions);
+    }
+    
+    /**
+     * Hold the unpersisted keys in an off-heap set, unless a comparator other than the natural key ordering is needed
+     */
+    @Override
+    protected SortedSet<Key> newSet(Comparator<? super Key> comparator) {
+        return (comparator == null ? new OffHeapKeySortedSet() : super.newSet(comparator));
+    }
+    
+    /**
+     * Clone this set
+     */
+    @Override
+    public OffHeapFileKeySortedSet clone() {
+        return new OffHeapFileKeySortedSet(this);
+    }
+    
+    /**
+     * A factory for these file sorted sets
+     */
+    public static class Factory implements FileSortedSetFactory<Key> {
+        
+        private final PersistOptions persistOptions;
+        
+        public Factory() {
+            this(PersistOptions.DEFAULT);
+        }
+        
+        public Factory(PersistOptions persistOptions) {
+            this.persistOptions = persistOptions;
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(SortedSetFileHandler handler, boolean persisted) {
+            OffHeapFileKeySortedSet set = new OffHeapFileKeySortedSet(handler, persisted);
+            set.setPersistOptions(persistOptions);
+            return set;
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(Comparator<? super Key> comparator, SortedSetFileHandler handler, boolean persisted) {
+            OffHeapFileKeySortedSet set = new OffHeapFileKeySortedSet(comparator, handler, persisted);
+            set.setPersistOptions(persistOptions);
+            return set;
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(SortedSet<Key> set, SortedSetFileHandler handler) {
+            OffHeapFileKeySortedSet fileSet = new OffHeapFileKeySortedSet(set, handler);
+            fileSet.setPersistOptions(persistOptions);
+            return fileSet;
+        }
+        
+        @Override
+        public OffHeapFileKeySortedSet newInstance(SortedSet<Key> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+            return new OffHeapFileKeySortedSet(set, handler, persist, persistOptions);
+        }
+    }
+}
@@ -0,0 +1,698 @@
+package datawave.query.util.sortedset;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * This is a sorted set of keys which keeps the serialized keys in direct (off-heap) byte buffers and a separate array of offsets in sorted key order. The
+ * reason for building this sorted set structure is to keep large ivarator buffers off of the tablet server heap: the only on-heap cost is 4 bytes per key, and
+ * keys are only materialized as they are read back out. Only the natural key ordering is supported.
+ *
+ * Each key is stored as the lengths of the row, column family, column qualifier, and column visibility, followed by those bytes, the timestamp, and the deleted
+ * flag. Keys are compared in their serialized form, so adding and searching does not create any objects.
+ *
+ * The serialized keys are appended to a sequence of fixed size chunks, and a key may span more than one chunk. The set grows by allocating another chunk
+ * rather than copying everything into a larger buffer, so the chunks already allocated are kept in use instead of being left behind for the garbage collector.
+ */
+public class OffHeapKeySortedSet extends AbstractSet<Key> implements SortedSet<Key> {
+    public static final int AVERAGE_KEY_SIZE = 128;
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int MIN_CHUNK_SIZE = 4 * 1024;
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    
+    // the four lengths at the start of a key
+    private static final int HEADER_SIZE = 16;
+    // the timestamp and the deleted flag at the end of a key
+    private static final int TRAILER_SIZE = 9;
+    
+    protected final int initialCapacity;
+    protected final int chunkShift;
+    protected final int chunkSize;
+    protected ByteBuffer[] chunks = null;
+    protected int chunkCount = 0;
+    protected int[] sortedDataIndicies = null;
+    protected int size = 0;
+    protected int bufferSize = 0;
+    // the bytes of removed keys which are still in the chunks
+    protected int removedSize = 0;
+    protected int modCount = 0;
+    
+    // a scratch buffer used to copy serialized keys
+    private byte[] scratch = new byte[HEADER_SIZE + TRAILER_SIZE];
+    
+    public OffHeapKeySortedSet() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Create a set whose chunks are sized to hold about capacity keys, within {@link #MIN_CHUNK_SIZE} and {@link #MAX_CHUNK_SIZE}
+     *
+     * @param capacity
+     */
+    public OffHeapKeySortedSet(int capacity) {
+        this.initialCapacity = Math.max(capacity, 1);
+        long requested = Math.min(Math.max((long) initialCapacity * AVERAGE_KEY_SIZE, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+        // round up to a power of two, so that a position is split into a chunk and an offset with a shift and a mask
+        this.chunkShift = 64 - Long.numberOfLeadingZeros(requested - 1);
+        this.chunkSize = 1 << chunkShift;
+    }
+    
+    public OffHeapKeySortedSet(Collection<? extends Key> keys) {
+        this(Math.max(keys.size(), DEFAULT_CAPACITY));
+        addAll(keys);
+    }
+    
+    /************************** Overridden methods *************************/
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (o instanceof Key) {
+            return binarySearch((Key) o) >= 0;
+        }
+        return false;
+    }
+    
+    @Override
+    public Iterator<Key> iterator() {
+        return new OffHeapKeySortedSetIterator();
+    }
+    
+    @Override
+    public boolean add(Key e) {
+        if (e == null) {
+            throw new NullPointerException("OffHeapKeySortedSet does not support null keys");
+        }
+        int index = binarySearch(e);
+        if (index < 0) {
+            add(-1 - index, e);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Key)) {
+            return false;
+        }
+        int index = binarySearch((Key) o);
+        if (index >= 0) {
+            remove(index);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Clear the set, releasing the off-heap chunks. A new chunk will be allocated on the next add.
+     */
+    @Override
+    public void clear() {
+        modCount++;
+        size = 0;
+        bufferSize = 0;
+        removedSize = 0;
+        chunks = null;
+        chunkCount = 0;
+        sortedDataIndicies = null;
+    }
+    
+    @Override
+    public Comparator<? super Key> comparator() {
+        return null;
+    }
+    
+    @Override
+    public SortedSet<Key> subSet(Key fromElement, Key toElement) {
+        return new OffHeapKeySubSet(fromElement, toElement);
+    }
+    
+    @Override
+    public SortedSet<Key> headSet(Key toElement) {
+        return new OffHeapKeySubSet(null, toElement);
+    }
+    
+    @Override
+    public SortedSet<Key> tailSet(Key fromElement) {
+        return new OffHeapKeySubSet(fromElement, null);
+    }
+    
+    @Override
+    public Key first() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return get(0);
+    }
+    
+    @Override
+    public Key last() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return get(size - 1);
+    }
+    
+    /***************************** Other public methods *************************/
+    
+    public Key get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index is out of range");
+        }
+        int dataIndex = sortedDataIndicies[index];
+        int pos = dataIndex + HEADER_SIZE;
+        byte[] row = getBytes(pos, getInt(dataIndex));
+        pos += row.length;
+        byte[] cf = getBytes(pos, getInt(dataIndex + 4));
+        pos += cf.length;
+        byte[] cq = getBytes(pos, getInt(dataIndex + 8));
+        pos += cq.length;
+        byte[] cv = getBytes(pos, getInt(dataIndex + 12));
+        pos += cv.length;
+        return new Key(row, cf, cq, cv, getLong(pos), getByte(pos + 8) != 0, false);
+    }
+    
+    /**
+     * @return the number of bytes of off-heap memory currently allocated for this set
+     */
+    public long getOffHeapCapacity() {
+        return (long) chunkCount * chunkSize;
+    }
+    
+    /******************************* The protected stuff ***************************/
+    
+    protected static int serializedSize(Key key) {
+        return HEADER_SIZE + key.getRowData().length() + key.getColumnFamilyData().length() + key.getColumnQualifierData().length()
+                        + key.getColumnVisibilityData().length() + TRAILER_SIZE;
+    }
+    
+    protected int serializedSize(int dataIndex) {
+        return HEADER_SIZE + getInt(dataIndex) + getInt(dataIndex + 4) + getInt(dataIndex + 8) + getInt(dataIndex + 12) + TRAILER_SIZE;
+    }
+    
+    protected void checkCapacity(int plusSize) {
+        if (chunks == null) {
+            chunks = new ByteBuffer[4];
+            sortedDataIndicies = new int[initialCapacity];
+        }
+        
+        long minCapacity = (long) bufferSize + plusSize;
+        if (minCapacity > getOffHeapCapacity()) {
+            // reclaim the space of the removed keys rather than allocating for them
+            if (removedSize > 0 && removedSize >= bufferSize / 2) {
+                compact();
+                minCapacity = (long) bufferSize + plusSize;
+            }
+            if (minCapacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("OffHeapKeySortedSet cannot hold more than " + Integer.MAX_VALUE + " bytes");
+            }
+            while (minCapacity > getOffHeapCapacity()) {
+                addChunk();
+            }
+        }
+        
+        int minLen = size + 1;
+        int oldLen = sortedDataIndicies.length;
+        if (minLen > oldLen) {
+            int newLen = (oldLen * 3) / 2 + 1;
+            if (newLen < minLen) {
+                newLen = minLen;
+            }
+            int[] newIndicies = new int[newLen];
+            System.arraycopy(sortedDataIndicies, 0, newIndicies, 0, size);
+            sortedDataIndicies = newIndicies;
+        }
+    }
+    
+    /**
+     * Allocate another chunk at the end of the buffer
+     */
+    protected void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(chunkSize);
+    }
+    
+    /**
+     * Move the remaining keys down over the space left behind by the removed keys, within the chunks already allocated. The keys are moved in the order they
+     * were written, so a key is only ever moved over space which has already been moved out of.
+     */
+    protected void compact() {
+        int[] positions = Arrays.copyOf(sortedDataIndicies, size);
+        Arrays.sort(positions);
+        int[] moved = new int[size];
+        int newPosition = 0;
+        for (int i = 0; i < size; i++) {
+            int length = serializedSize(positions[i]);
+            if (positions[i] != newPosition) {
+                copy(positions[i], newPosition, length);
+            }
+            moved[i] = newPosition;
+            newPosition += length;
+        }
+        for (int i = 0; i < size; i++) {
+            sortedDataIndicies[i] = moved[Arrays.binarySearch(positions, sortedDataIndicies[i])];
+        }
+        bufferSize = newPosition;
+        removedSize = 0;
+    }
+    
+    protected void add(int index, Key key) {
+        modCount++;
+        checkCapacity(serializedSize(key));
+        int dataIndex = bufferSize;
+        
+        ByteSequence row = key.getRowData();
+        ByteSequence cf = key.getColumnFamilyData();
+        ByteSequence cq = key.getColumnQualifierData();
+        ByteSequence cv = key.getColumnVisibilityData();
+        int pos = putInt(dataIndex, row.length());
+        pos = putInt(pos, cf.length());
+        pos = putInt(pos, cq.length());
+        pos = putInt(pos, cv.length());
+        pos = put(pos, row);
+        pos = put(pos, cf);
+        pos = put(pos, cq);
+        pos = put(pos, cv);
+        pos = putLong(pos, key.getTimestamp());
+        scratch[0] = (byte) (key.isDeleted() ? 1 : 0);
+        bufferSize = put(pos, scratch, 0, 1);
+        
+        System.arraycopy(sortedDataIndicies, index, sortedDataIndicies, index + 1, size - index);
+        sortedDataIndicies[index] = dataIndex;
+        size++;
+    }
+    
+    /**
+     * Remove the key at the specified index. The serialized key is left in the chunks and its space is reclaimed the next time the set runs out of space.
+     *
+     * @param index
+     */
+    protected void remove(int index) {
+        modCount++;
+        removedSize += serializedSize(sortedDataIndicies[index]);
+        size--;
+        System.arraycopy(sortedDataIndicies, index + 1, sortedDataIndicies, index, size - index);
+    }
+    
+    private byte getByte(int pos) {
+        return chunks[pos >>> chunkShift].get(pos & (chunkSize - 1));
+    }
+    
+    private int getInt(int pos) {
+        int offset = pos & (chunkSize - 1);
+        if (offset + 4 <= chunkSize) {
+            return chunks[pos >>> chunkShift].getInt(offset);
+        }
+        // the int spans two chunks
+        read(pos, scratch, 0, 4);
+        return ByteBuffer.wrap(scratch, 0, 4).getInt();
+    }
+    
+    private long getLong(int pos) {
+        int offset = pos & (chunkSize - 1);
+        if (offset + 8 <= chunkSize) {
+            return chunks[pos >>> chunkShift].getLong(offset);
+        }
+        // the long spans two chunks
+        read(pos, scratch, 0, 8);
+        return ByteBuffer.wrap(scratch, 0, 8).getLong();
+    }
+    
+    private byte[] getBytes(int pos, int length) {
+        byte[] bytes = new byte[length];
+        read(pos, bytes, 0, length);
+        return bytes;
+    }
+    
+    /**
+     * Read bytes from the chunks, starting at a position in the buffer
+     */
+    private void read(int pos, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer chunk = chunks[pos >>> chunkShift].duplicate();
+            int chunkOffset = pos & (chunkSize - 1);
+            int count = Math.min(length, chunkSize - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.get(bytes, offset, count);
+            pos += count;
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Write bytes to the chunks, starting at a position in the buffer
+     *
+     * @return the position after the bytes
+     */
+    private int put(int pos, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer chunk = chunks[pos >>> chunkShift];
+            int chunkOffset = pos & (chunkSize - 1);
+            int count = Math.min(length, chunkSize - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.put(bytes, offset, count);
+            pos += count;
+            offset += count;
+            length -= count;
+        }
+        return pos;
+    }
+    
+    private int put(int pos, ByteSequence bytes) {
+        return put(pos, bytes.getBackingArray(), bytes.offset(), bytes.length());
+    }
+    
+    private int putInt(int pos, int value) {
+        ByteBuffer.wrap(scratch, 0, 4).putInt(value);
+        return put(pos, scratch, 0, 4);
+    }
+    
+    private int putLong(int pos, long value) {
+        ByteBuffer.wrap(scratch, 0, 8).putLong(value);
+        return put(pos, scratch, 0, 8);
+    }
+    
+    /**
+     * Copy a serialized key to a lower position in the buffer
+     */
+    private void copy(int from, int to, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        read(from, scratch, 0, length);
+        put(to, scratch, 0, length);
+    }
+    
+    private int compare(int pos, int length, ByteSequence term) {
+        byte[] termData = term.getBackingArray();
+        int termOffset = term.offset();
+        int termLength = term.length();
+        int minSize = Math.min(length, termLength);
+        int i = 0;
+        while (i < minSize) {
+            // compare up to the end of the chunk, and then continue in the next one
+            ByteBuffer chunk = chunks[(pos + i) >>> chunkShift];
+            int chunkOffset = (pos + i) & (chunkSize - 1);
+            int count = Math.min(minSize - i, chunkSize - chunkOffset);
+            for (int j = 0; j < count; j++, i++) {
+                int comparison = (chunk.get(chunkOffset + j) & 0xff) - (termData[termOffset + i] & 0xff);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+        }
+        return length - termLength;
+    }
+    
+    /**
+     * Compare the serialized key at dataIndex with a key, using the same ordering as {@link Key#compareTo(Key)}
+     *
+     * @param dataIndex
+     * @param key
+     * @return the comparison
+     */
+    protected int compare(int dataIndex, Key key) {
+        int pos = dataIndex + HEADER_SIZE;
+        int length = getInt(dataIndex);
+        int comparison = compare(pos, length, key.getRowData());
+        if (comparison != 0) {
+            return comparison;
+        }
+        pos += length;
+        length = getInt(dataIndex + 4);
+        comparison = compare(pos, length, key.getColumnFamilyData());
+        if (comparison != 0) {
+            return comparison;
+        }
+        pos += length;
+        length = getInt(dataIndex + 8);
+        comparison = compare(pos, length, key.getColumnQualifierData());
+        if (comparison != 0) {
+            return comparison;
+        }
+        pos += length;
+        length = getInt(dataIndex + 12);
+        comparison = compare(pos, length, key.getColumnVisibilityData());
+        if (comparison != 0) {
+            return comparison;
+        }
+        pos += length;
+        
+        // timestamps are sorted in descending order
+        long timestamp = getLong(pos);
+        if (timestamp != key.getTimestamp()) {
+            return (timestamp < key.getTimestamp() ? 1 : -1);
+        }
+        
+        // deleted keys sort first
+        boolean deleted = getByte(pos + 8) != 0;
+        if (deleted != key.isDeleted()) {
+            return (deleted ? -1 : 1);
+        }
+        return 0;
+    }
+    
+    /**
+     * A binary search of the key buffer based on the sorted index array
+     *
+     * @param key
+     * @return the index of the key, or (-(insertion point) - 1) if not found
+     */
+    protected int binarySearch(Key key) {
+        return binarySearch(key, 0, this.size - 1);
+    }
+    
+    protected int binarySearch(Key key, int start, int end) {
+        while (start <= end) {
+            int middle = (start + end) >>> 1;
+            int comparison = compare(sortedDataIndicies[middle], key);
+            
+            if (comparison < 0)
+                start = middle + 1;
+            else if (comparison > 0)
+                end = middle - 1;
+            else
+                return middle;
+        }
+        // return a negative index if not found so we know where it should go
+        return -(start + 1);
+    }
+    
+    protected class OffHeapKeySortedSetIterator implements Iterator<Key> {
+        protected int index = 0;
+        protected int end = 0;
+        protected int expectedModCount = -1;
+        protected int last = -1;
+        
+        public OffHeapKeySortedSetIterator() {
+            this(0, size);
+        }
+        
+        public OffHeapKeySortedSetIterator(int start, int end) {
+            this.expectedModCount = modCount;
+            this.index = start;
+            this.end = end;
+        }
+        
+        final void checkModCount() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            checkModCount();
+            return index < end;
+        }
+        
+        @Override
+        public Key next() {
+            if (!hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            last = index;
+            return get(index++);
+        }
+        
+        @Override
+        public void remove() {
+            checkModCount();
+            if (last >= 0) {
+                OffHeapKeySortedSet.this.remove(last);
+                index--;
+                end--;
+                last = -1;
+                expectedModCount = modCount;
+            } else {
+                throw new IllegalStateException("next needs to be called first");
+            }
+        }
+    }
+    
+    protected class OffHeapKeySubSet extends AbstractSet<Key> implements SortedSet<Key> {
+        protected Key from;
+        protected Key to;
+        protected int expectedModCount = -1;
+        protected int[] range = null;
+        
+        public OffHeapKeySubSet(Key from, Key to) {
+            if (from != null && to != null && from.compareTo(to) > 0) {
+                throw new IllegalArgumentException("The start is greater than the end");
+            }
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public Comparator<? super Key> comparator() {
+            return OffHeapKeySortedSet.this.comparator();
+        }
+        
+        @Override
+        public SortedSet<Key> subSet(Key fromElement, Key toElement) {
+            if ((from != null && fromElement.compareTo(from) < 0) || (to != null && to.compareTo(toElement) < 0)) {
+                throw new IllegalArgumentException("Cannot create subset outside of the range of this subset");
+            }
+            return OffHeapKeySortedSet.this.subSet(fromElement, toElement);
+        }
+        
+        @Override
+        public SortedSet<Key> headSet(Key toElement) {
+            return (from == null ? OffHeapKeySortedSet.this.headSet(toElement) : subSet(from, toElement));
+        }
+        
+        @Override
+        public SortedSet<Key> tailSet(Key fromElement) {
+            return (to == null ? OffHeapKeySortedSet.this.tailSet(fromElement) : subSet(fromElement, to));
+        }
+        
+        @Override
+        public Key first() {
+            int[] range = getRange();
+            if (range == null) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(range[0]);
+        }
+        
+        @Override
+        public Key last() {
+            int[] range = getRange();
+            if (range == null) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(range[1]);
+        }
+        
+        @Override
+        public Iterator<Key> iterator() {
+            int[] range = getRange();
+            if (range == null) {
+                return new OffHeapKeySortedSetIterator(0, 0);
+            } else {
+                return new OffHeapKeySortedSetIterator(range[0], range[1] + 1);
+            }
+        }
+        
+        @Override
+        public int size() {
+            int[] range = getRange();
+            if (range == null) {
+                return 0;
+            } else {
+                return range[1] - range[0] + 1;
+            }
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            int[] range = getRange();
+            if (range == null) {
+                return false;
+            }
+            return binarySearch((Key) o, range[0], range[1]) >= 0;
+        }
+        
+        @Override
+        public boolean add(Key e) {
+            if ((from != null && e.compareTo(from) < 0) || (to != null && e.compareTo(to) >= 0)) {
+                throw new IllegalArgumentException("Cannot add element outside of subset range");
+            }
+            return OffHeapKeySortedSet.this.add(e);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                return OffHeapKeySortedSet.this.remove(o);
+            }
+            return false;
+        }
+        
+        /***
+         * Get the range of elements in the OffHeapKeySortedSet
+         *
+         * @return int[] {firstIndex, lastIndex}, or null if the range is empty
+         */
+        protected int[] getRange() {
+            if (expectedModCount != modCount) {
+                expectedModCount = modCount;
+                range = null;
+                if (!OffHeapKeySortedSet.this.isEmpty()) {
+                    // find the first entry
+                    int start = (from == null ? 0 : binarySearch(from));
+                    if (start < 0) {
+                        start = -1 - start;
+                    }
+                    
+                    // find the last entry
+                    int end = (to == null ? size : binarySearch(to));
+                    if (end < 0) {
+                        end = -1 - end;
+                    }
+                    // since the end is exclusive, go to the previous element
+                    end--;
+                    
+                    if (start <= end) {
+                        range = new int[] {start, end};
+                    }
+                }
+            }
+            return range;
+        }
+    }
+    
+}
@@ -0,0 +1,171 @@
+package datawave.core.iterators;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FairShareExecutorTest {
+    
+    private FairShareExecutor executor = null;
+    
+    @Before
+    public void setUp() {
+        executor = new FairShareExecutor("test", 4, 2);
+    }
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void testMaxThreadsPerQuery() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit("heavy", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        
+        // the heavy query is held to two threads, leaving the others for a second query
+        CountDownLatch light = new CountDownLatch(1);
+        executor.submit("light", light::countDown);
+        assertTrue(light.await(10, TimeUnit.SECONDS));
+        waitForRunning(2);
+        assertEquals(2, executor.getRunningTasks());
+        assertEquals(8, executor.getQueuedTasks());
+        assertEquals(8, executor.getMaxQueuedTasksPerQuery());
+        
+        release.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(2, maxRunning.get());
+        waitForRunning(0);
+        assertEquals(0, executor.getActiveQueries());
+        assertEquals(11, executor.getCompletedTasks());
+    }
+    
+    @Test
+    public void testFairShare() throws Exception {
+        executor.setMaxThreads(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new ArrayList<>();
+        executor.submit("blocker", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        // queue up three tasks for one query before another query arrives
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(executor.submit("a", () -> order.add("a")));
+        }
+        futures.add(executor.submit("b", () -> order.add("b")));
+        
+        release.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        // the second query does not wait for all of the first query's tasks
+        assertEquals("b", order.get(1));
+    }
+    
+    @Test
+    public void testPriority() throws Exception {
+        executor.setMaxThreads(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new ArrayList<>();
+        executor.submit("blocker", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit("low", 0, () -> order.add("low")));
+        futures.add(executor.submit("normal", 1, () -> order.add("normal")));
+        futures.add(executor.submit("high", 2, () -> order.add("high")));
+        
+        release.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        // the highest priority query is run first regardless of when it was submitted
+        assertEquals(Arrays.asList("high", "normal", "low"), order);
+    }
+    
+    @Test
+    public void testPriorityAging() throws Exception {
+        executor.setMaxThreads(1, 1);
+        executor.setPriorityAging(50);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new ArrayList<>();
+        executor.submit("blocker", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit("low", 0, () -> order.add("low")));
+        // long enough for the low priority query to be aged past the high priority one
+        Thread.sleep(500);
+        futures.add(executor.submit("high", 2, () -> order.add("high")));
+        
+        release.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        // the low priority query has waited long enough to be run first
+        assertEquals(Arrays.asList("low", "high"), order);
+        assertEquals(50, executor.getPriorityAgingMillis());
+    }
+    
+    @Test
+    public void testNullQueryId() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.submit(null, count::incrementAndGet));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(5, count.get());
+    }
+    
+    private void waitForRunning(int tasks) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (executor.getRunningTasks() > tasks && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+}
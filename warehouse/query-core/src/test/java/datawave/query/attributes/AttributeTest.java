@@ -0,0 +1,53 @@
+package datawave.query.attributes;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AttributeTest {
+    
+    @Test
+    public void testMetadataSharedWithinDocument() {
+        Key first = new Key("20190314_0", "datatype\0uid", "FIELD1\0value1", "A&B", 1234L);
+        Key second = new Key("20190314_0", "datatype\0uid", "FIELD2\0value2", "A&B", 1234L);
+        Content a = new Content("value1", first, true);
+        Content b = new Content("value2", second, true);
+        
+        // the attributes of one document share their metadata
+        Assert.assertSame(a.getMetadata(), b.getMetadata());
+        Assert.assertEquals(new Key("20190314_0", "datatype\0uid", "", "A&B", 1234L), a.getMetadata());
+        
+        // changing one attribute does not change the other
+        a.setColumnVisibility(new ColumnVisibility("A"));
+        Assert.assertEquals(new ColumnVisibility("A"), a.getColumnVisibility());
+        Assert.assertEquals(new ColumnVisibility("A&B"), b.getColumnVisibility());
+    }
+    
+    @Test
+    public void testMetadataNotSharedAcrossVisibilities() {
+        Key first = new Key("20190314_0", "datatype\0uid", "FIELD1\0value1", "A&B", 1234L);
+        Key second = new Key("20190314_0", "datatype\0uid", "FIELD2\0value2", "A", 1234L);
+        Key third = new Key("20190314_0", "datatype\0uid", "FIELD3\0value3", "A", 5678L);
+        Key fourth = new Key("20190314_0", "datatype\0uid2", "FIELD3\0value3", "A", 5678L);
+        Content a = new Content("value1", first, true);
+        Content b = new Content("value2", second, true);
+        Content c = new Content("value3", third, true);
+        Content d = new Content("value3", fourth, true);
+        
+        Assert.assertEquals(new ColumnVisibility("A&B"), a.getColumnVisibility());
+        Assert.assertEquals(new ColumnVisibility("A"), b.getColumnVisibility());
+        Assert.assertEquals(1234L, b.getTimestamp());
+        Assert.assertEquals(5678L, c.getTimestamp());
+        Assert.assertEquals("datatype\0uid2", d.getMetadata().getColumnFamily().toString());
+    }
+    
+    @Test
+    public void testFieldIndexMetadata() {
+        Content a = new Content("value1", new Key("20190314_0", "fi\0FIELD1", "value1\0datatype\0uid", "A", 1234L), true);
+        Content b = new Content("value1", new Key("20190314_0", "datatype\0uid", "FIELD1\0value1", "A", 1234L), true);
+        
+        Assert.assertEquals(new Key("20190314_0", "datatype\0uid", "", "A", 1234L), a.getMetadata());
+        Assert.assertSame(a.getMetadata(), b.getMetadata());
+    }
+}
@@ -89,6 +89,8 @@ public class ShardQueryConfigurationTest {
         Assert.assertTrue(config.isCleanupShardsAndDaysQueryHints());
         Assert.assertEquals(new Integer(8), config.getNumQueryThreads());
         Assert.assertEquals(new Integer(8), config.getNumIndexLookupThreads());
+        Assert.assertFalse(config.isIndexLookupCacheEnabled());
+        Assert.assertFalse(config.isQueryPlanCacheEnabled());
         Assert.assertEquals(new Integer(8), config.getNumDateIndexThreads());
         Assert.assertEquals(new Integer(-1), config.getMaxDocScanTimeout());
         Assert.assertNotNull(config.getFstCount());
@@ -163,8 +165,11 @@ public class ShardQueryConfigurationTest {
         Assert.assertNull(config.getZookeeperConfig());
         Assert.assertTrue(config.getIvaratorCacheDirConfigs().isEmpty());
         Assert.assertEquals(2, config.getIvaratorNumRetries());
+        Assert.assertEquals(1000, config.getIvaratorMergePrefetchSize());
+        Assert.assertEquals(16L * 1024 * 1024, config.getIvaratorMergePrefetchMaxBytes());
         Assert.assertNull(config.getIvaratorFstHdfsBaseURIs());
         Assert.assertEquals(10000, config.getIvaratorCacheBufferSize());
+        Assert.assertFalse(config.isIvaratorCacheOffHeap());
         Assert.assertEquals(100000, config.getIvaratorCacheScanPersistThreshold());
         Assert.assertEquals(3600000, config.getIvaratorCacheScanTimeout());
         Assert.assertEquals(11, config.getMaxFieldIndexRangeSplit());
@@ -185,6 +190,8 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.getAccrueStats());
         Assert.assertEquals(Sets.newHashSet(), config.getGroupFields());
         Assert.assertEquals(Sets.newHashSet(), config.getUniqueFields());
+        Assert.assertFalse(config.isExactDedup());
+        Assert.assertEquals(256L * 1024 * 1024, config.getGroupFieldsMaxMemoryBytes());
         Assert.assertFalse(config.getCacheModel());
         Assert.assertTrue(config.isTrackSizes());
         Assert.assertEquals(Lists.newArrayList(), config.getContentFieldNames());
@@ -432,7 +439,7 @@ public class ShardQueryConfigurationTest {
      */
     @Test
     public void testCheckForNewAdditions() throws IOException {
-        int expectedObjectCount = 168;
+        int expectedObjectCount = 175;
         ShardQueryConfiguration config = ShardQueryConfiguration.create();
         ObjectMapper mapper = new ObjectMapper();
         JsonNode root = mapper.readTree(mapper.writeValueAsString(config));
@@ -0,0 +1,45 @@
+package datawave.query.function;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyToFieldNameTest {
+    
+    @Test
+    public void testFieldNamesInterned() {
+        KeyToFieldName function = new KeyToFieldName();
+        String first = function.getFieldName(new Key("20190314_0", "datatype\0uid1", "FIELD\0value1"));
+        String second = new KeyToFieldName().getFieldName(new Key("20190314_0", "datatype\0uid2", "FIELD\0value2"));
+        
+        Assert.assertEquals("FIELD", first);
+        Assert.assertSame(first, second);
+    }
+    
+    @Test
+    public void testGroupingContext() {
+        Key key = new Key("20190314_0", "datatype\0uid", "FIELD.PARENT_0.CHILD_1\0value");
+        
+        Assert.assertEquals("FIELD", new KeyToFieldName().getFieldName(key));
+        Assert.assertEquals("FIELD.PARENT_0.CHILD_1", new KeyToFieldName(true).getFieldName(key));
+    }
+    
+    @Test
+    public void testGroupingContextNotInterned() {
+        // the grouping context makes every name distinct, and must not crowd the plain field names out of the interned names
+        KeyToFieldName function = new KeyToFieldName(true);
+        for (int i = 0; i < 20000; i++) {
+            function.getFieldName(new Key("20190314_0", "datatype\0uid", "GROUPED.PARENT_" + i + "\0value"));
+        }
+        
+        String first = function.getFieldName(new Key("20190314_0", "datatype\0uid1", "OTHER\0value1"));
+        String second = new KeyToFieldName().getFieldName(new Key("20190314_0", "datatype\0uid2", "OTHER\0value2"));
+        Assert.assertEquals("OTHER", first);
+        Assert.assertSame(first, second);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingNull() {
+        new KeyToFieldName(true).getFieldName(new Key("20190314_0", "datatype\0uid", "FIELD"));
+    }
+}
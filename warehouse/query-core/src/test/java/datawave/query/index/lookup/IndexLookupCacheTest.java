@@ -0,0 +1,112 @@
+package datawave.query.index.lookup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class IndexLookupCacheTest {
+    
+    private static final Range RANGE = new Range(new Key("bar", "FOO", "20190314_"), true, new Key("bar", "FOO", "20190314_" + '\uffff'), false);
+    
+    private static List<Entry<Key,Value>> createEntries(int count) {
+        List<Entry<Key,Value>> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(Maps.immutableEntry(new Key("bar", "FOO", "20190314_" + i + "\0datatype1"), new Value(("uid" + i).getBytes())));
+        }
+        return entries;
+    }
+    
+    private static String key(String... auths) {
+        return IndexLookupCache.key("shardIndex", Collections.singleton(new Authorizations(auths)), "FOO", RANGE, "datatype1", true);
+    }
+    
+    @Test
+    public void testCachedOnceRead() {
+        IndexLookupCache cache = new IndexLookupCache(1024 * 1024, 60);
+        List<Entry<Key,Value>> entries = createEntries(5);
+        
+        Iterator<Entry<Key,Value>> itr = cache.record(key("A"), entries.iterator());
+        itr.next();
+        // a partially read lookup is not cached
+        Assert.assertNull(cache.get(key("A")));
+        Iterators.size(itr);
+        
+        Iterator<Entry<Key,Value>> cached = cache.get(key("A"));
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(entries, Lists.newArrayList(cached));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        
+        cache.invalidateAll();
+        Assert.assertNull(cache.get(key("A")));
+    }
+    
+    @Test
+    public void testIncompleteScanNotCached() {
+        IndexLookupCache cache = new IndexLookupCache(1024 * 1024, 60);
+        List<Entry<Key,Value>> entries = createEntries(5);
+        
+        // a session which was closed or timed out runs out of entries without having returned all of them
+        AtomicBoolean complete = new AtomicBoolean(false);
+        Assert.assertEquals(5, Iterators.size(cache.record(key("A"), entries.iterator(), complete::get)));
+        Assert.assertNull(cache.get(key("A")));
+        
+        complete.set(true);
+        Assert.assertEquals(5, Iterators.size(cache.record(key("A"), entries.iterator(), complete::get)));
+        Assert.assertEquals(entries, Lists.newArrayList(cache.get(key("A"))));
+    }
+    
+    @Test
+    public void testAuthorizations() {
+        IndexLookupCache cache = new IndexLookupCache(1024 * 1024, 60);
+        Iterators.size(cache.record(key("A", "B"), createEntries(5).iterator()));
+        
+        // the same auths in another order share the lookup, but other auths do not
+        Assert.assertNotNull(cache.get(key("B", "A")));
+        Assert.assertNull(cache.get(key("A")));
+        Assert.assertNull(cache.get(key("A", "B", "C")));
+    }
+    
+    @Test
+    public void testLargeLookupNotCached() {
+        IndexLookupCache cache = new IndexLookupCache(16 * 1024, 60);
+        List<Entry<Key,Value>> entries = createEntries(100);
+        
+        Assert.assertEquals(100, Iterators.size(cache.record(key("A"), entries.iterator())));
+        Assert.assertNull(cache.get(key("A")));
+        Assert.assertEquals(1, cache.getAbandonedCount());
+    }
+    
+    @Test
+    public void testLongTermsSharingPrefix() {
+        IndexLookupCache cache = new IndexLookupCache(16 * 1024, 60);
+        StringBuilder prefix = new StringBuilder("http://www.example.com/");
+        while (prefix.length() < 100) {
+            prefix.append("path/");
+        }
+        Range first = Range.exact(prefix + "first", "URL");
+        Range second = Range.exact(prefix + "second", "URL");
+        String firstKey = IndexLookupCache.key("shardIndex", Collections.singleton(new Authorizations("A")), "URL", first, "datatype1", true);
+        String secondKey = IndexLookupCache.key("shardIndex", Collections.singleton(new Authorizations("A")), "URL", second, "datatype1", true);
+        Assert.assertNotEquals(firstKey, secondKey);
+        
+        // the lookup of one term is not returned for another term whose row only differs beyond the first 64 bytes
+        Iterators.size(cache.record(firstKey, createEntries(5).iterator()));
+        Assert.assertNotNull(cache.get(firstKey));
+        Assert.assertNull(cache.get(secondKey));
+    }
+}
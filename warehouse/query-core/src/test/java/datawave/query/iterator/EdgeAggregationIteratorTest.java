@@ -0,0 +1,136 @@
+package datawave.query.iterator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import datawave.edge.util.EdgeValue;
+import datawave.edge.util.ExtendedHyperLogLogPlus;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class EdgeAggregationIteratorTest {
+    private static final String ROW = "SOURCE\0SINK";
+    private static final String COLF = "TYPE/FROM-TO";
+    
+    private TreeMap<Key,Value> data;
+    
+    @Before
+    public void setup() {
+        data = new TreeMap<>();
+        addEdge("20190105/CAT1-CAT2/ATTR2/ATTR3/A", "A", 1, 1);
+        addEdge("20190105/CAT1-CAT2/ATTR2/ATTR3/A", "B", 2, 5);
+        addEdge("20190120/CAT1-CAT2/ATTR2/ATTR3/A", "A", 4, 5);
+        addEdge("20190110/CAT1-CAT2/OTHER/ATTR3/A", "A", 8, 2);
+        addEdge("20190201/CAT1-CAT2/ATTR2/ATTR3/A", "A", 16, 3);
+    }
+    
+    private void addEdge(String colQual, String visibility, long count, int hour) {
+        EdgeValue.EdgeValueBuilder builder = EdgeValue.newBuilder();
+        builder.setCount(count);
+        builder.setHour(hour);
+        builder.setLoadDate(colQual.substring(0, 8));
+        data.put(new Key(ROW, COLF, colQual, visibility, 100 + data.size()), builder.build().encode());
+    }
+    
+    private List<Map.Entry<Key,Value>> aggregate(EdgeAggregationIterator.Rollup rollup, Range range) throws IOException {
+        EdgeAggregationIterator iterator = new EdgeAggregationIterator();
+        iterator.init(new SortedMapIterator(data), Collections.singletonMap(EdgeAggregationIterator.ROLLUP_OPTION, rollup.name()), null);
+        iterator.seek(range, Collections.<ByteSequence> emptyList(), false);
+        List<Map.Entry<Key,Value>> results = new ArrayList<>();
+        while (iterator.hasTop()) {
+            results.add(Maps.immutableEntry(iterator.getTopKey(), iterator.getTopValue()));
+            iterator.next();
+        }
+        return results;
+    }
+    
+    @Test
+    public void testDayRollup() throws Exception {
+        List<Map.Entry<Key,Value>> results = aggregate(EdgeAggregationIterator.Rollup.DAY, new Range());
+        Assert.assertEquals(4, results.size());
+        
+        // the edges of the same day are merged across visibilities
+        Key key = results.get(0).getKey();
+        Assert.assertEquals(new Text("20190105/CAT1-CAT2/ATTR2/ATTR3/A"), key.getColumnQualifier());
+        Assert.assertEquals(new ColumnVisibility("A&B"), new ColumnVisibility(key.getColumnVisibility()));
+        Assert.assertEquals(101, key.getTimestamp());
+        EdgeValue value = EdgeValue.decode(results.get(0).getValue());
+        Assert.assertEquals(3, value.getCount().longValue());
+        Assert.assertTrue(value.isHourSet(1));
+        Assert.assertTrue(value.isHourSet(5));
+        
+        Assert.assertEquals(new Text("20190110/CAT1-CAT2/OTHER/ATTR3/A"), results.get(1).getKey().getColumnQualifier());
+        Assert.assertEquals(new Text("A"), results.get(1).getKey().getColumnVisibility());
+        Assert.assertEquals(new Text("20190120/CAT1-CAT2/ATTR2/ATTR3/A"), results.get(2).getKey().getColumnQualifier());
+        Assert.assertEquals(new Text("20190201/CAT1-CAT2/ATTR2/ATTR3/A"), results.get(3).getKey().getColumnQualifier());
+    }
+    
+    @Test
+    public void testMonthRollup() throws Exception {
+        List<Map.Entry<Key,Value>> results = aggregate(EdgeAggregationIterator.Rollup.MONTH, new Range());
+        Assert.assertEquals(3, results.size());
+        
+        Key key = results.get(0).getKey();
+        Assert.assertEquals(new Text(ROW), key.getRow());
+        Assert.assertEquals(new Text(COLF), key.getColumnFamily());
+        Assert.assertEquals(new Text("201901/CAT1-CAT2/ATTR2/ATTR3/A"), key.getColumnQualifier());
+        EdgeValue value = EdgeValue.decode(results.get(0).getValue());
+        Assert.assertEquals(7, value.getCount().longValue());
+        Assert.assertEquals("20190105", value.getLoadDate());
+        
+        // edges with other attributes are not merged
+        Assert.assertEquals(new Text("201901/CAT1-CAT2/OTHER/ATTR3/A"), results.get(1).getKey().getColumnQualifier());
+        Assert.assertEquals(8, EdgeValue.decode(results.get(1).getValue()).getCount().longValue());
+        
+        Assert.assertEquals(new Text("201902/CAT1-CAT2/ATTR2/ATTR3/A"), results.get(2).getKey().getColumnQualifier());
+        Assert.assertEquals(16, EdgeValue.decode(results.get(2).getValue()).getCount().longValue());
+        Assert.assertTrue(EdgeValue.decode(results.get(2).getValue()).isHourSet(3));
+    }
+    
+    @Test
+    public void testResumeAfterAggregatedEdge() throws Exception {
+        List<Map.Entry<Key,Value>> results = aggregate(EdgeAggregationIterator.Rollup.MONTH, new Range());
+        Key last = results.get(0).getKey();
+        
+        // resuming a scan after a returned edge neither repeats nor splits the aggregated edges
+        List<Map.Entry<Key,Value>> resumed = aggregate(EdgeAggregationIterator.Rollup.MONTH, new Range(last, false, null, true));
+        Assert.assertEquals(results.subList(1, results.size()), resumed);
+    }
+    
+    @Test
+    public void testStatsLinksRollup() throws Exception {
+        data.clear();
+        String colf = "STATS/LINKS/TYPE/FROM";
+        String row = "SOURCE";
+        data.put(new Key(row, colf, "20190105/CAT1", "A", 100), links("SINK1", "SINK2"));
+        data.put(new Key(row, colf, "20190106/CAT1", "A", 100), links("SINK2", "SINK3"));
+        
+        List<Map.Entry<Key,Value>> results = aggregate(EdgeAggregationIterator.Rollup.MONTH, new Range());
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(new Text("201901/CAT1"), results.get(0).getKey().getColumnQualifier());
+        Assert.assertEquals(3, new ExtendedHyperLogLogPlus(results.get(0).getValue()).getCardinality());
+    }
+    
+    private static Value links(String... sinks) throws IOException {
+        ExtendedHyperLogLogPlus hllp = new ExtendedHyperLogLogPlus();
+        for (String sink : sinks) {
+            hllp.offer(sink);
+        }
+        return new Value(hllp.getBytes());
+    }
+}
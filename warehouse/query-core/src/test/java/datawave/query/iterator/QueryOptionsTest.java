@@ -11,6 +11,7 @@ import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class QueryOptionsTest {
     
@@ -19,6 +20,21 @@ public class QueryOptionsTest {
         Logger.getLogger(QueryOptions.class).setLevel(Level.TRACE);
     }
     
+    @Test
+    public void testDeepCopyIvaratorOptions() {
+        QueryOptions options = new QueryOptions();
+        options.setIvaratorCacheOffHeap(true);
+        options.setIvaratorMergePrefetchSize(7);
+        options.setIvaratorMergePrefetchMaxBytes(1024L);
+        
+        QueryOptions copy = new QueryOptions();
+        copy.deepCopy(options);
+        
+        assertTrue(copy.isIvaratorCacheOffHeap());
+        assertEquals(7, copy.getIvaratorMergePrefetchSize());
+        assertEquals(1024L, copy.getIvaratorMergePrefetchMaxBytes());
+    }
+    
     @Test
     public void testBuildFieldDataTypeMapFromSingleValueString() {
         String singleValueData = "k:v;";
@@ -0,0 +1,65 @@
+package datawave.query.iterator.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import datawave.edge.model.EdgeModelAware;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+
+public class EdgeFilterIteratorTest {
+    
+    private static final Value EMPTY_VALUE = new Value(new byte[0]);
+    
+    private EdgeFilterIterator filter;
+    
+    @Before
+    public void setup() throws IOException {
+        HashMultimap<String,String> whitelist = HashMultimap.create();
+        whitelist.put(EdgeModelAware.EDGE_SOURCE, "SOURCE");
+        whitelist.put(EdgeModelAware.EDGE_RELATIONSHIP, "A-B");
+        
+        Map<String,String> options = new HashMap<>();
+        options.put(EdgeFilterIterator.JEXL_OPTION, EdgeModelAware.EDGE_RELATIONSHIP + " == 'A-B'");
+        options.put(EdgeFilterIterator.PROTOBUF_OPTION, "true");
+        options.put(EdgeFilterIterator.INCLUDE_STATS_OPTION, "true");
+        options.put(EdgeFilterIterator.PREFILTER_WHITELIST, serialize(whitelist));
+        
+        filter = new EdgeFilterIterator();
+        filter.init(null, options);
+    }
+    
+    @Test
+    public void testStandardEdges() {
+        Assert.assertTrue(filter.accept(new Key("SOURCE\0SINK", "TYPE/A-B", "20190101/CAT1-CAT2/ATTR2/ATTR3/A"), EMPTY_VALUE));
+        Assert.assertFalse(filter.accept(new Key("SOURCE\0SINK", "TYPE/C-D", "20190101/CAT1-CAT2/ATTR2/ATTR3/A"), EMPTY_VALUE));
+    }
+    
+    @Test
+    public void testStatsEdges() {
+        // a stats edge only holds the source's side of the relationship, so it is not held to the relationship whitelist
+        Assert.assertTrue(filter.accept(new Key("SOURCE", "STATS/DURATION/TYPE/A", "20190101/CAT1/ATTR2/ATTR3/A"), EMPTY_VALUE));
+        Assert.assertTrue(filter.accept(new Key("SOURCE", "STATS/DURATION/TYPE/A", "20190101/CAT1/ATTR2/ATTR3"), EMPTY_VALUE));
+        
+        // but it is still held to the source whitelist
+        Assert.assertFalse(filter.accept(new Key("OTHER", "STATS/DURATION/TYPE/A", "20190101/CAT1/ATTR2/ATTR3/A"), EMPTY_VALUE));
+    }
+    
+    private static String serialize(HashMultimap<String,String> whitelist) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(whitelist);
+        }
+        return Base64.encodeBase64String(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,235 @@
+package datawave.query.iterator.pipeline;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.NestedIterator;
+import datawave.query.iterator.NestedQueryIterator;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.profile.QuerySpanCollector;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineIteratorTest {
+    
+    private final List<Key> keys = new ArrayList<>();
+    private final Map<Key,CountDownLatch> blocked = new HashMap<>();
+    private final Set<Key> filtered = new HashSet<>();
+    private final AtomicInteger evaluated = new AtomicInteger();
+    // released when a blocked evaluation is cancelled
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    
+    public PipelineIteratorTest() {
+        for (int i = 0; i < 10; i++) {
+            keys.add(new Key("20190101_0", "datatype\0uid" + i));
+        }
+    }
+    
+    @Test
+    public void testOrderedResults() {
+        blocked.put(keys.get(0), new CountDownLatch(0));
+        filtered.add(keys.get(5));
+        
+        PipelineIterator iterator = createIterator(4, 10, null, true);
+        iterator.startPipeline();
+        
+        assertEquals(expected(5), drain(iterator));
+    }
+    
+    @Test
+    public void testUnorderedResultsInDocumentOrder() throws Exception {
+        CountDownLatch slow = new CountDownLatch(1);
+        blocked.put(keys.get(0), slow);
+        filtered.add(keys.get(5));
+        
+        PipelineIterator iterator = createIterator(4, 10, null, false);
+        iterator.startPipeline();
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Key>> results = executor.submit(() -> drain(iterator));
+            
+            // the documents behind the slow one are evaluated while it is still running
+            long start = System.currentTimeMillis();
+            while (evaluated.get() < 9 && System.currentTimeMillis() - start < 10000) {
+                Thread.sleep(10);
+            }
+            assertEquals(9, evaluated.get());
+            assertFalse(results.isDone());
+            
+            // but the results are still returned in document order, once the slow one completes
+            slow.countDown();
+            assertEquals(expected(5), results.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testUnorderedYieldCancelsOutstandingEvaluations() throws Exception {
+        CountDownLatch slow = new CountDownLatch(1);
+        blocked.put(keys.get(2), slow);
+        YieldCallback<Key> yield = new YieldCallback<>();
+        
+        PipelineIterator iterator = createIterator(2, 2, yield, false);
+        iterator.startPipeline();
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the yield does not wait for the slow evaluation to complete
+            List<Key> returned = executor.submit(() -> drain(iterator)).get(10, TimeUnit.SECONDS);
+            
+            assertTrue(yield.hasYielded());
+            Key yieldKey = yield.getPositionAndReset();
+            
+            // it yields at the last document returned, before the slow one, so a re-seek after it evaluates the slow one again
+            assertEquals(keys.get(1), yieldKey);
+            assertEquals(keys.subList(0, 2), returned);
+            
+            // and the slow evaluation was cancelled
+            assertEquals(1, slow.getCount());
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            slow.countDown();
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testUnorderedExhaustedSourceDoesNotYield() throws Exception {
+        YieldCallback<Key> yield = new YieldCallback<>();
+        
+        PipelineIterator iterator = createIterator(4, 10, yield, false);
+        iterator.startPipeline();
+        
+        assertEquals(keys, drain(iterator));
+        assertFalse(yield.hasYielded());
+    }
+    
+    private List<Key> expected(int filteredIndex) {
+        List<Key> expected = new ArrayList<>(keys);
+        expected.remove(filteredIndex);
+        return expected;
+    }
+    
+    private static List<Key> drain(PipelineIterator iterator) {
+        List<Key> returned = new ArrayList<>();
+        while (iterator.hasNext()) {
+            returned.add(iterator.next().getKey());
+        }
+        return returned;
+    }
+    
+    private PipelineIterator createIterator(int maxPipelines, int maxCachedResults, YieldCallback<Key> yield, boolean ordered) {
+        SortedKeyValueIterator<Key,Value> source = new SortedMapIterator(new TreeMap<>());
+        return new PipelineIterator(new DocumentIterator(keys), maxPipelines, maxCachedResults, null, null, new TestQueryIterator(), source, null, yield,
+                        100, ordered);
+    }
+    
+    /**
+     * Evaluates each document by returning it, unless it is filtered. A blocked document is not returned until its latch is released.
+     */
+    private class TestQueryIterator extends QueryIterator {
+        @Override
+        public Iterator<Entry<Key,Document>> createDocumentPipeline(SortedKeyValueIterator<Key,Value> deepSourceCopy,
+                        final NestedQueryIterator<Key> documentSpecificSource, QuerySpanCollector querySpanCollector) {
+            return new Iterator<Entry<Key,Document>>() {
+                private Entry<Key,Document> next = null;
+                
+                @Override
+                public boolean hasNext() {
+                    while (next == null && documentSpecificSource.hasNext()) {
+                        Key key = documentSpecificSource.next();
+                        CountDownLatch latch = blocked.get(key);
+                        if (latch != null) {
+                            try {
+                                latch.await();
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                                throw new RuntimeException(e);
+                            }
+                        }
+                        evaluated.incrementAndGet();
+                        if (!filtered.contains(key)) {
+                            next = Maps.immutableEntry(key, documentSpecificSource.document());
+                        }
+                    }
+                    return next != null;
+                }
+                
+                @Override
+                public Entry<Key,Document> next() {
+                    Entry<Key,Document> result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+    }
+    
+    private static class DocumentIterator implements NestedIterator<Key> {
+        private final Iterator<Key> keys;
+        
+        private DocumentIterator(List<Key> keys) {
+            this.keys = keys.iterator();
+        }
+        
+        @Override
+        public void initialize() {}
+        
+        @Override
+        public Key move(Key minimum) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> leaves() {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> children() {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Document document() {
+            return new Document();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return keys.hasNext();
+        }
+        
+        @Override
+        public Key next() {
+            return keys.next();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package datawave.query.iterator.pipeline;
+
+import datawave.query.attributes.Document;
+import datawave.query.iterator.NestedQuery;
+import datawave.query.iterator.NestedQueryIterator;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.profile.QuerySpanCollector;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PipelinePoolTest {
+    
+    private int pipelinesCreated = 0;
+    private PipelinePool pool;
+    
+    @Before
+    public void setup() {
+        QueryIterator sourceIterator = new QueryIterator() {
+            @Override
+            public Iterator<Entry<Key,Document>> createDocumentPipeline(SortedKeyValueIterator<Key,Value> deepSourceCopy,
+                            NestedQueryIterator<Key> documentSpecificSource, QuerySpanCollector querySpanCollector) {
+                pipelinesCreated++;
+                return Collections.emptyIterator();
+            }
+        };
+        pool = new PipelinePool(2, null, sourceIterator, new SortedMapIterator(new TreeMap<>()), null);
+    }
+    
+    @Test
+    public void testReuse() {
+        Document doc = new Document();
+        Pipeline first = pool.checkOut(new Key("row", "uid1"), doc, null);
+        Pipeline second = pool.checkOut(new Key("row", "uid2"), doc, null);
+        assertEquals(2, pipelinesCreated);
+        
+        // no more than the max pipelines are created
+        assertNull(pool.checkOut(new Key("row", "uid3"), doc, null));
+        
+        // a pipeline checked back in is reused as is for the next document
+        pool.checkIn(first);
+        assertNull(first.getSource());
+        assertSame(first, pool.checkOut(new Key("row", "uid3"), doc, null));
+        assertEquals(new Key("row", "uid3"), first.getSource().getKey());
+        assertEquals(2, pipelinesCreated);
+        
+        pool.checkIn(second);
+        pool.checkIn(first);
+        assertEquals(2, pool.checkedIn.size());
+        assertEquals(0, pool.checkedOut.size());
+    }
+    
+    @Test
+    public void testNestedQueryReuse() {
+        Document doc = new Document();
+        NestedQuery<Key> nestedQuery = new NestedQuery<>();
+        Pipeline pipeline = pool.checkOut(new Key("row", "uid1"), doc, nestedQuery);
+        assertSame(nestedQuery, pipeline.getNestedQuery());
+        assertEquals(1, pipelinesCreated);
+        pool.checkIn(pipeline);
+        
+        // the pipeline is only rebuilt when the nested query changes
+        assertSame(pipeline, pool.checkOut(new Key("row", "uid2"), doc, nestedQuery));
+        assertEquals(1, pipelinesCreated);
+        pool.checkIn(pipeline);
+        
+        NestedQuery<Key> otherNestedQuery = new NestedQuery<>();
+        assertSame(pipeline, pool.checkOut(new Key("row", "uid3"), doc, otherNestedQuery));
+        assertSame(otherNestedQuery, pipeline.getNestedQuery());
+        assertEquals(2, pipelinesCreated);
+    }
+}
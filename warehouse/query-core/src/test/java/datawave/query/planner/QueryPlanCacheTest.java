@@ -0,0 +1,95 @@
+package datawave.query.planner;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+import datawave.webservice.query.QueryImpl;
+
+public class QueryPlanCacheTest {
+    
+    private static ShardQueryConfiguration createConfig(String... auths) {
+        ShardQueryConfiguration config = ShardQueryConfiguration.create();
+        config.setAuthorizations(Collections.singleton(new Authorizations(auths)));
+        config.setBeginDate(new Date(1000));
+        config.setEndDate(new Date(2000));
+        config.setDatatypeFilter(Sets.newHashSet("datatype1"));
+        return config;
+    }
+    
+    private static QueryImpl createSettings(String value) {
+        QueryImpl settings = new QueryImpl();
+        settings.setQueryLogicName("EventQuery");
+        settings.addParameter("include.grouping.context", value);
+        return settings;
+    }
+    
+    @Test
+    public void testCachedPlanRestoresConfig() throws Exception {
+        QueryPlanCache cache = new QueryPlanCache(100, 60);
+        ShardQueryConfiguration config = createConfig("A");
+        String key = QueryPlanCache.key("planner", config, "FOO == 'bar'", createSettings("true"));
+        Assert.assertNull(cache.get(key, config));
+        
+        // planning adjusts the configuration
+        ASTJexlScript queryTree = JexlASTHelper.parseJexlQuery("FOO == 'bar' && BAR == 'baz'");
+        config.setBeginDate(new Date(1500));
+        config.setIndexedFields(Sets.newHashSet("FOO"));
+        config.setProjectFields(Sets.newHashSet("FOO", "BAR"));
+        config.setSortedUIDs(false);
+        cache.put(key, queryTree, config);
+        
+        ShardQueryConfiguration other = createConfig("A");
+        Assert.assertEquals(key, QueryPlanCache.key("planner", other, "FOO == 'bar'", createSettings("true")));
+        ASTJexlScript cached = cache.get(key, other);
+        Assert.assertNotNull(cached);
+        Assert.assertNotSame(queryTree, cached);
+        Assert.assertEquals(JexlStringBuildingVisitor.buildQuery(queryTree), JexlStringBuildingVisitor.buildQuery(cached));
+        Assert.assertEquals(new Date(1500), other.getBeginDate());
+        Assert.assertEquals(Sets.newHashSet("FOO"), other.getIndexedFields());
+        Assert.assertEquals(Sets.newHashSet("FOO", "BAR"), other.getProjectFields());
+        Assert.assertFalse(other.isSortedUIDs());
+        
+        // changes to the returned plan and configuration do not change the cached plan
+        other.getIndexedFields().add("BAR");
+        ShardQueryConfiguration again = createConfig("A");
+        Assert.assertNotNull(cache.get(key, again));
+        Assert.assertEquals(Sets.newHashSet("FOO"), again.getIndexedFields());
+        Assert.assertEquals(1, cache.getSize());
+        Assert.assertEquals(2, cache.getHitCount());
+        
+        cache.invalidateAll();
+        Assert.assertNull(cache.get(key, createConfig("A")));
+    }
+    
+    @Test
+    public void testKey() {
+        String key = QueryPlanCache.key("planner", createConfig("A", "B"), "FOO == 'bar'", createSettings("true"));
+        
+        // the same auths in another order share the plan
+        Assert.assertEquals(key, QueryPlanCache.key("planner", createConfig("B", "A"), "FOO == 'bar'", createSettings("true")));
+        
+        // but other auths, queries, parameters, dates, datatypes and planners do not
+        Assert.assertNotEquals(key, QueryPlanCache.key("planner", createConfig("A"), "FOO == 'bar'", createSettings("true")));
+        Assert.assertNotEquals(key, QueryPlanCache.key("planner", createConfig("A", "B"), "FOO == 'baz'", createSettings("true")));
+        Assert.assertNotEquals(key, QueryPlanCache.key("planner", createConfig("A", "B"), "FOO == 'bar'", createSettings("false")));
+        Assert.assertNotEquals(key, QueryPlanCache.key("other", createConfig("A", "B"), "FOO == 'bar'", createSettings("true")));
+        
+        ShardQueryConfiguration config = createConfig("A", "B");
+        config.setEndDate(new Date(3000));
+        Assert.assertNotEquals(key, QueryPlanCache.key("planner", config, "FOO == 'bar'", createSettings("true")));
+        
+        config = createConfig("A", "B");
+        config.setDatatypeFilter(Sets.newHashSet("datatype2"));
+        Assert.assertNotEquals(key, QueryPlanCache.key("planner", config, "FOO == 'bar'", createSettings("true")));
+    }
+}
@@ -0,0 +1,171 @@
+package datawave.query.tables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.query.tables.async.Scan;
+import datawave.query.tables.async.ScanScheduler;
+import datawave.query.tables.async.ScannerChunk;
+
+public class BatchScannerSessionTest {
+    
+    private static final String TABLE = "shard";
+    private static final int ROWS = 100;
+    
+    private static Connector connector;
+    
+    private ScanScheduler scheduler;
+    private BatchScannerSession session;
+    
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        InMemoryInstance instance = new InMemoryInstance(BatchScannerSessionTest.class.toString());
+        connector = instance.getConnector("", new PasswordToken(new byte[0]));
+        connector.tableOperations().create(TABLE);
+        
+        BatchWriter bw = connector.createBatchWriter(TABLE, new BatchWriterConfig());
+        for (int i = 0; i < ROWS; i++) {
+            Mutation m = new Mutation(String.format("row%03d", i));
+            m.put("cf", "cq", new Value(Integer.toString(i).getBytes()));
+            bw.addMutation(m);
+        }
+        bw.close();
+    }
+    
+    @Before
+    public void setup() {
+        scheduler = new ScanScheduler("test", 2, 2);
+        // give up on a full result queue quickly
+        System.setProperty(Scan.MAX_BLOCKED_PROPERTY, "100");
+    }
+    
+    @After
+    public void cleanup() {
+        if (session != null) {
+            session.close();
+        }
+        scheduler.shutdownNow();
+        System.clearProperty(Scan.MAX_BLOCKED_PROPERTY);
+    }
+    
+    @Test
+    public void testFullResultQueueReleasesThreads() throws Exception {
+        session = newSession(5, 4);
+        
+        // the first entry starts the session, after which the scans fill the result queue
+        assertTrue(session.hasNext());
+        
+        // the scans give up their threads while the queue is full, rather than waiting in them
+        waitForRunning(0);
+        assertEquals(0, scheduler.getExecutor().getRunningTasks());
+        
+        // so another query can still be run on the scheduler
+        CountDownLatch other = new CountDownLatch(1);
+        scheduler.getExecutor().submit("other", other::countDown);
+        assertTrue(other.await(10, TimeUnit.SECONDS));
+        
+        // and the blocked scans continue where they left off
+        assertEquals(expectedRows(), drain());
+    }
+    
+    @Test
+    public void testBriefBackPressureKeepsScanning() throws Exception {
+        System.setProperty(Scan.MAX_BLOCKED_PROPERTY, Long.toString(Scan.DEFAULT_MAX_BLOCKED_MILLIS));
+        session = newSession(5, 4);
+        
+        // a slow consumer does not make the scans give up their open scanners
+        Set<String> rows = new HashSet<>();
+        while (session.hasNext()) {
+            rows.add(session.next().getKey().getRow().toString());
+            assertTrue(session.blockedScans.isEmpty());
+            if (rows.size() < 20) {
+                Thread.sleep(20);
+            }
+        }
+        assertEquals(expectedRows(), rows);
+    }
+    
+    @Test
+    public void testAllResults() throws Exception {
+        session = newSession(1000, 4);
+        assertEquals(expectedRows(), drain());
+        assertFalse(session.isRunning());
+    }
+    
+    @Test
+    public void testCloseCancelsBlockedScans() throws Exception {
+        session = newSession(5, 4);
+        assertTrue(session.hasNext());
+        waitForRunning(0);
+        
+        session.close();
+        session = null;
+        waitForRunning(0);
+        assertEquals(0, scheduler.getExecutor().getQueuedTasks());
+        assertEquals(0, scheduler.getExecutor().getRunningTasks());
+    }
+    
+    private BatchScannerSession newSession(int maxResults, int chunks) {
+        BatchScannerSession session = new BatchScannerSession(new ScannerSession(TABLE, Collections.singleton(Authorizations.EMPTY), new ResourceQueue(4,
+                        connector), maxResults, null));
+        session.updateScheduler(scheduler).setThreads(2);
+        
+        List<ScannerChunk> batch = new ArrayList<>();
+        int rowsPerChunk = ROWS / chunks;
+        for (int i = 0; i < chunks; i++) {
+            Range range = new Range(String.format("row%03d", i * rowsPerChunk), true, String.format("row%03d", (i + 1) * rowsPerChunk), false);
+            batch.add(new ScannerChunk(new SessionOptions(), Collections.singleton(range), "server" + i));
+        }
+        session.setChunkIter(Collections.singletonList(batch).iterator());
+        return session;
+    }
+    
+    private Set<String> expectedRows() {
+        Set<String> rows = new HashSet<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(String.format("row%03d", i));
+        }
+        return rows;
+    }
+    
+    private Set<String> drain() {
+        Set<String> rows = new HashSet<>();
+        while (session.hasNext()) {
+            Entry<Key,Value> entry = session.next();
+            assertTrue("duplicate " + entry.getKey(), rows.add(entry.getKey().getRow().toString()));
+        }
+        return rows;
+    }
+    
+    private void waitForRunning(int tasks) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (scheduler.getExecutor().getRunningTasks() > tasks && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+}
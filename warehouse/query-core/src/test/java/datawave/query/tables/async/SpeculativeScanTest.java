@@ -0,0 +1,110 @@
+package datawave.query.tables.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import datawave.query.tables.SessionOptions;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+
+public class SpeculativeScanTest {
+    
+    private ScanScheduler scheduler;
+    private ExecutorService caller;
+    
+    @Before
+    public void setup() {
+        scheduler = new ScanScheduler("test", 4, 4);
+        caller = Executors.newFixedThreadPool(1);
+    }
+    
+    @After
+    public void cleanup() {
+        scheduler.shutdownNow();
+        caller.shutdownNow();
+    }
+    
+    @Test
+    public void testCancelCancelsChildScans() throws Exception {
+        ScannerChunk chunk = new ScannerChunk(new SessionOptions(), Collections.singleton(new Range("row")));
+        SpeculativeScan scan = new SpeculativeScan("shard", null, chunk, null, null, new ArrayBlockingQueue<>(10), caller, scheduler,
+                        AccumuloConnectionFactory.Priority.NORMAL);
+        
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            scan.addScan(new BlockingScan(chunk, scan, caller, started, interrupted));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        
+        // cancelling the speculative scan's result, as a closed session does, interrupts both of the competing scans
+        scan.getResult().cancel(true);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(scan.finished());
+    }
+    
+    @Test
+    public void testFullResultQueueYields() throws Exception {
+        ScannerChunk chunk = new ScannerChunk(new SessionOptions(), Collections.singleton(new Range("row")));
+        ArrayBlockingQueue<Entry<Key,Value>> results = new ArrayBlockingQueue<>(1);
+        SpeculativeScan scan = new SpeculativeScan("shard", null, chunk, null, null, results, caller, scheduler, AccumuloConnectionFactory.Priority.NORMAL);
+        scan.setMaxBlockedMillis(50);
+        for (int i = 0; i < 3; i++) {
+            scan.getQueue().add(new SimpleImmutableEntry<>(new Key("row" + i), new Value(new byte[0])));
+        }
+        scan.addScan(new Scan("shard", null, new ScannerChunk(chunk), null, null, scan.getQueue(), caller) {
+            @Override
+            public Scan call() {
+                return this;
+            }
+        });
+        
+        // the results are moved as the queue has room, without holding a thread while it is full
+        Thread.sleep(200);
+        assertEquals(0, scheduler.getExecutor().getRunningTasks());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new Key("row" + i), results.poll(10, TimeUnit.SECONDS).getKey());
+        }
+        assertTrue(scan.getResult().get(10, TimeUnit.SECONDS).finished());
+    }
+    
+    /**
+     * A scan that runs until it is interrupted
+     */
+    private static class BlockingScan extends Scan {
+        private final CountDownLatch started;
+        private final CountDownLatch interrupted;
+        
+        BlockingScan(ScannerChunk chunk, SpeculativeScan parent, ExecutorService caller, CountDownLatch started, CountDownLatch interrupted) {
+            super("shard", null, new ScannerChunk(chunk), null, null, parent.getQueue(), caller);
+            this.started = started;
+            this.interrupted = interrupted;
+        }
+        
+        @Override
+        public Scan call() throws Exception {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return this;
+        }
+    }
+}
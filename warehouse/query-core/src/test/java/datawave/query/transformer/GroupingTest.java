@@ -2,8 +2,10 @@ package datawave.query.transformer;
 
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import datawave.configuration.spring.SpringBean;
 import datawave.data.type.LcType;
@@ -14,6 +16,8 @@ import datawave.marking.MarkingFunctions;
 import datawave.query.QueryTestTableHelper;
 import datawave.query.RebuildingScannerTestHelper;
 import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.TypeAttribute;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
 import datawave.query.language.parser.jexl.JexlControlledQueryParser;
 import datawave.query.language.parser.jexl.LuceneToJexlQueryParser;
@@ -514,6 +518,110 @@ public abstract class GroupingTest {
         }
     }
     
+    @Test
+    public void testSpilledGroups() throws Exception {
+        MarkingFunctions markingFunctions = new MarkingFunctions.Default();
+        GroupingTransform.GroupCountingHashMap map = new GroupingTransform.GroupCountingHashMap(markingFunctions);
+        HashMultimap<Collection<GroupingTypeAttribute<?>>,ColumnVisibility> visibilities = HashMultimap.create();
+        SpilledGroups spilledGroups = new SpilledGroups(markingFunctions);
+        
+        try {
+            // spill the FOO group twice and the BAR group once
+            GroupingTypeAttribute<?> attr1 = new GroupingTypeAttribute(new LcType("FOO"), new Key("NAME"), true);
+            attr1.setColumnVisibility(new ColumnVisibility("A"));
+            map.add(Collections.singleton(attr1), 3);
+            visibilities.put(Collections.singleton(attr1), new ColumnVisibility("A"));
+            spilledGroups.spill(map, visibilities);
+            map.clear();
+            visibilities.clear();
+            
+            GroupingTypeAttribute<?> attr2 = new GroupingTypeAttribute(new LcType("FOO"), new Key("NAME"), true);
+            attr2.setColumnVisibility(new ColumnVisibility("B"));
+            map.add(Collections.singleton(attr2), 2);
+            visibilities.put(Collections.singleton(attr2), new ColumnVisibility("B"));
+            GroupingTypeAttribute<?> attr3 = new GroupingTypeAttribute(new LcType("BAR"), new Key("NAME"), true);
+            attr3.setColumnVisibility(new ColumnVisibility("C"));
+            map.add(Collections.singleton(attr3));
+            visibilities.put(Collections.singleton(attr3), new ColumnVisibility("C"));
+            spilledGroups.spill(map, visibilities);
+            Assert.assertEquals(2, spilledGroups.getRunCount());
+            
+            Iterator<SpilledGroups.Group> groups = spilledGroups.merge();
+            SpilledGroups.Group group = groups.next();
+            Attribute<?> attr = group.getAttributes().iterator().next();
+            Assert.assertEquals("BAR", attr.getData().toString());
+            Assert.assertEquals(1, group.getCount());
+            Assert.assertEquals(new ColumnVisibility("C"), attr.getColumnVisibility());
+            
+            group = groups.next();
+            attr = group.getAttributes().iterator().next();
+            Assert.assertEquals("FOO", attr.getData().toString());
+            Assert.assertEquals(5, group.getCount());
+            Assert.assertEquals(new ColumnVisibility("A&B"), attr.getColumnVisibility());
+            Assert.assertEquals(Sets.newHashSet(new ColumnVisibility("A"), new ColumnVisibility("B")), group.getVisibilities());
+            Assert.assertFalse(groups.hasNext());
+            Assert.assertEquals(2, spilledGroups.getMergedGroupCount());
+        } finally {
+            spilledGroups.close();
+        }
+    }
+    
+    @Test
+    public void testGroupingTransformSpill() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ColumnVisibility visibility = new ColumnVisibility(i % 3 == 0 ? "A" : "B");
+            Key key = new Key("20130101_" + (i % 5), "test\0uid." + i, "", visibility, 1356998400000L);
+            Document d = new Document(key, true);
+            // the same values under two field names, which are grouped together
+            d.put(i % 2 == 0 ? "GENDER" : "GENERE", new TypeAttribute<>(new LcType(i % 7 == 0 ? "FEMALE" : "MALE"), key, true), true, false);
+            d.put("AGE", new TypeAttribute<>(new NumberType(Integer.toString(i % 20)), key, true), true, false);
+            d.setColumnVisibility(visibility);
+            documents.add(d);
+        }
+        
+        Map<String,String> expected = groupDocuments(documents, 0, false);
+        Assert.assertFalse(expected.isEmpty());
+        // spilling the groups to disk after each document returns the same groups
+        Assert.assertEquals(expected, groupDocuments(documents, 1, true));
+    }
+    
+    /**
+     * Group the documents with a GroupingTransform
+     *
+     * @return the values of each group mapped to its count and visibility
+     */
+    private Map<String,String> groupDocuments(List<Document> documents, long maxMemoryBytes, boolean expectSpill) {
+        GroupingTransform transform = new GroupingTransform(null, Arrays.asList("GENDER", "GENERE", "AGE"));
+        transform.initialize(new QueryImpl(), new MarkingFunctions.Default());
+        transform.setMaxMemoryBytes(maxMemoryBytes);
+        try {
+            for (Document d : documents) {
+                transform.apply(Maps.immutableEntry(d.getMetadata(), d));
+            }
+            Assert.assertEquals(expectSpill, transform.getSpillCount() > 1);
+            
+            Map<String,String> groups = new HashMap<>();
+            Map.Entry<Key,Document> entry;
+            while ((entry = transform.flush()) != null) {
+                List<String> values = new ArrayList<>();
+                String count = null;
+                for (Map.Entry<String,Attribute<? extends Comparable<?>>> field : entry.getValue().entrySet()) {
+                    if (field.getKey().equals("COUNT")) {
+                        count = field.getValue().getData().toString();
+                    } else {
+                        values.add(field.getValue().getData().toString());
+                    }
+                }
+                Collections.sort(values);
+                Assert.assertNull(groups.put(values.toString(), count + " " + entry.getValue().getColumnVisibility()));
+            }
+            return groups;
+        } finally {
+            transform.close();
+        }
+    }
+    
     private static RemoteEdgeDictionary mockRemoteEdgeDictionary = EasyMock.createMock(RemoteEdgeDictionary.class);
     
     public static class Producer {
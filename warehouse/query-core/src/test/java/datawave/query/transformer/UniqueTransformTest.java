@@ -13,6 +13,7 @@ import datawave.query.attributes.Attributes;
 import datawave.query.attributes.DiacriticContent;
 import datawave.query.attributes.Document;
 import datawave.query.jexl.JexlASTHelper;
+import datawave.query.util.dedup.SpillingDedupStore;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.commons.collections4.Transformer;
@@ -192,6 +193,37 @@ public class UniqueTransformTest {
         Assert.assertNull(transform.apply(null));
     }
     
+    @Test
+    public void testCloseClearsDedupStore() {
+        Random random = new Random(2000);
+        SpillingDedupStore store = new SpillingDedupStore(10);
+        UniqueTransform transform = new UniqueTransform(Sets.newHashSet("Attr0", "Attr1"), store);
+        
+        List<Document> input = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            input.add(createDocument(random, false));
+        }
+        int expected = countUniqueness(input, Sets.newHashSet("Attr0", "Attr1"));
+        Assert.assertEquals(expected, countUnique(transform, input));
+        Assert.assertEquals(expected, store.size());
+        
+        // closing the transform releases the signatures, along with any files they were spilled to
+        transform.close();
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(expected, countUnique(transform, input));
+        transform.close();
+    }
+    
+    private int countUnique(UniqueTransform transform, List<Document> input) {
+        int count = 0;
+        for (Document d : input) {
+            if (transform.apply(Maps.immutableEntry(d.getMetadata(), d)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
     /**
      * Test that groups get placed into separate field sets
      */
@@ -0,0 +1,66 @@
+package datawave.query.util.dedup;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DedupStoreTest {
+    
+    private static byte[] signature(int i) {
+        return String.format("20180101_%d\0datatype\0uid.%d", i % 17, i).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private void testDedup(DedupStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(store.add(signature(i)));
+            // re-add a recent signature
+            assertFalse(store.add(signature(i / 2)));
+        }
+        for (int i = 0; i < count; i++) {
+            assertFalse(store.add(signature(i)));
+        }
+        assertEquals(count, store.size());
+    }
+    
+    @Test
+    public void testScalableBloom() {
+        ScalableBloomDedupStore store = new ScalableBloomDedupStore(100, ScalableBloomDedupStore.DEFAULT_FPP);
+        testDedup(store, 10000);
+        // 100 + 200 + 400 + ... filters are needed to hold 10000 signatures
+        assertEquals(7, store.getFilterCount());
+        assertTrue(store.getFillRatio() < 1.0);
+        assertTrue(store.getExpectedFpp() < ScalableBloomDedupStore.DEFAULT_FPP);
+    }
+    
+    @Test
+    public void testScalableBloomClear() {
+        ScalableBloomDedupStore store = new ScalableBloomDedupStore(100, ScalableBloomDedupStore.DEFAULT_FPP);
+        testDedup(store, 1000);
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(1, store.getFilterCount());
+        testDedup(store, 1000);
+    }
+    
+    @Test
+    public void testSpilling() {
+        SpillingDedupStore store = new SpillingDedupStore(100);
+        try {
+            testDedup(store, 5000);
+            assertEquals(0, store.getExpectedFpp(), 0);
+            // only the duplicates and the prefilter false positives are looked up in the sorted set
+            assertTrue(store.getFileLookups() >= 10000);
+            assertTrue(store.getFileLookups() < 10500);
+            assertEquals(store.getFileLookups() - 10000, store.getFalsePrefilterHits());
+            // and the lookups are reported across all of the stores
+            assertTrue(DedupStoreMetrics.getInstance().getDuplicates() >= 10000);
+            assertTrue(DedupStoreMetrics.getInstance().getFileLookups() >= store.getFileLookups());
+        } finally {
+            store.clear();
+        }
+    }
+}
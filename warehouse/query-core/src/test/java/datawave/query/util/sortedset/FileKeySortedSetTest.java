@@ -0,0 +1,180 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileKeySortedSetTest {
+    
+    private SortedSet<Key> data = null;
+    private List<FileSortedSet<Key>> sets = new ArrayList<>();
+    
+    @Before
+    public void setUp() throws Exception {
+        data = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            Key key = new Key(String.format("20180101_%d", i % 7), "fi\0FIELD", String.format("value%05d\0datatype\0uid.%d", i, i), "PUBLIC", i);
+            key.setDeleted(i % 13 == 0);
+            data.add(key);
+        }
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        for (FileSortedSet<Key> set : sets) {
+            set.clear();
+        }
+        sets.clear();
+        data = null;
+    }
+    
+    private FileSortedSet<Key> persist(SortedSet<Key> keys, FileSortedSet.PersistOptions options) throws IOException {
+        FileSortedSet<Key> set = new FileKeySortedSet.Factory(options).newInstance(keys, new SortedSetTempFileHandler(), true);
+        sets.add(set);
+        assertTrue(set.isPersisted());
+        return set;
+    }
+    
+    private void testPersisted(FileSortedSet.PersistOptions options) throws Exception {
+        FileSortedSet<Key> set = persist(data, options);
+        assertEquals(data.size(), set.size());
+        assertEquals(data.first(), set.first());
+        assertEquals(data.last(), set.last());
+        assertArrayEquals(data.toArray(), set.toArray());
+        assertTrue(set.containsAll(data));
+        
+        // the keys must come back with their timestamps and delete flags intact
+        Iterator<Key> expected = data.iterator();
+        for (Key key : set) {
+            Key expectedKey = expected.next();
+            assertEquals(expectedKey, key);
+            assertEquals(expectedKey.getTimestamp(), key.getTimestamp());
+            assertEquals(expectedKey.isDeleted(), key.isDeleted());
+        }
+        assertFalse(expected.hasNext());
+        
+        set.load();
+        assertFalse(set.isPersisted());
+        assertEquals(data, set);
+    }
+    
+    @Test
+    public void testDefaultBlocks() throws Exception {
+        testPersisted(FileSortedSet.PersistOptions.DEFAULT);
+    }
+    
+    @Test
+    public void testSmallBlocks() throws Exception {
+        testPersisted(new FileSortedSet.PersistOptions(100, null));
+    }
+    
+    @Test
+    public void testCompressedBlocks() throws Exception {
+        testPersisted(new FileSortedSet.PersistOptions(1000, DefaultCodec.class.getName()));
+    }
+    
+    @Test
+    public void testEmpty() throws IOException {
+        FileSortedSet<Key> set = persist(new TreeSet<>(), new FileSortedSet.PersistOptions(100, null));
+        assertEquals(0, set.size());
+        assertFalse(set.iterator().hasNext());
+        assertFalse(set.iterator(data.first()).hasNext());
+    }
+    
+    @Test
+    public void testSeek() throws IOException {
+        FileSortedSet<Key> set = persist(data, new FileSortedSet.PersistOptions(256, DefaultCodec.class.getName()));
+        List<Key> keys = new ArrayList<>(data);
+        for (int i = 0; i < keys.size(); i += 37) {
+            Key key = keys.get(i);
+            // seek to an existing key
+            assertIteratesFrom(keys.subList(i, keys.size()), set.iterator(key));
+            // seek to just after an existing key
+            assertIteratesFrom(keys.subList(i + 1, keys.size()), set.iterator(key.followingKey(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME)));
+        }
+        // seek before and after the set
+        assertIteratesFrom(keys, set.iterator(new Key()));
+        assertFalse(set.iterator(new Key("99999999")).hasNext());
+    }
+    
+    @Test
+    public void testMergeSortSeek() throws IOException {
+        FileSortedSet.PersistOptions options = new FileSortedSet.PersistOptions(128, null);
+        List<Key> keys = new ArrayList<>(data);
+        List<SortedSet<Key>> parts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SortedSet<Key> part = new TreeSet<>();
+            for (int j = i; j < keys.size(); j += 3) {
+                part.add(keys.get(j));
+            }
+            // overlap each part with the next to ensure duplicates are merged
+            part.add(keys.get((i * 100 + 1) % keys.size()));
+            parts.add(persist(part, options));
+        }
+        // add one set that is not persisted
+        parts.add(new TreeSet<>(Arrays.asList(keys.get(0), keys.get(500))));
+        
+        for (int i = 0; i < keys.size(); i += 111) {
+            assertIteratesFrom(keys.subList(i, keys.size()), new MergeSortIterator<>(parts, keys.get(i)));
+        }
+        assertIteratesFrom(keys, new MergeSortIterator<>(parts, null));
+    }
+    
+    @Test
+    public void testContainsOutsideBounds() throws IOException {
+        CountingTempFileHandler handler = new CountingTempFileHandler();
+        FileSortedSet<Key> set = new FileKeySortedSet.Factory(new FileSortedSet.PersistOptions(256, null)).newInstance(data, handler, true);
+        sets.add(set);
+        handler.reads = 0;
+        
+        // keys before the first and after the last key do not read the file
+        assertFalse(set.contains(new Key()));
+        assertFalse(set.contains(new Key("99999999")));
+        assertEquals(0, handler.reads);
+        
+        // but keys within the bounds do
+        assertFalse(set.contains(data.first().followingKey(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME)));
+        assertTrue(handler.reads > 0);
+        assertTrue(set.contains(data.first()));
+        assertTrue(set.contains(data.last()));
+    }
+    
+    private static class CountingTempFileHandler extends SortedSetTempFileHandler {
+        private int reads = 0;
+        
+        CountingTempFileHandler() throws IOException {
+            super();
+        }
+        
+        @Override
+        public InputStream getInputStream() throws IOException {
+            reads++;
+            return super.getInputStream();
+        }
+    }
+    
+    private void assertIteratesFrom(List<Key> expected, Iterator<Key> it) {
+        for (Key key : expected) {
+            assertTrue(it.hasNext());
+            assertEquals(key, it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+}
@@ -0,0 +1,48 @@
+package datawave.query.util.sortedset;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileSerializableSortedSetTest {
+    
+    private FileSortedSet<String> set = null;
+    
+    @After
+    public void tearDown() {
+        if (set != null) {
+            set.clear();
+            set = null;
+        }
+    }
+    
+    @Test
+    public void testContainsWithNullFirst() throws IOException {
+        // a comparator that handles null lets the set persist null as its first element
+        SortedSet<String> data = new TreeSet<>(Comparator.nullsFirst(Comparator.<String> naturalOrder()));
+        data.addAll(Arrays.asList(null, "a", "b", "c"));
+        set = new FileSerializableSortedSet<>(data, new SortedSetTempFileHandler(), true);
+        assertTrue(set.isPersisted());
+        
+        assertTrue(set.contains(null));
+        assertTrue(set.contains("a"));
+        assertTrue(set.contains("c"));
+        assertFalse(set.contains("d"));
+    }
+    
+    @Test
+    public void testContainsWhenEmpty() throws IOException {
+        set = new FileSerializableSortedSet<>(new TreeSet<>(), new SortedSetTempFileHandler(), true);
+        assertTrue(set.isPersisted());
+        
+        assertFalse(set.contains("a"));
+    }
+}
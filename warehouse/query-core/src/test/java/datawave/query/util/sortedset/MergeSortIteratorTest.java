@@ -0,0 +1,187 @@
+package datawave.query.util.sortedset;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MergeSortIteratorTest {
+    
+    private List<SortedSet<String>> sets = null;
+    private SortedSet<String> expected = null;
+    private ExecutorService executor = null;
+    
+    @Before
+    public void setUp() throws Exception {
+        sets = new ArrayList<>();
+        expected = new TreeSet<>();
+        for (int s = 0; s < 5; s++) {
+            SortedSet<String> set = new TreeSet<>();
+            for (int i = s; i < 2000; i += (s + 1)) {
+                String value = String.format("%05d", i);
+                set.add(value);
+                expected.add(value);
+            }
+            // persist all but the last set
+            if (s < 4) {
+                sets.add(new FileSerializableSortedSet.Factory<String>().newInstance(set, new SortedSetTempFileHandler(), true));
+            } else {
+                sets.add(set);
+            }
+        }
+        executor = Executors.newFixedThreadPool(2);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        for (SortedSet<String> set : sets) {
+            set.clear();
+        }
+        executor.shutdownNow();
+    }
+    
+    private void assertMerged(SortedSet<String> expected, Iterator<String> it) {
+        for (String value : expected) {
+            assertTrue(it.hasNext());
+            assertEquals(value, it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+    
+    @Test
+    public void testMerge() {
+        assertMerged(expected, new MergeSortIterator<>(sets));
+    }
+    
+    @Test
+    public void testMergeFrom() {
+        String from = "01234";
+        assertMerged(expected.tailSet(from), new MergeSortIterator<>(sets, from));
+    }
+    
+    @Test
+    public void testPrefetch() {
+        MergeSortIterator.Stats stats = new MergeSortIterator.Stats();
+        assertMerged(expected, new MergeSortIterator<>(sets, null, executor, 100, 10, stats));
+        assertEquals(5, stats.getSetsMerged());
+        // the four persisted sets hold roughly 2000 + 1000 + 667 + 500 values, read 100 at a time
+        assertTrue(stats.getPrefetchedBatches() + stats.getInlineBatches() >= 42);
+    }
+    
+    @Test
+    public void testPrefetchLimitedReaders() {
+        MergeSortIterator.Stats stats = new MergeSortIterator.Stats();
+        assertMerged(expected.tailSet("00500"), new MergeSortIterator<>(sets, "00500", executor, 100, 1, stats));
+        // only the first persisted set can be read ahead
+        assertTrue(stats.getPrefetchedBatches() + stats.getInlineBatches() <= 16);
+    }
+    
+    @Test
+    public void testPrefetchExecutorNeverRuns() {
+        // a saturated executor must not stall the merge, the batches are read on the calling thread instead
+        MergeSortIterator.Stats stats = new MergeSortIterator.Stats();
+        assertMerged(expected, new MergeSortIterator<>(sets, null, task -> {}, 100, 10, stats));
+        assertEquals(0, stats.getPrefetchedBatches());
+        assertTrue(stats.getInlineBatches() > 0);
+    }
+    
+    @Test
+    public void testPrefetchExecutorRejects() {
+        MergeSortIterator.Stats stats = new MergeSortIterator.Stats();
+        assertMerged(expected, new MergeSortIterator<>(sets, null, task -> {
+            throw new IllegalStateException("rejected");
+        }, 100, 10, stats));
+        assertEquals(0, stats.getPrefetchedBatches());
+    }
+    
+    @Test
+    public void testPrefetchMaxBytes() {
+        MergeSortIterator.Stats stats = new MergeSortIterator.Stats();
+        // 200 bytes across 10 readers, each holding two batches, leaves 10 bytes or two of the five character values per batch
+        assertMerged(expected, new MergeSortIterator<>(sets, null, executor, 100, 200, String::length, 10, stats));
+        assertTrue(stats.getPrefetchedBatches() + stats.getInlineBatches() >= 2000);
+    }
+    
+    @Test
+    public void testCancelPrefetch() {
+        List<Runnable> tasks = new ArrayList<>();
+        MergeSortIterator.Stats stats = new MergeSortIterator.Stats();
+        MergeSortIterator<String> it = new MergeSortIterator<>(sets, null, tasks::add, 100, 10, stats);
+        Iterator<String> values = expected.iterator();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(values.next(), it.next());
+        }
+        it.cancelPrefetch();
+        int scheduled = tasks.size();
+        
+        // the batches handed to the executor before the cancel are skipped when it gets to them
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        assertEquals(0, stats.getPrefetchedBatches());
+        
+        // and the rest of the merge is read on the calling thread without scheduling anything more
+        while (values.hasNext()) {
+            assertTrue(it.hasNext());
+            assertEquals(values.next(), it.next());
+        }
+        assertFalse(it.hasNext());
+        assertEquals(scheduled, tasks.size());
+    }
+    
+    @Test
+    public void testRemove() {
+        SortedSet<String> a = new TreeSet<>(expected.headSet("00100"));
+        SortedSet<String> b = new TreeSet<>(expected.headSet("00050"));
+        List<SortedSet<String>> memorySets = new ArrayList<>();
+        memorySets.add(a);
+        memorySets.add(b);
+        Iterator<String> it = new MergeSortIterator<>(memorySets);
+        while (it.hasNext()) {
+            if (it.next().compareTo("00025") < 0) {
+                it.remove();
+            }
+        }
+        assertEquals(expected.subSet("00025", "00100"), a);
+        assertEquals(expected.subSet("00025", "00050"), b);
+    }
+    
+    @Test
+    public void testBufferedSetPrefetch() throws IOException {
+        BufferedFileBackedSortedSet<String> set = new BufferedFileBackedSortedSet<>(null, 100, 3, 2,
+                        Collections.singletonList(new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
+                            @Override
+                            public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+                                return new SortedSetTempFileHandler();
+                            }
+                            
+                            @Override
+                            public boolean isValid() {
+                                return true;
+                            }
+                        }), new FileSerializableSortedSet.Factory<>());
+        set.setPrefetch(executor, 50);
+        try {
+            set.addAll(expected);
+            set.persist();
+            assertMerged(expected, set.iterator());
+            assertTrue(set.getMergeStats().getSetsMerged() > 0);
+            assertTrue(set.getMergeStats().getPrefetchedBatches() + set.getMergeStats().getInlineBatches() > 0);
+        } finally {
+            set.clear();
+        }
+    }
+}
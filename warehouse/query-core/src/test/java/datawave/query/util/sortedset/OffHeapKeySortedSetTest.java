@@ -0,0 +1,207 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapKeySortedSetTest {
+    
+    private List<Key> data = null;
+    private TreeSet<Key> expected = null;
+    
+    @Before
+    public void setUp() {
+        Random random = new Random(1234);
+        data = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Key key = new Key("row" + random.nextInt(5), "dt\u0000uid" + random.nextInt(20), "FIELD\u0000" + random.nextInt(3), random.nextBoolean() ? "A&B" : "A",
+                            random.nextInt(3));
+            key.setDeleted(random.nextInt(10) == 0);
+            data.add(key);
+        }
+        // make sure the unsigned byte ordering is honored
+        data.add(new Key(new byte[] {(byte) 0xff}, new byte[0], new byte[0], new byte[0], 0));
+        data.add(new Key(new byte[] {0x7f}, new byte[0], new byte[0], new byte[0], 0));
+        expected = new TreeSet<>(data);
+    }
+    
+    @Test
+    public void testOrdering() {
+        OffHeapKeySortedSet set = new OffHeapKeySortedSet(4);
+        for (Key key : data) {
+            assertEquals(!set.contains(key), set.add(key));
+        }
+        assertEquals(expected.size(), set.size());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        for (Key key : data) {
+            assertTrue(set.contains(key));
+            assertTrue(set.contains(new Key(key)));
+        }
+        assertFalse(set.contains(new Key("row9")));
+        assertTrue(set.getOffHeapCapacity() > 0);
+    }
+    
+    @Test
+    public void testRemove() {
+        OffHeapKeySortedSet set = new OffHeapKeySortedSet(data);
+        List<Key> keys = new ArrayList<>(expected);
+        for (int i = 0; i < keys.size(); i += 2) {
+            assertTrue(set.remove(keys.get(i)));
+            assertTrue(expected.remove(keys.get(i)));
+            assertFalse(set.remove(keys.get(i)));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        
+        // adding enough to force the buffer to grow will reclaim the space of the removed keys
+        for (int i = 0; i < 1000; i++) {
+            Key key = new Key("grow" + i);
+            set.add(key);
+            expected.add(key);
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        
+        Iterator<Key> it = set.iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        assertTrue(set.isEmpty());
+    }
+    
+    @Test
+    public void testSubSets() {
+        OffHeapKeySortedSet set = new OffHeapKeySortedSet(data);
+        Key from = new Key("row1");
+        Key to = new Key("row3");
+        assertEquals(new ArrayList<>(expected.subSet(from, to)), new ArrayList<>(set.subSet(from, to)));
+        assertEquals(new ArrayList<>(expected.headSet(to)), new ArrayList<>(set.headSet(to)));
+        assertEquals(new ArrayList<>(expected.tailSet(from)), new ArrayList<>(set.tailSet(from)));
+        assertEquals(expected.subSet(from, to).size(), set.subSet(from, to).size());
+        assertEquals(expected.subSet(from, to).first(), set.subSet(from, to).first());
+        assertEquals(expected.subSet(from, to).last(), set.subSet(from, to).last());
+        
+        // a single element subset
+        Key first = expected.first();
+        Key next = expected.higher(first);
+        assertEquals(Collections.singletonList(first), new ArrayList<>(set.subSet(first, next)));
+        assertTrue(set.subSet(new Key("row9"), new Key("rowa")).isEmpty());
+    }
+    
+    @Test
+    public void testKeysSpanningChunks() {
+        OffHeapKeySortedSet set = new OffHeapKeySortedSet(1);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < OffHeapKeySortedSet.MIN_CHUNK_SIZE; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        // keys larger than a chunk, and keys which straddle the end of a chunk
+        for (int i = 0; i < 20; i++) {
+            Key key = new Key("row" + i, "cf", large.substring(0, 97 * i), "A", i);
+            set.add(key);
+            expected.add(key);
+        }
+        for (Key key : data) {
+            set.add(key);
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        for (Key key : expected) {
+            assertTrue(set.contains(key));
+        }
+        assertEquals(0, set.getOffHeapCapacity() % OffHeapKeySortedSet.MIN_CHUNK_SIZE);
+    }
+    
+    @Test
+    public void testRemovedSpaceReused() {
+        OffHeapKeySortedSet set = new OffHeapKeySortedSet(data);
+        long capacity = set.getOffHeapCapacity();
+        
+        // replacing the keys again and again reuses the chunks which were already allocated
+        for (int i = 0; i < 10; i++) {
+            set.clear();
+            set.addAll(data);
+            Iterator<Key> it = set.iterator();
+            while (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+            set.addAll(data);
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+            assertEquals(capacity, set.getOffHeapCapacity());
+        }
+    }
+    
+    @Test
+    public void testFileSetStartsOffHeap() throws Exception {
+        OffHeapFileKeySortedSet fileSet = new OffHeapFileKeySortedSet(expected, new SortedSetTempFileHandler());
+        assertTrue(fileSet.set instanceof OffHeapKeySortedSet);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(fileSet));
+        assertTrue(fileSet.clone().set instanceof OffHeapKeySortedSet);
+        
+        // a comparator other than the natural ordering is kept on the heap
+        OffHeapFileKeySortedSet reversed = new OffHeapFileKeySortedSet(Collections.reverseOrder(), new SortedSetTempFileHandler(), false);
+        assertTrue(reversed.set instanceof TreeSet);
+    }
+    
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyFirst() {
+        new OffHeapKeySortedSet().first();
+    }
+    
+    @Test
+    public void testClear() {
+        OffHeapKeySortedSet set = new OffHeapKeySortedSet(data);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.getOffHeapCapacity());
+        set.addAll(data);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+    }
+    
+    @Test
+    public void testPersistedBuffer() throws Exception {
+        BufferedFileBackedSortedSet<Key> set = new BufferedFileBackedSortedSet<>(null, 100, 7, 2,
+                        Collections.singletonList(new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
+                            @Override
+                            public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+                                return new SortedSetTempFileHandler();
+                            }
+                            
+                            @Override
+                            public boolean isValid() {
+                                return true;
+                            }
+                        }), new OffHeapFileKeySortedSet.Factory());
+        try {
+            set.addAll(data);
+            for (Key key : data) {
+                set.add(key);
+            }
+            assertTrue(set.hasPersistedData());
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+            
+            SortedSet<Key> copy = new TreeSet<>();
+            for (Key key : set) {
+                copy.add(key);
+            }
+            assertEquals(expected, copy);
+        } finally {
+            set.clear();
+        }
+    }
+}
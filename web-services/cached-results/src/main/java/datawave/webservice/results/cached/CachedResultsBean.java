@@ -8,14 +8,11 @@ import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.Principal;
-import java.sql.BatchUpdateException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLSyntaxErrorException;
 import java.sql.Statement;
-import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,7 +24,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.Future;
 
@@ -74,7 +70,6 @@ import datawave.annotation.Required;
 import datawave.configuration.spring.SpringBean;
 import datawave.interceptor.RequiredInterceptor;
 import datawave.interceptor.ResponseInterceptor;
-import datawave.marking.MarkingFunctions;
 import datawave.marking.SecurityMarking;
 import datawave.resteasy.interceptor.CreateQuerySessionIDFilter;
 import datawave.security.authorization.DatawavePrincipal;
@@ -279,65 +274,6 @@ public class CachedResultsBean {
         }
     }
     
-    protected void loadBatch(PreparedStatement ps, String owner, String queryId, String logicName, Map<String,Integer> fieldMap, CacheableQueryRow cqo,
-                    int maxFieldSize) throws SQLException {
-        
-        // Maintain a list of the columns that are populated so
-        // that we can
-        // set the others to null.
-        HashSet<Integer> populatedColumns = new HashSet<>();
-        // Done capturing all the fields in the event, insert
-        // into database.
-        ps.clearParameters(); // not sure we need this
-        
-        // Each entry is a different visibility.
-        ps.setString(1, owner);
-        ps.setString(2, queryId);
-        ps.setString(3, logicName);
-        ps.setString(4, cqo.getDataType());
-        ps.setString(5, cqo.getEventId());
-        ps.setString(6, cqo.getRow());
-        ps.setString(7, cqo.getColFam());
-        ps.setString(8, MarkingFunctions.Encoding.toString(new TreeMap<>(cqo.getMarkings())));
-        for (Entry<String,String> e : cqo.getColumnValues().entrySet()) {
-            
-            String columnName = e.getKey();
-            String columnValue = e.getValue();
-            // Get the field number from the fieldMap.
-            Integer columnNumber = fieldMap.get(columnName);
-            if (columnNumber == null) {
-                columnNumber = CacheableQueryRow.getFixedColumnSet().size() + fieldMap.size() + 1;
-                fieldMap.put(columnName, columnNumber);
-            }
-            
-            if (columnValue.length() > maxFieldSize) {
-                columnValue = columnValue.substring(0, maxFieldSize) + "<truncated>";
-                ps.setString(columnNumber, columnValue);
-            } else {
-                ps.setString(columnNumber, columnValue);
-            }
-            populatedColumns.add(columnNumber);
-            if (log.isTraceEnabled()) {
-                log.trace("Set parameter: " + columnNumber + " with field name: " + columnName + " to value: " + columnValue);
-            }
-        }
-        
-        ps.setString(9, cqo.getColumnSecurityMarkingString(fieldMap));
-        ps.setString(10, cqo.getColumnTimestampString(fieldMap));
-        
-        // Need to set all of the remaining parameters to
-        // NULL
-        int startCol = CacheableQueryRow.getFixedColumnSet().size() + 1;
-        int maxCol = CacheableQueryRow.getFixedColumnSet().size() + 901;
-        for (int i = startCol; i < maxCol; i++) {
-            if (!populatedColumns.contains(i)) {
-                ps.setNull(i, Types.VARCHAR);
-            }
-        }
-        ps.addBatch();
-        
-    }
-    
     protected GenericResponse<String> load(@Required("queryId") String queryId, String alias, String nameBase) {
         
         GenericResponse<String> response = new GenericResponse<>();
@@ -362,13 +298,14 @@ public class CachedResultsBean {
         String tableName = "t" + nameBase;
         String viewName = "v" + nameBase;
         Connection con = null;
-        PreparedStatement ps = null;
+        CachedResultsLoader loader = null;
         boolean tableCreated = false;
         boolean viewCreated = false;
         CachedRunningQuery crq = null;
         Span span = null;
         boolean queryLockedException = false;
         int rowsPerBatch = cachedResultsConfiguration.getRowsPerBatch();
+        int writerThreads = cachedResultsConfiguration.getWriterThreads();
         try {
             
             // This RunningQuery may be in use. Make a copy using the defined Query.
@@ -508,10 +445,14 @@ public class CachedResultsBean {
                 s.execute(createTable);
                 s.close();
                 tableCreated = true;
-                // Parse the PreparedStatement
+                // Start the writers, each of which will parse the PreparedStatement or use the bulk load statement on its own connection
                 String insert = cachedResultsConfiguration.getParameters().get("INSERT");
                 insert = insert.replace(TABLE, tableName);
-                ps = con.prepareStatement(insert);
+                String loadData = cachedResultsConfiguration.getLoadData();
+                if (loadData != null) {
+                    loadData = loadData.replace(TABLE, tableName);
+                }
+                loader = new CachedResultsLoader(ds, executor, insert, loadData, writerThreads, rowsPerBatch);
             } catch (SQLException sqle) {
                 throw new QueryException(DatawaveErrorCode.CACHED_RESULTS_TABLE_CREATE_ERROR, sqle);
             }
@@ -529,7 +470,6 @@ public class CachedResultsBean {
                 span = Trace.trace(traceInfo, "cachedresults:load");
             }
             
-            int rowsWritten = 0;
             boolean go = true;
             while (go) {
                 
@@ -567,7 +507,6 @@ public class CachedResultsBean {
                             }
                         }
                         
-                        boolean dataWritten = false;
                         // If a successful maxLength has been determined, then don't change it.
                         if (maxLength == 0)
                             maxLength = maxValueLength + 1;
@@ -575,46 +514,13 @@ public class CachedResultsBean {
                             maxLength = maxValueLength;
                         }
                         
-                        int attempt = 0;
-                        SQLException loadBatchException = null; // exception;
-                        while (dataWritten == false && attempt < 10) {
-                            try {
-                                loadBatch(ps, owner, queryId, logic.getLogicName(), fieldMap, cacheableQueryObject, maxLength);
-                                dataWritten = true;
-                                rowsWritten++;
-                            } catch (SQLException e) {
-                                loadBatchException = e;
-                                String msg = e.getMessage();
-                                if (msg.startsWith("Table") && msg.endsWith("doesn't exist")) {
-                                    throw new QueryException(DatawaveErrorCode.CACHE_TABLE_MISSING, MessageFormat.format("message: {0}", msg));
-                                } else {
-                                    log.info("Caught other SQLException:" + msg + " writing batch with maxLength:" + maxLength);
-                                    maxLength = maxLength / 2;
-                                }
-                            }
-                            attempt++;
-                        }
-                        
-                        if (dataWritten == false) {
-                            String message = (loadBatchException == null) ? "unknown" : loadBatchException.getMessage();
-                            
-                            log.error("Batch write FAILED - last exception = " + message + "record = " + cacheableQueryObject.getColumnValues().entrySet(),
-                                            loadBatchException);
-                        } else if (rowsWritten >= rowsPerBatch) {
-                            persistBatch(ps);
-                            ps.clearBatch();
-                            rowsWritten = 0;
-                        }
+                        loader.add(owner, queryId, logic.getLogicName(), fieldMap, cacheableQueryObject, maxLength);
                     }
                 }
             } // End of inserts into table
             
-            // commit the last batch
-            if (rowsWritten > 0) {
-                persistBatch(ps);
-                ps.clearBatch();
-                rowsWritten = 0;
-            }
+            // wait for the writers to commit the last batches
+            loader.finish();
             
             // Dump the fieldMap for debugging
             if (log.isTraceEnabled()) {
@@ -729,7 +635,10 @@ public class CachedResultsBean {
             }
             throw new DatawaveWebApplicationException(t, response, statusCode);
         } finally {
-            DbUtils.closeQuietly(con, ps, null);
+            if (loader != null) {
+                loader.close();
+            }
+            DbUtils.closeQuietly(con);
             if (queryLockedException == false) {
                 CachedResultsBean.loadingQueryMap.remove(queryId);
                 CachedResultsBean.loadingQueries.remove(queryId);
@@ -858,37 +767,6 @@ public class CachedResultsBean {
         return dn;
     }
     
-    protected void persistBatch(PreparedStatement ps) throws SQLException {
-        int[] batchResults = null;
-        try {
-            batchResults = ps.executeBatch();
-            int failCount = 0;
-            for (int i = 0; i < batchResults.length; i++) {
-                if (batchResults[i] == Statement.EXECUTE_FAILED) {
-                    failCount++;
-                }
-            }
-            
-            if (failCount > 0) {
-                StringBuilder b = new StringBuilder();
-                for (int i = 0; i < batchResults.length; i++) {
-                    if (batchResults[i] == Statement.EXECUTE_FAILED) {
-                        b.append(i).append(" ");
-                    }
-                }
-                log.warn("Batch failed to perform " + failCount + " updates, indexes: " + b);
-            } else if (log.isDebugEnabled()) {
-                log.debug("Successfully persisted batch of size: " + batchResults.length + " total " + failCount + " failures");
-            }
-        } catch (BatchUpdateException be) {
-            log.warn("Caught BatchUpdateException, one or more batch update have failed: " + be.getMessage(), be);
-            throw be;
-        } catch (SQLException sqle) {
-            log.error("Error committing last batch", sqle);
-            throw sqle;
-        }
-    }
-    
     /**
      * Loads the results of the defined query, specified by query id, into a store that allows SQL queries to be run against it. This allows caller to sort and
      * group by attributes
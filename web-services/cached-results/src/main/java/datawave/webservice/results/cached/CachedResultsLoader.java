@@ -0,0 +1,520 @@
+package datawave.webservice.results.cached;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import datawave.marking.MarkingFunctions;
+import datawave.webservice.query.cachedresults.CacheableQueryRow;
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Loads the rows of a cached result into its table using a number of writer tasks, each of which owns a database connection. The rows are converted to their
+ * column values by the caller, so that the field to column mapping is built in one thread, and are handed to the writers in batches. A writer either inserts a
+ * batch with a batched prepared statement, or streams it to the database as a CSV file using a bulk load statement (e.g. LOAD DATA LOCAL INFILE) when one is
+ * configured.
+ */
+public class CachedResultsLoader implements AutoCloseable {
+    
+    private static final Logger log = Logger.getLogger(CachedResultsLoader.class);
+    
+    public static final String FILE = "$file";
+    
+    // the number of times a row is bound with a smaller max field size before it is dropped
+    private static final int MAX_ATTEMPTS = 10;
+    // the number of columns available for fields after the fixed columns
+    private static final int FIELD_COLUMNS = 900;
+    private static final String TRUNCATED = "<truncated>";
+    private static final String CSV_NULL = "\\N";
+    
+    // the default time to wait for the executor to start a writer before the load is failed
+    public static final long DEFAULT_WRITER_START_TIMEOUT_MILLIS = 60000;
+    
+    private final DataSource ds;
+    private final String insert;
+    private final String loadData;
+    private final int rowsPerBatch;
+    private final int columnCount;
+    
+    private final BlockingQueue<List<Row>> batches;
+    private final List<Future<?>> writers = new ArrayList<>();
+    private List<Row> batch;
+    private volatile Exception failure = null;
+    private volatile boolean canceled = false;
+    // set once the last batch has been handed to the writers
+    private volatile boolean finished = false;
+    private long writerStartTimeout = DEFAULT_WRITER_START_TIMEOUT_MILLIS;
+    private final AtomicInteger writersStarted = new AtomicInteger();
+    private final AtomicInteger writersStopped = new AtomicInteger();
+    // the max field size that a row had to be reduced to before it could be written, which is carried over to the rows after it
+    private final AtomicInteger reducedFieldSize = new AtomicInteger(Integer.MAX_VALUE);
+    
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+    
+    /**
+     * @param ds
+     *            the data source for the writer connections
+     * @param executor
+     *            the executor in which the writers are run
+     * @param insert
+     *            the insert statement for the table
+     * @param loadData
+     *            the bulk load statement for the table, with $file in place of the CSV file name, or null to use the insert statement
+     * @param writerThreads
+     *            the number of writers
+     * @param rowsPerBatch
+     *            the number of rows in each batch
+     */
+    public CachedResultsLoader(DataSource ds, ExecutorService executor, String insert, String loadData, int writerThreads, int rowsPerBatch) {
+        this.ds = ds;
+        this.insert = insert;
+        this.loadData = (loadData == null || loadData.trim().isEmpty()) ? null : loadData;
+        this.rowsPerBatch = Math.max(1, rowsPerBatch);
+        this.columnCount = CacheableQueryRow.getFixedColumnSet().size() + FIELD_COLUMNS;
+        int writerCount = Math.max(1, writerThreads);
+        // allow each writer to have a batch waiting so that the caller is not held up between batches
+        this.batches = new ArrayBlockingQueue<>(writerCount * 2);
+        this.batch = new ArrayList<>(this.rowsPerBatch);
+        for (int i = 0; i < writerCount; i++) {
+            writers.add(executor.submit(this::write));
+        }
+    }
+    
+    /**
+     * Set the time to wait for the executor to start a writer. The writers share the executor with other tasks, so the load is failed rather than waiting
+     * forever for a writer when the executor is saturated.
+     *
+     * @param writerStartTimeout
+     *            the timeout in milliseconds
+     */
+    public void setWriterStartTimeout(long writerStartTimeout) {
+        this.writerStartTimeout = writerStartTimeout;
+    }
+    
+    /**
+     * Add a row to be loaded. New fields are added to the field map.
+     *
+     * @param owner
+     *            the owner of the cached result
+     * @param queryId
+     *            the query id
+     * @param logicName
+     *            the query logic name
+     * @param fieldMap
+     *            the column number for each field
+     * @param cqo
+     *            the row
+     * @param maxFieldSize
+     *            the size beyond which field values are truncated
+     * @throws QueryException
+     *             if the table is missing
+     * @throws SQLException
+     *             if a writer has failed, or no writer was started
+     * @throws InterruptedException
+     *             if interrupted while waiting for a writer
+     */
+    public void add(String owner, String queryId, String logicName, Map<String,Integer> fieldMap, CacheableQueryRow cqo, int maxFieldSize)
+                    throws QueryException, SQLException, InterruptedException {
+        String[] values = new String[columnCount];
+        values[0] = owner;
+        values[1] = queryId;
+        values[2] = logicName;
+        values[3] = cqo.getDataType();
+        values[4] = cqo.getEventId();
+        values[5] = cqo.getRow();
+        values[6] = cqo.getColFam();
+        values[7] = MarkingFunctions.Encoding.toString(new TreeMap<>(cqo.getMarkings()));
+        for (Entry<String,String> e : cqo.getColumnValues().entrySet()) {
+            String columnName = e.getKey();
+            // Get the field number from the fieldMap.
+            Integer columnNumber = fieldMap.get(columnName);
+            if (columnNumber == null) {
+                columnNumber = CacheableQueryRow.getFixedColumnSet().size() + fieldMap.size() + 1;
+                fieldMap.put(columnName, columnNumber);
+            }
+            if (columnNumber > columnCount) {
+                log.error("Batch write FAILED - no column available for field " + columnName + " record = " + cqo.getColumnValues().entrySet());
+                rowsFailed.incrementAndGet();
+                return;
+            }
+            values[columnNumber - 1] = e.getValue();
+        }
+        values[8] = cqo.getColumnSecurityMarkingString(fieldMap);
+        values[9] = cqo.getColumnTimestampString(fieldMap);
+        
+        batch.add(new Row(values, maxFieldSize));
+        if (batch.size() >= rowsPerBatch) {
+            submit();
+        }
+    }
+    
+    /**
+     * Wait for all of the rows to be written
+     *
+     * @throws QueryException
+     *             if the table is missing
+     * @throws SQLException
+     *             if a writer has failed, or no writer was started
+     * @throws InterruptedException
+     *             if interrupted while waiting for the writers
+     */
+    public void finish() throws QueryException, SQLException, InterruptedException {
+        if (!batch.isEmpty()) {
+            submit();
+        }
+        finished = true;
+        for (Future<?> writer : writers) {
+            waitFor(writer);
+        }
+        checkFailure();
+        if (log.isDebugEnabled()) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+            log.debug("Loaded " + rowsWritten + " rows in " + batchesWritten + " batches using " + writers.size() + " writers in " + elapsed + "ms ("
+                            + (rowsWritten.get() * 1000 / elapsed) + " rows/s), " + rowsFailed + " rows failed");
+        }
+    }
+    
+    /**
+     * Stop the writers, dropping any rows not yet written
+     */
+    @Override
+    public void close() {
+        canceled = true;
+        batches.clear();
+        for (Future<?> writer : writers) {
+            writer.cancel(true);
+        }
+    }
+    
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+    
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+    
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+    
+    private void submit() throws QueryException, SQLException, InterruptedException {
+        put(batch);
+        batch = new ArrayList<>(rowsPerBatch);
+    }
+    
+    private void put(List<Row> rows) throws QueryException, SQLException, InterruptedException {
+        // check for failures while waiting so that the caller is not blocked by writers that have stopped or were never started
+        while (!batches.offer(rows, 1, TimeUnit.SECONDS)) {
+            checkFailure();
+            checkWriters();
+        }
+        checkFailure();
+    }
+    
+    private void waitFor(Future<?> writer) throws QueryException, SQLException, InterruptedException {
+        while (true) {
+            try {
+                writer.get(1, TimeUnit.SECONDS);
+                return;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new SQLException(e.getCause());
+                }
+                return;
+            } catch (CancellationException e) {
+                return;
+            } catch (TimeoutException e) {
+                if (batches.isEmpty() && startedWritersStopped()) {
+                    // every batch has been written by the writers that were started, so a writer that has not been started is not needed. If it is
+                    // started anyway it will find nothing left to write.
+                    writer.cancel(false);
+                } else {
+                    checkFailure();
+                    checkWriters();
+                }
+            }
+        }
+    }
+    
+    private boolean startedWritersStopped() {
+        int started = writersStarted.get();
+        return started > 0 && writersStopped.get() == started;
+    }
+    
+    private void checkWriters() throws SQLException {
+        if (writersStarted.get() == 0) {
+            if (System.currentTimeMillis() - startTime > writerStartTimeout) {
+                throw new SQLException("No cached results writer was started within " + writerStartTimeout + "ms");
+            }
+        } else if (startedWritersStopped() && !batches.isEmpty()) {
+            throw new SQLException("The cached results writers stopped before all of the batches were written");
+        }
+    }
+    
+    private void checkFailure() throws QueryException, SQLException {
+        Exception e = failure;
+        if (e != null) {
+            String msg = e.getMessage();
+            if (msg != null && msg.startsWith("Table") && msg.endsWith("doesn't exist")) {
+                throw new QueryException(DatawaveErrorCode.CACHE_TABLE_MISSING, MessageFormat.format("message: {0}", msg));
+            } else if (e instanceof SQLException) {
+                throw (SQLException) e;
+            } else {
+                throw new SQLException(e);
+            }
+        }
+    }
+    
+    private void write() {
+        writersStarted.incrementAndGet();
+        try (Connection con = ds.getConnection(); PreparedStatement ps = (loadData == null ? con.prepareStatement(insert) : null)) {
+            while (!canceled) {
+                List<Row> rows = batches.poll(1, TimeUnit.SECONDS);
+                if (rows == null) {
+                    if (finished && batches.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                // keep taking batches after a failure so that the caller is not blocked
+                if (failure == null) {
+                    if (ps != null) {
+                        insertBatch(ps, rows);
+                    } else {
+                        loadBatch(con, rows);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            if (!canceled) {
+                failure = e;
+            }
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (!canceled) {
+                log.error("Cached results writer failed", e);
+            }
+            failure = e;
+        } finally {
+            writersStopped.incrementAndGet();
+        }
+    }
+    
+    private void insertBatch(PreparedStatement ps, List<Row> rows) throws SQLException {
+        int rowsAdded = 0;
+        for (Row row : rows) {
+            int maxFieldSize = Math.min(row.maxFieldSize, reducedFieldSize.get());
+            SQLException loadBatchException = null;
+            boolean dataWritten = false;
+            for (int attempt = 0; !dataWritten && attempt < MAX_ATTEMPTS; attempt++) {
+                try {
+                    bind(ps, row.values, maxFieldSize);
+                    ps.addBatch();
+                    dataWritten = true;
+                } catch (SQLException e) {
+                    loadBatchException = e;
+                    String msg = e.getMessage();
+                    if (msg != null && msg.startsWith("Table") && msg.endsWith("doesn't exist")) {
+                        throw e;
+                    }
+                    log.info("Caught other SQLException:" + msg + " writing batch with maxLength:" + maxFieldSize);
+                    maxFieldSize = maxFieldSize / 2;
+                }
+            }
+            if (dataWritten) {
+                if (maxFieldSize < row.maxFieldSize) {
+                    // start the rows after this one at the reduced size rather than failing each of them again
+                    reducedFieldSize.accumulateAndGet(maxFieldSize, Math::min);
+                }
+                rowsAdded++;
+            } else {
+                String message = (loadBatchException == null) ? "unknown" : loadBatchException.getMessage();
+                log.error("Batch write FAILED - last exception = " + message + " record = " + toString(row.values), loadBatchException);
+                rowsFailed.incrementAndGet();
+            }
+        }
+        if (rowsAdded > 0) {
+            persistBatch(ps);
+            ps.clearBatch();
+            rowsWritten.addAndGet(rowsAdded);
+            batchesWritten.incrementAndGet();
+        }
+    }
+    
+    private void bind(PreparedStatement ps, String[] values, int maxFieldSize) throws SQLException {
+        ps.clearParameters();
+        int fixedColumns = CacheableQueryRow.getFixedColumnSet().size();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                ps.setNull(i + 1, Types.VARCHAR);
+            } else if (i >= fixedColumns) {
+                ps.setString(i + 1, truncate(values[i], maxFieldSize));
+            } else {
+                ps.setString(i + 1, values[i]);
+            }
+        }
+    }
+    
+    private void persistBatch(PreparedStatement ps) throws SQLException {
+        int[] batchResults = null;
+        try {
+            batchResults = ps.executeBatch();
+            int failCount = 0;
+            for (int i = 0; i < batchResults.length; i++) {
+                if (batchResults[i] == Statement.EXECUTE_FAILED) {
+                    failCount++;
+                }
+            }
+            
+            if (failCount > 0) {
+                StringBuilder b = new StringBuilder();
+                for (int i = 0; i < batchResults.length; i++) {
+                    if (batchResults[i] == Statement.EXECUTE_FAILED) {
+                        b.append(i).append(" ");
+                    }
+                }
+                log.warn("Batch failed to perform " + failCount + " updates, indexes: " + b);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Successfully persisted batch of size: " + batchResults.length + " total " + failCount + " failures");
+            }
+        } catch (BatchUpdateException be) {
+            log.warn("Caught BatchUpdateException, one or more batch update have failed: " + be.getMessage(), be);
+            throw be;
+        } catch (SQLException sqle) {
+            log.error("Error committing last batch", sqle);
+            throw sqle;
+        }
+    }
+    
+    private void loadBatch(Connection con, List<Row> rows) throws SQLException, IOException {
+        File file = File.createTempFile("cachedresults", ".csv");
+        try {
+            int fixedColumns = CacheableQueryRow.getFixedColumnSet().size();
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                for (Row row : rows) {
+                    for (int i = 0; i < row.values.length; i++) {
+                        if (i > 0) {
+                            out.write(',');
+                        }
+                        String value = row.values[i];
+                        if (value == null) {
+                            out.write(CSV_NULL);
+                        } else {
+                            writeCsvValue(out, (i >= fixedColumns ? truncate(value, row.maxFieldSize) : value));
+                        }
+                    }
+                    out.write('\n');
+                }
+            }
+            try (Statement s = con.createStatement()) {
+                int loaded = s.executeUpdate(loadData.replace(FILE, file.getAbsolutePath()));
+                if (loaded < rows.size()) {
+                    log.warn("Bulk load of " + rows.size() + " rows loaded " + loaded + " rows");
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Successfully bulk loaded batch of size: " + loaded);
+                }
+                rowsWritten.addAndGet(loaded);
+                rowsFailed.addAndGet(Math.max(0, rows.size() - loaded));
+                batchesWritten.incrementAndGet();
+            }
+        } finally {
+            if (!file.delete()) {
+                log.warn("Unable to delete " + file);
+            }
+        }
+    }
+    
+    /**
+     * Write a value enclosed in quotes, escaping with a backslash as expected by LOAD DATA
+     */
+    private static void writeCsvValue(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.write('\\');
+                    out.write(c);
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\0':
+                    out.write("\\0");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+        out.write('"');
+    }
+    
+    private static String truncate(String value, int maxFieldSize) {
+        if (value.length() > maxFieldSize) {
+            return value.substring(0, maxFieldSize) + TRUNCATED;
+        }
+        return value;
+    }
+    
+    private static String toString(String[] values) {
+        StringBuilder b = new StringBuilder();
+        for (int i = CacheableQueryRow.getFixedColumnSet().size(); i < values.length; i++) {
+            if (values[i] != null) {
+                b.append(i + 1).append('=').append(values[i]).append(' ');
+            }
+        }
+        return b.toString();
+    }
+    
+    /**
+     * The column values of a row, with the first value in column 1
+     */
+    private static class Row {
+        private final String[] values;
+        private final int maxFieldSize;
+        
+        private Row(String[] values, int maxFieldSize) {
+            this.values = values;
+            this.maxFieldSize = maxFieldSize;
+        }
+    }
+}
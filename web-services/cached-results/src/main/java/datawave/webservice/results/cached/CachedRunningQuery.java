@@ -7,7 +7,7 @@ import datawave.webservice.query.cache.ResultsPage;
 import datawave.webservice.query.cachedresults.CacheableLogic;
 import datawave.webservice.query.cachedresults.CacheableQueryRow;
 import datawave.webservice.query.cachedresults.CacheableQueryRowReader;
-import datawave.webservice.query.data.ObjectSizeOf;
+import datawave.webservice.query.result.event.EstimatesSize;
 import datawave.webservice.query.logic.QueryLogic;
 import datawave.webservice.query.logic.QueryLogicFactory;
 import datawave.webservice.query.logic.QueryLogicTransformer;
@@ -815,7 +815,7 @@ public class CachedRunningQuery extends AbstractRunningQuery {
                 CacheableQueryRow row = CacheableQueryRowReader.createRow(cachedRowSet, this.fixedFieldsInEvent);
                 cacheableQueryRowList.add(row);
                 if (pageByteTrigger != 0) {
-                    resultBytes += ObjectSizeOf.Sizer.getObjectSize(row);
+                    resultBytes += EstimatesSize.Estimator.estimateSize(row);
                     if (resultBytes >= pageByteTrigger) {
                         hitPageByteTrigger = true;
                     }
@@ -844,7 +844,7 @@ public class CachedRunningQuery extends AbstractRunningQuery {
                 CacheableQueryRow row = CacheableQueryRowReader.createRow(cachedRowSet, this.fixedFieldsInEvent);
                 cacheableQueryRowList.add(row);
                 if (pageByteTrigger != 0) {
-                    resultBytes += ObjectSizeOf.Sizer.getObjectSize(row);
+                    resultBytes += EstimatesSize.Estimator.estimateSize(row);
                     if (resultBytes >= pageByteTrigger) {
                         hitPageByteTrigger = true;
                     }
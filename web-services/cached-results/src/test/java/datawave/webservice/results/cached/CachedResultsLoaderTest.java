@@ -0,0 +1,285 @@
+package datawave.webservice.results.cached;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import datawave.webservice.query.cachedresults.CacheableQueryRow;
+import datawave.webservice.query.cachedresults.CacheableQueryRowImpl;
+import datawave.webservice.query.exception.QueryException;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachedResultsLoaderTest {
+    
+    private static final String INSERT = "INSERT INTO t1 VALUES (?)";
+    private static final String LOAD_DATA = "LOAD DATA LOCAL INFILE '$file' INTO TABLE t1";
+    
+    private ExecutorService executor;
+    private Map<String,Integer> fieldMap;
+    private int fixedColumns = CacheableQueryRow.getFixedColumnSet().size();
+    
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+        fieldMap = new HashMap<>();
+    }
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    private static CacheableQueryRow createRow(int i) {
+        CacheableQueryRowImpl cqo = new CacheableQueryRowImpl();
+        cqo.setDataType("datatype");
+        cqo.setEventId("uid." + i);
+        cqo.setRow("20180101_" + (i % 10));
+        cqo.setColFam("datatype\0uid." + i);
+        Map<String,Set<String>> columnValues = new HashMap<>();
+        columnValues.put("FIELD" + (i % 3), Collections.singleton("value \"" + i + "\""));
+        cqo.setColumnValues(columnValues);
+        return cqo;
+    }
+    
+    private DataSource createDataSource(int connections, List<Connection> connectionList) throws SQLException {
+        DataSource ds = EasyMock.createMock(DataSource.class);
+        EasyMock.expect(ds.getConnection()).andAnswer(() -> connectionList.remove(0)).times(connections);
+        EasyMock.replay(ds);
+        return ds;
+    }
+    
+    @Test
+    public void testParallelInsert() throws Exception {
+        AtomicInteger rowsAdded = new AtomicInteger();
+        AtomicInteger batchesExecuted = new AtomicInteger();
+        List<Connection> connections = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 3; i++) {
+            PreparedStatement ps = EasyMock.createNiceMock(PreparedStatement.class);
+            ps.addBatch();
+            EasyMock.expectLastCall().andAnswer(() -> {
+                rowsAdded.incrementAndGet();
+                return null;
+            }).anyTimes();
+            EasyMock.expect(ps.executeBatch()).andAnswer(() -> {
+                batchesExecuted.incrementAndGet();
+                return new int[0];
+            }).anyTimes();
+            Connection con = EasyMock.createNiceMock(Connection.class);
+            EasyMock.expect(con.prepareStatement(INSERT)).andReturn(ps);
+            EasyMock.replay(ps, con);
+            connections.add(con);
+        }
+        DataSource ds = createDataSource(3, connections);
+        
+        try (CachedResultsLoader loader = new CachedResultsLoader(ds, executor, INSERT, null, 3, 10)) {
+            for (int i = 0; i < 95; i++) {
+                loader.add("owner", "queryId", "logic", fieldMap, createRow(i), 100);
+            }
+            loader.finish();
+            
+            Assert.assertEquals(95, loader.getRowsWritten());
+            Assert.assertEquals(10, loader.getBatchesWritten());
+            Assert.assertEquals(0, loader.getRowsFailed());
+        }
+        Assert.assertEquals(95, rowsAdded.get());
+        Assert.assertEquals(10, batchesExecuted.get());
+        // the fields are assigned columns in the order they were seen
+        Assert.assertEquals(Integer.valueOf(fixedColumns + 1), fieldMap.get("FIELD0"));
+        Assert.assertEquals(Integer.valueOf(fixedColumns + 2), fieldMap.get("FIELD1"));
+        Assert.assertEquals(Integer.valueOf(fixedColumns + 3), fieldMap.get("FIELD2"));
+        EasyMock.verify(ds);
+    }
+    
+    @Test
+    public void testBulkLoad() throws Exception {
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        Statement s = EasyMock.createNiceMock(Statement.class);
+        EasyMock.expect(s.executeUpdate(EasyMock.anyString())).andAnswer(() -> {
+            String sql = (String) EasyMock.getCurrentArguments()[0];
+            String file = sql.substring(sql.indexOf('\'') + 1, sql.lastIndexOf('\''));
+            List<String> loaded = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+            lines.addAll(loaded);
+            return loaded.size();
+        }).anyTimes();
+        Connection con = EasyMock.createNiceMock(Connection.class);
+        EasyMock.expect(con.createStatement()).andReturn(s).anyTimes();
+        EasyMock.replay(s, con);
+        DataSource ds = createDataSource(1, new ArrayList<>(Collections.singletonList(con)));
+        
+        try (CachedResultsLoader loader = new CachedResultsLoader(ds, executor, INSERT, LOAD_DATA, 1, 10)) {
+            for (int i = 0; i < 25; i++) {
+                loader.add("owner", "queryId", "logic", fieldMap, createRow(i), 100);
+            }
+            loader.finish();
+            
+            Assert.assertEquals(25, loader.getRowsWritten());
+            Assert.assertEquals(3, loader.getBatchesWritten());
+        }
+        Assert.assertEquals(25, lines.size());
+        
+        String[] values = lines.get(0).split(",", -1);
+        Assert.assertEquals(fixedColumns + 900, values.length);
+        Assert.assertEquals("\"owner\"", values[0]);
+        // quotes are escaped, and unset columns are null
+        Assert.assertEquals("\"value \\\"0\\\"\"", values[fixedColumns]);
+        Assert.assertEquals("\\N", values[fixedColumns + 1]);
+    }
+    
+    @Test
+    public void testReducedFieldSizeCarriedOver() throws Exception {
+        String longValue = String.join("", Collections.nCopies(50, "x"));
+        AtomicInteger bindFailures = new AtomicInteger();
+        PreparedStatement ps = EasyMock.createNiceMock(PreparedStatement.class);
+        ps.setString(EasyMock.anyInt(), EasyMock.anyString());
+        EasyMock.expectLastCall().andAnswer(() -> {
+            if (((String) EasyMock.getCurrentArguments()[1]).length() > 40) {
+                bindFailures.incrementAndGet();
+                throw new SQLException("Data too long");
+            }
+            return null;
+        }).anyTimes();
+        EasyMock.expect(ps.executeBatch()).andReturn(new int[0]).anyTimes();
+        Connection con = EasyMock.createNiceMock(Connection.class);
+        EasyMock.expect(con.prepareStatement(INSERT)).andReturn(ps);
+        EasyMock.replay(ps, con);
+        DataSource ds = createDataSource(1, new ArrayList<>(Collections.singletonList(con)));
+        
+        try (CachedResultsLoader loader = new CachedResultsLoader(ds, executor, INSERT, null, 1, 10)) {
+            for (int i = 0; i < 5; i++) {
+                CacheableQueryRowImpl row = (CacheableQueryRowImpl) createRow(i);
+                row.setColumnValues(Collections.singletonMap("FIELD", Collections.singleton(longValue)));
+                loader.add("owner", "queryId", "logic", fieldMap, row, 100);
+            }
+            loader.finish();
+            Assert.assertEquals(5, loader.getRowsWritten());
+        }
+        // the first row fails at 100 and 50 characters, and the rows after it start at the 25 characters that worked
+        Assert.assertEquals(2, bindFailures.get());
+    }
+    
+    @Test(expected = SQLException.class)
+    public void testWriterNeverStarted() throws Exception {
+        ExecutorService saturated = new SaturatedExecutor(0);
+        try (CachedResultsLoader loader = new CachedResultsLoader(EasyMock.createMock(DataSource.class), saturated, INSERT, null, 1, 10)) {
+            loader.setWriterStartTimeout(100);
+            for (int i = 0; i < 100; i++) {
+                loader.add("owner", "queryId", "logic", fieldMap, createRow(i), 100);
+            }
+        } finally {
+            saturated.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testFinishWithoutAllWriters() throws Exception {
+        AtomicInteger rowsAdded = new AtomicInteger();
+        PreparedStatement ps = EasyMock.createNiceMock(PreparedStatement.class);
+        ps.addBatch();
+        EasyMock.expectLastCall().andAnswer(() -> {
+            rowsAdded.incrementAndGet();
+            return null;
+        }).anyTimes();
+        EasyMock.expect(ps.executeBatch()).andReturn(new int[0]).anyTimes();
+        Connection con = EasyMock.createNiceMock(Connection.class);
+        EasyMock.expect(con.prepareStatement(INSERT)).andReturn(ps);
+        EasyMock.replay(ps, con);
+        DataSource ds = createDataSource(1, new ArrayList<>(Collections.singletonList(con)));
+        
+        // only one of the two writers is started
+        ExecutorService saturated = new SaturatedExecutor(1);
+        try (CachedResultsLoader loader = new CachedResultsLoader(ds, saturated, INSERT, null, 2, 10)) {
+            for (int i = 0; i < 95; i++) {
+                loader.add("owner", "queryId", "logic", fieldMap, createRow(i), 100);
+            }
+            loader.finish();
+            Assert.assertEquals(95, loader.getRowsWritten());
+        } finally {
+            saturated.shutdownNow();
+        }
+        Assert.assertEquals(95, rowsAdded.get());
+        EasyMock.verify(ds);
+    }
+    
+    @Test(expected = QueryException.class)
+    public void testMissingTable() throws Exception {
+        PreparedStatement ps = EasyMock.createNiceMock(PreparedStatement.class);
+        EasyMock.expect(ps.executeBatch()).andThrow(new SQLException("Table 't1' doesn't exist")).anyTimes();
+        Connection con = EasyMock.createNiceMock(Connection.class);
+        EasyMock.expect(con.prepareStatement(INSERT)).andReturn(ps);
+        EasyMock.replay(ps, con);
+        DataSource ds = createDataSource(1, new ArrayList<>(Collections.singletonList(con)));
+        
+        try (CachedResultsLoader loader = new CachedResultsLoader(ds, executor, INSERT, null, 1, 10)) {
+            for (int i = 0; i < 10; i++) {
+                loader.add("owner", "queryId", "logic", fieldMap, createRow(i), 100);
+            }
+            loader.finish();
+        }
+    }
+    
+    /**
+     * An executor which only starts the first of the tasks submitted to it, as a shared executor which is busy with other tasks may
+     */
+    private static class SaturatedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate = Executors.newCachedThreadPool();
+        private final AtomicInteger startable;
+        
+        private SaturatedExecutor(int startable) {
+            this.startable = new AtomicInteger(startable);
+        }
+        
+        @Override
+        public void execute(Runnable command) {
+            if (startable.getAndDecrement() > 0) {
+                delegate.execute(command);
+            }
+        }
+        
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+        
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+        
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+        
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+        
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -578,6 +578,10 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
     protected String plan = null;
     @XmlElement
     protected long loginTime = -1;
+    @XmlElement
+    protected long prefetchHits = 0;
+    @XmlElement
+    protected long prefetchMisses = 0;
     @XmlElementWrapper(name = "predictions")
     @XmlElement(name = "prediction")
     protected Set<Prediction> predictions = new HashSet<Prediction>();
@@ -770,6 +774,36 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
         this.loginTime = loginTime;
     }
     
+    public long getPrefetchHits() {
+        return prefetchHits;
+    }
+    
+    public void setPrefetchHits(long prefetchHits) {
+        this.prefetchHits = prefetchHits;
+    }
+    
+    public long getPrefetchMisses() {
+        return prefetchMisses;
+    }
+    
+    public void setPrefetchMisses(long prefetchMisses) {
+        this.prefetchMisses = prefetchMisses;
+    }
+    
+    /**
+     * Records whether a prefetched page had been completely filled by the time the client asked for it.
+     *
+     * @param hit
+     *            true if the prefetched page was ready, false if the call had to wait on it
+     */
+    public void addPrefetch(boolean hit) {
+        if (hit) {
+            this.prefetchHits++;
+        } else {
+            this.prefetchMisses++;
+        }
+    }
+    
     public void addPageMetric(PageMetric pageMetric) {
         this.numPages++;
         this.numResults += pageMetric.getPagesize();
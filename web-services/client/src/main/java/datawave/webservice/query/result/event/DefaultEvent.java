@@ -211,15 +211,12 @@ public class DefaultEvent extends EventBase<DefaultEvent,DefaultField> implement
     }
     
     /**
-     * Get the approximate size of this event in bytes. Used by the ObjectSizeOf mechanism in the webservice. Throws an exception if the local size was not set
-     * to allow the ObjectSizeOf mechanism to do its thang.
+     * Get the approximate size of this event in bytes. Used by the ObjectSizeOf mechanism in the webservice. Returns the local size if set, otherwise an
+     * estimate computed from the fields.
      */
     @Override
     public long sizeInBytes() {
-        if (size <= 0) {
-            throw new UnsupportedOperationException();
-        }
-        return this.size;
+        return estimatedSizeInBytes();
     }
     
 }
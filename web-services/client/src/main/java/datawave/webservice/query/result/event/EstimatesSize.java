@@ -0,0 +1,103 @@
+package datawave.webservice.query.result.event;
+
+import java.util.Map;
+
+import datawave.data.type.Type;
+import datawave.webservice.query.data.ObjectSizeOf;
+
+/**
+ * Implemented by result objects that can cheaply estimate their own size in bytes without walking their object graph. This is used for page byte accounting
+ * in place of the reflective {@link ObjectSizeOf} mechanism, which remains the fallback for anything that does not implement this interface.
+ */
+public interface EstimatesSize {
+    
+    /**
+     * @return the approximate size of this object in bytes
+     */
+    long estimatedSizeInBytes();
+    
+    /**
+     * Helpers for estimating sizes using the same rules of thumb as the ObjectSizeOf mechanism: 8 bytes of object overhead, 4 byte references, 12 bytes of
+     * array overhead, all rounded up to a multiple of 8.
+     */
+    final class Estimator {
+        
+        private Estimator() {}
+        
+        /**
+         * Get the approximate size of an object, using its own estimate if it has one and falling back to {@link ObjectSizeOf} otherwise.
+         *
+         * @param o
+         *            the object
+         * @return the approximate size in bytes
+         */
+        public static long estimateSize(Object o) {
+            if (o instanceof EstimatesSize) {
+                return ((EstimatesSize) o).estimatedSizeInBytes();
+            }
+            return ObjectSizeOf.Sizer.getObjectSize(o);
+        }
+        
+        /**
+         * @param value
+         *            a string, may be null
+         * @return the approximate size of the string in bytes
+         */
+        public static long sizeOf(String value) {
+            if (value == null) {
+                return 0;
+            }
+            // 16 for int, array ref, and object overhead
+            // 12 for array overhead
+            return 16 + roundUp(12 + (value.length() * 2));
+        }
+        
+        /**
+         * @param map
+         *            a map of strings, may be null
+         * @return the approximate size of the map in bytes
+         */
+        public static long sizeOf(Map<String,String> map) {
+            if (map == null) {
+                return 0;
+            }
+            // 48 for the map and its table, 32 for each entry
+            long size = 48;
+            for (Map.Entry<String,String> entry : map.entrySet()) {
+                size += 32 + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        
+        /**
+         * Estimate the size of a field value without reflection where the value is one of the common result types.
+         *
+         * @param value
+         *            the value, may be null
+         * @return the approximate size of the value in bytes
+         */
+        public static long sizeOfValue(Object value) {
+            if (value == null) {
+                return 0;
+            } else if (value instanceof String) {
+                return sizeOf((String) value);
+            } else if (value instanceof Type<?>) {
+                // the normalized value plus a delegate of roughly the same size
+                return 16 + (2 * sizeOf(((Type<?>) value).getNormalizedValue()));
+            } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+                return 16;
+            } else if (value instanceof byte[]) {
+                return roundUp(12 + ((byte[]) value).length);
+            }
+            return estimateSize(value);
+        }
+        
+        public static long roundUp(long size) {
+            long extra = size % 8;
+            if (extra > 0) {
+                size = size + 8 - extra;
+            }
+            return size;
+        }
+    }
+}
@@ -14,10 +14,15 @@ import com.google.common.collect.Maps;
 
 @XmlAccessorType(XmlAccessType.NONE)
 @XmlSeeAlso(DefaultEvent.class)
-public abstract class EventBase<T,F extends FieldBase<F>> implements HasMarkings, Message<T> {
+public abstract class EventBase<T,F extends FieldBase<F>> implements HasMarkings, Message<T>, EstimatesSize {
     
     protected transient Map<String,String> markings;
     
+    // running estimate of the size of the fields, updated as fields are appended to the field list
+    private transient List<F> estimatedFields = null;
+    private transient int estimatedFieldCount = 0;
+    private transient long estimatedFieldsSize = 0;
+    
     public abstract Metadata getMetadata();
     
     public abstract void setMetadata(Metadata metadata);
@@ -34,8 +39,7 @@ public abstract class EventBase<T,F extends FieldBase<F>> implements HasMarkings
     public abstract long getSizeInBytes();
     
     /**
-     * Get the approximate size of this event in bytes. Used by the ObjectSizeOf mechanism in the webservice. Throws an exception if the local size was not set
-     * to allow the ObjectSizeOf mechanism to do its thang.
+     * Get the approximate size of this event in bytes. Used by the ObjectSizeOf mechanism in the webservice.
      */
     public abstract long sizeInBytes();
     
@@ -58,4 +62,46 @@ public abstract class EventBase<T,F extends FieldBase<F>> implements HasMarkings
         this.markings = markings;
     }
     
+    /**
+     * Get the approximate size of this event in bytes. If a size was set via {@link #setSizeInBytes(long)} then that is returned, otherwise the size is
+     * estimated from the metadata, markings and fields. Only fields appended since the last call are estimated.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        long size = getSizeInBytes();
+        if (size > 0) {
+            return size;
+        }
+        
+        List<F> fields = getFields();
+        if (fields != estimatedFields || (fields != null && fields.size() < estimatedFieldCount)) {
+            estimatedFields = fields;
+            estimatedFieldCount = 0;
+            estimatedFieldsSize = 0;
+        }
+        if (fields != null) {
+            for (int i = estimatedFieldCount; i < fields.size(); i++) {
+                F field = fields.get(i);
+                if (field != null) {
+                    estimatedFieldsSize += field.estimatedSizeInBytes();
+                }
+            }
+            estimatedFieldCount = fields.size();
+        }
+        
+        // 8 for the object overhead, 24 for references and the size
+        size = 32 + EstimatesSize.Estimator.sizeOf(getMarkings());
+        Metadata metadata = getMetadata();
+        if (metadata != null) {
+            // 24 for the object overhead and 4 references
+            size += 24 + EstimatesSize.Estimator.sizeOf(metadata.getDataType()) + EstimatesSize.Estimator.sizeOf(metadata.getInternalId())
+                            + EstimatesSize.Estimator.sizeOf(metadata.getRow()) + EstimatesSize.Estimator.sizeOf(metadata.getTable());
+        }
+        if (fields != null) {
+            // 16 for the list overhead and 4 for each reference
+            size += 16 + EstimatesSize.Estimator.roundUp(12 + (4L * fields.size())) + estimatedFieldsSize;
+        }
+        return size;
+    }
+    
 }
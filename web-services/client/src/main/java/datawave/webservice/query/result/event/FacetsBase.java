@@ -16,7 +16,7 @@ import java.util.Map;
  */
 @XmlAccessorType(XmlAccessType.NONE)
 @XmlSeeAlso(DefaultFacets.class)
-public abstract class FacetsBase implements HasMarkings {
+public abstract class FacetsBase implements HasMarkings, EstimatesSize {
     
     protected Map<String,String> markings;
     
@@ -46,4 +46,31 @@ public abstract class FacetsBase implements HasMarkings {
     public abstract void setSizeInBytes(long sizeInBytes);
     
     public abstract long getSizeInBytes();
+    
+    /**
+     * Get the approximate size of these facets in bytes. If a size was set via {@link #setSizeInBytes(long)} then that is returned, otherwise the size is
+     * estimated from the markings and field cardinalities.
+     */
+    @Override
+    public long estimatedSizeInBytes() {
+        long size = getSizeInBytes();
+        if (size > 0) {
+            return size;
+        }
+        
+        // 8 for the object overhead, 16 for references and the size
+        size = 24 + EstimatesSize.Estimator.sizeOf(markings);
+        if (fields != null) {
+            // 16 for the list overhead and 4 for each reference
+            size += 16 + EstimatesSize.Estimator.roundUp(12 + (4L * fields.size()));
+            for (FieldCardinalityBase field : fields) {
+                if (field != null) {
+                    // 8 for the object overhead, 16 for references, 16 for the cardinality
+                    size += 40 + EstimatesSize.Estimator.sizeOf(field.getColumnVisibility()) + EstimatesSize.Estimator.sizeOf(field.getLower())
+                                    + EstimatesSize.Estimator.sizeOf(field.getUpper());
+                }
+            }
+        }
+        return size;
+    }
 }
@@ -15,7 +15,7 @@ import org.apache.accumulo.core.security.ColumnVisibility;
 
 @XmlAccessorType(XmlAccessType.NONE)
 @XmlSeeAlso(DefaultField.class)
-public abstract class FieldBase<T> implements HasMarkings, Message<T> {
+public abstract class FieldBase<T> implements HasMarkings, Message<T>, EstimatesSize {
     
     protected transient Map<String,String> markings;
     
@@ -44,4 +44,20 @@ public abstract class FieldBase<T> implements HasMarkings, Message<T> {
         setColumnVisibility(cvString);
     }
     
+    @Override
+    public long estimatedSizeInBytes() {
+        // 8 for the object overhead, 24 for 6 references, 24 for the typed value wrapper
+        long size = 56;
+        size += EstimatesSize.Estimator.sizeOf(getName());
+        size += EstimatesSize.Estimator.sizeOf(getColumnVisibility());
+        size += EstimatesSize.Estimator.sizeOf(getMarkings());
+        if (getTimestamp() != null) {
+            size += 16;
+        }
+        if (getTypedValue() != null) {
+            size += EstimatesSize.Estimator.sizeOfValue(getValueOfTypedValue());
+        }
+        return size;
+    }
+    
 }
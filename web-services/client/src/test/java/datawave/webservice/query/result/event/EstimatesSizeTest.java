@@ -0,0 +1,70 @@
+package datawave.webservice.query.result.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import datawave.webservice.query.data.ObjectSizeOf;
+
+import org.junit.Test;
+
+/**
+ * Test the size estimates used for page byte accounting
+ */
+public class EstimatesSizeTest {
+    
+    @Test
+    public void testStrings() {
+        assertEquals(0, EstimatesSize.Estimator.sizeOf((String) null));
+        assertEquals(32, EstimatesSize.Estimator.sizeOf(""));
+        assertEquals(40, EstimatesSize.Estimator.sizeOf("abcd"));
+        assertEquals(EstimatesSize.Estimator.sizeOf("abcd"), EstimatesSize.Estimator.sizeOfValue("abcd"));
+    }
+    
+    @Test
+    public void testFallback() {
+        Long value = 1234L;
+        assertEquals(ObjectSizeOf.Sizer.getObjectSize(value), EstimatesSize.Estimator.estimateSize(value));
+        assertEquals(16, EstimatesSize.Estimator.sizeOfValue(value));
+    }
+    
+    @Test
+    public void testIncrementalEventEstimate() {
+        DefaultEvent event = new DefaultEvent();
+        event.setMarkings(Collections.singletonMap("columnVisibility", "A&B"));
+        List<DefaultField> fields = new ArrayList<>();
+        event.setFields(fields);
+        long empty = event.estimatedSizeInBytes();
+        
+        fields.add(new DefaultField("FIELD1", "A&B", 1L, "value1"));
+        long one = event.estimatedSizeInBytes();
+        assertTrue(one > empty);
+        
+        fields.add(new DefaultField("FIELD2", "A&B", 2L, "a longer value for the second field"));
+        long two = event.estimatedSizeInBytes();
+        assertTrue(two > one);
+        
+        // a fresh event with the same content must produce the same estimate as the incrementally computed one
+        DefaultEvent copy = new DefaultEvent();
+        copy.setMarkings(Collections.singletonMap("columnVisibility", "A&B"));
+        copy.setFields(new ArrayList<>(fields));
+        assertEquals(two, copy.estimatedSizeInBytes());
+        
+        // replacing the field list must reset the estimate
+        event.setFields(new ArrayList<>(fields.subList(0, 1)));
+        assertEquals(one, event.estimatedSizeInBytes());
+        assertEquals(one, event.sizeInBytes());
+    }
+    
+    @Test
+    public void testExplicitSize() {
+        DefaultEvent event = new DefaultEvent();
+        event.setFields(Collections.singletonList(new DefaultField("FIELD1", "A", 1L, "value1")));
+        event.setSizeInBytes(12345);
+        assertEquals(12345, event.estimatedSizeInBytes());
+        assertEquals(12345, event.sizeInBytes());
+    }
+}
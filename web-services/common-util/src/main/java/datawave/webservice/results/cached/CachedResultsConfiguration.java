@@ -45,4 +45,14 @@ public class CachedResultsConfiguration {
     public int getRowsPerBatch() {
         return Integer.parseInt(getParameters().get("ROWS_PER_BATCH"));
     }
+    
+    public int getWriterThreads() {
+        String writerThreads = getParameters().get("WRITER_THREADS");
+        return (writerThreads == null || writerThreads.trim().isEmpty()) ? 1 : Integer.parseInt(writerThreads.trim());
+    }
+    
+    public String getLoadData() {
+        String loadData = getParameters().get("LOAD_DATA");
+        return (loadData == null || loadData.trim().isEmpty()) ? null : loadData;
+    }
 }
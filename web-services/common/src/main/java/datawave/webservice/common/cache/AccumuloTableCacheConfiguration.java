@@ -24,6 +24,14 @@ public class AccumuloTableCacheConfiguration {
     @Inject
     @ConfigProperty(name = "dw.cache.reloadInterval", defaultValue = "86400000")
     private long reloadInterval;
+    // the tables whose timestamps are write times, and so may be reloaded incrementally. Metadata tables, whose entries are dated by event, do not qualify
+    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
+    @Inject
+    @ConfigProperty(name = "dw.cache.incrementalReloadTables", defaultValue = " ")
+    private List<String> incrementalReloadTables;
+    @Inject
+    @ConfigProperty(name = "dw.cache.fullReloadInterval", defaultValue = "86400000")
+    private long fullReloadInterval;
     
     private Map<String,TableCache> caches = new HashMap<>();
     
@@ -34,6 +42,8 @@ public class AccumuloTableCacheConfiguration {
             cache.setTableName(tableName);
             cache.setConnectionPoolName(poolName);
             cache.setReloadInterval(reloadInterval);
+            cache.setIncrementalReload(incrementalReloadTables.contains(tableName));
+            cache.setFullReloadInterval(fullReloadInterval);
             caches.put(tableName, cache);
         }
     }
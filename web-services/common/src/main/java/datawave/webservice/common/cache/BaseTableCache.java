@@ -1,11 +1,17 @@
 package datawave.webservice.common.cache;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
@@ -20,7 +26,9 @@ import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MutationsRejectedException;
 import org.apache.accumulo.core.client.NamespaceExistsException;
+import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import datawave.accumulo.inmemory.InMemoryInstance;
 import org.apache.accumulo.core.client.admin.NamespaceOperations;
@@ -28,9 +36,12 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.FirstEntryInRowIterator;
 import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 
 import com.google.common.collect.Lists;
@@ -39,6 +50,9 @@ public class BaseTableCache implements Serializable, TableCache {
     
     private static final long serialVersionUID = 1L;
     
+    // how far ahead of this server's clock a write time may be before the timestamps of a table are taken to be something other than write times
+    private static final long MAX_CLOCK_SKEW = TimeUnit.MINUTES.toMillis(5);
+    
     private final Logger log = Logger.getLogger(this.getClass());
     
     /** should be set by configuration **/
@@ -47,6 +61,8 @@ public class BaseTableCache implements Serializable, TableCache {
     private String auths = null;
     private long reloadInterval = 0;
     private long maxRows = Long.MAX_VALUE;
+    private boolean incrementalReload = false;
+    private long fullReloadInterval = Long.MAX_VALUE;
     
     /** set programatically **/
     private Date lastRefresh = new Date(0);
@@ -54,6 +70,12 @@ public class BaseTableCache implements Serializable, TableCache {
     private InMemoryInstance instance = null;
     private SharedCacheCoordinator watcher = null;
     private Future<Boolean> reference = null;
+    private long lastFullReload = 0;
+    // the greatest timestamp in the cached copy of the table, or -1 if the next reload must copy the entire table
+    private long highWaterMark = -1;
+    private long nextHighWaterMark = -1;
+    // set when a reload finds an entry which was written with a timestamp other than its write time
+    private boolean foundInvalidTimestamp = false;
     
     private ReentrantLock lock = new ReentrantLock();
     
@@ -157,12 +179,42 @@ public class BaseTableCache implements Serializable, TableCache {
         this.maxRows = maxRows;
     }
     
+    public boolean isIncrementalReload() {
+        return incrementalReload;
+    }
+    
+    /**
+     * Incremental reloads find the changed rows by their timestamps, so they may only be enabled for tables whose timestamps are the times the entries were
+     * written. That rules out tables whose loaders set their own timestamps, such as the metadata table, whose entries carry the date of the event they
+     * describe and keep it through bulk imports. A backdated entry would not be seen until the next full reload, and a future dated one would hide everything
+     * written after it. A reload which finds an entry dated ahead of this server's clock, or an older entry in a changed row that was not in the
+     * cache, turns incremental reloads off for the table, and the following reloads copy the entire table.
+     *
+     * @param incrementalReload
+     *            whether to reload only the rows with entries written since the last reload, rather than the entire table
+     */
+    public void setIncrementalReload(boolean incrementalReload) {
+        this.incrementalReload = incrementalReload;
+    }
+    
+    public long getFullReloadInterval() {
+        return fullReloadInterval;
+    }
+    
+    /**
+     * @param fullReloadInterval
+     *            the interval in ms after which the entire table is reloaded even when reloading incrementally, which picks up rows deleted from the table and
+     *            entries written with older timestamps
+     */
+    public void setFullReloadInterval(long fullReloadInterval) {
+        this.fullReloadInterval = fullReloadInterval;
+    }
+    
     @Override
     public Boolean call() throws Exception {
         if (!lock.tryLock(0, TimeUnit.SECONDS))
             return false;
         // Read from the table in the real Accumulo
-        BatchScanner scanner = null;
         BatchWriter writer = null;
         Connector accumuloConn = null;
         
@@ -179,11 +231,22 @@ public class BaseTableCache implements Serializable, TableCache {
             } else {
                 authorizations = new Authorizations(auths);
             }
-            scanner = accumuloConn.createBatchScanner(tableName, authorizations, 10);
             
             Connector instanceConnector = instance.getConnector(AccumuloTableCache.MOCK_USERNAME, AccumuloTableCache.MOCK_PASSWORD);
             instanceConnector.securityOperations().changeUserAuthorizations(AccumuloTableCache.MOCK_USERNAME, authorizations);
             
+            long now = System.currentTimeMillis();
+            SortedSet<Text> changedRows = null;
+            if (incrementalReload && highWaterMark >= 0 && (now - lastFullReload) <= fullReloadInterval
+                            && instanceConnector.tableOperations().exists(tableName)) {
+                changedRows = findChangedRows(accumuloConn, authorizations);
+                if (changedRows.isEmpty()) {
+                    this.lastRefresh = new Date();
+                    log.info("No changes to cache for table: " + tableName);
+                    return true;
+                }
+            }
+            
             createNamespaceIfNecessary(instanceConnector.namespaceOperations(), tempTableName);
             
             if (instanceConnector.tableOperations().exists(tempTableName)) {
@@ -194,23 +257,12 @@ public class BaseTableCache implements Serializable, TableCache {
             
             writer = instanceConnector.createBatchWriter(tempTableName, 10L * (1024L * 1024L), 100L, 1);
             
-            setupScanner(scanner);
-            
-            Iterator<Entry<Key,Value>> iter = scanner.iterator();
-            long count = 0;
-            while (iter.hasNext()) {
-                
-                if (count > maxRows)
-                    break;
-                Entry<Key,Value> value = iter.next();
-                
-                Key valueKey = value.getKey();
-                
-                Mutation m = new Mutation(value.getKey().getRow());
-                m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
-                                value.getValue());
-                writer.addMutation(m);
-                count++;
+            long count;
+            if (changedRows == null) {
+                count = copyTable(accumuloConn, authorizations, writer);
+            } else {
+                count = copyChangedRows(accumuloConn, instanceConnector, authorizations, changedRows, writer);
+                log.info("Reloaded " + changedRows.size() + " changed rows for table: " + tableName);
             }
             this.lastRefresh = new Date();
             try {
@@ -219,6 +271,16 @@ public class BaseTableCache implements Serializable, TableCache {
                 // the table will not exist the first time this is run
             }
             instanceConnector.tableOperations().rename(tempTableName, tableName);
+            if (incrementalReload && (foundInvalidTimestamp || nextHighWaterMark > System.currentTimeMillis() + MAX_CLOCK_SKEW)) {
+                log.warn("Found an entry which is backdated or dated in the future in table: " + tableName
+                                + ", its timestamps are not write times so it will no longer be reloaded incrementally");
+                incrementalReload = false;
+                nextHighWaterMark = -1;
+            }
+            highWaterMark = nextHighWaterMark;
+            if (changedRows == null) {
+                lastFullReload = now;
+            }
             log.info("Cached " + count + " k,v for table: " + tableName);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -230,8 +292,6 @@ public class BaseTableCache implements Serializable, TableCache {
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
-            if (null != scanner)
-                scanner.close();
             try {
                 if (null != writer)
                     writer.close();
@@ -243,6 +303,126 @@ public class BaseTableCache implements Serializable, TableCache {
         return true;
     }
     
+    /**
+     * Copy the entire table from Accumulo, recording the greatest timestamp seen for the next incremental reload
+     */
+    private long copyTable(Connector accumuloConn, Authorizations authorizations, BatchWriter writer) throws Exception {
+        BatchScanner scanner = accumuloConn.createBatchScanner(tableName, authorizations, 10);
+        try {
+            setupScanner(scanner);
+            
+            nextHighWaterMark = -1;
+            long maxTimestamp = -1;
+            Iterator<Entry<Key,Value>> iter = scanner.iterator();
+            long count = 0;
+            while (iter.hasNext()) {
+                
+                if (count > maxRows)
+                    return count;
+                Entry<Key,Value> value = iter.next();
+                
+                write(writer, value);
+                maxTimestamp = Math.max(maxTimestamp, value.getKey().getTimestamp());
+                count++;
+            }
+            // only a complete copy of the table may be updated incrementally
+            nextHighWaterMark = maxTimestamp;
+            return count;
+        } finally {
+            scanner.close();
+        }
+    }
+    
+    /**
+     * Find the rows with entries written since the last reload. Accumulo has no index by timestamp, so the table is still read on the tablet servers, but only
+     * the first changed entry of each row is returned. This relies on the timestamps being write times, see {@link #setIncrementalReload(boolean)}.
+     */
+    private SortedSet<Text> findChangedRows(Connector accumuloConn, Authorizations authorizations) throws Exception {
+        SortedSet<Text> changedRows = new TreeSet<>();
+        BatchScanner scanner = accumuloConn.createBatchScanner(tableName, authorizations, 10);
+        try {
+            setupScanner(scanner);
+            
+            // entries written at the high water mark itself may have been missed by the last reload, so they are read again. Both iterators are applied
+            // after skipFColumn, so that a row whose first changed entry is in the skipped column is still found by its other changed entries
+            IteratorSetting changedSince = new IteratorSetting(101, "changedSince", TimestampFilter.class);
+            TimestampFilter.setStart(changedSince, highWaterMark, true);
+            scanner.addScanIterator(changedSince);
+            scanner.addScanIterator(new IteratorSetting(102, "firstChangedEntry", FirstEntryInRowIterator.class));
+            
+            for (Entry<Key,Value> entry : scanner) {
+                changedRows.add(entry.getKey().getRow());
+            }
+        } finally {
+            scanner.close();
+        }
+        return changedRows;
+    }
+    
+    /**
+     * Copy the unchanged rows of the current snapshot, along with the current contents of the changed rows from Accumulo. Entries removed from the changed rows
+     * are dropped, while rows removed entirely remain cached until the next full reload.
+     */
+    private long copyChangedRows(Connector accumuloConn, Connector instanceConnector, Authorizations authorizations, SortedSet<Text> changedRows,
+                    BatchWriter writer) throws Exception {
+        long count = 0;
+        long maxTimestamp = highWaterMark;
+        nextHighWaterMark = -1;
+        // the cached entries of the changed rows, to tell whether an older entry read for those rows is one that was written since the last reload
+        Set<Key> cachedChangedEntries = new HashSet<>();
+        
+        Scanner cached = instanceConnector.createScanner(tableName, authorizations);
+        try {
+            for (Entry<Key,Value> entry : cached) {
+                if (count > maxRows)
+                    return count;
+                if (!changedRows.contains(entry.getKey().getRow())) {
+                    write(writer, entry);
+                    count++;
+                } else {
+                    cachedChangedEntries.add(entry.getKey());
+                }
+            }
+        } finally {
+            cached.close();
+        }
+        
+        BatchScanner scanner = accumuloConn.createBatchScanner(tableName, authorizations, 10);
+        try {
+            setupScanner(scanner);
+            List<Range> ranges = new ArrayList<>(changedRows.size());
+            for (Text row : changedRows) {
+                ranges.add(new Range(row));
+            }
+            scanner.setRanges(ranges);
+            
+            for (Entry<Key,Value> entry : scanner) {
+                if (count > maxRows)
+                    return count;
+                write(writer, entry);
+                maxTimestamp = Math.max(maxTimestamp, entry.getKey().getTimestamp());
+                if (entry.getKey().getTimestamp() < highWaterMark && !cachedChangedEntries.contains(entry.getKey())) {
+                    // an entry written since the last reload with an older timestamp, which could just as well have been written to an unchanged row
+                    foundInvalidTimestamp = true;
+                }
+                count++;
+            }
+        } finally {
+            scanner.close();
+        }
+        nextHighWaterMark = maxTimestamp;
+        return count;
+    }
+    
+    private static void write(BatchWriter writer, Entry<Key,Value> value) throws MutationsRejectedException {
+        Key valueKey = value.getKey();
+        
+        Mutation m = new Mutation(valueKey.getRow());
+        m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
+                        value.getValue());
+        writer.addMutation(m);
+    }
+    
     public void setupScanner(BatchScanner scanner) {
         scanner.setRanges(Lists.newArrayList(new Range()));
         Map<String,String> options = new HashMap<>();
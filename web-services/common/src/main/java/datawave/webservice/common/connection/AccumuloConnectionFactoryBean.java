@@ -356,8 +356,8 @@ public class AccumuloConnectionFactoryBean implements AccumuloConnectionFactory
                 MutableInt maxIdle = new MutableInt();
                 MutableInt numIdle = new MutableInt();
                 MutableInt numWaiting = new MutableInt();
-                // getConnectionPoolStats will collect the tracking maps and maxActive, numActive, maxIdle, numIdle while synchronized
-                // to ensure consistency between the GenericObjectPool and the tracking maps
+                // getConnectionPoolStats will collect the tracking maps and maxActive, numActive, maxIdle, numIdle without blocking the pool,
+                // so they may be briefly inconsistent with each other while connections are borrowed and returned
                 List<Map<String,String>> requestingConnectionsMap = p.getConnectionPoolStats(maxActive, numActive, maxIdle, numIdle, numWaiting);
                 
                 ConnectionPool poolInfo = new ConnectionPool();
@@ -3,9 +3,9 @@ package datawave.webservice.common.connection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.accumulo.core.client.Connector;
 import org.apache.commons.lang.mutable.MutableInt;
@@ -15,8 +15,9 @@ import org.apache.log4j.Logger;
 public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     
     private static final Logger log = Logger.getLogger(AccumuloConnectionPool.class);
-    private final Map<Long,Map<String,String>> threadToTrackingMapMap = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Connector,Map<String,String>> connectorToTrackingMapMap = Collections.synchronizedMap(new HashMap<>());
+    // the tracking maps are concurrent so that borrowing and returning connections, and gathering stats, do not contend on a lock
+    private final Map<Long,Map<String,String>> threadToTrackingMapMap = new ConcurrentHashMap<>();
+    private final Map<Connector,Map<String,String>> connectorToTrackingMapMap = new ConcurrentHashMap<>();
     private AccumuloConnectionPoolFactory factory = null;
     
     public AccumuloConnectionPool(AccumuloConnectionPoolFactory factory) {
@@ -39,12 +40,14 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
             trackingMap.put("thread.name", Thread.currentThread().getName());
             threadToTrackingMapMap.put(threadId, trackingMap);
             o = super.borrowObject();
-            log.debug(System.currentTimeMillis() + " thread: " + threadId + " borrowed connector: " + o);
+            if (log.isDebugEnabled()) {
+                log.debug(System.currentTimeMillis() + " thread: " + threadId + " borrowed connector: " + o);
+            }
             if (log.isTraceEnabled()) {
                 log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
             }
-            // hopefully insignificant gap in synchronization where an object could be returned (and numActive incremented) without the
-            // connection being moved from the threadToTrackingMapMap to the connectorToTrackingMapMap
+            // insignificant gap where a borrowed connection (and numActive incremented) is not yet moved from the threadToTrackingMapMap
+            // to the connectorToTrackingMapMap, during which it may be missing from the stats
             
             if (o != null) {
                 trackingMap.put("connection.state.start", Long.valueOf(System.currentTimeMillis()).toString());
@@ -65,13 +68,12 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     
     public void returnObject(Connector connector) {
         if (connector != null) {
-            synchronized (connectorToTrackingMapMap) {
-                connectorToTrackingMapMap.remove(connector);
-                Long threadId = Thread.currentThread().getId();
-                log.debug(System.currentTimeMillis() + " thread: " + threadId + " returned connector: " + connector);
-                if (log.isTraceEnabled()) {
-                    log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
-                }
+            connectorToTrackingMapMap.remove(connector);
+            if (log.isDebugEnabled()) {
+                log.debug(System.currentTimeMillis() + " thread: " + Thread.currentThread().getId() + " returned connector: " + connector);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace(System.currentTimeMillis() + " " + Arrays.toString(Thread.currentThread().getStackTrace()));
             }
             
             super.returnObject(connector);
@@ -81,27 +83,15 @@ public class AccumuloConnectionPool extends GenericObjectPool<Connector> {
     public List<Map<String,String>> getConnectionPoolStats(MutableInt maxTotal, MutableInt numActive, MutableInt maxIdle, MutableInt numIdle,
                     MutableInt numWaiting) {
         
-        ArrayList<Map<String,String>> t = new ArrayList<>();
-        // no changes to underlying values while collecting metrics
-        synchronized (connectorToTrackingMapMap) {
-            // no changes to underlying values while collecting metrics
-            synchronized (threadToTrackingMapMap) {
-                // synchronize this last to prevent race condition for this lock underlying super type
-                synchronized (this) {
-                    if (!threadToTrackingMapMap.isEmpty()) {
-                        t.addAll(Collections.unmodifiableCollection(threadToTrackingMapMap.values()));
-                    }
-                    if (!connectorToTrackingMapMap.isEmpty()) {
-                        t.addAll(Collections.unmodifiableCollection(connectorToTrackingMapMap.values()));
-                    }
-                    maxTotal.setValue(getMaxTotal());
-                    numActive.setValue(getNumActive());
-                    maxIdle.setValue(getMaxIdle());
-                    numIdle.setValue(getNumIdle());
-                    numWaiting.setValue(getNumWaiters());
-                }
-            }
-        }
+        // the stats are a snapshot taken without blocking the threads borrowing and returning connections, so a connection which is changing
+        // hands while they are collected may be missing or counted differently by the tracking maps and the underlying pool
+        ArrayList<Map<String,String>> t = new ArrayList<>(threadToTrackingMapMap.values());
+        t.addAll(connectorToTrackingMapMap.values());
+        maxTotal.setValue(getMaxTotal());
+        numActive.setValue(getNumActive());
+        maxIdle.setValue(getMaxIdle());
+        numIdle.setValue(getNumIdle());
+        numWaiting.setValue(getNumWaiters());
         return Collections.unmodifiableList(t);
     }
     
@@ -0,0 +1,201 @@
+package datawave.webservice.common.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+
+public class BaseTableCacheTest {
+    
+    private static final String TABLE = "cacheTable";
+    private static final String POOL = "WAREHOUSE";
+    private static final String MARKER = "marker";
+    
+    private Connector source;
+    private Connector cached;
+    private BaseTableCache cache;
+    
+    @Before
+    public void setup() throws Exception {
+        source = new InMemoryInstance("source-" + System.nanoTime()).getConnector("", new PasswordToken(new byte[0]));
+        source.tableOperations().create(TABLE);
+        write("row1", "cf", "cq", 10);
+        write("row2", "cf", "cq", 10);
+        write("row2", "f", "cq", 10);
+        
+        InMemoryInstance instance = new InMemoryInstance("cache-" + System.nanoTime());
+        cached = instance.getConnector(AccumuloTableCache.MOCK_USERNAME, AccumuloTableCache.MOCK_PASSWORD);
+        
+        AccumuloConnectionFactory connectionFactory = EasyMock.createMock(AccumuloConnectionFactory.class);
+        EasyMock.expect(connectionFactory.getTrackingMap(EasyMock.anyObject())).andReturn(new HashMap<>()).anyTimes();
+        EasyMock.expect(connectionFactory.getConnection(EasyMock.eq(POOL), EasyMock.eq(AccumuloConnectionFactory.Priority.ADMIN), EasyMock.anyObject()))
+                        .andReturn(source).anyTimes();
+        connectionFactory.returnConnection(source);
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(connectionFactory);
+        
+        cache = new BaseTableCache();
+        cache.setTableName(TABLE);
+        cache.setConnectionPoolName(POOL);
+        cache.setConnectionFactory(connectionFactory);
+        cache.setInstance(instance);
+        cache.setIncrementalReload(true);
+        cache.setFullReloadInterval(Long.MAX_VALUE);
+        
+        assertTrue(cache.call());
+        assertEquals(2, cachedEntries().size());
+        addMarker();
+    }
+    
+    @Test
+    public void testNoChange() throws Exception {
+        assertTrue(cache.call());
+        
+        // nothing changed, so the cached copy was not replaced
+        Map<String,String> entries = cachedEntries();
+        assertEquals(3, entries.size());
+        assertTrue(entries.containsKey(MARKER + " cf:cq"));
+    }
+    
+    @Test
+    public void testChangedRow() throws Exception {
+        write("row1", "cf", "cq2", 20);
+        assertTrue(cache.call());
+        
+        // the changed row is reloaded, and the unchanged rows are copied from the cached copy
+        Map<String,String> entries = cachedEntries();
+        assertEquals(4, entries.size());
+        assertEquals("20", entries.get("row1 cf:cq2"));
+        assertTrue(entries.containsKey("row2 cf:cq"));
+        assertTrue(entries.containsKey(MARKER + " cf:cq"));
+        
+        // the next reload starts from the new entry
+        assertTrue(cache.call());
+        assertEquals(entries, cachedEntries());
+    }
+    
+    @Test
+    public void testSkippedColumnChange() throws Exception {
+        // a change to the skipped column alone does not change the cached copy
+        write("row2", "f", "cq2", 20);
+        assertTrue(cache.call());
+        assertEquals(3, cachedEntries().size());
+        
+        // but a row is still found when its first changed entry is in the skipped column
+        write("row3", "f", "cq", 30);
+        write("row3", "g", "cq", 30);
+        assertTrue(cache.call());
+        Map<String,String> entries = cachedEntries();
+        assertEquals(4, entries.size());
+        assertEquals("30", entries.get("row3 g:cq"));
+        assertTrue(entries.containsKey(MARKER + " cf:cq"));
+    }
+    
+    @Test
+    public void testMaxRowsTruncation() throws Exception {
+        cache.setMaxRows(0);
+        write("row1", "cf", "cq2", 20);
+        assertTrue(cache.call());
+        assertEquals(1, cachedEntries().size());
+        
+        // a truncated copy is not complete, so the next reload copies the entire table
+        cache.setMaxRows(Long.MAX_VALUE);
+        addMarker();
+        assertTrue(cache.call());
+        Map<String,String> entries = cachedEntries();
+        assertEquals(3, entries.size());
+        assertTrue(entries.containsKey("row1 cf:cq2"));
+        assertFalse(entries.containsKey(MARKER + " cf:cq"));
+    }
+    
+    @Test
+    public void testFullReloadInterval() throws Exception {
+        cache.setFullReloadInterval(-1);
+        assertTrue(cache.call());
+        
+        // the entire table was copied again, dropping the entry that is not in the source table
+        Map<String,String> entries = cachedEntries();
+        assertEquals(2, entries.size());
+        assertFalse(entries.containsKey(MARKER + " cf:cq"));
+    }
+    
+    @Test
+    public void testFutureTimestampRefusesIncrementalReload() throws Exception {
+        // an entry dated by something other than its write time, as in the metadata table
+        write("row1", "cf", "cq2", System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+        assertTrue(cache.call());
+        assertFalse(cache.isIncrementalReload());
+        
+        // so the following reloads copy the entire table
+        addMarker();
+        assertTrue(cache.call());
+        Map<String,String> entries = cachedEntries();
+        assertEquals(3, entries.size());
+        assertFalse(entries.containsKey(MARKER + " cf:cq"));
+    }
+    
+    @Test
+    public void testBackdatedTimestampRefusesIncrementalReload() throws Exception {
+        // a backdated entry is only seen because another entry changed its row
+        write("row1", "cf", "cq2", 20);
+        write("row1", "cf", "cq3", 5);
+        assertTrue(cache.call());
+        assertFalse(cache.isIncrementalReload());
+        
+        addMarker();
+        assertTrue(cache.call());
+        Map<String,String> entries = cachedEntries();
+        assertEquals(4, entries.size());
+        assertFalse(entries.containsKey(MARKER + " cf:cq"));
+    }
+    
+    private void write(String row, String cf, String cq, long timestamp) throws Exception {
+        BatchWriter writer = source.createBatchWriter(TABLE, new BatchWriterConfig());
+        Mutation m = new Mutation(row);
+        m.put(cf, cq, timestamp, new Value(Long.toString(timestamp).getBytes()));
+        writer.addMutation(m);
+        writer.close();
+    }
+    
+    /**
+     * Write an entry straight to the cached copy, which is only kept by an incremental reload
+     */
+    private void addMarker() throws Exception {
+        BatchWriter writer = cached.createBatchWriter(TABLE, new BatchWriterConfig());
+        Mutation m = new Mutation(MARKER);
+        m.put("cf", "cq", 1, new Value("1".getBytes()));
+        writer.addMutation(m);
+        writer.close();
+    }
+    
+    private Map<String,String> cachedEntries() throws Exception {
+        Map<String,String> entries = new TreeMap<>();
+        Scanner scanner = cached.createScanner(TABLE, Authorizations.EMPTY);
+        for (Entry<Key,Value> entry : scanner) {
+            Key key = entry.getKey();
+            entries.put(key.getRow() + " " + key.getColumnFamily() + ":" + key.getColumnQualifier(), entry.getValue().toString());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,123 @@
+package datawave.webservice.common.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Instance;
+import org.apache.accumulo.core.client.security.tokens.AuthenticationToken;
+import org.apache.commons.lang.mutable.MutableInt;
+import org.apache.log4j.Logger;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccumuloConnectionPoolTest {
+    private static final Logger log = Logger.getLogger(AccumuloConnectionPoolTest.class);
+    
+    private AccumuloConnectionPool pool;
+    
+    @Before
+    public void setup() throws Exception {
+        Instance instance = EasyMock.createMock(Instance.class);
+        EasyMock.expect(instance.getConnector(EasyMock.anyString(), EasyMock.anyObject(AuthenticationToken.class)))
+                        .andAnswer(() -> EasyMock.createMock(Connector.class)).anyTimes();
+        EasyMock.replay(instance);
+        pool = new AccumuloConnectionPool(new AccumuloConnectionPoolFactory("root", "", instance));
+        pool.setMaxTotal(4);
+    }
+    
+    @After
+    public void cleanup() {
+        pool.close();
+    }
+    
+    @Test
+    public void testTracking() throws Exception {
+        Map<String,String> trackingMap = new HashMap<>();
+        Connector connector = pool.borrowObject(trackingMap);
+        assertTrue(pool.connectorCameFromHere(connector));
+        assertEquals(AccumuloConnectionFactory.State.CONNECTED.toString(), trackingMap.get("state"));
+        
+        MutableInt maxTotal = new MutableInt();
+        MutableInt numActive = new MutableInt();
+        MutableInt maxIdle = new MutableInt();
+        MutableInt numIdle = new MutableInt();
+        MutableInt numWaiting = new MutableInt();
+        List<Map<String,String>> stats = pool.getConnectionPoolStats(maxTotal, numActive, maxIdle, numIdle, numWaiting);
+        assertEquals(1, stats.size());
+        assertEquals(trackingMap, stats.get(0));
+        assertEquals(4, maxTotal.intValue());
+        assertEquals(1, numActive.intValue());
+        
+        pool.returnObject(connector);
+        assertFalse(pool.connectorCameFromHere(connector));
+        assertEquals(0, pool.getNumActiveEntriesBeingTracked());
+        assertEquals(1, pool.getNumIdle());
+    }
+    
+    @Test
+    public void testConcurrentBorrowAndReturn() throws Exception {
+        int numThreads = 16;
+        int iterations = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger statsCollected = new AtomicInteger();
+        try {
+            // collect stats while the connections are borrowed and returned, as the connection factory's stats endpoint does
+            Future<?> stats = executor.submit(() -> {
+                while (!done.get()) {
+                    MutableInt numActive = new MutableInt();
+                    pool.getConnectionPoolStats(new MutableInt(), numActive, new MutableInt(), new MutableInt(), new MutableInt());
+                    assertTrue(numActive.intValue() <= 4);
+                    statsCollected.incrementAndGet();
+                }
+                return null;
+            });
+            Future<?>[] workers = new Future<?>[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                workers[i] = executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < iterations; j++) {
+                        Connector connector = pool.borrowObject(new HashMap<>());
+                        assertTrue(pool.connectorCameFromHere(connector));
+                        pool.returnObject(connector);
+                    }
+                    return null;
+                });
+            }
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                assertNull(worker.get(60, TimeUnit.SECONDS));
+            }
+            long elapsed = System.nanoTime() - startTime;
+            done.set(true);
+            stats.get(60, TimeUnit.SECONDS);
+            log.info(numThreads * iterations + " borrows and returns in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms while collecting stats "
+                            + statsCollected.get() + " times");
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        
+        assertEquals(0, pool.getNumActiveEntriesBeingTracked());
+        assertEquals(0, pool.getNumActive());
+        assertTrue(pool.getNumIdle() <= 4);
+    }
+}
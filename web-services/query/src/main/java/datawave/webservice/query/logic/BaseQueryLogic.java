@@ -33,6 +33,9 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
     protected Iterator<T> iterator = (Iterator<T>) Collections.emptyList().iterator();
     private int maxPageSize = 0;
     private long pageByteTrigger = 0;
+    private boolean prefetchEnabled = false;
+    private int prefetchResultBudget = 0;
+    private long prefetchByteBudget = 0;
     private boolean collectQueryMetrics = true;
     private String _connPoolName;
     protected Principal principal;
@@ -67,6 +70,9 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
         this.iterator = other.iterator;
         setMaxPageSize(other.getMaxPageSize());
         setPageByteTrigger(other.getPageByteTrigger());
+        setPrefetchEnabled(other.getPrefetchEnabled());
+        setPrefetchResultBudget(other.getPrefetchResultBudget());
+        setPrefetchByteBudget(other.getPrefetchByteBudget());
         setCollectQueryMetrics(other.getCollectQueryMetrics());
         setConnPoolName(other.getConnPoolName());
         setPrincipal(other.getPrincipal());
@@ -175,6 +181,36 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
         this.pageByteTrigger = pageByteTrigger;
     }
     
+    @Override
+    public boolean getPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+    
+    @Override
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        this.prefetchEnabled = prefetchEnabled;
+    }
+    
+    @Override
+    public int getPrefetchResultBudget() {
+        return prefetchResultBudget;
+    }
+    
+    @Override
+    public void setPrefetchResultBudget(int prefetchResultBudget) {
+        this.prefetchResultBudget = prefetchResultBudget;
+    }
+    
+    @Override
+    public long getPrefetchByteBudget() {
+        return prefetchByteBudget;
+    }
+    
+    @Override
+    public void setPrefetchByteBudget(long prefetchByteBudget) {
+        this.prefetchByteBudget = prefetchByteBudget;
+    }
+    
     @Override
     public int getBaseIteratorPriority() {
         return getConfig().getBaseIteratorPriority();
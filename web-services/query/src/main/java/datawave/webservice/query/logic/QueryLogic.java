@@ -141,6 +141,21 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     long getPageByteTrigger();
     
+    /**
+     * @return true if the next page of results should be prefetched on a background thread as soon as the current page has been returned
+     */
+    boolean getPrefetchEnabled();
+    
+    /**
+     * @return the max number of results to prefetch for the next page, or 0 to limit only by the page size
+     */
+    int getPrefetchResultBudget();
+    
+    /**
+     * @return the max number of bytes to prefetch for the next page, or 0 to limit only by the page byte trigger
+     */
+    long getPrefetchByteBudget();
+    
     /**
      * Returns the base iterator priority.
      * 
@@ -185,6 +200,24 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     void setPageByteTrigger(long pageByteTrigger);
     
+    /**
+     * @param prefetchEnabled
+     *            whether the next page of results should be prefetched on a background thread as soon as the current page has been returned
+     */
+    void setPrefetchEnabled(boolean prefetchEnabled);
+    
+    /**
+     * @param prefetchResultBudget
+     *            the max number of results to prefetch for the next page, or 0 to limit only by the page size
+     */
+    void setPrefetchResultBudget(int prefetchResultBudget);
+    
+    /**
+     * @param prefetchByteBudget
+     *            the max number of bytes to prefetch for the next page, or 0 to limit only by the page byte trigger
+     */
+    void setPrefetchByteBudget(long prefetchByteBudget);
+    
     /**
      * Sets the base iterator priority
      * 
@@ -0,0 +1,226 @@
+package datawave.webservice.query.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import datawave.webservice.query.result.event.EstimatesSize;
+import datawave.webservice.query.runner.RunningQuery.RunningQueryTiming;
+
+import org.apache.commons.collections4.iterators.TransformIterator;
+import org.apache.log4j.Logger;
+import org.jboss.logging.NDC;
+
+/**
+ * Fills the next page of results for a {@link RunningQuery} on a background executor while the client is consuming the current page. While a prefetch is
+ * outstanding it owns the transform iterator; the running query must wait for it to complete (see {@link #await(long, TimeUnit)}) before touching the
+ * iterator again. The prefetch stops at the same max work and page time limits that the running query checks while filling a page itself.
+ */
+class PagePrefetch {
+    
+    private static final Logger log = Logger.getLogger(PagePrefetch.class);
+    
+    private final TransformIterator iter;
+    private final int maxResults;
+    private final long maxBytes;
+    private final int maxPageSize;
+    private final RunningQueryTiming timing;
+    private final BooleanSupplier maxWorkReached;
+    private final String ndc;
+    private final List<Object> results;
+    private long bytes = 0;
+    private boolean exhausted = false;
+    private boolean hitPageTimeTrigger = false;
+    private volatile boolean stopped = false;
+    private volatile Future<Object> future = null;
+    // claimed by the fill once it starts, or by a cancel to keep it from starting
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+    // released once a fill which was started has finished with the iterator
+    private final CountDownLatch done = new CountDownLatch(1);
+    
+    /**
+     * @param iter
+     *            the transform iterator to pull results from
+     * @param maxResults
+     *            the max number of results to prefetch
+     * @param maxBytes
+     *            the max number of bytes to prefetch, or 0 for no byte limit
+     * @param maxPageSize
+     *            the max page size passed to the timing
+     * @param timing
+     *            the timing used to decide when to return a partial page, may be null
+     * @param maxWorkReached
+     *            checked before each result is pulled, returns true once the query logic's max work has been reached
+     * @param ndc
+     *            the diagnostic context to log the prefetch under, may be null
+     */
+    PagePrefetch(TransformIterator iter, int maxResults, long maxBytes, int maxPageSize, RunningQueryTiming timing, BooleanSupplier maxWorkReached,
+                    String ndc) {
+        this.iter = iter;
+        this.maxResults = maxResults;
+        this.maxBytes = maxBytes;
+        this.maxPageSize = maxPageSize;
+        this.timing = timing;
+        this.maxWorkReached = maxWorkReached;
+        this.ndc = ndc;
+        this.results = new ArrayList<>(maxResults);
+    }
+    
+    /**
+     * Submit the prefetch to the executor
+     *
+     * @param executor
+     *            the executor to fill the page on
+     * @return true if the prefetch was submitted, false if the executor rejected it
+     */
+    boolean start(ExecutorService executor) {
+        try {
+            future = executor.submit(this::fill);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Unable to submit page prefetch, next page will be read on demand", e);
+            return false;
+        }
+    }
+    
+    private Object fill() {
+        if (!claimed.compareAndSet(false, true)) {
+            // cancelled before it was started
+            return null;
+        }
+        if (ndc != null) {
+            NDC.push(ndc);
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            while (!stopped && results.size() < maxResults && (maxBytes <= 0 || bytes < maxBytes)) {
+                if (maxWorkReached.getAsBoolean()) {
+                    log.debug("Query logic max work has been reached, stopping prefetch");
+                    break;
+                }
+                long timeInCall = System.currentTimeMillis() - startTime;
+                if (timing != null && !results.isEmpty() && timing.shouldReturnPartialResults(results.size(), maxPageSize, timeInCall)) {
+                    log.debug("Query logic max expire before prefetch is full, stopping prefetch with " + results.size() + " results");
+                    hitPageTimeTrigger = true;
+                    break;
+                }
+                if (!iter.hasNext()) {
+                    break;
+                }
+                Object o = iter.next();
+                if (null == o) {
+                    exhausted = true;
+                    break;
+                }
+                results.add(o);
+                if (maxBytes > 0) {
+                    bytes += EstimatesSize.Estimator.estimateSize(o);
+                }
+            }
+        } finally {
+            if (ndc != null) {
+                NDC.pop();
+            }
+            done.countDown();
+        }
+        return null;
+    }
+    
+    /**
+     * @return true if the prefetch has completed (successfully or otherwise)
+     */
+    boolean isDone() {
+        Future<Object> future = this.future;
+        return future == null || future.isDone();
+    }
+    
+    /**
+     * Wait for the prefetch to complete.
+     *
+     * @return true if the prefetch completed, false if the wait timed out
+     * @throws ExecutionException
+     *             if the prefetch failed while pulling results from the iterator
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    boolean await(long timeout, TimeUnit unit) throws ExecutionException, InterruptedException {
+        Future<Object> future = this.future;
+        if (future == null || future.isCancelled()) {
+            return true;
+        }
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException te) {
+            return false;
+        }
+    }
+    
+    /**
+     * Stop the prefetch, interrupting it if it is still running. Any results already prefetched are discarded.
+     */
+    void cancel() {
+        this.stopped = true;
+        Future<Object> future = this.future;
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+    
+    /**
+     * Stop the prefetch as {@link #cancel()} does, and wait for a fill which already started to stop using the iterator.
+     */
+    void cancelAndWait() {
+        cancel();
+        if (!claimed.compareAndSet(false, true)) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * @return the prefetched results; only valid once {@link #await(long, TimeUnit)} has returned true
+     */
+    List<Object> getResults() {
+        return stopped ? Collections.emptyList() : results;
+    }
+    
+    /**
+     * @return the approximate size of the prefetched results, or 0 if there was no byte limit
+     */
+    long getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * @return true if the prefetch stopped early because the timing decided a partial page should be returned
+     */
+    boolean isHitPageTimeTrigger() {
+        return hitPageTimeTrigger;
+    }
+    
+    /**
+     * @return true if the iterator returned a null result, i.e. there are no more results for the query
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+}
@@ -20,7 +20,6 @@ import datawave.webservice.query.cache.QueryMetricFactory;
 import datawave.webservice.query.cache.QueryMetricFactoryImpl;
 import datawave.webservice.query.cache.ResultsPage;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
-import datawave.webservice.query.data.ObjectSizeOf;
 import datawave.webservice.query.exception.QueryException;
 import datawave.webservice.query.logic.QueryLogic;
 import datawave.webservice.query.logic.WritesQueryMetrics;
@@ -29,6 +28,7 @@ import datawave.webservice.query.metric.BaseQueryMetric;
 import datawave.webservice.query.metric.BaseQueryMetric.Prediction;
 import datawave.webservice.query.metric.QueryMetric;
 import datawave.webservice.query.metric.QueryMetricsBean;
+import datawave.webservice.query.result.event.EstimatesSize;
 import datawave.webservice.query.util.QueryUncaughtExceptionHandler;
 
 import org.apache.accumulo.core.client.Connector;
@@ -64,6 +64,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     private RunningQueryTiming timing = null;
     private ExecutorService executor = null;
     private volatile Future<Object> future = null;
+    private transient volatile PagePrefetch prefetch = null;
     private QueryPredictor predictor = null;
     
     public RunningQuery() {
@@ -132,11 +133,22 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     }
     
     private void addNDC() {
+        String ndc = getNDC();
+        if (ndc != null) {
+            NDC.push(ndc);
+        }
+    }
+    
+    /**
+     * @return the diagnostic context identifying this query in the logs, or null if the query has no user or id
+     */
+    private String getNDC() {
         String user = this.settings.getUserDN();
         UUID uuid = this.settings.getId();
         if (user != null && uuid != null) {
-            NDC.push("[" + user + "] [" + uuid + "]");
+            return "[" + user + "] [" + uuid + "]";
         }
+        return null;
     }
     
     private void removeNDC() {
@@ -191,6 +203,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         List<Object> resultList = new ArrayList<>();
         boolean hitPageByteTrigger = false;
         boolean hitPageTimeTrigger = false;
+        boolean pageFull = false;
         try {
             addNDC();
             int currentPageCount = 0;
@@ -199,7 +212,46 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             // test for any exceptions prior to loop as hasNext() would likely be false;
             testForUncaughtException(resultList.size());
             
-            while (!this.finished && ((future != null) || this.iter.hasNext())) {
+            // start this page with whatever was prefetched after the last page was returned
+            PagePrefetch prefetch = this.prefetch;
+            if (prefetch != null) {
+                try {
+                    this.getMetric().addPrefetch(prefetch.isDone());
+                    if (awaitPrefetch(prefetch)) {
+                        List<Object> prefetched = prefetch.getResults();
+                        resultList.addAll(prefetched);
+                        currentPageCount += prefetched.size();
+                        currentPageBytes += prefetch.getBytes();
+                        numResults += prefetched.size();
+                        if (prefetch.isExhausted()) {
+                            log.debug("Null result encountered while prefetching, no more results");
+                            this.finished = true;
+                        }
+                        if (prefetch.isHitPageTimeTrigger()) {
+                            log.info("Query logic max expire before prefetch is full, returning prefetched results " + prefetched.size());
+                            hitPageTimeTrigger = true;
+                        }
+                        if (iter.getTransformer() instanceof WritesQueryMetrics) {
+                            ((WritesQueryMetrics) iter.getTransformer()).writeQueryMetrics(this.getMetric());
+                        }
+                    } else {
+                        // wait for the prefetch to let go of the iterator before this call goes back to it
+                        prefetch.cancelAndWait();
+                    }
+                } finally {
+                    this.prefetch = null;
+                }
+                
+                // if the prefetch filled the page, or took long enough to return a partial page, then there is no need to go back to the iterator
+                pageFull = hitPageTimeTrigger || currentPageCount >= this.settings.getPagesize()
+                                || (this.logic.getMaxPageSize() > 0 && currentPageCount >= this.logic.getMaxPageSize());
+                if (this.logic.getPageByteTrigger() > 0 && currentPageBytes >= this.logic.getPageByteTrigger()) {
+                    hitPageByteTrigger = true;
+                    pageFull = true;
+                }
+            }
+            
+            while (!pageFull && !this.finished && ((future != null) || this.iter.hasNext())) {
                 // if we are canceled, then break out
                 if (this.canceled) {
                     log.info("Query has been cancelled, aborting query.next call");
@@ -234,7 +286,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                     this.getMetric().setLifecycle(QueryMetric.Lifecycle.MAXRESULTS);
                     break;
                 }
-                if (this.logic.getMaxWork() >= 0 && (this.getMetric().getNextCount() + this.getMetric().getSeekCount()) >= this.logic.getMaxWork()) {
+                if (isMaxWorkReached()) {
                     log.info("Query logic max work has been reached, aborting query.next call");
                     this.getMetric().setLifecycle(QueryMetric.Lifecycle.MAXWORK);
                     break;
@@ -289,7 +341,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                     }
                     resultList.add(o);
                     if (this.logic.getPageByteTrigger() > 0) {
-                        currentPageBytes += ObjectSizeOf.Sizer.getObjectSize(o);
+                        currentPageBytes += EstimatesSize.Estimator.estimateSize(o);
                     }
                     currentPageCount++;
                     numResults++;
@@ -308,6 +360,9 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             if (!resultList.isEmpty()) {
                 this.getMetric().setLifecycle(QueryMetric.Lifecycle.RESULTS);
             }
+            
+            // start filling the next page while the client consumes this one
+            startPrefetch();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             this.getMetric().setError(e);
@@ -332,8 +387,103 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         }
     }
     
+    /**
+     * Wait for an outstanding prefetch to complete, checking for cancellation periodically.
+     *
+     * @param prefetch
+     *            the outstanding prefetch
+     * @return true if the prefetch completed, false if the query was cancelled while waiting
+     * @throws ExecutionException
+     *             if the prefetch failed
+     */
+    private boolean awaitPrefetch(PagePrefetch prefetch) throws ExecutionException {
+        try {
+            while (!prefetch.await(1, TimeUnit.MINUTES)) {
+                if (this.canceled) {
+                    return false;
+                }
+            }
+            return !this.canceled;
+        } catch (InterruptedException ie) {
+            // in this case we were most likely cancelled, no longer waiting
+            return false;
+        }
+    }
+    
+    /**
+     * Start prefetching the next page of results if the query logic has prefetch enabled and the query can still return results.
+     */
+    private void startPrefetch() {
+        if (executor == null || future != null || this.finished || this.canceled || !this.logic.getPrefetchEnabled()) {
+            return;
+        }
+        
+        int maxResults = this.settings.getPagesize();
+        if (this.logic.getMaxPageSize() > 0) {
+            maxResults = Math.min(maxResults, this.logic.getMaxPageSize());
+        }
+        if (this.logic.getPrefetchResultBudget() > 0) {
+            maxResults = Math.min(maxResults, this.logic.getPrefetchResultBudget());
+        }
+        long maxQueryResults = (this.settings.isMaxResultsOverridden() ? this.settings.getMaxResultsOverride() : this.logic.getMaxResults());
+        if (maxQueryResults >= 0) {
+            maxResults = (int) Math.min(maxResults, maxQueryResults - numResults);
+        }
+        if (isMaxWorkReached()) {
+            maxResults = 0;
+        }
+        if (maxResults <= 0) {
+            return;
+        }
+        
+        long maxBytes = this.logic.getPageByteTrigger();
+        if (this.logic.getPrefetchByteBudget() > 0) {
+            maxBytes = (maxBytes > 0 ? Math.min(maxBytes, this.logic.getPrefetchByteBudget()) : this.logic.getPrefetchByteBudget());
+        }
+        
+        // the same max page size that the timing is given when a page is filled by next()
+        int maxPageSize = Math.min(this.settings.getPagesize(), this.logic.getMaxPageSize());
+        PagePrefetch prefetch = new PagePrefetch(this.iter, maxResults, maxBytes, maxPageSize, timing, () -> {
+            // the work done so far is only known once the transformer has written it to the metric
+            if (iter.getTransformer() instanceof WritesQueryMetrics) {
+                ((WritesQueryMetrics) iter.getTransformer()).writeQueryMetrics(this.getMetric());
+            }
+            return isMaxWorkReached();
+        }, getNDC());
+        if (prefetch.start(executor)) {
+            this.prefetch = prefetch;
+        }
+    }
+    
+    /**
+     * @return true if the query logic has a max work, and the next and seek calls made so far have reached it
+     */
+    private boolean isMaxWorkReached() {
+        return this.logic.getMaxWork() >= 0 && (this.getMetric().getNextCount() + this.getMetric().getSeekCount()) >= this.logic.getMaxWork();
+    }
+    
+    /**
+     * Stop any outstanding prefetch
+     *
+     * @param wait
+     *            whether to wait for a prefetch which already started to stop using the transform iterator
+     */
+    private void cancelPrefetch(boolean wait) {
+        // save off the prefetch as it could be removed at any time
+        PagePrefetch prefetch = this.prefetch;
+        if (prefetch != null) {
+            if (wait) {
+                prefetch.cancelAndWait();
+            } else {
+                prefetch.cancel();
+            }
+            this.prefetch = null;
+        }
+    }
+    
     public void cancel() {
         this.canceled = true;
+        cancelPrefetch(false);
         // save off the future as it could be removed at any time
         Future<Object> future = this.future;
         // cancel the future if we have one
@@ -407,6 +557,9 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     public void closeConnection(AccumuloConnectionFactory factory) throws Exception {
         this.getMetric().setLifecycle(BaseQueryMetric.Lifecycle.CLOSED);
         
+        // stop reading ahead, and wait for a prefetch in progress to finish, before the logic and its scanners are closed
+        cancelPrefetch(true);
+        
         if (iter != null && iter.getTransformer() instanceof WritesResultCardinalities) {
             ((WritesResultCardinalities) iter.getTransformer()).writeResultCardinalities();
         }
@@ -2,6 +2,7 @@ package datawave.webservice.query.runner;
 
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
@@ -19,6 +20,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import datawave.security.authorization.DatawavePrincipal;
 import datawave.security.authorization.DatawaveUser;
@@ -27,19 +30,25 @@ import datawave.security.authorization.SubjectIssuerDNPair;
 import datawave.security.util.DnUtils.NpeUtils;
 import datawave.webservice.common.connection.AccumuloConnectionFactory;
 import datawave.webservice.query.QueryImpl;
+import datawave.webservice.query.cache.ResultsPage;
 import datawave.webservice.query.cache.QueryMetricFactoryImpl;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
 import datawave.webservice.query.logic.BaseQueryLogic;
 import datawave.webservice.query.logic.DatawaveRoleManager;
 import datawave.webservice.query.logic.QueryLogic;
 import datawave.webservice.query.logic.TestQueryLogic;
+import datawave.webservice.query.logic.WritesQueryMetrics;
 import datawave.webservice.query.logic.composite.CompositeQueryLogic;
 import datawave.webservice.query.logic.composite.CompositeQueryLogicTest;
+import datawave.webservice.query.metric.BaseQueryMetric;
+import datawave.webservice.query.metric.QueryMetric;
 
 import org.apache.accumulo.core.client.Connector;
 import datawave.accumulo.inmemory.InMemoryInstance;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.collections4.Transformer;
+import org.apache.commons.collections4.functors.NOPTransformer;
 import org.apache.commons.collections4.iterators.TransformIterator;
 import org.junit.Assert;
 import org.junit.Before;
@@ -185,4 +194,110 @@ public class RunningQueryTest {
             Assert.fail("NullPointer encountered. This could be caused by configuration being null. Check logic.initialize() ");
         }
     }
+    
+    @Test
+    public void testNextWithPrefetch() throws Exception {
+        DatawaveUser user = new DatawaveUser(userDN, UserType.USER, null, null, null, 0L);
+        DatawavePrincipal principal = new DatawavePrincipal(Collections.singletonList(user));
+        
+        InMemoryInstance instance = new InMemoryInstance("test instance");
+        Connector connector = instance.getConnector("root", new PasswordToken(""));
+        
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            expected.add("result" + i);
+        }
+        
+        QueryLogic<?> prefetchLogic = createNiceMock(BaseQueryLogic.class);
+        SampleGenericQueryConfiguration config = new SampleGenericQueryConfiguration();
+        expect(prefetchLogic.initialize(anyObject(), anyObject(), anyObject())).andReturn(config);
+        expect(prefetchLogic.getTransformIterator(settings)).andReturn(new TransformIterator(expected.iterator(), NOPTransformer.nopTransformer()));
+        expect(prefetchLogic.getCollectQueryMetrics()).andReturn(Boolean.FALSE).anyTimes();
+        expect(prefetchLogic.getPrefetchEnabled()).andReturn(Boolean.TRUE).anyTimes();
+        expect(prefetchLogic.getMaxResults()).andReturn(-1L).anyTimes();
+        expect(prefetchLogic.getMaxWork()).andReturn(-1L).anyTimes();
+        replay(prefetchLogic);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RunningQuery query = new RunningQuery(connector, connectionPriority, prefetchLogic, settings, methodAuths, principal, null, executor,
+                            new QueryMetricFactoryImpl());
+            
+            List<Object> results = new ArrayList<>();
+            int[] expectedPageSizes = {10, 10, 5, 0};
+            for (int expectedPageSize : expectedPageSizes) {
+                ResultsPage page = query.next();
+                assertEquals(expectedPageSize, page.getResults().size());
+                results.addAll(page.getResults());
+            }
+            
+            // every page after the first should have been served from a prefetch
+            assertEquals(3, query.getMetric().getPrefetchHits() + query.getMetric().getPrefetchMisses());
+            assertEquals(expected, results);
+            
+            query.closeConnection(createNiceMock(AccumuloConnectionFactory.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testPrefetchStopsAtMaxWork() throws Exception {
+        DatawaveUser user = new DatawaveUser(userDN, UserType.USER, null, null, null, 0L);
+        DatawavePrincipal principal = new DatawavePrincipal(Collections.singletonList(user));
+        
+        InMemoryInstance instance = new InMemoryInstance("test instance");
+        Connector connector = instance.getConnector("root", new PasswordToken(""));
+        
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            expected.add("result" + i);
+        }
+        
+        QueryLogic<?> prefetchLogic = createNiceMock(BaseQueryLogic.class);
+        SampleGenericQueryConfiguration config = new SampleGenericQueryConfiguration();
+        expect(prefetchLogic.initialize(anyObject(), anyObject(), anyObject())).andReturn(config);
+        expect(prefetchLogic.getTransformIterator(settings)).andReturn(new TransformIterator(expected.iterator(), new CountingTransformer()));
+        expect(prefetchLogic.getCollectQueryMetrics()).andReturn(Boolean.FALSE).anyTimes();
+        expect(prefetchLogic.getPrefetchEnabled()).andReturn(Boolean.TRUE).anyTimes();
+        expect(prefetchLogic.getMaxResults()).andReturn(-1L).anyTimes();
+        expect(prefetchLogic.getMaxWork()).andReturn(12L).anyTimes();
+        replay(prefetchLogic);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RunningQuery query = new RunningQuery(connector, connectionPriority, prefetchLogic, settings, methodAuths, principal, null, executor,
+                            new QueryMetricFactoryImpl());
+            
+            // the prefetch stops once the work done reaches the max work, rather than filling the next page
+            int[] expectedPageSizes = {10, 2, 0};
+            for (int expectedPageSize : expectedPageSizes) {
+                assertEquals(expectedPageSize, query.next().getResults().size());
+            }
+            assertEquals(12, query.getMetric().getNextCount());
+            assertEquals(QueryMetric.Lifecycle.MAXWORK, query.getMetric().getLifecycle());
+            
+            query.closeConnection(createNiceMock(AccumuloConnectionFactory.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Counts each result transformed as a next call, the work measured against the max work
+     */
+    private static class CountingTransformer implements Transformer<Object,Object>, WritesQueryMetrics {
+        private volatile long nextCount = 0;
+        
+        @Override
+        public Object transform(Object input) {
+            nextCount++;
+            return input;
+        }
+        
+        @Override
+        public void writeQueryMetrics(BaseQueryMetric metric) {
+            metric.setNextCount(nextCount);
+        }
+    }
 }